@@ -1,13 +1,193 @@
 package networkmonitor;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import javax.swing.SwingUtilities;
 
 import networkmonitor.db.BlacklistFetching;
+import networkmonitor.db.RollupHistoryReport;
+import networkmonitor.db.StorageBenchmark;
+import networkmonitor.db.BlacklistDao;
+import networkmonitor.geo.GeoIpDatabase;
 import networkmonitor.gui.ApplicationFrame;
+import networkmonitor.ids.SignatureBenchmark;
+import networkmonitor.jfr.FlightRecording;
+import networkmonitor.metrics.Metrics;
+import networkmonitor.service.CaptureBenchmark;
+import networkmonitor.service.CollectorMonitor;
+import networkmonitor.service.HeadlessMonitor;
 
 // Main entry point for the Network Monitor application.
 public class Main {
+    // Command-line flags
+    private static final String FLAG_HEADLESS = "--headless";
+    private static final String FLAG_STATS_INTERVAL = "--stats-interval=";
+    private static final String FLAG_INTERFACE = "--interface=";
+    private static final String FLAG_BENCHMARK_SIGNATURES = "--benchmark-signatures=";
+    private static final String FLAG_BENCHMARK_STORAGE = "--benchmark-storage=";
+    private static final String FLAG_BENCHMARK_CAPTURE = "--benchmark-capture=";
+    private static final String FLAG_HISTORY = "--history=";
+    private static final String FLAG_REPLAY = "--replay=";
+    private static final String FLAG_COLLECTOR = "--collector=";
+    private static final String FLAG_COMPILE_GEOIP = "--compile-geoip=";
+
+    // Default seconds between two headless stats lines
+    private static final int DEFAULT_STATS_INTERVAL = 10;
+
     public static void main(String[] args) {
+        long startNanos = System.nanoTime();
+
+        boolean headless = false;
+        int statsInterval = DEFAULT_STATS_INTERVAL;
+        String interfaceName = null;
+        String benchmarkFile = null;
+        String benchmarkStorage = null;
+        String benchmarkCapture = null;
+        String history = null;
+        String replayFile = null;
+        int collectorPort = -1;
+        String geoIpSource = null;
+
+        for (String arg : args) {
+            if (FLAG_HEADLESS.equals(arg))
+                headless = true;
+            else if (arg.startsWith(FLAG_STATS_INTERVAL))
+                statsInterval = parseNumber(arg, FLAG_STATS_INTERVAL, Integer.MAX_VALUE, statsInterval);
+            else if (arg.startsWith(FLAG_INTERFACE))
+                interfaceName = arg.substring(FLAG_INTERFACE.length());
+            else if (arg.startsWith(FLAG_BENCHMARK_SIGNATURES))
+                benchmarkFile = arg.substring(FLAG_BENCHMARK_SIGNATURES.length());
+            else if (arg.startsWith(FLAG_BENCHMARK_STORAGE))
+                benchmarkStorage = arg.substring(FLAG_BENCHMARK_STORAGE.length());
+            else if (arg.startsWith(FLAG_BENCHMARK_CAPTURE))
+                benchmarkCapture = arg.substring(FLAG_BENCHMARK_CAPTURE.length());
+            else if (arg.startsWith(FLAG_HISTORY))
+                history = arg.substring(FLAG_HISTORY.length());
+            else if (arg.startsWith(FLAG_REPLAY))
+                replayFile = arg.substring(FLAG_REPLAY.length());
+            else if (arg.startsWith(FLAG_COLLECTOR))
+                collectorPort = parseNumber(arg, FLAG_COLLECTOR, 65535, collectorPort);
+            else if (arg.startsWith(FLAG_COMPILE_GEOIP))
+                geoIpSource = arg.substring(FLAG_COMPILE_GEOIP.length());
+            else
+                System.err.println("Unknown argument ignored: " + arg);
+        }
+
+        if (benchmarkFile != null) {
+            /**
+             * Offline signature engine benchmark over a pcap file, then exit.
+             */
+            System.setProperty("java.awt.headless", "true");
+            SignatureBenchmark.run(benchmarkFile);
+            return;
+        }
+
+        if (benchmarkStorage != null) {
+            /**
+             * Same blacklist workload on the jpa and/or file storage backend, then exit.
+             */
+            System.setProperty("java.awt.headless", "true");
+            StorageBenchmark.run(benchmarkStorage);
+            return;
+        }
+
+        if (benchmarkCapture != null) {
+            /**
+             * Allocation and time per packet of the capture processing over a pcap file, then exit.
+             */
+            System.setProperty("java.awt.headless", "true");
+            CaptureBenchmark.run(benchmarkCapture);
+            return;
+        }
+
+        if (history != null) {
+            /**
+             * Daily traffic of one host from the rollups, then exit.
+             */
+            System.setProperty("java.awt.headless", "true");
+            RollupHistoryReport.run(history);
+            return;
+        }
+
+        if (geoIpSource != null) {
+            /**
+             * Compile an IP range list into the memory-mapped GeoIP database, then exit.
+             */
+            System.setProperty("java.awt.headless", "true");
+            compileGeoIp(geoIpSource);
+            return;
+        }
+
+        if (collectorPort >= 0) {
+            /**
+             * Collector mode: merges the IPFIX flow records of the sensors, no capture and no database.
+             */
+            System.setProperty("java.awt.headless", "true");
+            new CollectorMonitor(collectorPort, statsInterval, startNanos).start();
+            return;
+        }
+
+        /**
+         * JMX MBeans and the local Prometheus endpoint for the latency histograms and counters,
+         * and the optional continuous flight recording.
+         */
+        Metrics.start();
+        FlightRecording.startFromSystemProperties();
+
+        /**
+         * Open the blacklist store in the background; capture and the GUI do not wait for it.
+         */
+        BlacklistDao.getDefaultStore().start();
+
+        if (headless || replayFile != null) {
+            /**
+             * Headless daemon mode: no AWT/Swing class is loaded on this path.
+             */
+            System.setProperty("java.awt.headless", "true");
+            new HeadlessMonitor(statsInterval, interfaceName, replayFile, startNanos).start();
+            return;
+        }
+
+        startGui();
+    }
+
+    /**
+     * Parses the number after a flag, reporting values that are not a number or out of range.
+     * @param arg The whole argument
+     * @param flag The flag prefix
+     * @param max Largest accepted value; the smallest is 1
+     * @param current Value kept if the argument is invalid
+     * @return The parsed value, or current
+     */
+    private static int parseNumber(String arg, String flag, int max, int current) {
+        try {
+            int value = Integer.parseInt(arg.substring(flag.length()));
+            if (value > 0 && value <= max)
+                return value;
+        } catch (NumberFormatException e) {
+            // Reported below like any other invalid value
+        }
+        System.err.println("Invalid argument ignored: " + arg);
+        return current;
+    }
+
+    /**
+     * Compiles the GeoIP database to -Dnetworkmonitor.geoip.file (default geoip.bin).
+     * @param source The range list (CSV or TSV)
+     */
+    private static void compileGeoIp(String source) {
+        try {
+            GeoIpDatabase.compile(Path.of(source), Path.of(System.getProperty("networkmonitor.geoip.file", "geoip.bin")));
+        } catch (IOException e) {
+            System.err.println("GeoIP compilation failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Starts the Swing GUI and the blacklist synchronization.
+     * Kept in its own method so the headless path never resolves the Swing classes.
+     */
+    private static void startGui() {
         /**
          * Start the GUI on the Event Dispatch Thread to ensure thread safety
          */
@@ -24,4 +204,4 @@ public class Main {
         backgroundThread.setDaemon(true); 
         backgroundThread.start();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,147 @@
+package networkmonitor.analytics;
+
+import java.util.Arrays;
+
+import networkmonitor.util.Hashing;
+
+/**
+ * Count-Min Sketch of bytes and packets per key in fixed memory: depth rows of width
+ * counters each. Every key adds to one counter per row; the estimate is the smallest of
+ * its counters, which never under-counts and over-counts by at most e/width of the total
+ * with probability 1 - e^-depth.
+ * <p>
+ * Keys are passed as a 64-bit hash (see {@link Hashing#mix(long, long)}); the row positions
+ * are derived from its two halves, so an update costs one hash for all rows.
+ * Not thread-safe: one writer, and readers on the same thread.
+ */
+public final class CountMinSketch {
+    private final int depth;
+    private final int mask;
+
+    // Counters, row after row; bytes and packets of a cell side by side, so an update touches one cache line per row
+    private final long[] counters;
+
+    // Sums of all updates
+    private long totalBytes;
+    private long totalPackets;
+
+    /**
+     * Creates an empty sketch.
+     * @param depth Number of rows (independent estimates)
+     * @param width Counters per row, rounded up to a power of two
+     */
+    public CountMinSketch(int depth, int width) {
+        if (depth < 1 || width < 1)
+            throw new IllegalArgumentException("depth and width must be positive");
+        int roundedWidth = Integer.highestOneBit(Math.max(2, width) * 2 - 1);
+        this.depth = depth;
+        this.mask = roundedWidth - 1;
+        this.counters = new long[2 * depth * roundedWidth];
+    }
+
+    // Byte counter of a key in a row (the packet counter follows it): cell h1 + row * h2
+    // (Kirsch-Mitzenmacher), h2 odd so rows differ
+    private int index(long hash, int row) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return 2 * (row * (mask + 1) + ((h1 + row * h2) & mask));
+    }
+
+    /**
+     * Counts one packet of a key. Allocation-free.
+     * @param hash Hash of the key
+     * @param byteCount Size of the packet
+     */
+    public void add(long hash, long byteCount) {
+        for (int row = 0; row < depth; row++) {
+            int index = index(hash, row);
+            counters[index] += byteCount;
+            counters[index + 1]++;
+        }
+        totalBytes += byteCount;
+        totalPackets++;
+    }
+
+    /**
+     * @param hash Hash of the key
+     * @return Estimated bytes of the key, never less than the true value
+     */
+    public long estimateBytes(long hash) {
+        return estimate(hash, 0);
+    }
+
+    /**
+     * @param hash Hash of the key
+     * @return Estimated packets of the key, never less than the true value
+     */
+    public long estimatePackets(long hash) {
+        return estimate(hash, 1);
+    }
+
+    private long estimate(long hash, int counter) {
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++)
+            min = Math.min(min, counters[index(hash, row) + counter]);
+        return min;
+    }
+
+    /**
+     * Estimates a key over several sketches of the same shape (the slots of a sliding window):
+     * the counters are summed across the sketches before taking the minimum over the rows,
+     * which is as tight as one sketch covering the whole window.
+     * @param sketches Sketches created with the same depth and width
+     * @param hash Hash of the key
+     * @param ofBytes true for bytes, false for packets
+     * @return The estimate
+     */
+    public static long estimate(CountMinSketch[] sketches, long hash, boolean ofBytes) {
+        CountMinSketch first = sketches[0];
+        long min = Long.MAX_VALUE;
+        int counter = ofBytes ? 0 : 1;
+        for (int row = 0; row < first.depth; row++) {
+            int index = first.index(hash, row) + counter;
+            long sum = 0;
+            for (CountMinSketch sketch : sketches)
+                sum += sketch.counters[index];
+            min = Math.min(min, sum);
+        }
+        return min;
+    }
+
+    /**
+     * @return Sum of the bytes added since the last clear
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * @return Number of packets added since the last clear
+     */
+    public long getTotalPackets() {
+        return totalPackets;
+    }
+
+    /**
+     * @return Counters per row
+     */
+    public int getWidth() {
+        return mask + 1;
+    }
+
+    /**
+     * @return Memory held by the counters, in bytes
+     */
+    public long getMemoryBytes() {
+        return 8L * counters.length;
+    }
+
+    /**
+     * Resets all counters.
+     */
+    public void clear() {
+        Arrays.fill(counters, 0);
+        totalBytes = 0;
+        totalPackets = 0;
+    }
+}
@@ -0,0 +1,194 @@
+package networkmonitor.analytics;
+
+import networkmonitor.util.ProbeIndex;
+
+/**
+ * Space-Saving heavy-hitter summary (Metwally et al.) weighted by bytes: tracks at most
+ * capacity keys. A new key takes over the slot of the smallest one and inherits its count
+ * as error, so every key heavier than total/capacity is guaranteed to be in the summary
+ * and its count over-estimates by at most its error.
+ * <p>
+ * Slots are parallel primitive arrays with a min-heap on the counts and a linear-probing
+ * index from key to slot, so an update is allocation-free and O(log capacity).
+ * Not thread-safe: one writer, and readers on the same thread.
+ */
+public final class SpaceSaving {
+    private final int capacity;
+    private int size;
+
+    // Slot contents
+    private final long[] highs;
+    private final long[] lows;
+    private final long[] hashes;
+    private final long[] counts;
+    private final long[] errors;
+
+    // Min-heap of slots by count, and the heap position of each slot
+    private final int[] heap;
+    private final int[] heapPositions;
+
+    // Key index from hash to slot
+    private final ProbeIndex index;
+
+    /**
+     * Creates an empty summary.
+     * @param capacity Number of keys tracked
+     */
+    public SpaceSaving(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be positive");
+        this.capacity = capacity;
+        highs = new long[capacity];
+        lows = new long[capacity];
+        hashes = new long[capacity];
+        counts = new long[capacity];
+        errors = new long[capacity];
+        heap = new int[capacity];
+        heapPositions = new int[capacity];
+        index = new ProbeIndex(capacity * 4);
+    }
+
+    /**
+     * Adds weight to a key, replacing the smallest key if it is not tracked and the summary is full.
+     * @param high High 64 bits of the key
+     * @param low Low 64 bits of the key
+     * @param hash Hashing.mix(high, low)
+     * @param weight Bytes of the packet
+     */
+    public void offer(long high, long low, long hash, long weight) {
+        int slot = find(high, low, hash);
+        if (slot >= 0) {
+            counts[slot] += weight;
+            siftDown(heapPositions[slot]);
+            return;
+        }
+
+        if (size < capacity) {
+            slot = size++;
+            counts[slot] = weight;
+            errors[slot] = 0;
+            heap[slot] = slot;
+            heapPositions[slot] = slot;
+            setKey(slot, high, low, hash);
+            siftUp(slot);
+            return;
+        }
+
+        slot = heap[0];
+        index.remove(slot, hashes);
+        errors[slot] = counts[slot];
+        counts[slot] += weight;
+        setKey(slot, high, low, hash);
+        siftDown(0);
+    }
+
+    private void setKey(int slot, long high, long low, long hash) {
+        highs[slot] = high;
+        lows[slot] = low;
+        hashes[slot] = hash;
+        index.insert(hash, slot);
+    }
+
+    private int find(long high, long low, long hash) {
+        int slot;
+        for (int i = index.slot(hash); (slot = index.get(i)) >= 0; i = index.next(i))
+            if (highs[slot] == high && lows[slot] == low)
+                return slot;
+        return -1;
+    }
+
+    private void siftUp(int position) {
+        int slot = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[slot])
+                break;
+            place(heap[parent], position);
+            position = parent;
+        }
+        place(slot, position);
+    }
+
+    private void siftDown(int position) {
+        int slot = heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size)
+                break;
+            if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]])
+                child++;
+            if (counts[heap[child]] >= counts[slot])
+                break;
+            place(heap[child], position);
+            position = child;
+        }
+        place(slot, position);
+    }
+
+    private void place(int slot, int position) {
+        heap[position] = slot;
+        heapPositions[slot] = position;
+    }
+
+    /**
+     * @return Number of tracked keys
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Most keys tracked at once
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @param slot Slot index, below size()
+     * @return High 64 bits of the key in the slot
+     */
+    public long getHigh(int slot) {
+        return highs[slot];
+    }
+
+    /**
+     * @param slot Slot index, below size()
+     * @return Low 64 bits of the key in the slot
+     */
+    public long getLow(int slot) {
+        return lows[slot];
+    }
+
+    /**
+     * @param slot Slot index, below size()
+     * @return Hash of the key in the slot
+     */
+    public long getHash(int slot) {
+        return hashes[slot];
+    }
+
+    /**
+     * @param slot Slot index, below size()
+     * @return Counted bytes of the key, at most getError(slot) above the true value
+     */
+    public long getCount(int slot) {
+        return counts[slot];
+    }
+
+    /**
+     * @param slot Slot index, below size()
+     * @return Largest possible over-count of the key
+     */
+    public long getError(int slot) {
+        return errors[slot];
+    }
+
+    /**
+     * Forgets all keys.
+     */
+    public void clear() {
+        size = 0;
+        index.clear();
+    }
+}
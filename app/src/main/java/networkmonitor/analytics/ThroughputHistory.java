@@ -0,0 +1,224 @@
+package networkmonitor.analytics;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Rates of the capture counters over time, for the throughput charts. A sampler thread reads
+ * the cumulative counters once per second (no per-packet work) and appends the per-second
+ * rates to two ring buffers of floats: one value per second for the last day, and the
+ * average of each minute for the last week.
+ */
+public final class ThroughputHistory {
+    /**
+     * The recorded rates.
+     */
+    public enum Series {
+        PACKETS("Packets/s"),
+        BYTES("Bytes/s"),
+        BLOCKED("Blocked/s"),
+        TCP("TCP"),
+        UDP("UDP"),
+        OTHER("Other");
+
+        private final String title;
+
+        Series(String title) {
+            this.title = title;
+        }
+
+        /**
+         * @return Human readable name
+         */
+        public String getTitle() {
+            return title;
+        }
+    }
+
+    /**
+     * Resolutions of the ring buffers.
+     */
+    public enum Resolution {
+        /** One value per second, the last 24 hours. */
+        SECOND(1, 86_400),
+        /** One value per minute (the average of its seconds), the last 7 days. */
+        MINUTE(60, 10_080);
+
+        private final int seconds;
+        private final int capacity;
+
+        Resolution(int seconds, int capacity) {
+            this.seconds = seconds;
+            this.capacity = capacity;
+        }
+
+        /**
+         * @return Seconds per value
+         */
+        public int getSeconds() {
+            return seconds;
+        }
+
+        /**
+         * @return Values kept
+         */
+        public int getCapacity() {
+            return capacity;
+        }
+    }
+
+    private static final int SERIES = Series.values().length;
+    private static final int RESOLUTIONS = Resolution.values().length;
+
+    // Cumulative counters: packets, bytes, blocked, TCP packets, UDP packets
+    private final LongSupplier packets;
+    private final LongSupplier bytes;
+    private final LongSupplier blocked;
+    private final LongSupplier tcpPackets;
+    private final LongSupplier udpPackets;
+
+    // [resolution][series][slot], guarded by this
+    private final float[][][] rings = new float[RESOLUTIONS][SERIES][];
+    private final int[] heads = new int[RESOLUTIONS];
+    private final int[] counts = new int[RESOLUTIONS];
+
+    // Sums of the current minute, guarded by this
+    private final double[] minuteSums = new double[SERIES];
+    private final float[] minuteAverages = new float[SERIES];
+    private int minuteSeconds = 0;
+
+    // Sampler state, sampler thread only
+    private final long[] lastCounters = new long[SERIES];
+    private final long[] counters = new long[SERIES];
+    private final float[] rates = new float[SERIES];
+    private long lastSampleNanos;
+
+    private ScheduledExecutorService sampler;
+
+    /**
+     * Creates the history; call {@link #start()} to begin sampling.
+     * @param packets Packets processed so far
+     * @param bytes Bytes processed so far
+     * @param blocked Blocked packets so far
+     * @param tcpPackets TCP packets so far
+     * @param udpPackets UDP packets so far
+     */
+    public ThroughputHistory(LongSupplier packets, LongSupplier bytes, LongSupplier blocked,
+                             LongSupplier tcpPackets, LongSupplier udpPackets) {
+        this.packets = packets;
+        this.bytes = bytes;
+        this.blocked = blocked;
+        this.tcpPackets = tcpPackets;
+        this.udpPackets = udpPackets;
+        for (Resolution resolution : Resolution.values())
+            for (int s = 0; s < SERIES; s++)
+                rings[resolution.ordinal()][s] = new float[resolution.capacity];
+    }
+
+    /**
+     * Starts the sampler thread. Later calls do nothing.
+     */
+    public synchronized void start() {
+        if (sampler != null)
+            return;
+        readCounters(lastCounters);
+        lastSampleNanos = System.nanoTime();
+        sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "throughput-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(this::sample, 1, 1, TimeUnit.SECONDS);
+    }
+
+    private void readCounters(long[] out) {
+        long total = packets.getAsLong();
+        long tcp = tcpPackets.getAsLong();
+        long udp = udpPackets.getAsLong();
+        out[Series.PACKETS.ordinal()] = total;
+        out[Series.BYTES.ordinal()] = bytes.getAsLong();
+        out[Series.BLOCKED.ordinal()] = blocked.getAsLong();
+        out[Series.TCP.ordinal()] = tcp;
+        out[Series.UDP.ordinal()] = udp;
+        out[Series.OTHER.ordinal()] = total - tcp - udp;
+    }
+
+    /**
+     * Appends the rates since the previous sample. Runs on the sampler thread.
+     */
+    private void sample() {
+        long now = System.nanoTime();
+        readCounters(counters);
+        // Rates per second even if the sampler was delayed
+        double seconds = Math.max(1e-3, (now - lastSampleNanos) / 1e9);
+        for (int s = 0; s < SERIES; s++)
+            rates[s] = (float) Math.max(0, (counters[s] - lastCounters[s]) / seconds);
+        System.arraycopy(counters, 0, lastCounters, 0, SERIES);
+        lastSampleNanos = now;
+        append(rates);
+    }
+
+    /**
+     * Appends one second of rates, and a minute average every 60 seconds.
+     * @param rates Rate per series
+     */
+    synchronized void append(float[] rates) {
+        push(Resolution.SECOND.ordinal(), rates);
+        for (int s = 0; s < SERIES; s++)
+            minuteSums[s] += rates[s];
+        if (++minuteSeconds == Resolution.MINUTE.seconds) {
+            for (int s = 0; s < SERIES; s++) {
+                minuteAverages[s] = (float) (minuteSums[s] / minuteSeconds);
+                minuteSums[s] = 0;
+            }
+            minuteSeconds = 0;
+            push(Resolution.MINUTE.ordinal(), minuteAverages);
+        }
+    }
+
+    private void push(int resolution, float[] values) {
+        int head = heads[resolution];
+        for (int s = 0; s < SERIES; s++)
+            rings[resolution][s][head] = values[s];
+        int capacity = rings[resolution][0].length;
+        heads[resolution] = (head + 1) % capacity;
+        counts[resolution] = Math.min(capacity, counts[resolution] + 1);
+    }
+
+    /**
+     * Copies the most recent values of some series, oldest first, all from the same samples.
+     * Allocation-free.
+     * @param series The series
+     * @param resolution The ring buffer
+     * @param points Most values wanted
+     * @param out One destination per series, each at least points long
+     * @return Number of values copied per series (fewer than points while the history fills up)
+     */
+    public synchronized int copyRecent(Series[] series, Resolution resolution, int points, float[][] out) {
+        int r = resolution.ordinal();
+        int capacity = resolution.capacity;
+        int n = Math.min(points, counts[r]);
+        int start = Math.floorMod(heads[r] - n, capacity);
+        int first = Math.min(n, capacity - start);
+        for (int i = 0; i < series.length; i++) {
+            float[] ring = rings[r][series[i].ordinal()];
+            System.arraycopy(ring, start, out[i], 0, first);
+            System.arraycopy(ring, 0, out[i], first, n - first);
+        }
+        return n;
+    }
+
+    /**
+     * @param series The series
+     * @return The rate of the last second, 0 before the first sample
+     */
+    public synchronized float getLatest(Series series) {
+        int r = Resolution.SECOND.ordinal();
+        if (counts[r] == 0)
+            return 0;
+        float[] ring = rings[r][series.ordinal()];
+        return ring[Math.floorMod(heads[r] - 1, ring.length)];
+    }
+}
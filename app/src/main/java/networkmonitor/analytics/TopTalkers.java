@@ -0,0 +1,346 @@
+package networkmonitor.analytics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import networkmonitor.model.DecodedPacket;
+import networkmonitor.util.Hashing;
+import networkmonitor.util.IpAddresses;
+import networkmonitor.util.LongPairOpenHashSet;
+
+/**
+ * Heavy hitters by source address, destination address and destination port over a
+ * sliding window, in memory fixed at construction however many hosts show up.
+ * <p>
+ * The window is a ring of slots; each slot holds, per dimension, a Count-Min Sketch of
+ * bytes and packets and a Space-Saving summary of the heaviest keys. The oldest slot is
+ * cleared when the ring advances. A snapshot merges the slots: the Space-Saving keys of
+ * all slots are the candidates, ranked by their Count-Min byte estimate over the window.
+ * <p>
+ * Updated on the capture thread only ({@link #record} per packet, {@link #tick} per capture
+ * batch). The capture thread also builds a snapshot once per second and publishes it
+ * through a volatile field, so readers such as the GUI never touch the live counters.
+ */
+public final class TopTalkers {
+    // Defaults: 60 s in 6 slots, 4 x 1024 counters per sketch, 256 keys per summary
+    private static final int DEFAULT_WINDOW_SECONDS = 60;
+    private static final int DEFAULT_SLOTS = 6;
+    private static final int DEFAULT_DEPTH = 4;
+    private static final int DEFAULT_WIDTH = 1024;
+    private static final int DEFAULT_CAPACITY = 256;
+    private static final int DEFAULT_TOP = 20;
+
+    // Interval between two snapshots
+    private static final long SNAPSHOT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    // IPv4 addresses are keyed in their IPv4-mapped IPv6 form (::ffff:a.b.c.d)
+    private static final long IPV4_MAPPED = 0xFFFFL << 32;
+
+    /**
+     * What a talker is.
+     */
+    public enum Dimension {
+        SOURCE_ADDRESS("Source address"),
+        DESTINATION_ADDRESS("Destination address"),
+        DESTINATION_PORT("Destination port");
+
+        private final String title;
+
+        Dimension(String title) {
+            this.title = title;
+        }
+
+        /**
+         * @return Human readable name
+         */
+        public String getTitle() {
+            return title;
+        }
+    }
+
+    // Configuration
+    private final int slots;
+    private final long slotNanos;
+    private final int top;
+    private final double errorFactor;
+
+    // [dimension][slot]
+    private final CountMinSketch[][] sketches;
+    private final SpaceSaving[][] summaries;
+
+    // Ring position, owned by the capture thread
+    private int currentSlot = 0;
+    private int filledSlots = 1;
+    private long slotStartNanos;
+    private long lastSnapshotNanos;
+
+    private volatile Snapshot snapshot = new Snapshot(0, 0, 0, 0, new EnumMap<>(Dimension.class));
+
+    /**
+     * Creates the sketches and summaries; no memory is allocated after this.
+     * @param windowSeconds Length of the sliding window
+     * @param slots Number of slots the window advances by
+     * @param depth Rows per Count-Min Sketch
+     * @param width Counters per row
+     * @param capacity Keys per Space-Saving summary
+     * @param top Talkers per dimension in a snapshot
+     */
+    public TopTalkers(int windowSeconds, int slots, int depth, int width, int capacity, int top) {
+        this.slots = Math.max(1, slots);
+        this.slotNanos = Math.max(1, TimeUnit.SECONDS.toNanos(Math.max(1, windowSeconds)) / this.slots);
+        this.top = Math.max(1, top);
+
+        Dimension[] dimensions = Dimension.values();
+        sketches = new CountMinSketch[dimensions.length][this.slots];
+        summaries = new SpaceSaving[dimensions.length][this.slots];
+        for (int d = 0; d < dimensions.length; d++) {
+            for (int s = 0; s < this.slots; s++) {
+                sketches[d][s] = new CountMinSketch(depth, width);
+                summaries[d][s] = new SpaceSaving(capacity);
+            }
+        }
+        // Count-Min over-count bound e/width of the total, holding with probability 1 - e^-depth
+        this.errorFactor = Math.E / sketches[0][0].getWidth();
+
+        slotStartNanos = System.nanoTime();
+        lastSnapshotNanos = slotStartNanos;
+    }
+
+    /**
+     * Creates the stage from the system properties networkmonitor.talkers.windowSeconds (60),
+     * .slots (6), .depth (4), .width (1024), .capacity (256) and .top (20).
+     * @return The stage
+     */
+    public static TopTalkers fromSystemProperties() {
+        return new TopTalkers(
+            Integer.getInteger("networkmonitor.talkers.windowSeconds", DEFAULT_WINDOW_SECONDS),
+            Integer.getInteger("networkmonitor.talkers.slots", DEFAULT_SLOTS),
+            Integer.getInteger("networkmonitor.talkers.depth", DEFAULT_DEPTH),
+            Integer.getInteger("networkmonitor.talkers.width", DEFAULT_WIDTH),
+            Integer.getInteger("networkmonitor.talkers.capacity", DEFAULT_CAPACITY),
+            Integer.getInteger("networkmonitor.talkers.top", DEFAULT_TOP));
+    }
+
+    /**
+     * Counts a decoded packet. Allocation-free; capture thread only.
+     * @param packet The packet
+     * @param nowNanos Current System.nanoTime()
+     */
+    public void record(DecodedPacket packet, long nowNanos) {
+        advance(nowNanos);
+        long bytes = packet.frameLength;
+        if (packet.ipVersion == 6) {
+            add(Dimension.SOURCE_ADDRESS, packet.srcAddrHi, packet.srcAddrLo, bytes);
+            add(Dimension.DESTINATION_ADDRESS, packet.dstAddrHi, packet.dstAddrLo, bytes);
+        } else {
+            add(Dimension.SOURCE_ADDRESS, 0, IPV4_MAPPED | (packet.srcAddr & 0xFFFFFFFFL), bytes);
+            add(Dimension.DESTINATION_ADDRESS, 0, IPV4_MAPPED | (packet.dstAddr & 0xFFFFFFFFL), bytes);
+        }
+        // Ports are keyed with the protocol, so tcp/53 and udp/53 are separate talkers
+        if ((packet.protocol == DecodedPacket.PROTO_TCP || packet.protocol == DecodedPacket.PROTO_UDP) && packet.dstPort != 0)
+            add(Dimension.DESTINATION_PORT, 0, (packet.protocol & 0xFFL) << 16 | (packet.dstPort & 0xFFFF), bytes);
+    }
+
+    private void add(Dimension dimension, long high, long low, long bytes) {
+        long hash = Hashing.mix(high, low);
+        sketches[dimension.ordinal()][currentSlot].add(hash, bytes);
+        summaries[dimension.ordinal()][currentSlot].offer(high, low, hash, bytes);
+    }
+
+    /**
+     * Advances the window and publishes a new snapshot once per second. Call it regularly
+     * from the capture thread, also when no packets arrive.
+     * @param nowNanos Current System.nanoTime()
+     */
+    public void tick(long nowNanos) {
+        advance(nowNanos);
+        if (nowNanos - lastSnapshotNanos < SNAPSHOT_INTERVAL_NANOS)
+            return;
+        lastSnapshotNanos = nowNanos;
+        snapshot = buildSnapshot(nowNanos);
+    }
+
+    /**
+     * Moves to the slot covering nowNanos, clearing the slots it passes.
+     */
+    private void advance(long nowNanos) {
+        long elapsed = nowNanos - slotStartNanos;
+        if (elapsed < slotNanos)
+            return;
+        long steps = elapsed / slotNanos;
+        for (long i = 0, n = Math.min(steps, slots); i < n; i++) {
+            currentSlot = (currentSlot + 1) % slots;
+            for (int d = 0; d < sketches.length; d++) {
+                sketches[d][currentSlot].clear();
+                summaries[d][currentSlot].clear();
+            }
+        }
+        filledSlots = (int) Math.min(slots, filledSlots + steps);
+        slotStartNanos += steps * slotNanos;
+    }
+
+    private Snapshot buildSnapshot(long nowNanos) {
+        long totalBytes = 0;
+        long totalPackets = 0;
+        for (CountMinSketch sketch : sketches[Dimension.SOURCE_ADDRESS.ordinal()]) {
+            totalBytes += sketch.getTotalBytes();
+            totalPackets += sketch.getTotalPackets();
+        }
+
+        Map<Dimension, List<Talker>> talkers = new EnumMap<>(Dimension.class);
+        for (Dimension dimension : Dimension.values())
+            talkers.put(dimension, topOf(dimension));
+
+        long windowNanos = (filledSlots - 1) * slotNanos + (nowNanos - slotStartNanos);
+        return new Snapshot(windowNanos, totalBytes, totalPackets, (long) Math.ceil(errorFactor * totalBytes), talkers);
+    }
+
+    /**
+     * Ranks the Space-Saving keys of all slots by their byte estimate over the window.
+     */
+    private List<Talker> topOf(Dimension dimension) {
+        CountMinSketch[] windowSketches = sketches[dimension.ordinal()];
+        LongPairOpenHashSet seen = new LongPairOpenHashSet(64);
+        List<Talker> candidates = new ArrayList<>();
+        for (SpaceSaving summary : summaries[dimension.ordinal()]) {
+            for (int slot = 0; slot < summary.size(); slot++) {
+                long high = summary.getHigh(slot);
+                long low = summary.getLow(slot);
+                if (!seen.add(high, low))
+                    continue;
+                long hash = summary.getHash(slot);
+                candidates.add(new Talker(dimension, high, low,
+                    CountMinSketch.estimate(windowSketches, hash, true),
+                    CountMinSketch.estimate(windowSketches, hash, false)));
+            }
+        }
+        candidates.sort(Comparator.comparingLong(Talker::getBytes).reversed());
+        return Collections.unmodifiableList(new ArrayList<>(candidates.subList(0, Math.min(top, candidates.size()))));
+    }
+
+    /**
+     * @return The latest snapshot, at most about a second old while capture runs
+     */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Memory of the sketches and summaries, for sizing the configuration.
+     * @return Approximate bytes
+     */
+    public long getMemoryBytes() {
+        long total = 0;
+        for (CountMinSketch[] row : sketches)
+            for (CountMinSketch sketch : row)
+                total += sketch.getMemoryBytes();
+        // Five longs and two ints per Space-Saving slot plus about four index ints
+        int capacity = summaries[0][0].getCapacity();
+        return total + (long) summaries.length * slots * capacity * (5 * 8 + 2 * 4 + 4 * 4);
+    }
+
+    /**
+     * One heavy hitter of a snapshot.
+     */
+    public static final class Talker {
+        private final Dimension dimension;
+        private final long high;
+        private final long low;
+        private final long bytes;
+        private final long packets;
+
+        Talker(Dimension dimension, long high, long low, long bytes, long packets) {
+            this.dimension = dimension;
+            this.high = high;
+            this.low = low;
+            this.bytes = bytes;
+            this.packets = packets;
+        }
+
+        /**
+         * @return The address ("10.0.0.1", "2001:db8::1") or port ("tcp/443")
+         */
+        public String getLabel() {
+            if (dimension == Dimension.DESTINATION_PORT) {
+                int protocol = (int) (low >>> 16) & 0xFF;
+                String name = protocol == DecodedPacket.PROTO_TCP ? "tcp" : "udp";
+                return name + "/" + (low & 0xFFFF);
+            }
+            return IpAddresses.format(high, low);
+        }
+
+        /**
+         * @return Estimated bytes in the window, never below the true value
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return Estimated packets in the window, never below the true value
+         */
+        public long getPackets() {
+            return packets;
+        }
+    }
+
+    /**
+     * Immutable view of the window at one point in time.
+     */
+    public static final class Snapshot {
+        private final long windowNanos;
+        private final long totalBytes;
+        private final long totalPackets;
+        private final long errorBytes;
+        private final Map<Dimension, List<Talker>> talkers;
+
+        Snapshot(long windowNanos, long totalBytes, long totalPackets, long errorBytes, Map<Dimension, List<Talker>> talkers) {
+            this.windowNanos = windowNanos;
+            this.totalBytes = totalBytes;
+            this.totalPackets = totalPackets;
+            this.errorBytes = errorBytes;
+            this.talkers = talkers;
+        }
+
+        /**
+         * @return Time covered by the counts (shorter than the window right after startup)
+         */
+        public long getWindowNanos() {
+            return windowNanos;
+        }
+
+        /**
+         * @return Bytes of all packets in the window
+         */
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        /**
+         * @return All packets in the window
+         */
+        public long getTotalPackets() {
+            return totalPackets;
+        }
+
+        /**
+         * @return Bound on the over-count of a byte estimate (holds with high probability)
+         */
+        public long getErrorBytes() {
+            return errorBytes;
+        }
+
+        /**
+         * @param dimension Source address, destination address or destination port
+         * @return The heaviest talkers, heaviest first
+         */
+        public List<Talker> getTalkers(Dimension dimension) {
+            return talkers.getOrDefault(dimension, List.of());
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package networkmonitor.analytics;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import networkmonitor.db.TrafficRollupDao;
+import networkmonitor.model.DecodedPacket;
+import networkmonitor.model.TrafficRollup;
+import networkmonitor.util.Hashing;
+import networkmonitor.util.IpAddresses;
+import networkmonitor.util.ProbeIndex;
+
+/**
+ * Per-minute traffic totals of each source, destination and protocol (bytes, packets,
+ * blocked packets), kept for the long-term history. The capture thread adds every packet to
+ * a fixed-size open-addressing table of primitive arrays; when the minute is over the table
+ * is copied and handed to the "rollup-writer" thread, which inserts the rows in one batch and
+ * rolls finished hours and days up into the coarser tiers (see {@link TrafficRollupDao}).
+ * Keys beyond the table capacity are summed into one overflow row ({@value
+ * TrafficRollup#OVERFLOW_ADDRESS} to {@value TrafficRollup#OVERFLOW_ADDRESS}), so scans and
+ * floods cannot grow memory. While the store is unavailable the minutes queue up to a bound,
+ * after which the oldest are dropped and counted.
+ */
+public final class TrafficRollups {
+    // Logger for flushes and failures
+    private static final Logger LOGGER = Logger.getLogger(TrafficRollups.class.getName());
+
+    private static final long NANOS_PER_MINUTE = 60_000_000_000L;
+
+    // Minutes between two compactions of the tiers
+    private static final long COMPACT_INTERVAL_MINUTES = 10;
+
+    private final TrafficRollupDao dao;
+    private final int capacity;
+    private final int maxPendingRows;
+
+    // Current minute and latest capture time seen, owned by the capture thread
+    private long minute = Long.MIN_VALUE;
+    private long latestMillis = Long.MIN_VALUE;
+    private final long[] srcHighs;
+    private final long[] srcLows;
+    private final long[] dstHighs;
+    private final long[] dstLows;
+    private final byte[] protocols;
+    private final long[] bytes;
+    private final long[] packets;
+    private final long[] blocked;
+    // Open-addressing index from hash to entry
+    private final ProbeIndex index;
+    private int size = 0;
+    private long overflowBytes;
+    private long overflowPackets;
+    private long overflowBlocked;
+
+    // Minutes not inserted yet, oldest first, owned by the writer thread
+    private final Deque<List<TrafficRollup>> pending = new ArrayDeque<>();
+    private int pendingRows = 0;
+
+    private final ScheduledExecutorService writer;
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong rowsDropped = new AtomicLong();
+    private final AtomicLong overflowMinutes = new AtomicLong();
+
+    /**
+     * Creates the rollups and starts the store and the writer thread.
+     * @param dao Destination of the rows
+     * @param capacity Keys per minute before the overflow row is used
+     * @param maxPendingRows Rows kept while the store is unavailable
+     */
+    public TrafficRollups(TrafficRollupDao dao, int capacity, int maxPendingRows) {
+        this.dao = dao;
+        this.capacity = Math.max(1, capacity);
+        this.maxPendingRows = Math.max(this.capacity, maxPendingRows);
+
+        srcHighs = new long[this.capacity];
+        srcLows = new long[this.capacity];
+        dstHighs = new long[this.capacity];
+        dstLows = new long[this.capacity];
+        protocols = new byte[this.capacity];
+        bytes = new long[this.capacity];
+        packets = new long[this.capacity];
+        blocked = new long[this.capacity];
+        index = new ProbeIndex(this.capacity * 2);
+
+        dao.getStore().start();
+        writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rollup-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::compact, 1, COMPACT_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Creates the rollups from the system properties networkmonitor.rollups.maxKeys (32768 per
+     * minute) and .maxPendingRows (1000000), and the retention properties of TrafficRollupDao.
+     * Setting networkmonitor.rollups.enabled=false disables them.
+     * @return The rollups, or null if disabled
+     */
+    public static TrafficRollups fromSystemProperties() {
+        if (!Boolean.parseBoolean(System.getProperty("networkmonitor.rollups.enabled", "true")))
+            return null;
+        return new TrafficRollups(new TrafficRollupDao(),
+            Integer.getInteger("networkmonitor.rollups.maxKeys", 32768),
+            Integer.getInteger("networkmonitor.rollups.maxPendingRows", 1_000_000));
+    }
+
+    /**
+     * Counts a packet in its minute. Allocation-free except once per minute.
+     * @param packet The decoded packet
+     * @param isBlocked Whether the packet was blocked
+     */
+    public void record(DecodedPacket packet, boolean isBlocked) {
+        long packetMillis = Math.floorDiv(packet.captureNanos, 1_000_000L);
+        if (packetMillis > latestMillis)
+            latestMillis = packetMillis;
+        long packetMinute = Math.floorDiv(packet.captureNanos, NANOS_PER_MINUTE);
+        // Late timestamps count in the current minute rather than reopening an old one
+        if (packetMinute > minute)
+            startMinute(packetMinute);
+
+        long srcHigh, srcLow, dstHigh, dstLow;
+        if (packet.ipVersion == 6) {
+            srcHigh = packet.srcAddrHi;
+            srcLow = packet.srcAddrLo;
+            dstHigh = packet.dstAddrHi;
+            dstLow = packet.dstAddrLo;
+        } else {
+            srcHigh = 0;
+            srcLow = 0xFFFFL << 32 | (packet.srcAddr & 0xFFFFFFFFL);
+            dstHigh = 0;
+            dstLow = 0xFFFFL << 32 | (packet.dstAddr & 0xFFFFFFFFL);
+        }
+        byte protocol = packet.protocol;
+
+        int slot = index.slot(Hashing.mix(srcHigh ^ dstHigh * 31 ^ (protocol & 0xFFL) << 56, srcLow ^ Long.rotateLeft(dstLow, 32)));
+        int entry;
+        while (true) {
+            entry = index.get(slot);
+            if (entry < 0) {
+                if (size == capacity) {
+                    overflowBytes += packet.frameLength;
+                    overflowPackets++;
+                    if (isBlocked)
+                        overflowBlocked++;
+                    return;
+                }
+                entry = size++;
+                index.set(slot, entry);
+                srcHighs[entry] = srcHigh;
+                srcLows[entry] = srcLow;
+                dstHighs[entry] = dstHigh;
+                dstLows[entry] = dstLow;
+                protocols[entry] = protocol;
+                break;
+            }
+            if (srcLows[entry] == srcLow && dstLows[entry] == dstLow && srcHighs[entry] == srcHigh
+                    && dstHighs[entry] == dstHigh && protocols[entry] == protocol)
+                break;
+            slot = index.next(slot);
+        }
+        bytes[entry] += packet.frameLength;
+        packets[entry]++;
+        if (isBlocked)
+            blocked[entry]++;
+    }
+
+    /**
+     * Hands the current minute to the writer once the clock has passed it, so the last
+     * minute before a quiet period is not held back. Called by the capture loop.
+     * @param nowMillis Current time on the clock of the packets: the wall clock for a live
+     *                  capture, getLatestMillis() for a replayed file
+     */
+    public void tick(long nowMillis) {
+        long nowMinute = Math.floorDiv(nowMillis, 60_000L);
+        if (nowMinute > minute && minute != Long.MIN_VALUE)
+            startMinute(nowMinute);
+    }
+
+    /**
+     * @return Latest capture time seen, epoch milliseconds, the clock for tick() when replaying a file
+     */
+    public long getLatestMillis() {
+        return latestMillis;
+    }
+
+    /**
+     * Flushes the current minute and the pending rows, waiting up to a few seconds. Called
+     * when the capture stops.
+     */
+    public void flush() {
+        if (minute != Long.MIN_VALUE)
+            startMinute(Long.MIN_VALUE);
+        try {
+            writer.submit(this::drain).get(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Traffic rollups were not flushed: {0}", e.toString());
+        }
+    }
+
+    /**
+     * Copies the finished minute for the writer and clears the table.
+     */
+    private void startMinute(long newMinute) {
+        if (size > 0 || overflowPackets > 0) {
+            Minute finished = new Minute(minute, size, overflowBytes, overflowPackets, overflowBlocked);
+            finished.srcHighs = Arrays.copyOf(srcHighs, size);
+            finished.srcLows = Arrays.copyOf(srcLows, size);
+            finished.dstHighs = Arrays.copyOf(dstHighs, size);
+            finished.dstLows = Arrays.copyOf(dstLows, size);
+            finished.protocols = Arrays.copyOf(protocols, size);
+            finished.bytes = Arrays.copyOf(bytes, size);
+            finished.packets = Arrays.copyOf(packets, size);
+            finished.blocked = Arrays.copyOf(blocked, size);
+            writer.execute(() -> write(finished));
+
+            index.clear();
+            Arrays.fill(bytes, 0, size, 0);
+            Arrays.fill(packets, 0, size, 0);
+            Arrays.fill(blocked, 0, size, 0);
+            size = 0;
+            overflowBytes = 0;
+            overflowPackets = 0;
+            overflowBlocked = 0;
+        }
+        minute = newMinute;
+    }
+
+    /**
+     * Turns a finished minute into rows and inserts everything pending. Runs on the writer thread.
+     */
+    private void write(Minute finished) {
+        long bucket = finished.minute * 60;
+        List<TrafficRollup> rows = new ArrayList<>(finished.size + 1);
+        for (int i = 0; i < finished.size; i++) {
+            rows.add(new TrafficRollup(TrafficRollupDao.MINUTE, bucket,
+                IpAddresses.format(finished.srcHighs[i], finished.srcLows[i]), IpAddresses.format(finished.dstHighs[i], finished.dstLows[i]),
+                finished.protocols[i] & 0xFF, finished.bytes[i], finished.packets[i], finished.blocked[i]));
+        }
+        if (finished.overflowPackets > 0) {
+            overflowMinutes.incrementAndGet();
+            rows.add(new TrafficRollup(TrafficRollupDao.MINUTE, bucket, TrafficRollup.OVERFLOW_ADDRESS, TrafficRollup.OVERFLOW_ADDRESS,
+                0, finished.overflowBytes, finished.overflowPackets, finished.overflowBlocked));
+        }
+        pending.addLast(rows);
+        pendingRows += rows.size();
+        while (pendingRows > maxPendingRows && pending.size() > 1) {
+            List<TrafficRollup> dropped = pending.removeFirst();
+            pendingRows -= dropped.size();
+            rowsDropped.addAndGet(dropped.size());
+        }
+        drain();
+    }
+
+    /**
+     * Inserts the pending minutes, oldest first, as one batch; keeps them if the store fails.
+     */
+    private void drain() {
+        if (pending.isEmpty() || !dao.getStore().isReady())
+            return;
+        List<TrafficRollup> batch = new ArrayList<>(pendingRows);
+        for (List<TrafficRollup> rows : pending)
+            batch.addAll(rows);
+        long start = System.nanoTime();
+        try {
+            dao.insert(batch);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Could not insert {0} traffic rollup rows, retrying with the next minute: {1}",
+                new Object[]{batch.size(), e.toString()});
+            return;
+        }
+        pending.clear();
+        pendingRows = 0;
+        rowsWritten.addAndGet(batch.size());
+        LOGGER.log(Level.FINE, "event=rollups_flushed rows={0} flush_ms={1}",
+            new Object[]{batch.size(), (System.nanoTime() - start) / 1_000_000});
+    }
+
+    /**
+     * Rolls finished hours and days up and expires old rows. Runs on the writer thread.
+     */
+    private void compact() {
+        drain();
+        if (!dao.getStore().isReady())
+            return;
+        long nowSecond = System.currentTimeMillis() / 1000;
+        // Minutes still waiting for the store hold back the hours and days they belong to
+        long flushedBefore = pending.isEmpty() ? nowSecond : pending.peekFirst().get(0).getBucketStart();
+        try {
+            dao.compact(nowSecond, flushedBefore);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Could not compact the traffic rollups", e);
+        }
+    }
+
+    /**
+     * @return Rows inserted since startup
+     */
+    public long getRowsWritten() {
+        return rowsWritten.get();
+    }
+
+    /**
+     * @return Rows dropped because the store was unavailable for too long
+     */
+    public long getRowsDropped() {
+        return rowsDropped.get();
+    }
+
+    /**
+     * @return Minutes that had more keys than the table capacity
+     */
+    public long getOverflowMinutes() {
+        return overflowMinutes.get();
+    }
+
+    /**
+     * A finished minute, copied out of the capture thread's table.
+     */
+    private static final class Minute {
+        final long minute;
+        final int size;
+        final long overflowBytes;
+        final long overflowPackets;
+        final long overflowBlocked;
+        long[] srcHighs;
+        long[] srcLows;
+        long[] dstHighs;
+        long[] dstLows;
+        byte[] protocols;
+        long[] bytes;
+        long[] packets;
+        long[] blocked;
+
+        Minute(long minute, int size, long overflowBytes, long overflowPackets, long overflowBlocked) {
+            this.minute = minute;
+            this.size = size;
+            this.overflowBytes = overflowBytes;
+            this.overflowPackets = overflowPackets;
+            this.overflowBlocked = overflowBlocked;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package networkmonitor.classify;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import networkmonitor.model.AppProtocol;
+import networkmonitor.model.DecodedPacket;
+import networkmonitor.util.Hashing;
+
+/**
+ * Labels TCP and UDP packets with their application protocol (DNS, HTTP, TLS, QUIC, SSH,
+ * ...). The first payload bytes of a flow are checked against cheap protocol heuristics
+ * (TLS record header, HTTP method, SSH banner, QUIC long header, DHCP magic cookie, ...);
+ * protocols without a reliable signature need their well-known port as well. Until the
+ * payload decides, packets carry the guess of the well-known port, and after
+ * maxPayloadPackets undecided payloads the port guess is final.
+ * <p>
+ * The verdict is cached per connection, both directions sharing one entry, so the
+ * heuristics run a few times per connection instead of per packet. The cache is a
+ * direct-mapped table of 64-bit flow fingerprints: a collision only costs a new
+ * classification, and a TCP SYN starts the connection over. Packets and bytes are counted
+ * per protocol. Used by the capture thread only; the counters may be read from any thread.
+ */
+public final class ProtocolClassifier {
+    // Value of tries once the verdict is final
+    private static final byte DECIDED = -1;
+
+    // Magic cookie of DHCP (RFC 2131) and QUIC versions (RFC 9000, RFC 9369)
+    private static final int DHCP_MAGIC_COOKIE = 0x63825363;
+    private static final int QUIC_V1 = 0x00000001;
+    private static final int QUIC_V2 = 0x6b3343cf;
+
+    private static final byte[][] HTTP_PREFIXES = {
+        ascii("GET "), ascii("POST "), ascii("HEAD "), ascii("PUT "), ascii("DELETE "), ascii("OPTIONS "),
+        ascii("PATCH "), ascii("CONNECT "), ascii("HTTP/1."), ascii("PRI * HTTP/2")
+    };
+    private static final byte[] SSH_PREFIX = ascii("SSH-");
+    private static final byte[] SMTP_HELO = ascii("HELO ");
+    private static final byte[] SMTP_EHLO = ascii("EHLO ");
+    private static final byte[] FTP_USER = ascii("USER ");
+    private static final byte[] BANNER_220 = ascii("220");
+
+    // Flow table: fingerprint (0 = empty), verdict and undecided payloads seen
+    private final int mask;
+    private final long[] keys;
+    private final byte[] verdicts;
+    private final byte[] tries;
+    private final int maxPayloadPackets;
+
+    // Per-protocol counters, indexed by AppProtocol id; single writer
+    private final AtomicLongArray packets = new AtomicLongArray(AppProtocol.COUNT);
+    private final AtomicLongArray bytes = new AtomicLongArray(AppProtocol.COUNT);
+    private final AtomicLong payloadVerdicts = new AtomicLong();
+    private final AtomicLong portVerdicts = new AtomicLong();
+
+    /**
+     * Creates the classifier and allocates its flow table (about 10 bytes per entry).
+     * @param maxFlows Connections cached at once, rounded up to a power of two
+     * @param maxPayloadPackets Payload packets of a connection inspected before the port guess is final
+     */
+    public ProtocolClassifier(int maxFlows, int maxPayloadPackets) {
+        int capacity = Integer.highestOneBit(Math.max(16, maxFlows) * 2 - 1);
+        mask = capacity - 1;
+        keys = new long[capacity];
+        verdicts = new byte[capacity];
+        tries = new byte[capacity];
+        this.maxPayloadPackets = Math.max(1, Math.min(Byte.MAX_VALUE, maxPayloadPackets));
+    }
+
+    /**
+     * Creates the classifier from the system properties networkmonitor.classify.maxFlows (65536)
+     * and .payloadPackets (4). Setting networkmonitor.classify.enabled=false disables it.
+     * @return The classifier, or null if disabled
+     */
+    public static ProtocolClassifier fromSystemProperties() {
+        if (!Boolean.parseBoolean(System.getProperty("networkmonitor.classify.enabled", "true")))
+            return null;
+        return new ProtocolClassifier(
+            Integer.getInteger("networkmonitor.classify.maxFlows", 65536),
+            Integer.getInteger("networkmonitor.classify.payloadPackets", 4));
+    }
+
+    /**
+     * Classifies a packet and counts it. Allocation-free.
+     * @param packet The decoded packet
+     * @return The AppProtocol id, NONE if unknown or not TCP/UDP
+     */
+    public byte classify(DecodedPacket packet) {
+        boolean tcp = packet.protocol == DecodedPacket.PROTO_TCP;
+        if (!tcp && packet.protocol != DecodedPacket.PROTO_UDP || packet.isFragment) {
+            count(AppProtocol.NONE, packet.frameLength);
+            return AppProtocol.NONE;
+        }
+        int srcPort = packet.srcPort & 0xFFFF;
+        int dstPort = packet.dstPort & 0xFFFF;
+
+        long key = flowKey(packet, srcPort, dstPort) | 1;
+        int slot = (int) (key >>> 32) & mask;
+        boolean syn = tcp && (packet.tcpFlags & (DecodedPacket.TCP_SYN | DecodedPacket.TCP_ACK)) == DecodedPacket.TCP_SYN;
+        if (keys[slot] != key || syn) {
+            keys[slot] = key;
+            verdicts[slot] = portHint(tcp, Math.min(srcPort, dstPort), Math.max(srcPort, dstPort));
+            tries[slot] = 0;
+        }
+
+        if (tries[slot] != DECIDED && packet.payloadLength > 0) {
+            byte found = inspectPayload(packet.data, packet.payloadOffset,
+                Math.min(packet.payloadLength, packet.data.length - packet.payloadOffset), tcp, verdicts[slot]);
+            if (found != AppProtocol.NONE) {
+                verdicts[slot] = found;
+                tries[slot] = DECIDED;
+                payloadVerdicts.incrementAndGet();
+            } else if (++tries[slot] >= maxPayloadPackets) {
+                tries[slot] = DECIDED;
+                portVerdicts.incrementAndGet();
+            }
+        }
+
+        byte verdict = verdicts[slot];
+        count(verdict, packet.frameLength);
+        return verdict;
+    }
+
+    private void count(byte verdict, int length) {
+        // Single writer: a plain read-add-write is enough and cheaper than an atomic add
+        packets.lazySet(verdict, packets.get(verdict) + 1);
+        bytes.lazySet(verdict, bytes.get(verdict) + length);
+    }
+
+    /**
+     * Fingerprint of the connection, the same for both directions.
+     */
+    private static long flowKey(DecodedPacket packet, int srcPort, int dstPort) {
+        long srcHigh;
+        long srcLow;
+        long dstHigh;
+        long dstLow;
+        if (packet.ipVersion == 6) {
+            srcHigh = packet.srcAddrHi;
+            srcLow = packet.srcAddrLo;
+            dstHigh = packet.dstAddrHi;
+            dstLow = packet.dstAddrLo;
+        } else {
+            srcHigh = 0;
+            srcLow = packet.srcAddr & 0xFFFFFFFFL;
+            dstHigh = 0;
+            dstLow = packet.dstAddr & 0xFFFFFFFFL;
+        }
+        int order = Long.compareUnsigned(srcHigh, dstHigh);
+        if (order == 0)
+            order = Long.compareUnsigned(srcLow, dstLow);
+        if (order == 0)
+            order = Integer.compare(srcPort, dstPort);
+        if (order > 0)
+            return Hashing.mix(Hashing.mix(Hashing.mix(dstHigh, dstLow) ^ srcHigh, srcLow), (long) dstPort << 16 | srcPort) ^ packet.protocol;
+        return Hashing.mix(Hashing.mix(Hashing.mix(srcHigh, srcLow) ^ dstHigh, dstLow), (long) srcPort << 16 | dstPort) ^ packet.protocol;
+    }
+
+    /**
+     * Guess of the well-known ports, the lower port first.
+     */
+    private static byte portHint(boolean tcp, int lowPort, int highPort) {
+        byte hint = portHint(tcp, lowPort);
+        return hint != AppProtocol.NONE ? hint : portHint(tcp, highPort);
+    }
+
+    private static byte portHint(boolean tcp, int port) {
+        return switch (port) {
+            case 53 -> AppProtocol.DNS;
+            case 5353 -> AppProtocol.MDNS;
+            case 80, 8080 -> tcp ? AppProtocol.HTTP : AppProtocol.NONE;
+            case 443 -> tcp ? AppProtocol.TLS : AppProtocol.QUIC;
+            case 853, 8443 -> tcp ? AppProtocol.TLS : AppProtocol.NONE;
+            case 22 -> tcp ? AppProtocol.SSH : AppProtocol.NONE;
+            case 123 -> tcp ? AppProtocol.NONE : AppProtocol.NTP;
+            case 67, 68, 546, 547 -> tcp ? AppProtocol.NONE : AppProtocol.DHCP;
+            case 139, 445 -> tcp ? AppProtocol.SMB : AppProtocol.NONE;
+            case 25, 465, 587 -> tcp ? AppProtocol.SMTP : AppProtocol.NONE;
+            case 21 -> tcp ? AppProtocol.FTP : AppProtocol.NONE;
+            case 3389 -> AppProtocol.RDP;
+            case 161, 162 -> tcp ? AppProtocol.NONE : AppProtocol.SNMP;
+            default -> AppProtocol.NONE;
+        };
+    }
+
+    /**
+     * Checks the first bytes of a payload. Signatures that are reliable on their own win
+     * over the port; the weaker checks only confirm the port guess.
+     * @return The protocol, or NONE if the payload decides nothing
+     */
+    private static byte inspectPayload(byte[] data, int offset, int length, boolean tcp, byte hint) {
+        if (length <= 0)
+            return AppProtocol.NONE;
+        int first = data[offset] & 0xFF;
+        if (tcp) {
+            // TLS handshake (ClientHello/ServerHello), or another record type in a flow picked up midway
+            if (length >= 6 && data[offset + 1] == 3 && (data[offset + 2] & 0xFF) <= 4) {
+                int type = data[offset + 5] & 0xFF;
+                if (first == 0x16 && (type == 1 || type == 2))
+                    return AppProtocol.TLS;
+                if (first >= 0x14 && first <= 0x17 && u16(data, offset + 3) <= 16384 + 2048 && hint == AppProtocol.TLS)
+                    return AppProtocol.TLS;
+            }
+            for (byte[] prefix : HTTP_PREFIXES)
+                if (startsWith(data, offset, length, prefix))
+                    return AppProtocol.HTTP;
+            if (startsWith(data, offset, length, SSH_PREFIX))
+                return AppProtocol.SSH;
+            // SMB1/SMB2 header after the 4-byte NetBIOS session header
+            if (length >= 8 && first == 0 && (data[offset + 4] == (byte) 0xFF || data[offset + 4] == (byte) 0xFE)
+                && data[offset + 5] == 'S' && data[offset + 6] == 'M' && data[offset + 7] == 'B')
+                return AppProtocol.SMB;
+            // TPKT version 3 carrying an X.224 connection request or confirm
+            if (length >= 11 && first == 3 && data[offset + 1] == 0
+                && (data[offset + 5] == (byte) 0xE0 || data[offset + 5] == (byte) 0xD0))
+                return AppProtocol.RDP;
+            if (startsWith(data, offset, length, SMTP_EHLO) || startsWith(data, offset, length, SMTP_HELO))
+                return AppProtocol.SMTP;
+            if ((hint == AppProtocol.SMTP || hint == AppProtocol.FTP)
+                && (startsWith(data, offset, length, BANNER_220) || startsWith(data, offset, length, FTP_USER)))
+                return hint;
+            if (hint == AppProtocol.DNS && length >= 14)
+                return AppProtocol.DNS;
+            return AppProtocol.NONE;
+        }
+
+        // QUIC long header: header form and fixed bits, known version (0 = version negotiation)
+        if (length >= 7 && (first & 0xC0) == 0xC0) {
+            int version = u32(data, offset + 1);
+            if ((version == QUIC_V1 || version == QUIC_V2 || version == 0 || (version & 0xFFFFFF00) == 0xFF000000)
+                && (data[offset + 5] & 0xFF) <= 20)
+                return AppProtocol.QUIC;
+        }
+        if (length >= 240 && (first == 1 || first == 2) && data[offset + 1] == 1 && u32(data, offset + 236) == DHCP_MAGIC_COOKIE)
+            return AppProtocol.DHCP;
+        return switch (hint) {
+            // Opcode 0-6, at most a few questions
+            case AppProtocol.DNS, AppProtocol.MDNS ->
+                length >= 12 && ((data[offset + 2] >> 3) & 0x0F) <= 6 && u16(data, offset + 4) <= 32 ? hint : AppProtocol.NONE;
+            // Version 1-4 and a mode
+            case AppProtocol.NTP ->
+                length >= 48 && (first >> 3 & 7) >= 1 && (first >> 3 & 7) <= 4 && (first & 7) != 0 ? hint : AppProtocol.NONE;
+            // DHCPv6 message types
+            case AppProtocol.DHCP -> first >= 1 && first <= 13 ? hint : AppProtocol.NONE;
+            // BER SEQUENCE
+            case AppProtocol.SNMP -> first == 0x30 ? hint : AppProtocol.NONE;
+            default -> AppProtocol.NONE;
+        };
+    }
+
+    private static boolean startsWith(byte[] data, int offset, int length, byte[] prefix) {
+        if (length < prefix.length)
+            return false;
+        for (int i = 0; i < prefix.length; i++)
+            if (data[offset + i] != prefix[i])
+                return false;
+        return true;
+    }
+
+    private static int u16(byte[] data, int offset) {
+        return (data[offset] & 0xFF) << 8 | (data[offset + 1] & 0xFF);
+    }
+
+    private static int u32(byte[] data, int offset) {
+        return u16(data, offset) << 16 | u16(data, offset + 2);
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @param protocol AppProtocol id, NONE for unclassified and non-TCP/UDP packets
+     * @return Packets counted for the protocol
+     */
+    public long getPackets(byte protocol) {
+        return packets.get(protocol);
+    }
+
+    /**
+     * @param protocol AppProtocol id, NONE for unclassified and non-TCP/UDP packets
+     * @return Frame bytes counted for the protocol
+     */
+    public long getBytes(byte protocol) {
+        return bytes.get(protocol);
+    }
+
+    /**
+     * @return Connections decided by their payload
+     */
+    public long getPayloadVerdicts() {
+        return payloadVerdicts.get();
+    }
+
+    /**
+     * @return Connections left with the guess of their port after maxPayloadPackets payloads
+     */
+    public long getPortVerdicts() {
+        return portVerdicts.get();
+    }
+}
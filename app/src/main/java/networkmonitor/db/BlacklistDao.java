@@ -1,50 +1,88 @@
 package networkmonitor.db;
 
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.TypedQuery;
+import networkmonitor.jfr.DbBatchEvent;
+import networkmonitor.metrics.Metrics;
 import networkmonitor.model.BlacklistEntry;
+
+import java.nio.file.Path;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Data access for the blacklist table. The rows are kept by a BlacklistStore chosen with
+ * -Dnetworkmonitor.storage: "jpa" (SQL Server, the default) or "file" (embedded log-structured
+ * store in networkmonitor.storage.file). Writes are timed here, so the metrics and JFR events
+ * are the same for every backend.
+ */
 public class BlacklistDao {
     // Logger for debugging and information
     private static final Logger LOGGER = Logger.getLogger(BlacklistDao.class.getName());
 
+    // Backend shared by the whole process
+    private static final BlacklistStore DEFAULT_STORE = createStore(System.getProperty("networkmonitor.storage", "jpa"));
+
+    private final BlacklistStore store;
+
+    /**
+     * Creates a DAO on the configured backend.
+     */
+    public BlacklistDao() {
+        this(DEFAULT_STORE);
+    }
+
+    /**
+     * Creates a DAO on a specific backend.
+     * @param store The backend
+     */
+    public BlacklistDao(BlacklistStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Creates a backend by name; unknown names fall back to "jpa".
+     * @param name "jpa" or "file"
+     * @return The backend, not yet started
+     */
+    public static BlacklistStore createStore(String name) {
+        if ("file".equals(name))
+            return new FileBlacklistStore(Path.of(System.getProperty("networkmonitor.storage.file", "blacklist_store.log")),
+                Boolean.parseBoolean(System.getProperty("networkmonitor.storage.fsync", "true")));
+        if (!"jpa".equals(name))
+            LOGGER.log(Level.WARNING, "Unknown storage backend {0}, using jpa.", name);
+        return new JpaBlacklistStore();
+    }
+
+    /**
+     * @return The configured backend
+     */
+    public static BlacklistStore getDefaultStore() {
+        return DEFAULT_STORE;
+    }
+
+    /**
+     * @return The backend of this DAO
+     */
+    public BlacklistStore getStore() {
+        return store;
+    }
+
     /**
      * Saves a single BlacklistEntry to the database.
      * @param entry The BlacklistEntry to save
      */
     public void save(BlacklistEntry entry) {
-        EntityManager em = DatabaseManager.getEntityManager();
-        try {
-            em.getTransaction().begin();
-            em.persist(entry);
-            em.getTransaction().commit();
-        } catch (Exception e) {
-            if (em.getTransaction().isActive()) em.getTransaction().rollback();
-            LOGGER.log(Level.SEVERE, "Error saving entry to MSSQL", e);
-        } finally {
-            em.close();
-        }
+        write("save", null, 1, 0, () -> store.insert(List.of(entry)));
     }
 
     /**
      * Loads all BlacklistEntry records from the database.
      * @return List of BlacklistEntry objects
      */
-    @SuppressWarnings("null")
     public List<BlacklistEntry> loadAllEntries() {
-        EntityManager em = DatabaseManager.getEntityManager();
-        try {
-            TypedQuery<BlacklistEntry> query = em.createQuery("SELECT b FROM BlacklistEntry b", BlacklistEntry.class);
-            List<BlacklistEntry> results = query.getResultList();
-            
-            LOGGER.log(Level.INFO, "Loaded {0} entries from MSSQL.", results.size());
-            return results;
-        } finally {
-            em.close();
-        }
+        List<BlacklistEntry> results = store.loadAll();
+        LOGGER.log(Level.INFO, "Loaded {0} entries from the {1} store.", new Object[]{results.size(), store.getName()});
+        return results;
     }
     
     /**
@@ -54,25 +92,59 @@ public class BlacklistDao {
     public void saveAll(List<BlacklistEntry> entries) {
         if (entries == null || entries.isEmpty())
             return;
+        write("saveAll", null, entries.size(), 0, () -> store.insert(entries));
+    }
 
-        EntityManager em = DatabaseManager.getEntityManager();
+    /**
+     * Loads only the address, source and name columns, for comparing feeds with the table.
+     * @return {ip_address, source, website_name} triples
+     */
+    public List<Object[]> loadAddressesAndSources() {
+        return store.loadAddressesAndSources();
+    }
+
+    /**
+     * Applies the difference computed for one feed in a single transaction: deletes the feed's
+     * rows that are no longer listed, then inserts the new rows.
+     * @param source Feed name; only rows of this feed are deleted
+     * @param inserts New rows
+     * @param deletes Addresses of the feed's rows to remove
+     * @return true if the transaction committed
+     */
+    public boolean applyDiff(String source, List<BlacklistEntry> inserts, List<String> deletes) {
+        if (inserts.isEmpty() && deletes.isEmpty())
+            return true;
+        return write("applyDiff", source, inserts.size(), deletes.size(), () -> store.apply(source, inserts, deletes));
+    }
+
+    /**
+     * Runs one write transaction, records its duration and row count and logs failures.
+     * @return true if the transaction committed
+     */
+    private boolean write(String operation, String source, int inserted, int deleted, Runnable transaction) {
+        long start = System.nanoTime();
+        DbBatchEvent event = new DbBatchEvent();
+        event.begin();
         try {
-            em.getTransaction().begin();
-            
-            for (int i = 0; i < entries.size(); i++) {
-                em.persist(entries.get(i));
-                
-                if (i > 0 && i % 50 == 0) {
-                    em.flush();
-                    em.clear();
-                }
-            }
-            em.getTransaction().commit();
-        } catch (Exception e) {
-            if (em.getTransaction().isActive()) em.getTransaction().rollback();
-            LOGGER.log(Level.SEVERE, "Error saving batch to MSSQL", e);
+            transaction.run();
+            Metrics.DB_BATCH.record(System.nanoTime() - start);
+            Metrics.DB_ROWS.add((long) inserted + deleted);
+            event.committed = true;
+            return true;
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Error in " + operation + (source == null ? "" : " of feed " + source)
+                + " on the " + store.getName() + " store", e);
+            return false;
         } finally {
-            em.close();
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = operation;
+                event.backend = store.getName();
+                event.source = source;
+                event.inserted = inserted;
+                event.deleted = deleted;
+                event.commit();
+            }
         }
     }
-}
\ No newline at end of file
+}
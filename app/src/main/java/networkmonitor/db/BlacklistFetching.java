@@ -1,21 +1,26 @@
 package networkmonitor.db;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Properties;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import networkmonitor.feed.FeedIngestor;
+import networkmonitor.feed.FeedSource;
+import networkmonitor.jfr.BlacklistRebuildEvent;
 import networkmonitor.model.BlacklistEntry;
+import networkmonitor.util.IntOpenHashSet;
+import networkmonitor.util.IpAddresses;
+import networkmonitor.util.IpV4RangeSet;
+import networkmonitor.util.IpV6PrefixTrie;
+import networkmonitor.util.LongPairOpenHashSet;
 
 /**
  * Service class responsible for fetching and synchronizing blacklist data.
- * It handles manual list loading and incremental downloads from web sources.
- * Now supports state persistence to resume from the last saved offset.
+ * It handles manual list loading and the periodic ingestion of the configured feeds.
+ * Until the blacklist store is ready, detection runs from the local snapshot (BlacklistSnapshot).
  */
 public class BlacklistFetching implements Runnable {
     // Logger for logging information and errors
@@ -23,15 +28,19 @@ public class BlacklistFetching implements Runnable {
 
     // In-memory cache for blacklist entries
     private static List<BlacklistEntry> blacklistCache;
+
+    // Primitive index of the blacklisted IPv4 addresses, rebuilt with the cache and read by the capture thread
+    private static volatile IntOpenHashSet blockedIpV4 = new IntOpenHashSet(0);
+
+    // Blacklisted IPv4 prefixes (entries like "10.0.0.0/8" from CIDR feeds)
+    private static volatile IpV4RangeSet blockedIpV4Ranges = new IpV4RangeSet();
+
+    // Primitive indexes of the blacklisted IPv6 addresses and prefixes (entries like "2001:db8::/32")
+    private static volatile LongPairOpenHashSet blockedIpV6 = new LongPairOpenHashSet(0);
+    private static volatile IpV6PrefixTrie blockedIpV6Prefixes = new IpV6PrefixTrie();
     
-    // Configuration constants
-    private static final String SOURCE_URL = "https://raw.githubusercontent.com/StevenBlack/hosts/refs/heads/master/alternates/porn/hosts";
-    private static final int BATCH_SIZE = 50;
-    private static final int SLEEP_INTERVAL_MS = 100;
-    
-    // State persistence file
-    private static final String STATE_FILE = "blacklist_state.properties";
-    private static final String KEY_OFFSET = "last_processed_offset";
+    // Minutes between two ingestions of the feeds
+    private static final int REFRESH_INTERVAL_MINUTES = Integer.getInteger("networkmonitor.feeds.refreshMinutes", 60);
 
     /**
      * Returns the current in-memory blacklist cache.
@@ -41,6 +50,25 @@ public class BlacklistFetching implements Runnable {
         return blacklistCache;
     }
 
+    /**
+     * Checks an IPv4 address against the blacklist without allocating.
+     * @param address The address as a big-endian int.
+     * @return true if the address is blacklisted.
+     */
+    public static boolean isBlockedIpV4(int address) {
+        return blockedIpV4.contains(address) || blockedIpV4Ranges.contains(address);
+    }
+
+    /**
+     * Checks an IPv6 address against the blacklisted addresses and prefixes without allocating.
+     * @param high First 8 bytes of the address.
+     * @param low Last 8 bytes of the address.
+     * @return true if the address is blacklisted.
+     */
+    public static boolean isBlockedIpV6(long high, long low) {
+        return blockedIpV6.contains(high, low) || blockedIpV6Prefixes.contains(high, low);
+    }
+
     /**
      * The entry point for the background thread.
      * Executes the data synchronization logic sequentially.
@@ -50,27 +78,110 @@ public class BlacklistFetching implements Runnable {
         BlacklistLoader loader = new BlacklistLoader();
         BlacklistDao dao = new BlacklistDao();
 
+        // 0. Local snapshot, usable before the database connection is up
+        long snapshotStart = System.nanoTime();
+        List<BlacklistEntry> snapshot = BlacklistSnapshot.load();
+        if (snapshot != null) {
+            rebuildCache(snapshot, "snapshot");
+            LOGGER.info(String.format("event=blacklist_snapshot entries=%d load_ms=%d",
+                snapshot.size(), (System.nanoTime() - snapshotStart) / 1_000_000));
+        }
+
+        try {
+            dao.getStore().whenReady().get();
+        } catch (InterruptedException e) {
+            LOGGER.warning("Background thread interrupted while waiting for the blacklist store.");
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            LOGGER.severe("Blacklist store unavailable, blacklist sync stopped; detection keeps using the snapshot.");
+            return;
+        }
+
         // 1. Initial Load
         refreshCache(dao);
 
         // 2. Load manual list
         loadManualList(loader, dao);
 
-        // 3. Load saved offset (State Restoration)
-        int startOffset = loadSavedOffset();
-        LOGGER.log(Level.INFO, "Resuming download from last saved offset: {0}", startOffset);
-
-        // 4. Incremental load starting from saved position
-        loadIncrementalWebList(loader, dao, startOffset);
+        // 3. Periodic feed ingestion
+        ingestFeeds(dao);
     }
 
     /**
-     * Updates the in-memory cache with the latest data from the database.
+     * Updates the in-memory cache with the latest data from the database and refreshes the snapshot.
      */
     private static void refreshCache(BlacklistDao dao) {
-        blacklistCache = dao.loadAllEntries();
-        if (blacklistCache != null)
-            LOGGER.log(Level.INFO, "Cache updated. Database size: {0}", blacklistCache.size());
+        List<BlacklistEntry> entries = dao.loadAllEntries();
+        if (entries == null)
+            return;
+
+        rebuildCache(entries, "database");
+        BlacklistSnapshot.save(entries);
+        LOGGER.log(Level.INFO, "Cache updated. Database size: {0}", entries.size());
+    }
+
+    /**
+     * Replaces the cache and rebuilds the lookup indexes read by the capture thread.
+     * @param entries The blacklist entries
+     * @param origin Where the entries come from, for the JFR event
+     */
+    private static void rebuildCache(List<BlacklistEntry> entries, String origin) {
+        BlacklistRebuildEvent event = new BlacklistRebuildEvent();
+        event.begin();
+
+        IntOpenHashSet index = new IntOpenHashSet(entries.size());
+        IpV4RangeSet ranges = new IpV4RangeSet();
+        LongPairOpenHashSet indexV6 = new LongPairOpenHashSet(16);
+        IpV6PrefixTrie prefixesV6 = new IpV6PrefixTrie();
+        long[] v6 = new long[2];
+        for (BlacklistEntry entry : entries) {
+            String text = entry.getIpAddress();
+            long address = IpAddresses.parseIpV4(text);
+            if (address >= 0) {
+                index.add((int) address);
+                continue;
+            }
+
+            int slash = text == null ? -1 : text.indexOf('/');
+            long prefix = slash < 0 ? -1 : IpAddresses.parseIpV4(text.substring(0, slash));
+            if (prefix >= 0) {
+                try {
+                    ranges.add((int) prefix, Integer.parseInt(text.substring(slash + 1)));
+                } catch (IllegalArgumentException e) {
+                    LOGGER.log(Level.WARNING, "Ignoring invalid IPv4 prefix: {0}", text);
+                }
+            } else if (slash < 0) {
+                if (IpAddresses.parseIpV6(text, v6))
+                    indexV6.add(v6[0], v6[1]);
+            } else if (IpAddresses.parseIpV6(text.substring(0, slash), v6)) {
+                try {
+                    prefixesV6.add(v6[0], v6[1], Integer.parseInt(text.substring(slash + 1)));
+                } catch (IllegalArgumentException e) {
+                    LOGGER.log(Level.WARNING, "Ignoring invalid IPv6 prefix: {0}", text);
+                }
+            }
+        }
+
+        synchronized (BlacklistFetching.class) {
+            blacklistCache = entries;
+        }
+        ranges.compact();
+        blockedIpV4 = index;
+        blockedIpV4Ranges = ranges;
+        blockedIpV6 = indexV6;
+        blockedIpV6Prefixes = prefixesV6;
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.origin = origin;
+            event.entries = entries.size();
+            event.ipV4Addresses = index.size();
+            event.ipV4Prefixes = ranges.size();
+            event.ipV6Addresses = indexV6.size();
+            event.ipV6Prefixes = prefixesV6.size();
+            event.commit();
+        }
     }
 
     /**
@@ -104,65 +215,28 @@ public class BlacklistFetching implements Runnable {
     }
 
     /**
-     * Continuously downloads new entries from the web source in batches.
-     * Saves the current progress (offset) after each batch.
+     * Ingests every configured feed, then again every REFRESH_INTERVAL_MINUTES.
+     * The in-memory indexes are rebuilt once per round if any feed changed the table.
      */
-    private static void loadIncrementalWebList(BlacklistLoader loader, BlacklistDao dao, int startOffset) {
-        boolean keepLoading = true;
-        int currentOffset = startOffset;
-
-        LOGGER.log(Level.INFO, "\n --- Starting web download from file line offset: {0} ---", currentOffset);
-
-        while (keepLoading) {
-            LOGGER.info("Fetching next batch...");
-            int added = loader.populateFromUrl(SOURCE_URL, BATCH_SIZE, currentOffset, blacklistCache);
-
-            if (added > 0)
+    private static void ingestFeeds(BlacklistDao dao) {
+        List<FeedSource> feeds = FeedSource.fromSystemProperties();
+        FeedIngestor ingestor = new FeedIngestor(dao);
+        LOGGER.log(Level.INFO, "\n --- Ingesting {0} blacklist feed(s) ---", feeds.size());
+
+        while (!feeds.isEmpty()) {
+            int changes = 0;
+            for (FeedSource feed : feeds)
+                changes += ingestor.ingest(feed);
+            if (changes > 0)
                 refreshCache(dao);
-            
-            // Advance offset
-            currentOffset += BATCH_SIZE;
-            
-            // SAVE STATE: Save the new offset immediately so we don't lose progress
-            saveOffset(currentOffset);
-
-            try { 
-                Thread.sleep(SLEEP_INTERVAL_MS); 
+
+            try {
+                Thread.sleep(REFRESH_INTERVAL_MINUTES * 60_000L);
             } catch (InterruptedException e) {
                 LOGGER.warning("Background thread interrupted. Exiting loop.");
                 Thread.currentThread().interrupt();
-                keepLoading = false;
+                return;
             }
         }
     }
-
-    /**
-     * Loads the last processed line number from the properties file.
-     * @return The saved offset, or 0 if no file exists.
-     */
-    private static int loadSavedOffset() {
-        Properties props = new Properties();
-        try (FileInputStream in = new FileInputStream(STATE_FILE)) {
-            props.load(in);
-            String offsetStr = props.getProperty(KEY_OFFSET, "0");
-            return Integer.parseInt(offsetStr);
-        } catch (IOException | NumberFormatException e) {
-            LOGGER.info("No saved state found or invalid file. Starting from offset 0.");
-            return 0; // Default start
-        }
-    }
-
-    /**
-     * Saves the current line number to the properties file.
-     * @param offset The current offset to save.
-     */
-    private static void saveOffset(int offset) {
-        Properties props = new Properties();
-        props.setProperty(KEY_OFFSET, String.valueOf(offset));
-        try (FileOutputStream out = new FileOutputStream(STATE_FILE)) {
-            props.store(out, "Network Monitor Blacklist State");
-        } catch (IOException e) {
-            LOGGER.log(Level.SEVERE, "Failed to save processing state!", e);
-        }
-    }
-}
\ No newline at end of file
+}
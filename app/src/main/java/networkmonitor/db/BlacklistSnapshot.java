@@ -0,0 +1,97 @@
+package networkmonitor.db;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import networkmonitor.model.BlacklistEntry;
+
+/**
+ * Local copy of the blacklist table, written after every load from the database and read
+ * at startup, so detection works before (or without) a database connection.
+ * <p>
+ * One entry per line: {@code address<TAB>name<TAB>source}, with empty fields for null values.
+ * The file is replaced atomically, so a crash while writing leaves the previous snapshot.
+ */
+public final class BlacklistSnapshot {
+    // Logger for snapshot reads and writes
+    private static final Logger LOGGER = Logger.getLogger(BlacklistSnapshot.class.getName());
+
+    // Snapshot location, relative to the working directory by default
+    private static final Path FILE = Path.of(System.getProperty("networkmonitor.blacklist.snapshot", "blacklist_snapshot.tsv"));
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private BlacklistSnapshot() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Reads the snapshot.
+     * @return The entries, or null if there is no readable snapshot
+     */
+    public static List<BlacklistEntry> load() {
+        List<BlacklistEntry> entries = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(FILE, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", -1);
+                if (fields.length < 3 || fields[0].isEmpty())
+                    continue;
+                entries.add(new BlacklistEntry(fields[0], emptyToNull(fields[1]), emptyToNull(fields[2])));
+            }
+        } catch (NoSuchFileException e) {
+            LOGGER.log(Level.INFO, "No blacklist snapshot at {0} yet.", FILE.toAbsolutePath());
+            return null;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not read the blacklist snapshot " + FILE, e);
+            return null;
+        }
+        return entries;
+    }
+
+    /**
+     * Replaces the snapshot with the given entries. Errors are logged.
+     * @param entries The current table contents
+     */
+    public static void save(List<BlacklistEntry> entries) {
+        Path absolute = FILE.toAbsolutePath();
+        Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (BlacklistEntry entry : entries) {
+                    if (entry.getIpAddress() == null)
+                        continue;
+                    writer.write(clean(entry.getIpAddress()));
+                    writer.write('\t');
+                    writer.write(clean(entry.getWebsiteName()));
+                    writer.write('\t');
+                    writer.write(clean(entry.getSource()));
+                    writer.newLine();
+                }
+            }
+            Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not write the blacklist snapshot " + absolute, e);
+        }
+    }
+
+    // Keeps the line format intact: no tabs or line breaks inside a field
+    static String clean(String value) {
+        return value == null ? "" : value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+}
@@ -0,0 +1,63 @@
+package networkmonitor.db;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import networkmonitor.model.BlacklistEntry;
+
+/**
+ * Storage backend of the blacklist table, used through BlacklistDao. Addresses are unique;
+ * rows may carry the name of the feed that owns them. Write methods are all-or-nothing and
+ * report failures with an unchecked exception; BlacklistDao logs them and records metrics,
+ * so every backend is measured the same way.
+ */
+public interface BlacklistStore {
+    /**
+     * Starts opening or connecting in the background. Later calls do nothing.
+     */
+    void start();
+
+    /**
+     * @return Completes when the store can be used; completes exceptionally if it never will
+     */
+    CompletableFuture<Void> whenReady();
+
+    /**
+     * @return true once the store can be used
+     */
+    boolean isReady();
+
+    /**
+     * @return All rows
+     */
+    List<BlacklistEntry> loadAll();
+
+    /**
+     * @return {ip_address, source, website_name} triples of all rows
+     */
+    List<Object[]> loadAddressesAndSources();
+
+    /**
+     * Inserts rows in one transaction.
+     * @param entries New rows; their addresses must not be stored yet
+     */
+    void insert(List<BlacklistEntry> entries);
+
+    /**
+     * Deletes rows of one feed, then inserts rows, in one transaction.
+     * @param source Feed name; only rows of this feed are deleted
+     * @param inserts New rows
+     * @param deletes Addresses of the feed's rows to remove
+     */
+    void apply(String source, List<BlacklistEntry> inserts, List<String> deletes);
+
+    /**
+     * @return Short backend name, as selected with networkmonitor.storage
+     */
+    String getName();
+
+    /**
+     * Releases files or connections.
+     */
+    void close();
+}
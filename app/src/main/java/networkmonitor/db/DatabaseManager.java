@@ -1,5 +1,9 @@
 package networkmonitor.db;
 
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Logger;
 
 import jakarta.persistence.EntityManager;
@@ -7,13 +11,40 @@ import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.Persistence;
 import java.util.logging.Level;
 
+/**
+ * Owns the EntityManagerFactory. The factory is built on a background thread started by
+ * {@link #start()}, retried with exponential backoff while MSSQL is unreachable, and
+ * announced through {@link #whenReady()}; nothing else waits for it, so capture and the GUI
+ * start immediately and work from the local blacklist snapshot in the meantime.
+ * <p>
+ * Hibernate does not manage the schema (hibernate.hbm2ddl.auto=none, no JDBC metadata access
+ * during bootstrap); once the database answers, {@link SchemaMigration} creates the missing
+ * tables, columns and indexes with idempotent DDL. Setting -Dnetworkmonitor.db.schema to a
+ * hbm2ddl value (e.g. update) hands the schema back to Hibernate instead.
+ */
 public class DatabaseManager {
-    // EntityManagerFactory instance for managing database connections
-    private static final EntityManagerFactory emf;
-
     // Logger for debugging and information
     private static final Logger LOGGER = Logger.getLogger(DatabaseManager.class.getName());
 
+    // Persistence unit from persistence.xml
+    private static final String PERSISTENCE_UNIT = "networkMonitorPU";
+
+    // Backoff between connection attempts: starts at INITIAL_BACKOFF_MS, doubles up to the maximum
+    private static final long INITIAL_BACKOFF_MS = 1_000;
+    private static final long MAX_BACKOFF_MS = Integer.getInteger("networkmonitor.db.maxBackoffSeconds", 60) * 1_000L;
+
+    // Attempts before giving up (0 = retry forever)
+    private static final int MAX_ATTEMPTS = Integer.getInteger("networkmonitor.db.maxAttempts", 0);
+
+    // hbm2ddl mode; with none the schema is migrated by SchemaMigration
+    private static final String SCHEMA_MODE = System.getProperty("networkmonitor.db.schema", "none");
+    private static final boolean MIGRATE_SCHEMA = "none".equals(SCHEMA_MODE);
+
+    // Completed with the factory once the database answered a query
+    private static final CompletableFuture<EntityManagerFactory> READY = new CompletableFuture<>();
+
+    private static boolean started = false;
+    private static volatile long bootstrapMillis = -1;
 
     /**
      * Private constructor to prevent instantiation.
@@ -23,31 +54,140 @@ public class DatabaseManager {
     }
 
     /**
-     * Static initializer to set up the EntityManagerFactory.
-     * This uses the settings defined in persistence.xml.
+     * Starts connecting in the background. Later calls do nothing.
+     */
+    public static synchronized void start() {
+        if (started)
+            return;
+        started = true;
+
+        Thread bootstrap = new Thread(DatabaseManager::bootstrap, "db-bootstrap");
+        bootstrap.setDaemon(true);
+        bootstrap.start();
+    }
+
+    /**
+     * Builds the factory and probes the database until it answers, migrates the schema, then
+     * completes READY. A failed migration is retried like a failed connection.
+     */
+    private static void bootstrap() {
+        long start = System.nanoTime();
+        long backoff = INITIAL_BACKOFF_MS;
+        EntityManagerFactory emf = null;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                if (emf == null)
+                    emf = Persistence.createEntityManagerFactory(PERSISTENCE_UNIT, overrides());
+                probe(emf);
+                if (MIGRATE_SCHEMA)
+                    SchemaMigration.apply(emf);
+
+                bootstrapMillis = (System.nanoTime() - start) / 1_000_000;
+                LOGGER.info(String.format("event=db_ready attempts=%d bootstrap_ms=%d uptime_ms=%d",
+                    attempt, bootstrapMillis, ManagementFactory.getRuntimeMXBean().getUptime()));
+                READY.complete(emf);
+                return;
+            } catch (Exception ex) {
+                if (MAX_ATTEMPTS > 0 && attempt >= MAX_ATTEMPTS) {
+                    LOGGER.log(Level.SEVERE, "Database Connection Failed (MSSQL), giving up after {0} attempts: {1}",
+                        new Object[]{attempt, ex.getMessage()});
+                    if (emf != null)
+                        emf.close();
+                    READY.completeExceptionally(ex);
+                    return;
+                }
+                LOGGER.log(Level.WARNING, "Database Connection Failed (MSSQL), attempt {0}, retrying in {1} s: {2}",
+                    new Object[]{attempt, backoff / 1000, ex.getMessage()});
+            }
+
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                READY.completeExceptionally(e);
+                return;
+            }
+            backoff = Math.min(MAX_BACKOFF_MS, backoff * 2);
+        }
+    }
+
+    /**
+     * Runtime overrides of persistence.xml: connection settings from networkmonitor.db.url, .user
+     * and .password, no schema management unless requested, and then no JDBC metadata lookups
+     * while the factory is built (the dialect is configured instead).
      */
-    static {
+    private static Map<String, Object> overrides() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("hibernate.hbm2ddl.auto", SCHEMA_MODE);
+        if (MIGRATE_SCHEMA)
+            properties.put("hibernate.boot.allow_jdbc_metadata_access", "false");
+        putIfSet(properties, "jakarta.persistence.jdbc.url", "networkmonitor.db.url");
+        putIfSet(properties, "jakarta.persistence.jdbc.user", "networkmonitor.db.user");
+        putIfSet(properties, "jakarta.persistence.jdbc.password", "networkmonitor.db.password");
+        return properties;
+    }
+
+    private static void putIfSet(Map<String, Object> properties, String key, String systemProperty) {
+        String value = System.getProperty(systemProperty);
+        if (value != null)
+            properties.put(key, value);
+    }
+
+    /**
+     * Runs a trivial query, so readiness means the database actually answers.
+     */
+    private static void probe(EntityManagerFactory emf) {
+        EntityManager em = emf.createEntityManager();
         try {
-            emf = Persistence.createEntityManagerFactory("networkMonitorPU");
-        } catch (Exception ex) {
-            LOGGER.log(Level.SEVERE, "Database Connection Failed (MSSQL): {0}", ex.getMessage());
-            throw new ExceptionInInitializerError(ex);
+            em.createNativeQuery("SELECT 1").getSingleResult();
+        } finally {
+            em.close();
         }
     }
 
+    /**
+     * Completes when the database is reachable; completes exceptionally if networkmonitor.db.maxAttempts
+     * is exhausted. Starts the bootstrap if it is not running yet.
+     * @return Readiness future; completing or cancelling the returned copy has no effect
+     */
+    public static CompletableFuture<Void> whenReady() {
+        start();
+        return READY.thenApply(emf -> null);
+    }
+
+    /**
+     * @return true once the database is reachable
+     */
+    public static boolean isReady() {
+        return READY.isDone() && !READY.isCompletedExceptionally();
+    }
+
+    /**
+     * @return Milliseconds from the start of the bootstrap until the database answered, or -1 if not yet
+     */
+    public static long getBootstrapMillis() {
+        return bootstrapMillis;
+    }
+
     /**
      * Get a new EntityManager instance.
      * @return EntityManager instance
+     * @throws IllegalStateException If the database is not ready yet; wait for {@link #whenReady()} first
      */
     public static EntityManager getEntityManager() {
-        return emf.createEntityManager();
+        if (!isReady())
+            throw new IllegalStateException("Database is not ready");
+        return READY.join().createEntityManager();
     }
 
     /**
      * Close the EntityManagerFactory when the application shuts down.
      */
     public static void close() {
-        if (emf != null && emf.isOpen())
+        if (!isReady())
+            return;
+        EntityManagerFactory emf = READY.join();
+        if (emf.isOpen())
             emf.close();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,339 @@
+package networkmonitor.db;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import networkmonitor.model.BlacklistEntry;
+
+/**
+ * Embedded backend for sensors and development machines: the rows live in memory and every
+ * transaction is appended to a log file, which is replayed when the store opens.
+ * <p>
+ * The log has one record per line: {@code +<TAB>address<TAB>name<TAB>source<TAB>created_at}
+ * for an insert, {@code -<TAB>source<TAB>address} for a delete and {@code .} closing a
+ * transaction. Records after the last {@code .} (a crash while writing) are discarded on
+ * replay, so transactions are all-or-nothing; with fsync enabled (the default) a transaction
+ * is durable when apply() returns. The log is rewritten as one insert per row once it holds
+ * more than twice as many records as there are rows.
+ */
+public class FileBlacklistStore implements BlacklistStore {
+    // Logger for opening, replay and compaction
+    private static final Logger LOGGER = Logger.getLogger(FileBlacklistStore.class.getName());
+
+    // Record markers
+    private static final String INSERT = "+";
+    private static final String DELETE = "-";
+    private static final String COMMIT = ".";
+
+    // Smallest log worth compacting
+    private static final long COMPACT_MIN_RECORDS = 10_000;
+
+    private final Path file;
+    private final boolean fsync;
+
+    // Rows by address, in insertion order
+    private final Map<String, BlacklistEntry> rows = new LinkedHashMap<>();
+
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
+    private boolean started = false;
+
+    // Append side of the log, and the number of records in it
+    private FileOutputStream out;
+    private Writer writer;
+    private long records = 0;
+
+    /**
+     * Creates the store; the log is read by {@link #start()}.
+     * @param file Log file, created if missing
+     * @param fsync Force each transaction to disk before apply() returns
+     */
+    public FileBlacklistStore(Path file, boolean fsync) {
+        this.file = file.toAbsolutePath();
+        this.fsync = fsync;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (started)
+            return;
+        started = true;
+
+        Thread opener = new Thread(() -> {
+            long start = System.nanoTime();
+            try {
+                open();
+                LOGGER.info(String.format("event=store_ready backend=file file=%s rows=%d records=%d open_ms=%d",
+                    file, rows.size(), records, (System.nanoTime() - start) / 1_000_000));
+                ready.complete(null);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Could not open the blacklist store " + file, e);
+                ready.completeExceptionally(e);
+            }
+        }, "blacklist-store-open");
+        opener.setDaemon(true);
+        opener.start();
+    }
+
+    /**
+     * Replays the committed transactions, cuts off an incomplete tail and opens the log for appending.
+     */
+    private synchronized void open() throws IOException {
+        if (Files.exists(file)) {
+            long committedBytes = replay();
+            if (committedBytes < Files.size(file)) {
+                LOGGER.log(Level.WARNING, "Discarding an incomplete transaction at the end of {0}", file);
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(committedBytes);
+                }
+            }
+        }
+        openAppend();
+    }
+
+    /**
+     * Applies every committed transaction of the log to the rows.
+     * @return Length of the log up to and including the last commit record
+     */
+    private long replay() throws IOException {
+        List<String[]> pending = new ArrayList<>();
+        long position = 0;
+        long committedBytes = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                position += line.getBytes(StandardCharsets.UTF_8).length + 1;
+                records++;
+                if (COMMIT.equals(line)) {
+                    for (String[] record : pending)
+                        replayRecord(record);
+                    pending.clear();
+                    committedBytes = position;
+                    continue;
+                }
+                String[] fields = line.split("\t", -1);
+                boolean valid = INSERT.equals(fields[0]) ? fields.length == 5 : DELETE.equals(fields[0]) && fields.length == 3;
+                if (!valid) {
+                    LOGGER.log(Level.WARNING, "Invalid record in {0}, ignoring the rest of the log", file);
+                    break;
+                }
+                pending.add(fields);
+            }
+        }
+        return committedBytes;
+    }
+
+    private void replayRecord(String[] record) {
+        if (INSERT.equals(record[0])) {
+            LocalDateTime createdAt = null;
+            try {
+                createdAt = record[4].isEmpty() ? null : LocalDateTime.parse(record[4]);
+            } catch (DateTimeParseException e) {
+                // keep null
+            }
+            String address = record[1];
+            rows.put(address, new BlacklistEntry(address, BlacklistSnapshot.emptyToNull(record[2]),
+                BlacklistSnapshot.emptyToNull(record[3]), createdAt));
+        } else {
+            String source = BlacklistSnapshot.emptyToNull(record[1]);
+            BlacklistEntry row = rows.get(record[2]);
+            if (row != null && source != null && source.equals(row.getSource()))
+                rows.remove(record[2]);
+        }
+    }
+
+    private void openAppend() throws IOException {
+        out = new FileOutputStream(file.toFile(), true);
+        writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    @Override
+    public CompletableFuture<Void> whenReady() {
+        start();
+        return ready.thenApply(ignored -> null);
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready.isDone() && !ready.isCompletedExceptionally();
+    }
+
+    @Override
+    public synchronized List<BlacklistEntry> loadAll() {
+        checkReady();
+        return new ArrayList<>(rows.values());
+    }
+
+    @Override
+    public synchronized List<Object[]> loadAddressesAndSources() {
+        checkReady();
+        List<Object[]> result = new ArrayList<>(rows.size());
+        for (BlacklistEntry row : rows.values())
+            result.add(new Object[]{row.getIpAddress(), row.getSource(), row.getWebsiteName()});
+        return result;
+    }
+
+    @Override
+    public void insert(List<BlacklistEntry> entries) {
+        apply(null, entries, List.of());
+    }
+
+    @Override
+    public synchronized void apply(String source, List<BlacklistEntry> inserts, List<String> deletes) {
+        checkReady();
+
+        // Same semantics as the SQL backend: only the feed's own rows are deleted, addresses stay unique
+        List<String> effectiveDeletes = new ArrayList<>();
+        Set<String> removed = new HashSet<>();
+        for (String address : deletes) {
+            BlacklistEntry row = rows.get(address);
+            if (row != null && source != null && source.equals(row.getSource()) && removed.add(address))
+                effectiveDeletes.add(address);
+        }
+        Set<String> added = new HashSet<>();
+        for (BlacklistEntry entry : inserts) {
+            String address = Objects.requireNonNull(entry.getIpAddress(), "ip_address");
+            if ((rows.containsKey(address) && !removed.contains(address)) || !added.add(address))
+                throw new IllegalStateException("Duplicate blacklist address " + address);
+        }
+        if (effectiveDeletes.isEmpty() && inserts.isEmpty())
+            return;
+
+        long size = -1;
+        try {
+            size = out.getChannel().size();
+            for (String address : effectiveDeletes)
+                writeRecord(DELETE, BlacklistSnapshot.clean(source), BlacklistSnapshot.clean(address));
+            for (BlacklistEntry entry : inserts)
+                writeRecord(INSERT, BlacklistSnapshot.clean(entry.getIpAddress()), BlacklistSnapshot.clean(entry.getWebsiteName()),
+                    BlacklistSnapshot.clean(entry.getSource()), entry.getCreatedAt() == null ? "" : entry.getCreatedAt().toString());
+            writer.write(COMMIT);
+            writer.write('\n');
+            writer.flush();
+            if (fsync)
+                out.getChannel().force(false);
+        } catch (IOException e) {
+            if (size >= 0)
+                rollback(size);
+            throw new UncheckedIOException("Could not write to the blacklist store " + file, e);
+        }
+
+        for (String address : effectiveDeletes)
+            rows.remove(address);
+        for (BlacklistEntry entry : inserts)
+            rows.put(entry.getIpAddress(), entry);
+        records += effectiveDeletes.size() + inserts.size() + 1L;
+
+        if (records >= COMPACT_MIN_RECORDS && records > 2L * (rows.size() + 1))
+            compact();
+    }
+
+    private void writeRecord(String type, String... fields) throws IOException {
+        writer.write(type);
+        for (String field : fields) {
+            writer.write('\t');
+            writer.write(field);
+        }
+        writer.write('\n');
+    }
+
+    /**
+     * Cuts the log back to its length before a failed transaction and reopens it.
+     */
+    private void rollback(long size) {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Error closing the blacklist store after a failed write", e);
+        }
+        try {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(size);
+            }
+            openAppend();
+        } catch (IOException e) {
+            // The incomplete transaction has no commit record and is discarded on the next replay
+            LOGGER.log(Level.SEVERE, "Could not roll back the blacklist store " + file, e);
+        }
+    }
+
+    /**
+     * Rewrites the log as one transaction holding the current rows, then swaps it in atomically.
+     */
+    private void compact() {
+        long start = System.nanoTime();
+        long before = records;
+        Path temp = file.resolveSibling(file.getFileName() + ".compact");
+        try {
+            try (FileOutputStream compactOut = new FileOutputStream(temp.toFile());
+                 Writer compactWriter = new BufferedWriter(new OutputStreamWriter(compactOut, StandardCharsets.UTF_8), 1 << 16)) {
+                for (BlacklistEntry row : rows.values()) {
+                    compactWriter.write(INSERT + "\t" + BlacklistSnapshot.clean(row.getIpAddress()) + "\t"
+                        + BlacklistSnapshot.clean(row.getWebsiteName()) + "\t" + BlacklistSnapshot.clean(row.getSource()) + "\t"
+                        + (row.getCreatedAt() == null ? "" : row.getCreatedAt().toString()) + "\n");
+                }
+                compactWriter.write(COMMIT + "\n");
+                compactWriter.flush();
+                compactOut.getChannel().force(false);
+            }
+            writer.close();
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            openAppend();
+            records = rows.size() + 1L;
+            LOGGER.info(String.format("event=store_compacted file=%s records_before=%d records_after=%d compact_ms=%d",
+                file, before, records, (System.nanoTime() - start) / 1_000_000));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not compact the blacklist store " + file, e);
+            try {
+                Files.deleteIfExists(temp);
+                if (!out.getChannel().isOpen())
+                    openAppend();
+            } catch (IOException reopen) {
+                throw new UncheckedIOException("Blacklist store " + file + " is no longer writable", reopen);
+            }
+        }
+    }
+
+    private void checkReady() {
+        if (!isReady())
+            throw new IllegalStateException("Blacklist store " + file + " is not open");
+    }
+
+    @Override
+    public String getName() {
+        return "file";
+    }
+
+    @Override
+    public synchronized void close() {
+        if (writer == null)
+            return;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Error closing the blacklist store", e);
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package networkmonitor.db;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import networkmonitor.model.TrafficRollup;
+
+/**
+ * Embedded backend of the rollups: one append-only file per tier (rollups-60.bin,
+ * rollups-3600.bin, ...) in a directory. Each insert is one frame, {@code int rows, int bytes}
+ * followed by the rows ({@code long bucket, UTF src, UTF dst, byte protocol, long bytes,
+ * long packets, long blocked}); a frame cut off by a crash is truncated when the store opens,
+ * so inserts are all-or-nothing. Queries scan the tier file, which stays small because the
+ * finer tiers expire. Expiry rewrites the file without the old rows and swaps it in atomically.
+ */
+public class FileRollupStore implements RollupStore {
+    // Logger for opening and rewriting
+    private static final Logger LOGGER = Logger.getLogger(FileRollupStore.class.getName());
+
+    private final Path directory;
+    private final boolean fsync;
+
+    // First and last bucket per tier file, -1 when empty
+    private final Map<Integer, long[]> bounds = new HashMap<>();
+
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
+    private boolean started = false;
+
+    /**
+     * Creates the store; the files are checked by {@link #start()}.
+     * @param directory Directory of the tier files, created if missing
+     * @param fsync Force each insert to disk before it returns
+     */
+    public FileRollupStore(Path directory, boolean fsync) {
+        this.directory = directory.toAbsolutePath();
+        this.fsync = fsync;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (started)
+            return;
+        started = true;
+
+        Thread opener = new Thread(() -> {
+            long start = System.nanoTime();
+            try {
+                open();
+                LOGGER.info(String.format("event=store_ready backend=file directory=%s tiers=%d open_ms=%d",
+                    directory, bounds.size(), (System.nanoTime() - start) / 1_000_000));
+                ready.complete(null);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Could not open the rollup store " + directory, e);
+                ready.completeExceptionally(e);
+            }
+        }, "rollup-store-open");
+        opener.setDaemon(true);
+        opener.start();
+    }
+
+    /**
+     * Cuts off incomplete frames and reads the bucket range of every tier file.
+     */
+    private synchronized void open() throws IOException {
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "rollups-*.bin")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int resolution;
+                try {
+                    resolution = Integer.parseInt(name.substring("rollups-".length(), name.length() - ".bin".length()));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                long[] range = {-1, -1};
+                long committedBytes = scan(file, row -> extend(range, row.getBucketStart()));
+                if (committedBytes < Files.size(file)) {
+                    LOGGER.log(Level.WARNING, "Discarding an incomplete insert at the end of {0}", file);
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                        channel.truncate(committedBytes);
+                    }
+                }
+                bounds.put(resolution, range);
+            }
+        }
+    }
+
+    private static void extend(long[] range, long bucket) {
+        if (range[0] < 0 || bucket < range[0])
+            range[0] = bucket;
+        if (bucket > range[1])
+            range[1] = bucket;
+    }
+
+    private Path tierFile(int resolutionSeconds) {
+        return directory.resolve("rollups-" + resolutionSeconds + ".bin");
+    }
+
+    /**
+     * Reads every complete frame of a tier file.
+     * @param file The file; missing files have no rows
+     * @param visitor Receives the rows in file order
+     * @return Length of the file up to the end of the last complete frame
+     */
+    private static long scan(Path file, Consumer<TrafficRollup> visitor) throws IOException {
+        if (!Files.exists(file))
+            return 0;
+        int resolution = Integer.parseInt(file.getFileName().toString().replaceAll("\\D", ""));
+        long committedBytes = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            while (true) {
+                int rows;
+                int length;
+                try {
+                    rows = in.readInt();
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                byte[] frame = new byte[length];
+                if (in.readNBytes(frame, 0, length) < length)
+                    break;
+                DataInputStream rowsIn = new DataInputStream(new ByteArrayInputStream(frame));
+                for (int i = 0; i < rows; i++) {
+                    visitor.accept(new TrafficRollup(resolution, rowsIn.readLong(), rowsIn.readUTF(), rowsIn.readUTF(),
+                        rowsIn.readUnsignedByte(), rowsIn.readLong(), rowsIn.readLong(), rowsIn.readLong()));
+                }
+                committedBytes += 8L + length;
+            }
+        }
+        return committedBytes;
+    }
+
+    /**
+     * Encodes rows as one frame.
+     */
+    private static byte[] frame(List<TrafficRollup> rows) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(rows.size() * 48);
+        DataOutputStream out = new DataOutputStream(payload);
+        for (TrafficRollup row : rows) {
+            out.writeLong(row.getBucketStart());
+            out.writeUTF(row.getSrcAddress());
+            out.writeUTF(row.getDstAddress());
+            out.writeByte(row.getProtocol());
+            out.writeLong(row.getBytes());
+            out.writeLong(row.getPackets());
+            out.writeLong(row.getBlocked());
+        }
+        out.flush();
+        ByteArrayOutputStream framed = new ByteArrayOutputStream(payload.size() + 8);
+        DataOutputStream header = new DataOutputStream(framed);
+        header.writeInt(rows.size());
+        header.writeInt(payload.size());
+        payload.writeTo(framed);
+        return framed.toByteArray();
+    }
+
+    @Override
+    public CompletableFuture<Void> whenReady() {
+        start();
+        return ready.thenApply(ignored -> null);
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready.isDone() && !ready.isCompletedExceptionally();
+    }
+
+    @Override
+    public synchronized void insert(List<TrafficRollup> rows) {
+        checkReady();
+        if (rows.isEmpty())
+            return;
+        int resolution = rows.get(0).getResolutionSeconds();
+        Path file = tierFile(resolution);
+        long size = -1;
+        try (FileOutputStream out = new FileOutputStream(file.toFile(), true)) {
+            size = out.getChannel().size();
+            out.write(frame(rows));
+            if (fsync)
+                out.getChannel().force(false);
+        } catch (IOException e) {
+            if (size >= 0)
+                truncate(file, size);
+            throw new UncheckedIOException("Could not write to the rollup store " + file, e);
+        }
+        long[] range = bounds.computeIfAbsent(resolution, r -> new long[]{-1, -1});
+        for (TrafficRollup row : rows)
+            extend(range, row.getBucketStart());
+    }
+
+    private static void truncate(Path file, long size) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        } catch (IOException e) {
+            // The incomplete frame is discarded when the store opens again
+            LOGGER.log(Level.SEVERE, "Could not roll back the rollup store " + file, e);
+        }
+    }
+
+    @Override
+    public synchronized int rollUp(int fineSeconds, int coarseSeconds, long fromSecond, long toSecond) {
+        checkReady();
+        Map<String, long[]> sums = new LinkedHashMap<>();
+        Map<String, TrafficRollup> keys = new HashMap<>();
+        try {
+            scan(tierFile(fineSeconds), row -> {
+                if (row.getBucketStart() < fromSecond || row.getBucketStart() >= toSecond)
+                    return;
+                long bucket = row.getBucketStart() - Math.floorMod(row.getBucketStart(), coarseSeconds);
+                String key = bucket + "\t" + row.getSrcAddress() + "\t" + row.getDstAddress() + "\t" + row.getProtocol();
+                long[] sum = sums.computeIfAbsent(key, k -> {
+                    keys.put(k, row);
+                    return new long[]{bucket, 0, 0, 0};
+                });
+                sum[1] += row.getBytes();
+                sum[2] += row.getPackets();
+                sum[3] += row.getBlocked();
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the rollup store " + directory, e);
+        }
+        List<TrafficRollup> rows = new ArrayList<>(sums.size());
+        for (Map.Entry<String, long[]> entry : sums.entrySet()) {
+            TrafficRollup key = keys.get(entry.getKey());
+            long[] sum = entry.getValue();
+            rows.add(new TrafficRollup(coarseSeconds, sum[0], key.getSrcAddress(), key.getDstAddress(), key.getProtocol(),
+                sum[1], sum[2], sum[3]));
+        }
+        rows.sort((a, b) -> Long.compare(a.getBucketStart(), b.getBucketStart()));
+        insert(rows);
+        return rows.size();
+    }
+
+    @Override
+    public synchronized long getFirstBucket(int resolutionSeconds) {
+        checkReady();
+        long[] range = bounds.get(resolutionSeconds);
+        return range == null ? -1 : range[0];
+    }
+
+    @Override
+    public synchronized long getLastBucket(int resolutionSeconds) {
+        checkReady();
+        long[] range = bounds.get(resolutionSeconds);
+        return range == null ? -1 : range[1];
+    }
+
+    @Override
+    public synchronized int deleteBefore(int resolutionSeconds, long beforeSecond) {
+        checkReady();
+        long[] range = bounds.get(resolutionSeconds);
+        if (range == null || range[0] < 0 || range[0] >= beforeSecond)
+            return 0;
+
+        Path file = tierFile(resolutionSeconds);
+        Path temp = file.resolveSibling(file.getFileName() + ".rewrite");
+        List<TrafficRollup> kept = new ArrayList<>();
+        int[] deleted = new int[1];
+        long[] keptRange = {-1, -1};
+        try {
+            scan(file, row -> {
+                if (row.getBucketStart() < beforeSecond) {
+                    deleted[0]++;
+                } else {
+                    kept.add(row);
+                    extend(keptRange, row.getBucketStart());
+                }
+            });
+            try (FileOutputStream out = new FileOutputStream(temp.toFile());
+                 BufferedOutputStream buffered = new BufferedOutputStream(out, 1 << 16)) {
+                if (!kept.isEmpty())
+                    buffered.write(frame(kept));
+                buffered.flush();
+                out.getChannel().force(false);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException cleanup) {
+                LOGGER.log(Level.FINE, "Could not delete " + temp, cleanup);
+            }
+            throw new UncheckedIOException("Could not rewrite the rollup store " + file, e);
+        }
+        bounds.put(resolutionSeconds, keptRange);
+        return deleted[0];
+    }
+
+    @Override
+    public synchronized List<TrafficRollup> loadHost(String address, int resolutionSeconds, long fromSecond, long toSecond) {
+        checkReady();
+        List<TrafficRollup> rows = new ArrayList<>();
+        try {
+            scan(tierFile(resolutionSeconds), row -> {
+                if (row.getBucketStart() >= fromSecond && row.getBucketStart() < toSecond
+                        && (address.equals(row.getSrcAddress()) || address.equals(row.getDstAddress())))
+                    rows.add(row);
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the rollup store " + directory, e);
+        }
+        rows.sort((a, b) -> Long.compare(a.getBucketStart(), b.getBucketStart()));
+        return rows;
+    }
+
+    private void checkReady() {
+        if (!isReady())
+            throw new IllegalStateException("Rollup store " + directory + " is not open");
+    }
+
+    @Override
+    public String getName() {
+        return "file";
+    }
+
+    @Override
+    public void close() {
+        // Files are opened per operation
+    }
+}
@@ -0,0 +1,130 @@
+package networkmonitor.db;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import jakarta.persistence.EntityManager;
+import networkmonitor.model.BlacklistEntry;
+import org.hibernate.Session;
+
+/**
+ * The SQL Server backend: JPA/Hibernate on the connection managed by DatabaseManager.
+ */
+public class JpaBlacklistStore implements BlacklistStore {
+    // Rows per JDBC batch and addresses per DELETE statement (SQL Server allows 2100 parameters)
+    private static final int INSERT_BATCH_SIZE = 5000;
+    private static final int DELETE_BATCH_SIZE = 1000;
+
+    // Rows per persistence context flush in insert()
+    private static final int FLUSH_SIZE = 50;
+
+    @Override
+    public void start() {
+        DatabaseManager.start();
+    }
+
+    @Override
+    public CompletableFuture<Void> whenReady() {
+        return DatabaseManager.whenReady();
+    }
+
+    @Override
+    public boolean isReady() {
+        return DatabaseManager.isReady();
+    }
+
+    @Override
+    public List<BlacklistEntry> loadAll() {
+        EntityManager em = DatabaseManager.getEntityManager();
+        try {
+            return em.createQuery("SELECT b FROM BlacklistEntry b", BlacklistEntry.class).getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public List<Object[]> loadAddressesAndSources() {
+        EntityManager em = DatabaseManager.getEntityManager();
+        try {
+            return em.createQuery("SELECT b.ipAddress, b.source, b.websiteName FROM BlacklistEntry b", Object[].class).getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public void insert(List<BlacklistEntry> entries) {
+        EntityManager em = DatabaseManager.getEntityManager();
+        try {
+            em.getTransaction().begin();
+            
+            for (int i = 0; i < entries.size(); i++) {
+                em.persist(entries.get(i));
+                
+                if (i > 0 && i % FLUSH_SIZE == 0) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+            em.getTransaction().commit();
+        } catch (RuntimeException e) {
+            if (em.getTransaction().isActive()) em.getTransaction().rollback();
+            throw e;
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public void apply(String source, List<BlacklistEntry> inserts, List<String> deletes) {
+        EntityManager em = DatabaseManager.getEntityManager();
+        try {
+            em.getTransaction().begin();
+
+            for (int from = 0; from < deletes.size(); from += DELETE_BATCH_SIZE) {
+                em.createQuery("DELETE FROM BlacklistEntry b WHERE b.source = :source AND b.ipAddress IN :addresses")
+                    .setParameter("source", source)
+                    .setParameter("addresses", deletes.subList(from, Math.min(deletes.size(), from + DELETE_BATCH_SIZE)))
+                    .executeUpdate();
+            }
+
+            // IDENTITY keys disable Hibernate's insert batching, so the rows go through plain JDBC batches
+            em.unwrap(Session.class).doWork(connection -> {
+                try (PreparedStatement insert = connection.prepareStatement(
+                        "INSERT INTO netmonitor (ip_address, website_name, created_at, source) VALUES (?, ?, ?, ?)")) {
+                    for (int i = 0; i < inserts.size(); i++) {
+                        BlacklistEntry entry = inserts.get(i);
+                        insert.setString(1, entry.getIpAddress());
+                        insert.setString(2, entry.getWebsiteName());
+                        insert.setTimestamp(3, Timestamp.valueOf(entry.getCreatedAt()));
+                        insert.setString(4, entry.getSource());
+                        insert.addBatch();
+                        if ((i + 1) % INSERT_BATCH_SIZE == 0)
+                            insert.executeBatch();
+                    }
+                    insert.executeBatch();
+                }
+            });
+
+            em.getTransaction().commit();
+        } catch (RuntimeException e) {
+            if (em.getTransaction().isActive()) em.getTransaction().rollback();
+            throw e;
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "jpa";
+    }
+
+    @Override
+    public void close() {
+        DatabaseManager.close();
+    }
+}
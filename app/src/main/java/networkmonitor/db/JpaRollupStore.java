@@ -0,0 +1,158 @@
+package networkmonitor.db;
+
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import jakarta.persistence.EntityManager;
+import networkmonitor.model.TrafficRollup;
+import org.hibernate.Session;
+
+/**
+ * The SQL Server backend of the rollups: the traffic_rollup table on the connection managed
+ * by DatabaseManager. Roll-ups run as one INSERT ... SELECT ... GROUP BY in the database, so
+ * the finer rows never travel to the application.
+ */
+public class JpaRollupStore implements RollupStore {
+    // Rows per JDBC batch
+    private static final int INSERT_BATCH_SIZE = 5000;
+
+    @Override
+    public void start() {
+        DatabaseManager.start();
+    }
+
+    @Override
+    public CompletableFuture<Void> whenReady() {
+        return DatabaseManager.whenReady();
+    }
+
+    @Override
+    public boolean isReady() {
+        return DatabaseManager.isReady();
+    }
+
+    @Override
+    public void insert(List<TrafficRollup> rows) {
+        // IDENTITY keys disable Hibernate's insert batching, so the rows go through plain JDBC batches
+        inTransaction(em -> em.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO traffic_rollup (resolution_seconds, bucket_start, src_address, dst_address, protocol, bytes, packets, blocked)"
+                    + " VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+                for (int i = 0; i < rows.size(); i++) {
+                    TrafficRollup row = rows.get(i);
+                    insert.setInt(1, row.getResolutionSeconds());
+                    insert.setLong(2, row.getBucketStart());
+                    insert.setString(3, row.getSrcAddress());
+                    insert.setString(4, row.getDstAddress());
+                    insert.setInt(5, row.getProtocol());
+                    insert.setLong(6, row.getBytes());
+                    insert.setLong(7, row.getPackets());
+                    insert.setLong(8, row.getBlocked());
+                    insert.addBatch();
+                    if ((i + 1) % INSERT_BATCH_SIZE == 0)
+                        insert.executeBatch();
+                }
+                insert.executeBatch();
+            }
+        }));
+    }
+
+    @Override
+    public int rollUp(int fineSeconds, int coarseSeconds, long fromSecond, long toSecond) {
+        // The bucket expression is spelled out with literals: SQL Server needs the SELECT and GROUP BY expressions to match
+        String bucket = "bucket_start - bucket_start % " + coarseSeconds;
+        int[] written = new int[1];
+        inTransaction(em -> em.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement rollUp = connection.prepareStatement(
+                    "INSERT INTO traffic_rollup (resolution_seconds, bucket_start, src_address, dst_address, protocol, bytes, packets, blocked)"
+                    + " SELECT " + coarseSeconds + ", " + bucket + ", src_address, dst_address, protocol, SUM(bytes), SUM(packets), SUM(blocked)"
+                    + " FROM traffic_rollup WHERE resolution_seconds = ? AND bucket_start >= ? AND bucket_start < ?"
+                    + " GROUP BY " + bucket + ", src_address, dst_address, protocol")) {
+                rollUp.setInt(1, fineSeconds);
+                rollUp.setLong(2, fromSecond);
+                rollUp.setLong(3, toSecond);
+                written[0] = rollUp.executeUpdate();
+            }
+        }));
+        return written[0];
+    }
+
+    @Override
+    public long getFirstBucket(int resolutionSeconds) {
+        return bucketBound("MIN", resolutionSeconds);
+    }
+
+    @Override
+    public long getLastBucket(int resolutionSeconds) {
+        return bucketBound("MAX", resolutionSeconds);
+    }
+
+    private long bucketBound(String function, int resolutionSeconds) {
+        EntityManager em = DatabaseManager.getEntityManager();
+        try {
+            Long bound = em.createQuery("SELECT " + function + "(r.bucketStart) FROM TrafficRollup r WHERE r.resolutionSeconds = :resolution", Long.class)
+                .setParameter("resolution", resolutionSeconds)
+                .getSingleResult();
+            return bound == null ? -1 : bound;
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public int deleteBefore(int resolutionSeconds, long beforeSecond) {
+        int[] deleted = new int[1];
+        inTransaction(em -> deleted[0] = em.createQuery(
+                "DELETE FROM TrafficRollup r WHERE r.resolutionSeconds = :resolution AND r.bucketStart < :before")
+            .setParameter("resolution", resolutionSeconds)
+            .setParameter("before", beforeSecond)
+            .executeUpdate());
+        return deleted[0];
+    }
+
+    @Override
+    public List<TrafficRollup> loadHost(String address, int resolutionSeconds, long fromSecond, long toSecond) {
+        EntityManager em = DatabaseManager.getEntityManager();
+        try {
+            return em.createQuery("SELECT r FROM TrafficRollup r WHERE r.resolutionSeconds = :resolution"
+                    + " AND r.bucketStart >= :from AND r.bucketStart < :to"
+                    + " AND (r.srcAddress = :address OR r.dstAddress = :address) ORDER BY r.bucketStart", TrafficRollup.class)
+                .setParameter("resolution", resolutionSeconds)
+                .setParameter("from", fromSecond)
+                .setParameter("to", toSecond)
+                .setParameter("address", address)
+                .getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Runs work in one transaction, rolling back if it throws.
+     */
+    private static void inTransaction(Consumer<EntityManager> work) {
+        EntityManager em = DatabaseManager.getEntityManager();
+        try {
+            em.getTransaction().begin();
+            work.accept(em);
+            em.getTransaction().commit();
+        } catch (RuntimeException e) {
+            if (em.getTransaction().isActive()) em.getTransaction().rollback();
+            throw e;
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "jpa";
+    }
+
+    @Override
+    public void close() {
+        // The connection belongs to DatabaseManager and is closed with the blacklist store
+    }
+}
@@ -0,0 +1,83 @@
+package networkmonitor.db;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import networkmonitor.model.TrafficRollup;
+
+/**
+ * Prints the daily traffic of one host from the rollups: bytes sent and received, packets and
+ * blocked packets per UTC day. Full days come from the day tier and only today from the finer
+ * tiers, so a month costs about 30 rows per peer and protocol.
+ */
+public final class RollupHistoryReport {
+    // Logger for the report lines
+    private static final Logger LOGGER = Logger.getLogger(RollupHistoryReport.class.getName());
+
+    // Days reported when the argument has none
+    private static final int DEFAULT_DAYS = 30;
+
+    // Longest wait for the store to become ready
+    private static final long READY_TIMEOUT_SECONDS = 120;
+
+    private RollupHistoryReport() {
+    }
+
+    /**
+     * Loads and logs the history of a host.
+     * @param spec "address" or "address,days"
+     */
+    public static void run(String spec) {
+        String[] parts = spec.split(",", 2);
+        String address = parts[0].trim();
+        int days = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : DEFAULT_DAYS;
+
+        TrafficRollupDao dao = new TrafficRollupDao();
+        RollupStore store = dao.getStore();
+        try {
+            store.start();
+            store.whenReady().get(READY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException | TimeoutException e) {
+            LOGGER.log(Level.SEVERE, "The " + store.getName() + " rollup store did not become ready", e);
+            return;
+        }
+
+        long now = System.currentTimeMillis() / 1000;
+        long from = now - Math.floorMod(now, TrafficRollupDao.DAY) - (days - 1L) * TrafficRollupDao.DAY;
+        long start = System.nanoTime();
+        List<TrafficRollup> rows = dao.loadHostHistory(address, from, now + 1, TrafficRollupDao.DAY);
+        long queryMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // bytes sent, bytes received, packets, blocked per day
+        Map<Long, long[]> totals = new TreeMap<>();
+        for (TrafficRollup row : rows) {
+            long[] day = totals.computeIfAbsent(row.getBucketStart(), d -> new long[4]);
+            if (address.equals(row.getSrcAddress()))
+                day[0] += row.getBytes();
+            if (address.equals(row.getDstAddress()))
+                day[1] += row.getBytes();
+            day[2] += row.getPackets();
+            day[3] += row.getBlocked();
+        }
+        for (Map.Entry<Long, long[]> day : totals.entrySet()) {
+            long[] t = day.getValue();
+            LOGGER.info(String.format("event=host_history address=%s day=%s bytes_sent=%d bytes_received=%d packets=%d blocked=%d",
+                address, LocalDate.ofInstant(Instant.ofEpochSecond(day.getKey()), ZoneOffset.UTC), t[0], t[1], t[2], t[3]));
+        }
+        LOGGER.info(String.format("event=host_history_query backend=%s address=%s days=%d rows=%d query_ms=%d",
+            store.getName(), address, days, rows.size(), queryMillis));
+        store.close();
+    }
+}
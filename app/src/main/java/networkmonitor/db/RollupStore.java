@@ -0,0 +1,85 @@
+package networkmonitor.db;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import networkmonitor.model.TrafficRollup;
+
+/**
+ * Storage backend of the traffic rollups, the per-bucket totals of each source, destination
+ * and protocol. Rows of all tiers share one store and are told apart by their resolution.
+ * Write methods are all-or-nothing and report failures with an unchecked exception.
+ */
+public interface RollupStore {
+    /**
+     * Starts opening or connecting in the background. Later calls do nothing.
+     */
+    void start();
+
+    /**
+     * @return Completes when the store can be used; completes exceptionally if it never will
+     */
+    CompletableFuture<Void> whenReady();
+
+    /**
+     * @return true once the store can be used
+     */
+    boolean isReady();
+
+    /**
+     * Inserts rows in one transaction.
+     * @param rows New rows, in ascending bucket order
+     */
+    void insert(List<TrafficRollup> rows);
+
+    /**
+     * Sums the rows of a finer tier into rows of a coarser tier, in one transaction. The finer
+     * rows are kept; they expire separately.
+     * @param fineSeconds Resolution of the rows read
+     * @param coarseSeconds Resolution of the rows written, a multiple of fineSeconds
+     * @param fromSecond First coarse bucket rolled up, a multiple of coarseSeconds
+     * @param toSecond End of the last coarse bucket rolled up (exclusive), a multiple of coarseSeconds
+     * @return Rows written
+     */
+    int rollUp(int fineSeconds, int coarseSeconds, long fromSecond, long toSecond);
+
+    /**
+     * @param resolutionSeconds The tier
+     * @return Start of its first bucket, or -1 if it has no rows
+     */
+    long getFirstBucket(int resolutionSeconds);
+
+    /**
+     * @param resolutionSeconds The tier
+     * @return Start of its last bucket, or -1 if it has no rows
+     */
+    long getLastBucket(int resolutionSeconds);
+
+    /**
+     * Deletes the rows of a tier older than a time.
+     * @param resolutionSeconds The tier
+     * @param beforeSecond Buckets starting before this epoch second are deleted
+     * @return Rows deleted
+     */
+    int deleteBefore(int resolutionSeconds, long beforeSecond);
+
+    /**
+     * Loads the rows of one tier where an address is the source or the destination.
+     * @param address The address, as formatted in the rows
+     * @param resolutionSeconds The tier
+     * @param fromSecond First bucket start included
+     * @param toSecond Bucket starts from here on are excluded
+     * @return The rows, in ascending bucket order
+     */
+    List<TrafficRollup> loadHost(String address, int resolutionSeconds, long fromSecond, long toSecond);
+
+    /**
+     * @return Short backend name, as selected with networkmonitor.storage
+     */
+    String getName();
+
+    /**
+     * Releases files or connections.
+     */
+    void close();
+}
@@ -0,0 +1,72 @@
+package networkmonitor.db;
+
+import java.sql.Statement;
+import java.util.logging.Logger;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Session;
+
+/**
+ * Brings an existing SQL Server schema up to the current entities at bootstrap, since
+ * hibernate.hbm2ddl.auto is off: creates the netmonitor and traffic_rollup tables and their
+ * indexes if missing and adds the columns added since the first release. Every statement
+ * checks the catalog first, so running it on an up-to-date database changes nothing.
+ */
+final class SchemaMigration {
+    // Logger for the migration
+    private static final Logger LOGGER = Logger.getLogger(SchemaMigration.class.getName());
+
+    // Column types as Hibernate 6 maps the entity fields on SQL Server
+    private static final String[] STATEMENTS = {
+        // Blacklist (BlacklistEntry), as created by hbm2ddl before the schema management was turned off
+        "IF OBJECT_ID(N'netmonitor', N'U') IS NULL"
+            + " CREATE TABLE netmonitor (id INT IDENTITY NOT NULL, ip_address VARCHAR(255) NOT NULL,"
+            + " website_name VARCHAR(255), created_at DATETIME2(6), PRIMARY KEY (id), UNIQUE (ip_address))",
+        // Feed name of the entry, added with the parallel feed ingestion
+        "IF COL_LENGTH(N'netmonitor', N'source') IS NULL"
+            + " ALTER TABLE netmonitor ADD source VARCHAR(255) NULL",
+        // Traffic rollups (TrafficRollup)
+        "IF OBJECT_ID(N'traffic_rollup', N'U') IS NULL"
+            + " CREATE TABLE traffic_rollup (id BIGINT IDENTITY NOT NULL, resolution_seconds INT NOT NULL,"
+            + " bucket_start BIGINT NOT NULL, src_address VARCHAR(45) NOT NULL, dst_address VARCHAR(45) NOT NULL,"
+            + " protocol INT NOT NULL, bytes BIGINT NOT NULL, packets BIGINT NOT NULL, blocked BIGINT NOT NULL,"
+            + " PRIMARY KEY (id))",
+        "IF INDEXPROPERTY(OBJECT_ID(N'traffic_rollup'), N'ix_traffic_rollup_tier', 'IndexID') IS NULL"
+            + " CREATE INDEX ix_traffic_rollup_tier ON traffic_rollup (resolution_seconds, bucket_start)",
+        "IF INDEXPROPERTY(OBJECT_ID(N'traffic_rollup'), N'ix_traffic_rollup_src', 'IndexID') IS NULL"
+            + " CREATE INDEX ix_traffic_rollup_src ON traffic_rollup (src_address, resolution_seconds, bucket_start)",
+        "IF INDEXPROPERTY(OBJECT_ID(N'traffic_rollup'), N'ix_traffic_rollup_dst', 'IndexID') IS NULL"
+            + " CREATE INDEX ix_traffic_rollup_dst ON traffic_rollup (dst_address, resolution_seconds, bucket_start)"
+    };
+
+    private SchemaMigration() {
+    }
+
+    /**
+     * Runs the migration statements in one transaction.
+     * @param emf Factory of the reachable database
+     */
+    static void apply(EntityManagerFactory emf) {
+        long start = System.nanoTime();
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.unwrap(Session.class).doWork(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    for (String sql : STATEMENTS)
+                        statement.execute(sql);
+                }
+            });
+            em.getTransaction().commit();
+        } catch (RuntimeException e) {
+            if (em.getTransaction().isActive())
+                em.getTransaction().rollback();
+            throw e;
+        } finally {
+            em.close();
+        }
+        LOGGER.info(String.format("event=db_schema statements=%d ms=%d",
+            STATEMENTS.length, (System.nanoTime() - start) / 1_000_000));
+    }
+}
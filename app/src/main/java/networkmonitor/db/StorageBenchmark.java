@@ -0,0 +1,173 @@
+package networkmonitor.db;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import networkmonitor.feed.FeedEntries;
+import networkmonitor.model.BlacklistEntry;
+
+/**
+ * Runs the same blacklist workload against each storage backend through BlacklistDao: a bulk
+ * feed load, full reads, feed refreshes replacing 1% of the rows, single-row transactions and,
+ * for the file backend, reopening the store. The rows belong to a dedicated feed in the
+ * reserved 240.0.0.0/4 range and are removed afterwards, so a production table is left as it was.
+ */
+public final class StorageBenchmark {
+    // Logger for benchmark results
+    private static final Logger LOGGER = Logger.getLogger(StorageBenchmark.class.getName());
+
+    // Feed name of the benchmark rows
+    private static final String SOURCE = "storage-benchmark";
+
+    // First address of the benchmark rows (240.0.0.0)
+    private static final int BASE_ADDRESS = 0xF0000000;
+
+    // Workload size
+    private static final int ROWS = Integer.getInteger("networkmonitor.benchmark.rows", 100_000);
+    private static final int REFRESH_ROUNDS = 20;
+    private static final int SINGLE_ROW_TRANSACTIONS = 200;
+
+    // Longest wait for a backend to become ready
+    private static final long READY_TIMEOUT_SECONDS = 120;
+
+    private StorageBenchmark() {
+    }
+
+    /**
+     * Runs the workload and logs one result line per operation and backend.
+     * @param backends "jpa", "file" or "all"
+     */
+    public static void run(String backends) {
+        List<String> names = "all".equals(backends) ? List.of("file", "jpa") : List.of(backends);
+        for (String name : names) {
+            Path temp = null;
+            BlacklistStore store;
+            try {
+                if ("file".equals(name)) {
+                    temp = Files.createTempFile("blacklist-benchmark", ".log");
+                    store = newFileStore(temp);
+                } else {
+                    store = BlacklistDao.createStore(name);
+                }
+                store.start();
+                store.whenReady().get(READY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                runWorkload(store, temp);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | ExecutionException | TimeoutException e) {
+                LOGGER.log(Level.SEVERE, "Skipping the " + name + " backend, it did not become ready", e);
+            } finally {
+                deleteQuietly(temp);
+            }
+        }
+    }
+
+    private static FileBlacklistStore newFileStore(Path file) {
+        return new FileBlacklistStore(file, Boolean.parseBoolean(System.getProperty("networkmonitor.storage.fsync", "true")));
+    }
+
+    private static void runWorkload(BlacklistStore store, Path file) throws InterruptedException, ExecutionException, TimeoutException {
+        BlacklistDao dao = new BlacklistDao(store);
+        String backend = store.getName();
+        removeBenchmarkRows(dao);
+
+        List<BlacklistEntry> rows = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++)
+            rows.add(row(i));
+
+        long start = System.nanoTime();
+        dao.applyDiff(SOURCE, rows, List.of());
+        report(backend, "bulk_insert", ROWS, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        int loaded = dao.loadAllEntries().size();
+        report(backend, "load_all", loaded, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        loaded = dao.loadAddressesAndSources().size();
+        report(backend, "load_addresses", loaded, System.nanoTime() - start);
+
+        // Feed refreshes: the oldest 1% of the rows leave the feed, as many new ones arrive
+        int churn = Math.max(1, ROWS / 100);
+        long[] roundNanos = new long[REFRESH_ROUNDS];
+        for (int round = 0; round < REFRESH_ROUNDS; round++) {
+            List<String> deletes = new ArrayList<>(churn);
+            List<BlacklistEntry> inserts = new ArrayList<>(churn);
+            for (int i = 0; i < churn; i++) {
+                deletes.add(row(round * churn + i).getIpAddress());
+                inserts.add(row(ROWS + round * churn + i));
+            }
+            start = System.nanoTime();
+            dao.applyDiff(SOURCE, inserts, deletes);
+            roundNanos[round] = System.nanoTime() - start;
+        }
+        reportLatencies(backend, "feed_refresh", 2 * churn, roundNanos);
+
+        long[] singleNanos = new long[SINGLE_ROW_TRANSACTIONS];
+        int next = ROWS + REFRESH_ROUNDS * churn;
+        for (int i = 0; i < SINGLE_ROW_TRANSACTIONS; i++) {
+            start = System.nanoTime();
+            dao.applyDiff(SOURCE, List.of(row(next + i)), List.of());
+            singleNanos[i] = System.nanoTime() - start;
+        }
+        reportLatencies(backend, "single_row", 1, singleNanos);
+
+        if (file != null) {
+            store.close();
+            start = System.nanoTime();
+            store = newFileStore(file);
+            store.start();
+            store.whenReady().get(READY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            report(backend, "reopen", store.loadAll().size(), System.nanoTime() - start);
+            dao = new BlacklistDao(store);
+        }
+
+        removeBenchmarkRows(dao);
+        store.close();
+    }
+
+    private static BlacklistEntry row(int index) {
+        return new BlacklistEntry(FeedEntries.formatIpV4Key(FeedEntries.ipV4Key(BASE_ADDRESS + index, 32)), "benchmark-" + index, SOURCE);
+    }
+
+    private static void removeBenchmarkRows(BlacklistDao dao) {
+        List<String> leftovers = new ArrayList<>();
+        for (Object[] row : dao.loadAddressesAndSources())
+            if (SOURCE.equals(row[1]))
+                leftovers.add((String) row[0]);
+        dao.applyDiff(SOURCE, List.of(), leftovers);
+    }
+
+    private static void report(String backend, String operation, int rows, long nanos) {
+        LOGGER.info(String.format("event=storage_benchmark backend=%s op=%s rows=%d ms=%d rows_per_s=%d",
+            backend, operation, rows, nanos / 1_000_000, nanos == 0 ? 0 : Math.round(rows * 1e9 / nanos)));
+    }
+
+    private static void reportLatencies(String backend, String operation, int rowsPerTransaction, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        LOGGER.info(String.format("event=storage_benchmark backend=%s op=%s transactions=%d rows_per_transaction=%d p50_us=%d p99_us=%d max_us=%d",
+            backend, operation, sorted.length, rowsPerTransaction, sorted[sorted.length / 2] / 1000,
+            sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * 0.99) - 1)] / 1000, sorted[sorted.length - 1] / 1000));
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null)
+            return;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not delete " + file, e);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package networkmonitor.db;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import networkmonitor.model.TrafficRollup;
+
+/**
+ * Data access for the traffic rollups. Minute rows are rolled up into hour rows once the hour
+ * is over, and hour rows into day rows once the day is over; each tier then expires on its
+ * own retention, so a month of history is about 30 day rows per host pair. The backend
+ * follows -Dnetworkmonitor.storage like the blacklist: "jpa" (the traffic_rollup table) or
+ * "file" (tier files in networkmonitor.rollups.dir).
+ */
+public class TrafficRollupDao {
+    // Logger for compaction and failures
+    private static final Logger LOGGER = Logger.getLogger(TrafficRollupDao.class.getName());
+
+    // Tier resolutions, finest first
+    public static final int MINUTE = 60;
+    public static final int HOUR = 3600;
+    public static final int DAY = 86_400;
+    private static final int[] TIERS = {MINUTE, HOUR, DAY};
+
+    // Seconds after the end of an hour or day before it is rolled up, so its last minute has been flushed
+    private static final long ROLL_UP_DELAY_SECONDS = 120;
+
+    private final RollupStore store;
+
+    // Retention per tier in seconds, in TIERS order
+    private final long[] retentionSeconds;
+
+    /**
+     * Creates a DAO on the configured backend with the retention of the system properties
+     * networkmonitor.rollups.minuteRetentionHours (48), .hourRetentionDays (35) and
+     * .dayRetentionDays (400).
+     */
+    public TrafficRollupDao() {
+        this(createStore(System.getProperty("networkmonitor.storage", "jpa")),
+            Integer.getInteger("networkmonitor.rollups.minuteRetentionHours", 48) * 3600L,
+            Integer.getInteger("networkmonitor.rollups.hourRetentionDays", 35) * (long) DAY,
+            Integer.getInteger("networkmonitor.rollups.dayRetentionDays", 400) * (long) DAY);
+    }
+
+    /**
+     * Creates a DAO on a specific backend.
+     * @param store The backend
+     * @param minuteRetention Seconds minute rows are kept
+     * @param hourRetention Seconds hour rows are kept
+     * @param dayRetention Seconds day rows are kept
+     */
+    public TrafficRollupDao(RollupStore store, long minuteRetention, long hourRetention, long dayRetention) {
+        this.store = store;
+        this.retentionSeconds = new long[]{minuteRetention, hourRetention, dayRetention};
+    }
+
+    /**
+     * Creates a backend by name; unknown names fall back to "jpa".
+     * @param name "jpa" or "file"
+     * @return The backend, not yet started
+     */
+    public static RollupStore createStore(String name) {
+        if ("file".equals(name))
+            return new FileRollupStore(Path.of(System.getProperty("networkmonitor.rollups.dir", "rollups")),
+                Boolean.parseBoolean(System.getProperty("networkmonitor.storage.fsync", "true")));
+        if (!"jpa".equals(name))
+            LOGGER.log(Level.WARNING, "Unknown storage backend {0}, using jpa.", name);
+        return new JpaRollupStore();
+    }
+
+    /**
+     * @return The backend of this DAO
+     */
+    public RollupStore getStore() {
+        return store;
+    }
+
+    /**
+     * Inserts the rows of one or more minutes in one transaction.
+     * @param rows Minute rows
+     */
+    public void insert(List<TrafficRollup> rows) {
+        if (!rows.isEmpty())
+            store.insert(rows);
+    }
+
+    /**
+     * Rolls the finished hours and days up into the coarser tiers, then expires old rows.
+     * Rows are only expired once they have been rolled up.
+     * @param nowSecond Current epoch second
+     * @param flushedBefore Epoch second up to which every minute has been inserted; hours and
+     *                      days after it are not rolled up yet
+     */
+    public void compact(long nowSecond, long flushedBefore) {
+        long start = System.nanoTime();
+        int[] written = new int[1];
+        int deleted = 0;
+        for (int i = 0; i < TIERS.length; i++) {
+            int tier = TIERS[i];
+            long expireBefore = nowSecond - retentionSeconds[i];
+            if (i + 1 < TIERS.length) {
+                long rolledUpTo = rollUp(tier, TIERS[i + 1], Math.min(nowSecond - ROLL_UP_DELAY_SECONDS, flushedBefore), written);
+                expireBefore = Math.min(expireBefore, rolledUpTo);
+            }
+            deleted += store.deleteBefore(tier, expireBefore);
+        }
+        LOGGER.info(String.format("event=rollups_compacted backend=%s rows_written=%d rows_deleted=%d compact_ms=%d",
+            store.getName(), written[0], deleted, (System.nanoTime() - start) / 1_000_000));
+    }
+
+    /**
+     * Rolls the finished buckets of one tier up into the next one.
+     * @param written Incremented by the rows written
+     * @return Epoch second before which every fine row has been rolled up
+     */
+    private long rollUp(int fine, int coarse, long completeBefore, int[] written) {
+        long last = store.getLastBucket(coarse);
+        long from;
+        if (last >= 0) {
+            from = last + coarse;
+        } else {
+            long first = store.getFirstBucket(fine);
+            if (first < 0)
+                return Long.MIN_VALUE;
+            from = floor(first, coarse);
+        }
+        long to = floor(completeBefore, coarse);
+        if (from >= to)
+            return from;
+        int rows = store.rollUp(fine, coarse, from, to);
+        written[0] += rows;
+        LOGGER.log(Level.FINE, "Rolled {0}s rows up into {1} rows of {2}s", new Object[]{fine, rows, coarse});
+        return to;
+    }
+
+    private static long floor(long second, int resolution) {
+        return second - Math.floorMod(second, resolution);
+    }
+
+    /**
+     * Loads the traffic of a host at one resolution. Full buckets come from that tier; the
+     * recent part not rolled up yet comes from the finer tiers and is summed up here.
+     * @param address Address, as formatted in the rows
+     * @param fromSecond Start of the period, epoch seconds
+     * @param toSecond End of the period (exclusive), epoch seconds
+     * @param resolutionSeconds MINUTE, HOUR or DAY
+     * @return One row per bucket, source, destination and protocol, in ascending bucket order
+     */
+    public List<TrafficRollup> loadHostHistory(String address, long fromSecond, long toSecond, int resolutionSeconds) {
+        List<TrafficRollup> rows = new ArrayList<>();
+        long coveredTo = floor(fromSecond, resolutionSeconds);
+        for (int i = TIERS.length - 1; i >= 0; i--) {
+            int tier = TIERS[i];
+            if (tier > resolutionSeconds || coveredTo >= toSecond)
+                continue;
+            List<TrafficRollup> tierRows = store.loadHost(address, tier, coveredTo, toSecond);
+            rows.addAll(tierRows);
+            long last = store.getLastBucket(tier);
+            if (last >= 0)
+                coveredTo = Math.max(coveredTo, last + tier);
+        }
+        if (rows.isEmpty())
+            return rows;
+
+        Map<String, TrafficRollup> buckets = new LinkedHashMap<>();
+        rows.sort((a, b) -> Long.compare(a.getBucketStart(), b.getBucketStart()));
+        for (TrafficRollup row : rows) {
+            long bucket = floor(row.getBucketStart(), resolutionSeconds);
+            String key = bucket + "\t" + row.getSrcAddress() + "\t" + row.getDstAddress() + "\t" + row.getProtocol();
+            TrafficRollup sum = buckets.get(key);
+            buckets.put(key, new TrafficRollup(resolutionSeconds, bucket, row.getSrcAddress(), row.getDstAddress(), row.getProtocol(),
+                row.getBytes() + (sum == null ? 0 : sum.getBytes()),
+                row.getPackets() + (sum == null ? 0 : sum.getPackets()),
+                row.getBlocked() + (sum == null ? 0 : sum.getBlocked())));
+        }
+        return new ArrayList<>(buckets.values());
+    }
+}
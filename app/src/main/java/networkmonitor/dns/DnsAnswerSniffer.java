@@ -0,0 +1,250 @@
+package networkmonitor.dns;
+
+import networkmonitor.model.DecodedPacket;
+
+/**
+ * Feeds the names of the DNS answers seen on the wire into a HostnameCache, so the hosts a
+ * client just looked up get their name without a reverse lookup. A and AAAA records give the
+ * name that was asked for, PTR records the name of the in-addr.arpa/ip6.arpa address.
+ * <p>
+ * Only UDP packets from port 53 are parsed, and nothing is allocated unless the packet is an
+ * answer with an address or PTR record. Every read is bounds-checked; malformed packets are
+ * ignored. Owned by the capture thread.
+ */
+public final class DnsAnswerSniffer {
+    private static final int DNS_PORT = 53;
+    private static final int HEADER_LENGTH = 12;
+
+    // Record types and class (RFC 1035, RFC 3596)
+    private static final int TYPE_A = 1;
+    private static final int TYPE_PTR = 12;
+    private static final int TYPE_AAAA = 28;
+    private static final int CLASS_IN = 1;
+
+    // Limits on a name: RFC 1035 length and compression pointers followed
+    private static final int MAX_NAME_LENGTH = 255;
+    private static final int MAX_POINTERS = 32;
+
+    private final HostnameCache cache;
+
+    // Parsing state of the current packet
+    private final StringBuilder name = new StringBuilder(MAX_NAME_LENGTH);
+    private byte[] data;
+    private int start;
+    private int end;
+
+    // Answers taken
+    private long answers = 0;
+
+    /**
+     * @param cache Cache receiving the names
+     */
+    public DnsAnswerSniffer(HostnameCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Parses the packet if it is a DNS response and stores its address and PTR records.
+     * @param packet The decoded packet
+     */
+    public void inspect(DecodedPacket packet) {
+        if (packet.protocol != DecodedPacket.PROTO_UDP || (packet.srcPort & 0xFFFF) != DNS_PORT
+            || packet.isFragment || packet.payloadLength < HEADER_LENGTH)
+            return;
+        data = packet.data;
+        start = packet.payloadOffset;
+        end = Math.min(start + packet.payloadLength, data.length);
+        try {
+            parse();
+        } finally {
+            data = null;
+        }
+    }
+
+    private void parse() {
+        int flags = u16(start + 2);
+        // Responses (QR) with no error (RCODE 0) only
+        if ((flags & 0x8000) == 0 || (flags & 0x000F) != 0)
+            return;
+        int questions = u16(start + 4);
+        int answerCount = u16(start + 6);
+        if (answerCount == 0)
+            return;
+
+        // The A/AAAA records answer the first question (or its CNAME chain)
+        int position = start + HEADER_LENGTH;
+        int questionEnd = -1;
+        for (int i = 0; i < questions; i++) {
+            int afterName = i == 0 ? readName(position) : skipName(position);
+            if (afterName < 0 || afterName + 4 > end)
+                return;
+            if (i == 0)
+                questionEnd = afterName;
+            position = afterName + 4;
+        }
+        String question = null;
+        boolean questionValid = questionEnd >= 0 && name.length() > 0;
+        int questionOffset = start + HEADER_LENGTH;
+
+        for (int i = 0; i < answerCount; i++) {
+            int afterName = skipName(position);
+            if (afterName < 0 || afterName + 10 > end)
+                return;
+            int type = u16(afterName);
+            int recordClass = u16(afterName + 2);
+            int dataLength = u16(afterName + 8);
+            int rdata = afterName + 10;
+            if (rdata + dataLength > end)
+                return;
+
+            if (recordClass == CLASS_IN && questionValid && (type == TYPE_A && dataLength == 4 || type == TYPE_AAAA && dataLength == 16)) {
+                if (question == null) {
+                    readName(questionOffset);
+                    question = name.toString();
+                }
+                if (type == TYPE_A)
+                    cache.put(0, 0xFFFFL << 32 | (u32(rdata) & 0xFFFFFFFFL), question);
+                else
+                    cache.put(u64(rdata), u64(rdata + 8), question);
+                answers++;
+            } else if (recordClass == CLASS_IN && type == TYPE_PTR) {
+                sniffPointer(position, rdata);
+            }
+            position = rdata + dataLength;
+        }
+    }
+
+    /**
+     * Stores a PTR record: owner d.c.b.a.in-addr.arpa or 32 nibbles of ip6.arpa, data the host name.
+     */
+    private void sniffPointer(int owner, int rdata) {
+        if (readName(owner) < 0)
+            return;
+        long high = 0;
+        long low;
+        int length = name.length();
+        if (endsWithIgnoreCase(".in-addr.arpa")) {
+            // The first label is the last octet of the address
+            int address = 0;
+            int octets = 0;
+            int value = 0;
+            int digits = 0;
+            for (int i = 0; i <= length - 13; i++) {
+                char c = i < length - 13 ? name.charAt(i) : '.';
+                if (c == '.') {
+                    if (digits == 0 || value > 255 || octets == 4)
+                        return;
+                    address |= value << (8 * octets++);
+                    value = 0;
+                    digits = 0;
+                } else if (c >= '0' && c <= '9' && digits < 3) {
+                    value = value * 10 + (c - '0');
+                    digits++;
+                } else {
+                    return;
+                }
+            }
+            if (octets != 4)
+                return;
+            low = 0xFFFFL << 32 | (address & 0xFFFFFFFFL);
+        } else if (endsWithIgnoreCase(".ip6.arpa") && length == 64 + 8) {
+            low = 0;
+            for (int i = 0; i < 32; i++) {
+                int nibble = Character.digit(name.charAt(2 * i), 16);
+                if (nibble < 0 || name.charAt(2 * i + 1) != '.')
+                    return;
+                // The first label is the last nibble of the address
+                if (i < 16)
+                    low |= (long) nibble << (4 * i);
+                else
+                    high |= (long) nibble << (4 * (i - 16));
+            }
+        } else {
+            return;
+        }
+        if (readName(rdata) < 0 || name.length() == 0)
+            return;
+        cache.put(high, low, name.toString());
+        answers++;
+    }
+
+    /**
+     * Reads a possibly compressed name into the name buffer, without the final dot.
+     * @return The position after the name at its original place, or -1 if malformed
+     */
+    private int readName(int position) {
+        name.setLength(0);
+        return walkName(position, true);
+    }
+
+    private int skipName(int position) {
+        return walkName(position, false);
+    }
+
+    private int walkName(int position, boolean append) {
+        int after = -1;
+        int pointers = 0;
+        int length = 0;
+        while (true) {
+            if (position >= end)
+                return -1;
+            int label = data[position] & 0xFF;
+            if (label == 0)
+                return after < 0 ? position + 1 : after;
+            if ((label & 0xC0) == 0xC0) {
+                if (position + 1 >= end || ++pointers > MAX_POINTERS)
+                    return -1;
+                if (after < 0)
+                    after = position + 2;
+                position = start + ((label & 0x3F) << 8 | (data[position + 1] & 0xFF));
+                continue;
+            }
+            if ((label & 0xC0) != 0 || position + 1 + label > end)
+                return -1;
+            length += label + 1;
+            if (length > MAX_NAME_LENGTH)
+                return -1;
+            if (append) {
+                if (name.length() > 0)
+                    name.append('.');
+                for (int i = position + 1; i <= position + label; i++) {
+                    int c = data[i] & 0xFF;
+                    // Printable ASCII only, the name ends up in the UI and the logs
+                    if (c <= 0x20 || c >= 0x7F)
+                        return -1;
+                    name.append((char) c);
+                }
+            }
+            position += 1 + label;
+        }
+    }
+
+    private boolean endsWithIgnoreCase(String suffix) {
+        int offset = name.length() - suffix.length();
+        if (offset <= 0)
+            return false;
+        for (int i = 0; i < suffix.length(); i++)
+            if (Character.toLowerCase(name.charAt(offset + i)) != suffix.charAt(i))
+                return false;
+        return true;
+    }
+
+    private int u16(int position) {
+        return (data[position] & 0xFF) << 8 | (data[position + 1] & 0xFF);
+    }
+
+    private int u32(int position) {
+        return u16(position) << 16 | u16(position + 2);
+    }
+
+    private long u64(int position) {
+        return (long) u32(position) << 32 | (u32(position + 4) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return Address and PTR records stored in the cache
+     */
+    public long getAnswers() {
+        return answers;
+    }
+}
@@ -0,0 +1,362 @@
+package networkmonitor.dns;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import networkmonitor.util.IpAddresses;
+
+/**
+ * Non-blocking reverse-DNS cache for display. A lookup answers from the cache or returns null
+ * at once and queues the resolution; the resolutions run on virtual threads, at most
+ * maxConcurrent at a time, and give up after the timeout. Answers are kept for the TTL,
+ * missing names and failures (negative entries) for the shorter negative TTL, and the least
+ * recently used entries are dropped beyond maxEntries. An expired name is still returned
+ * while it is being refreshed.
+ * <p>
+ * Names seen in sniffed DNS answers are put in directly, so most hosts have a name before
+ * anyone asks. Listeners are told when new names arrive, e.g. to repaint a table.
+ * Thread-safe.
+ */
+public final class HostnameCache {
+    // Logger for the cache setup
+    private static final Logger LOGGER = Logger.getLogger(HostnameCache.class.getName());
+
+    // Lazily created cache of the system properties
+    private static final class DefaultHolder {
+        static final HostnameCache INSTANCE = fromSystemProperties();
+    }
+
+    // Configuration
+    private final ReverseResolver resolver;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final long negativeTtlMillis;
+    private final long timeoutMillis;
+    private final int maxPending;
+    private final LongSupplier clockMillis;
+
+    // Entries by address, least recently used first
+    private final LinkedHashMap<Key, Entry> entries;
+
+    // Resolution threads and the limit on concurrent lookups
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private int pending = 0;
+
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    // Statistics, guarded by this
+    private long hits;
+    private long misses;
+    private long resolved;
+    private long failures;
+    private long timeouts;
+    private long rejected;
+    private long sniffed;
+
+    /**
+     * Creates an empty cache.
+     * @param resolver Resolver behind the cache, e.g. ReverseResolver.SYSTEM or a fake
+     * @param maxEntries Addresses kept
+     * @param ttlMillis Lifetime of a name
+     * @param negativeTtlMillis Lifetime of a missing name, a failure or a timeout
+     * @param timeoutMillis Time after which a queued or running lookup is given up
+     * @param maxConcurrent Lookups running at once
+     * @param maxPending Lookups queued or running at once; more are not queued
+     * @param clockMillis Source of the current time in milliseconds
+     */
+    public HostnameCache(ReverseResolver resolver, int maxEntries, long ttlMillis, long negativeTtlMillis,
+                         long timeoutMillis, int maxConcurrent, int maxPending, LongSupplier clockMillis) {
+        this.resolver = resolver;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlMillis = ttlMillis;
+        this.negativeTtlMillis = negativeTtlMillis;
+        this.timeoutMillis = Math.max(1, timeoutMillis);
+        this.maxPending = Math.max(1, maxPending);
+        this.clockMillis = clockMillis;
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > HostnameCache.this.maxEntries;
+            }
+        };
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("rdns-", 0).factory());
+        this.permits = new Semaphore(Math.max(1, maxConcurrent));
+    }
+
+    /**
+     * Creates the cache from the system properties networkmonitor.rdns.maxEntries (10000),
+     * .ttlSeconds (3600), .negativeTtlSeconds (300), .timeoutMillis (3000), .maxConcurrent (16)
+     * and .maxPending (1024), on the system resolver.
+     * Setting networkmonitor.rdns.enabled=false disables it.
+     * @return The cache, or null if disabled
+     */
+    public static HostnameCache fromSystemProperties() {
+        if (!Boolean.parseBoolean(System.getProperty("networkmonitor.rdns.enabled", "true")))
+            return null;
+        HostnameCache cache = new HostnameCache(ReverseResolver.SYSTEM,
+            Integer.getInteger("networkmonitor.rdns.maxEntries", 10_000),
+            TimeUnit.SECONDS.toMillis(Long.getLong("networkmonitor.rdns.ttlSeconds", 3600L)),
+            TimeUnit.SECONDS.toMillis(Long.getLong("networkmonitor.rdns.negativeTtlSeconds", 300L)),
+            Long.getLong("networkmonitor.rdns.timeoutMillis", 3000L),
+            Integer.getInteger("networkmonitor.rdns.maxConcurrent", 16),
+            Integer.getInteger("networkmonitor.rdns.maxPending", 1024),
+            System::currentTimeMillis);
+        LOGGER.log(Level.FINE, "Reverse DNS cache of {0} entries", cache.maxEntries);
+        return cache;
+    }
+
+    /**
+     * @return The cache of the system properties, created on the first call, or null if disabled
+     */
+    public static HostnameCache getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Registers a callback for new names. It runs on a resolver or capture thread and must not block.
+     * @param listener The callback
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Looks an IPv4 address up without blocking.
+     * @param address IPv4 address
+     * @return The host name, "" if the address has none, or null if it is not known yet
+     */
+    public String lookupIpV4(int address) {
+        return lookup(new Key(0, 0xFFFFL << 32 | (address & 0xFFFFFFFFL)));
+    }
+
+    /**
+     * Looks an IPv6 address up without blocking.
+     * @param high First 64 bits
+     * @param low Last 64 bits
+     * @return The host name, "" if the address has none, or null if it is not known yet
+     */
+    public String lookupIpV6(long high, long low) {
+        return lookup(new Key(high, low));
+    }
+
+    private String lookup(Key key) {
+        boolean submit = false;
+        String name;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            long now = clockMillis.getAsLong();
+            if (entry != null && entry.answered && now < entry.expiresMillis) {
+                hits++;
+                return entry.name == null ? "" : entry.name;
+            }
+            misses++;
+            if (entry == null) {
+                entry = new Entry();
+                entries.put(key, entry);
+            }
+            if (!entry.pending) {
+                if (pending < maxPending) {
+                    entry.pending = true;
+                    pending++;
+                    submit = true;
+                } else {
+                    rejected++;
+                }
+            }
+            name = entry.answered ? (entry.name == null ? "" : entry.name) : null;
+        }
+        if (submit)
+            CompletableFuture.runAsync(() -> resolve(key), executor)
+                .orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .exceptionally(e -> {
+                    if (e instanceof TimeoutException)
+                        timedOut(key);
+                    return null;
+                });
+        return name;
+    }
+
+    /**
+     * Runs one lookup on its virtual thread; the permit bounds the lookups running at once.
+     */
+    private void resolve(Key key) {
+        String name = null;
+        boolean failed = false;
+        try {
+            permits.acquire();
+            try {
+                name = resolver.resolve(key.toBytes());
+            } finally {
+                permits.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed = true;
+        } catch (IOException | RuntimeException e) {
+            failed = true;
+        }
+        synchronized (this) {
+            pending--;
+            if (failed)
+                failures++;
+            else
+                resolved++;
+            // A late answer still replaces the negative entry of a timeout
+            Entry entry = entries.computeIfAbsent(key, k -> new Entry());
+            entry.pending = false;
+            if (!failed || !entry.answered)
+                store(entry, name);
+        }
+        if (name != null)
+            notifyListeners();
+    }
+
+    /**
+     * Answers a lookup that is taking too long with a negative entry; the lookup keeps its
+     * permit until the resolver returns.
+     */
+    private synchronized void timedOut(Key key) {
+        timeouts++;
+        Entry entry = entries.get(key);
+        if (entry != null && entry.pending && !entry.answered)
+            store(entry, null);
+    }
+
+    private void store(Entry entry, String name) {
+        entry.name = name;
+        entry.answered = true;
+        entry.expiresMillis = clockMillis.getAsLong() + (name == null ? negativeTtlMillis : ttlMillis);
+    }
+
+    /**
+     * Stores a name seen in a DNS answer, replacing what is cached for the address.
+     * @param high First 64 bits of the address (0 for IPv4)
+     * @param low Last 64 bits of the address (IPv4-mapped for IPv4)
+     * @param name The host name
+     */
+    public void put(long high, long low, String name) {
+        boolean changed;
+        synchronized (this) {
+            Entry entry = entries.computeIfAbsent(new Key(high, low), k -> new Entry());
+            changed = !name.equals(entry.name);
+            store(entry, name);
+            sniffed++;
+        }
+        // Repeated answers only renew the entry
+        if (changed)
+            notifyListeners();
+    }
+
+    private void notifyListeners() {
+        for (Runnable listener : listeners)
+            listener.run();
+    }
+
+    /**
+     * Stops the resolver threads; lookups still running are abandoned.
+     */
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return Addresses cached, including the ones being resolved
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return Lookups the resolver answered, with or without a name
+     */
+    public synchronized long getResolved() {
+        return resolved;
+    }
+
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    public synchronized long getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * @return Lookups not queued because maxPending were already queued or running
+     */
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return Names taken from sniffed DNS answers
+     */
+    public synchronized long getSniffed() {
+        return sniffed;
+    }
+
+    /**
+     * Cached state of one address.
+     */
+    private static final class Entry {
+        String name;
+        boolean answered;
+        boolean pending;
+        long expiresMillis;
+    }
+
+    /**
+     * Address as high/low halves, IPv4-mapped for IPv4.
+     */
+    private static final class Key {
+        final long high;
+        final long low;
+
+        Key(long high, long low) {
+            this.high = high;
+            this.low = low;
+        }
+
+        byte[] toBytes() {
+            if (IpAddresses.isIpV4Mapped(high, low))
+                return new byte[]{(byte) (low >>> 24), (byte) (low >>> 16), (byte) (low >>> 8), (byte) low};
+            byte[] bytes = new byte[16];
+            for (int i = 0; i < 8; i++) {
+                bytes[i] = (byte) (high >>> (56 - 8 * i));
+                bytes[8 + i] = (byte) (low >>> (56 - 8 * i));
+            }
+            return bytes;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k && high == k.high && low == k.low;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(high * 31 + low);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package networkmonitor.dns;
+
+import java.io.IOException;
+import java.net.InetAddress;
+
+/**
+ * Resolves an address to a host name (a PTR lookup). May block; HostnameCache calls it on
+ * its own threads with a timeout. Tests and benchmarks can pass a fake implementation.
+ */
+@FunctionalInterface
+public interface ReverseResolver {
+    /**
+     * The resolver of the operating system, through InetAddress.
+     */
+    ReverseResolver SYSTEM = address -> {
+        InetAddress inet = InetAddress.getByAddress(address);
+        String name = inet.getCanonicalHostName();
+        // The literal comes back when there is no PTR record
+        return name.equals(inet.getHostAddress()) ? null : name;
+    };
+
+    /**
+     * @param address 4 or 16 address bytes, network order
+     * @return The host name, or null if the address has none
+     * @throws IOException If the lookup failed
+     */
+    String resolve(byte[] address) throws IOException;
+}
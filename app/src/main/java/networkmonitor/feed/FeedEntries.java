@@ -0,0 +1,205 @@
+package networkmonitor.feed;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import networkmonitor.util.IpAddresses;
+import networkmonitor.util.LongList;
+
+/**
+ * Entries parsed from a feed. IPv4 addresses and prefixes are kept as primitive keys
+ * ({@code address << 6 | prefixLength}, so sorting the keys orders them by address), IPv6
+ * entries as canonical text, and domains waiting for DNS resolution as plain strings.
+ * Each parser thread fills its own instance; the instances are merged afterwards. Not thread-safe.
+ */
+public final class FeedEntries {
+    private final LongList ipV4 = new LongList(1024);
+    private final Map<String, String> ipV6 = new LinkedHashMap<>();
+    private final List<String> domains = new ArrayList<>();
+
+    // Optional display name (the domain of a hosts line) per IPv4 key
+    private final Map<Long, String> ipV4Names = new HashMap<>();
+
+    private long invalidLines = 0;
+
+    /**
+     * Adds an IPv4 address or prefix; host bits after the prefix are cleared.
+     * @param address The address as a big-endian int
+     * @param prefixLength 0..32, 32 for a single address
+     * @param name Display name, or null to use the feed name
+     */
+    public void addIpV4(int address, int prefixLength, String name) {
+        long key = ipV4Key(address, prefixLength);
+        ipV4.add(key);
+        if (name != null)
+            ipV4Names.putIfAbsent(key, name);
+    }
+
+    /**
+     * Adds an IPv6 address or prefix given in canonical text form.
+     * @param text Canonical address, optionally with "/bits"
+     * @param name Display name, or null to use the feed name
+     */
+    public void addIpV6(String text, String name) {
+        ipV6.putIfAbsent(text, name);
+    }
+
+    /**
+     * Adds a domain whose addresses are looked up after parsing.
+     * @param domain The domain name
+     */
+    public void addDomain(String domain) {
+        domains.add(domain);
+    }
+
+    /**
+     * Adds an address or prefix given as text: "1.2.3.4", "1.2.3.0/24", "2001:db8::1" or "2001:db8::/32".
+     * @param text The address
+     * @param name Display name, or null to use the feed name
+     * @return false if the text is not an address or prefix
+     */
+    public boolean addAddress(String text, String name) {
+        int slash = text.indexOf('/');
+        String address = slash < 0 ? text : text.substring(0, slash);
+        int prefixLength = -1;
+        if (slash >= 0) {
+            try {
+                prefixLength = Integer.parseInt(text.substring(slash + 1));
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        long v4 = IpAddresses.parseIpV4(address);
+        if (v4 >= 0) {
+            if (slash < 0)
+                prefixLength = 32;
+            if (prefixLength < 0 || prefixLength > 32)
+                return false;
+            addIpV4((int) v4, prefixLength, name);
+            return true;
+        }
+
+        long[] v6 = new long[2];
+        if (!IpAddresses.parseIpV6(address, v6))
+            return false;
+        if (slash < 0) {
+            addIpV6(IpAddresses.formatIpV6(v6[0], v6[1]), name);
+            return true;
+        }
+        if (prefixLength < 0 || prefixLength > 128)
+            return false;
+        // Clear the host bits so equal prefixes compare equal as text
+        if (prefixLength < 64) {
+            v6[0] &= prefixLength == 0 ? 0 : -1L << (64 - prefixLength);
+            v6[1] = 0;
+        } else if (prefixLength < 128) {
+            v6[1] &= prefixLength == 64 ? 0 : -1L << (128 - prefixLength);
+        }
+        addIpV6(IpAddresses.formatIpV6(v6[0], v6[1]) + "/" + prefixLength, name);
+        return true;
+    }
+
+    /**
+     * Counts a line that no parser rule understood.
+     */
+    public void invalidLine() {
+        invalidLines++;
+    }
+
+    /**
+     * Moves the entries of another instance into this one.
+     * @param other Entries of another chunk
+     */
+    public void addAll(FeedEntries other) {
+        for (int i = 0; i < other.ipV4.size(); i++)
+            ipV4.add(other.ipV4.get(i));
+        other.ipV4Names.forEach(ipV4Names::putIfAbsent);
+        other.ipV6.forEach(ipV6::putIfAbsent);
+        domains.addAll(other.domains);
+        invalidLines += other.invalidLines;
+    }
+
+    /**
+     * @return The IPv4 keys, sorted and without duplicates.
+     */
+    public long[] getSortedIpV4Keys() {
+        return ipV4.toSortedUniqueArray();
+    }
+
+    /**
+     * @param key An IPv4 key
+     * @return Its display name, or null
+     */
+    public String getIpV4Name(long key) {
+        return ipV4Names.get(key);
+    }
+
+    /**
+     * @return IPv6 entries (canonical text) and their display names (null = feed name).
+     */
+    public Map<String, String> getIpV6() {
+        return ipV6;
+    }
+
+    /**
+     * @return Domains waiting for resolution, possibly with duplicates.
+     */
+    public List<String> getDomains() {
+        return domains;
+    }
+
+    /**
+     * @return Number of lines skipped as invalid.
+     */
+    public long getInvalidLines() {
+        return invalidLines;
+    }
+
+    /**
+     * Builds the primitive key of an IPv4 address or prefix.
+     * @param address The address as a big-endian int
+     * @param prefixLength 0..32
+     * @return The key
+     */
+    public static long ipV4Key(int address, int prefixLength) {
+        long mask = prefixLength == 0 ? 0 : (0xFFFFFFFFL << (32 - prefixLength)) & 0xFFFFFFFFL;
+        return ((address & mask) << 6) | prefixLength;
+    }
+
+    /**
+     * Parses the text stored in the database ("1.2.3.4" or "1.2.3.0/24") into a key.
+     * @param text The address text
+     * @return The key, or -1 if the text is not an IPv4 address or prefix
+     */
+    public static long parseIpV4Key(String text) {
+        if (text == null)
+            return -1;
+        int slash = text.indexOf('/');
+        long address = IpAddresses.parseIpV4(slash < 0 ? text : text.substring(0, slash));
+        if (address < 0)
+            return -1;
+        if (slash < 0)
+            return ipV4Key((int) address, 32);
+        try {
+            int prefixLength = Integer.parseInt(text.substring(slash + 1));
+            return prefixLength >= 0 && prefixLength <= 32 ? ipV4Key((int) address, prefixLength) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Formats a key the way it is stored in the database.
+     * @param key An IPv4 key
+     * @return "1.2.3.4" for single addresses, "1.2.3.0/24" for prefixes
+     */
+    public static String formatIpV4Key(long key) {
+        int prefixLength = (int) (key & 0x3F);
+        String address = IpAddresses.formatIpV4((int) (key >>> 6));
+        return prefixLength == 32 ? address : address + "/" + prefixLength;
+    }
+}
@@ -0,0 +1,272 @@
+package networkmonitor.feed;
+
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+import networkmonitor.db.BlacklistDao;
+import networkmonitor.db.BlacklistLoader;
+import networkmonitor.model.BlacklistEntry;
+import networkmonitor.util.LongList;
+
+/**
+ * Loads a feed into the blacklist table in four steps:
+ * <ol>
+ *   <li>the whole feed is read into memory and cut into chunks at line boundaries;</li>
+ *   <li>the chunks are parsed in parallel, each into its own FeedEntries;</li>
+ *   <li>the chunk results are merged into one sorted, duplicate-free primitive key array
+ *       (domains from hosts and CSV feeds are resolved concurrently first; a domain that
+ *       does not resolve keeps the addresses already stored for it);</li>
+ *   <li>the result is compared with the feed's current rows and the difference (new
+ *       addresses, addresses no longer listed) is written in one transaction.</li>
+ * </ol>
+ * Rows are tagged with the feed name, so a feed only ever deletes its own rows.
+ */
+public class FeedIngestor {
+    // Logger for ingestion results
+    private static final Logger LOGGER = Logger.getLogger(FeedIngestor.class.getName());
+
+    // Smallest chunk worth a parser task
+    private static final int MIN_CHUNK_BYTES = 256 * 1024;
+
+    // DNS lookups in flight while resolving hosts-file domains
+    private static final int RESOLVER_THREADS = Integer.getInteger("networkmonitor.feeds.resolverThreads", 32);
+
+    // Most domains resolved per feed and run; the others keep their stored addresses
+    private static final int MAX_DOMAINS = Integer.getInteger("networkmonitor.feeds.maxDomains", 10_000);
+
+    private final BlacklistDao dao;
+
+    /**
+     * @param dao DAO used to read the current rows and apply the difference
+     */
+    public FeedIngestor(BlacklistDao dao) {
+        this.dao = dao;
+    }
+
+    /**
+     * Reads, parses and applies one feed. Errors are logged; a feed that cannot be read,
+     * yields no entries or whose domain resolution is interrupted leaves the table unchanged.
+     * @param feed The feed
+     * @return Number of rows inserted or deleted
+     */
+    public int ingest(FeedSource feed) {
+        long start = System.nanoTime();
+        byte[] data;
+        try {
+            data = feed.read();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not read feed " + feed, e);
+            return 0;
+        }
+        long readNanos = System.nanoTime();
+
+        FeedEntries entries = parse(data, feed.getParser());
+        long parseNanos = System.nanoTime();
+
+        List<Object[]> rows = dao.loadAddressesAndSources();
+        int domains = resolveDomains(feed.getName(), entries, rows);
+        if (domains < 0) {
+            LOGGER.log(Level.WARNING, "Resolving the domains of feed {0} did not complete, keeping its current rows.", feed.getName());
+            return 0;
+        }
+        long[] ipV4 = entries.getSortedIpV4Keys();
+        Map<String, String> ipV6 = entries.getIpV6();
+        long resolveNanos = System.nanoTime();
+
+        if (ipV4.length == 0 && ipV6.isEmpty()) {
+            LOGGER.log(Level.WARNING, "Feed {0} yielded no entries ({1} invalid lines), keeping its current rows.",
+                new Object[]{feed.getName(), entries.getInvalidLines()});
+            return 0;
+        }
+
+        Diff diff = diff(feed.getName(), ipV4, entries, ipV6, rows);
+        boolean applied = dao.applyDiff(feed.getName(), diff.inserts, diff.deletes);
+        long end = System.nanoTime();
+
+        if (LOGGER.isLoggable(Level.INFO))
+            LOGGER.info(String.format("event=feed_ingest feed=%s bytes=%d ipv4=%d ipv6=%d domains=%d invalid=%d inserted=%d deleted=%d applied=%s read_ms=%d parse_ms=%d resolve_ms=%d db_ms=%d",
+                feed.getName(), data.length, ipV4.length, ipV6.size(), domains, entries.getInvalidLines(),
+                diff.inserts.size(), diff.deletes.size(), applied,
+                (readNanos - start) / 1_000_000, (parseNanos - readNanos) / 1_000_000,
+                (resolveNanos - parseNanos) / 1_000_000, (end - resolveNanos) / 1_000_000));
+        return applied ? diff.inserts.size() + diff.deletes.size() : 0;
+    }
+
+    /**
+     * Parses a feed in parallel chunks and merges the chunk results.
+     * @param data The raw feed
+     * @param parser The format's parser
+     * @return The merged entries
+     */
+    public static FeedEntries parse(byte[] data, FeedParser parser) {
+        int chunkCount = (int) Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() * 4L, data.length / MIN_CHUNK_BYTES));
+
+        // Chunk boundaries, moved forward to the next line start
+        int[] bounds = new int[chunkCount + 1];
+        bounds[chunkCount] = data.length;
+        for (int i = 1; i < chunkCount; i++) {
+            int position = Math.max(bounds[i - 1], (int) ((long) data.length * i / chunkCount));
+            while (position < data.length && data[position - 1] != '\n')
+                position++;
+            bounds[i] = position;
+        }
+
+        List<FeedEntries> parts = IntStream.range(0, chunkCount).parallel()
+            .mapToObj(i -> parseChunk(data, bounds[i], bounds[i + 1], parser))
+            .toList();
+
+        FeedEntries merged = parts.get(0);
+        for (int i = 1; i < parts.size(); i++)
+            merged.addAll(parts.get(i));
+        return merged;
+    }
+
+    private static FeedEntries parseChunk(byte[] data, int from, int to, FeedParser parser) {
+        FeedEntries entries = new FeedEntries();
+        int lineStart = from;
+        while (lineStart < to) {
+            int lineEnd = lineStart;
+            while (lineEnd < to && data[lineEnd] != '\n')
+                lineEnd++;
+            int contentEnd = lineEnd > lineStart && data[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+            if (contentEnd > lineStart)
+                parser.parseLine(new String(data, lineStart, contentEnd - lineStart, StandardCharsets.UTF_8), entries);
+            lineStart = lineEnd + 1;
+        }
+        return entries;
+    }
+
+    /**
+     * Resolves the collected domains concurrently and adds their addresses. A domain that
+     * does not resolve, or is past the MAX_DOMAINS limit, keeps the addresses of the feed's
+     * stored rows named after it, so a DNS failure does not delete them.
+     * @param source Feed name
+     * @param entries The feed entries; receives the addresses
+     * @param rows Current rows as {ip_address, source, website_name} triples
+     * @return Number of distinct domains, or -1 if the resolution was interrupted or failed
+     */
+    private static int resolveDomains(String source, FeedEntries entries, List<Object[]> rows) {
+        Set<String> domains = new LinkedHashSet<>(entries.getDomains());
+        if (domains.isEmpty())
+            return 0;
+        List<String> order = new ArrayList<>(domains);
+        if (order.size() > MAX_DOMAINS) {
+            LOGGER.log(Level.WARNING, "Resolving only the first {0} of {1} domains.", new Object[]{MAX_DOMAINS, order.size()});
+            order = order.subList(0, MAX_DOMAINS);
+        }
+
+        // Domains whose stored addresses are kept: the ones that failed and the ones not looked up
+        Set<String> unresolved = new HashSet<>(domains);
+        ExecutorService resolvers = Executors.newFixedThreadPool(RESOLVER_THREADS, r -> {
+            Thread thread = new Thread(r, "feed-resolver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<List<String>>> lookups = new ArrayList<>(order.size());
+            for (String domain : order)
+                lookups.add(resolvers.submit(() -> resolve(domain)));
+            for (int i = 0; i < order.size(); i++) {
+                List<String> addresses = lookups.get(i).get();
+                if (addresses == null)
+                    continue;
+                unresolved.remove(order.get(i));
+                for (String address : addresses)
+                    entries.addAddress(address, order.get(i));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        } catch (ExecutionException e) {
+            LOGGER.log(Level.WARNING, "Domain resolution failed", e.getCause());
+            return -1;
+        } finally {
+            resolvers.shutdownNow();
+        }
+
+        for (Object[] row : rows)
+            if (Objects.equals(source, row[1]) && row[0] != null && unresolved.contains(row[2]))
+                entries.addAddress((String) row[0], (String) row[2]);
+        return domains.size();
+    }
+
+    /**
+     * @return The domain's addresses, or null if it could not be resolved
+     */
+    private static List<String> resolve(String domain) {
+        try {
+            return BlacklistLoader.resolveAddresses(domain);
+        } catch (UnknownHostException | SecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Compares the feed with the table.
+     * @param source Feed name
+     * @param ipV4 Sorted, distinct IPv4 keys of the feed
+     * @param entries The feed entries (for display names)
+     * @param ipV6 IPv6 entries of the feed
+     * @param rows Current rows as {ip_address, source, website_name} triples
+     * @return Rows to insert and addresses of the feed's rows to delete
+     */
+    static Diff diff(String source, long[] ipV4, FeedEntries entries, Map<String, String> ipV6, List<Object[]> rows) {
+        LongList existingV4 = new LongList(rows.size());
+        Set<String> existingV6 = new HashSet<>();
+        List<String> deletes = new ArrayList<>();
+        for (Object[] row : rows) {
+            String address = (String) row[0];
+            boolean own = Objects.equals(source, row[1]);
+            long key = FeedEntries.parseIpV4Key(address);
+            if (key >= 0) {
+                existingV4.add(key);
+                if (own && Arrays.binarySearch(ipV4, key) < 0)
+                    deletes.add(address);
+            } else if (address != null) {
+                existingV6.add(address);
+                if (own && !ipV6.containsKey(address))
+                    deletes.add(address);
+            }
+        }
+
+        long[] existing = existingV4.toSortedUniqueArray();
+        List<BlacklistEntry> inserts = new ArrayList<>();
+        for (long key : ipV4) {
+            if (Arrays.binarySearch(existing, key) >= 0)
+                continue;
+            String name = entries.getIpV4Name(key);
+            inserts.add(new BlacklistEntry(FeedEntries.formatIpV4Key(key), name != null ? name : source, source));
+        }
+        for (Map.Entry<String, String> entry : ipV6.entrySet())
+            if (!existingV6.contains(entry.getKey()))
+                inserts.add(new BlacklistEntry(entry.getKey(), entry.getValue() != null ? entry.getValue() : source, source));
+        return new Diff(inserts, deletes);
+    }
+
+    // Changes to apply for one feed
+    static final class Diff {
+        final List<BlacklistEntry> inserts;
+        final List<String> deletes;
+
+        Diff(List<BlacklistEntry> inserts, List<String> deletes) {
+            this.inserts = inserts;
+            this.deletes = deletes;
+        }
+    }
+}
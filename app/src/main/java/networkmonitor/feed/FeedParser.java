@@ -0,0 +1,15 @@
+package networkmonitor.feed;
+
+/**
+ * Parses the lines of one feed format. Implementations must be stateless, because the
+ * chunks of a feed are parsed by several threads at once with the same parser.
+ */
+@FunctionalInterface
+public interface FeedParser {
+    /**
+     * Parses one line (without line terminator) into the entries of the current chunk.
+     * @param line The line
+     * @param out Entries of the chunk being parsed
+     */
+    void parseLine(String line, FeedEntries out);
+}
@@ -0,0 +1,173 @@
+package networkmonitor.feed;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The built-in feed formats:
+ * <ul>
+ *   <li>{@code ip} - one address per line ("1.2.3.4", "2001:db8::1")</li>
+ *   <li>{@code cidr} - one address or prefix per line ("1.2.3.0/24 ; SBL123")</li>
+ *   <li>{@code hosts} - hosts file lines ("0.0.0.0 bad.example"); null-routed domains are
+ *       resolved, lines pointing at a real address block that address</li>
+ *   <li>{@code csv} - one column of a CSV threat feed holding an address, prefix or domain</li>
+ * </ul>
+ * Comments start with # or ; (and // in CSV feeds), and blank lines are skipped.
+ */
+public final class FeedParsers {
+    // Addresses hosts files use to null-route a domain
+    private static final Set<String> NULL_ROUTES = Set.of("0.0.0.0", "127.0.0.1", "::", "::1");
+
+    // Hosts-file names that are not blocklist entries
+    private static final Set<String> LOCAL_NAMES = Set.of("localhost", "localhost.localdomain", "local",
+        "broadcasthost", "ip6-localhost", "ip6-loopback", "0.0.0.0");
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private FeedParsers() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Returns the parser of a format.
+     * @param format {@code ip}, {@code cidr}, {@code hosts} or {@code csv}
+     * @param csvColumn Zero-based column of the address in CSV feeds
+     * @return The parser
+     * @throws IllegalArgumentException If the format is unknown
+     */
+    public static FeedParser forFormat(String format, int csvColumn) {
+        switch (format.toLowerCase(Locale.ROOT)) {
+            case "ip": return FeedParsers::parseIpLine;
+            case "cidr": return FeedParsers::parseCidrLine;
+            case "hosts": return FeedParsers::parseHostsLine;
+            case "csv": return (line, out) -> parseCsvLine(line, csvColumn, out);
+            default: throw new IllegalArgumentException("Unknown feed format: " + format);
+        }
+    }
+
+    private static void parseIpLine(String line, FeedEntries out) {
+        String token = firstToken(line);
+        if (token == null)
+            return;
+        if (token.indexOf('/') >= 0 || !out.addAddress(token, null))
+            out.invalidLine();
+    }
+
+    private static void parseCidrLine(String line, FeedEntries out) {
+        String token = firstToken(line);
+        if (token != null && !out.addAddress(token, null))
+            out.invalidLine();
+    }
+
+    private static void parseHostsLine(String line, FeedEntries out) {
+        String content = stripComment(line);
+        if (content.isEmpty())
+            return;
+
+        String[] tokens = content.split("\\s+");
+        if (tokens.length < 2) {
+            out.invalidLine();
+            return;
+        }
+        boolean nullRoute = NULL_ROUTES.contains(tokens[0]);
+        for (int i = 1; i < tokens.length; i++) {
+            String domain = tokens[i].toLowerCase(Locale.ROOT);
+            if (LOCAL_NAMES.contains(domain))
+                continue;
+            if (nullRoute)
+                out.addDomain(domain);
+            else if (!out.addAddress(tokens[0], domain))
+                out.invalidLine();
+        }
+    }
+
+    private static void parseCsvLine(String line, int column, FeedEntries out) {
+        String trimmed = line.strip();
+        if (trimmed.isEmpty() || trimmed.startsWith("#") || trimmed.startsWith("//"))
+            return;
+
+        String field = csvField(trimmed, column);
+        if (field == null || field.isEmpty()) {
+            out.invalidLine();
+            return;
+        }
+        if (out.addAddress(field, null))
+            return;
+        if (isDomain(field))
+            out.addDomain(field.toLowerCase(Locale.ROOT));
+        else
+            out.invalidLine(); // e.g. the header row
+    }
+
+    /**
+     * Extracts one field of a CSV line; fields may be quoted with "" escaping.
+     */
+    private static String csvField(String line, int column) {
+        int index = 0;
+        int position = 0;
+        while (position <= line.length()) {
+            StringBuilder field = new StringBuilder();
+            if (position < line.length() && line.charAt(position) == '"') {
+                position++;
+                while (position < line.length()) {
+                    char c = line.charAt(position++);
+                    if (c == '"') {
+                        if (position < line.length() && line.charAt(position) == '"') {
+                            field.append('"');
+                            position++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        field.append(c);
+                    }
+                }
+                while (position < line.length() && line.charAt(position) != ',')
+                    position++;
+            } else {
+                int comma = line.indexOf(',', position);
+                int end = comma < 0 ? line.length() : comma;
+                field.append(line, position, end);
+                position = end;
+            }
+            if (index == column)
+                return field.toString().strip();
+            index++;
+            position++;
+        }
+        return null;
+    }
+
+    private static boolean isDomain(String text) {
+        if (text.indexOf('.') <= 0 || text.endsWith("."))
+            return false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!(Character.isLetterOrDigit(c) || c == '-' || c == '.' || c == '_'))
+                return false;
+        }
+        return true;
+    }
+
+    private static String firstToken(String line) {
+        String content = stripComment(line);
+        if (content.isEmpty())
+            return null;
+        int end = 0;
+        while (end < content.length() && !Character.isWhitespace(content.charAt(end)))
+            end++;
+        return content.substring(0, end);
+    }
+
+    private static String stripComment(String line) {
+        int hash = line.indexOf('#');
+        int semicolon = line.indexOf(';');
+        int end = line.length();
+        if (hash >= 0)
+            end = hash;
+        if (semicolon >= 0 && semicolon < end)
+            end = semicolon;
+        return line.substring(0, end).strip();
+    }
+}
@@ -0,0 +1,133 @@
+package networkmonitor.feed;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A configured blacklist feed: a name, a format and a local file or URL.
+ * <p>
+ * Feeds are listed in the properties file named by the networkmonitor.feeds.file system property:
+ * <pre>
+ * feed.spamhaus.format=cidr
+ * feed.spamhaus.location=https://www.spamhaus.org/drop/drop.txt
+ * feed.threats.format=csv
+ * feed.threats.location=/var/lib/feeds/threats.csv
+ * feed.threats.csvColumn=1
+ * </pre>
+ * Without that property the StevenBlack hosts list is used, as before.
+ */
+public final class FeedSource {
+    // Logger for feed configuration
+    private static final Logger LOGGER = Logger.getLogger(FeedSource.class.getName());
+
+    // Feed used when none is configured
+    private static final String DEFAULT_NAME = "stevenblack";
+    private static final String DEFAULT_URL = "https://raw.githubusercontent.com/StevenBlack/hosts/refs/heads/master/alternates/porn/hosts";
+
+    // Connect and read timeout of feed downloads, so a stalled server cannot hold a refresh forever
+    private static final int TIMEOUT_MILLIS = Integer.getInteger("networkmonitor.feeds.timeoutMillis", 30_000);
+
+    private final String name;
+    private final String format;
+    private final String location;
+    private final FeedParser parser;
+
+    /**
+     * Creates a feed.
+     * @param name Feed name, stored as the source of its database rows
+     * @param format {@code ip}, {@code cidr}, {@code hosts} or {@code csv}
+     * @param location Local path or URL
+     * @param csvColumn Zero-based column of the address in CSV feeds
+     * @throws IllegalArgumentException If the format is unknown
+     */
+    public FeedSource(String name, String format, String location, int csvColumn) {
+        this.name = name;
+        this.format = format;
+        this.location = location;
+        this.parser = FeedParsers.forFormat(format, csvColumn);
+    }
+
+    /**
+     * Reads the feeds configured through the networkmonitor.feeds.file system property.
+     * @return The feeds, or the default hosts feed if none is configured
+     */
+    public static List<FeedSource> fromSystemProperties() {
+        String file = System.getProperty("networkmonitor.feeds.file");
+        if (file == null)
+            return List.of(new FeedSource(DEFAULT_NAME, "hosts", DEFAULT_URL, 0));
+
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(Path.of(file))) {
+            properties.load(in);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Could not read feed configuration " + file, e);
+            return List.of();
+        }
+        return fromProperties(properties);
+    }
+
+    /**
+     * Reads feed definitions ({@code feed.<name>.location}, {@code .format}, {@code .csvColumn}).
+     * Invalid definitions are logged and skipped.
+     * @param properties The definitions
+     * @return The feeds, ordered by name
+     */
+    public static List<FeedSource> fromProperties(Properties properties) {
+        TreeSet<String> names = new TreeSet<>();
+        for (String key : properties.stringPropertyNames())
+            if (key.startsWith("feed.") && key.endsWith(".location"))
+                names.add(key.substring("feed.".length(), key.length() - ".location".length()));
+
+        List<FeedSource> feeds = new ArrayList<>();
+        for (String name : names) {
+            String prefix = "feed." + name + ".";
+            try {
+                feeds.add(new FeedSource(name,
+                    properties.getProperty(prefix + "format", "ip"),
+                    properties.getProperty(prefix + "location").strip(),
+                    Integer.parseInt(properties.getProperty(prefix + "csvColumn", "0").strip())));
+            } catch (IllegalArgumentException e) {
+                LOGGER.log(Level.WARNING, "Skipping feed {0}: {1}", new Object[]{name, e.getMessage()});
+            }
+        }
+        return feeds;
+    }
+
+    /**
+     * Downloads or reads the whole feed.
+     * @return The raw feed bytes
+     * @throws IOException If the feed cannot be read or the download times out
+     */
+    public byte[] read() throws IOException {
+        if (location.contains("://")) {
+            URLConnection connection = URI.create(location).toURL().openConnection();
+            connection.setConnectTimeout(TIMEOUT_MILLIS);
+            connection.setReadTimeout(TIMEOUT_MILLIS);
+            try (InputStream in = connection.getInputStream()) {
+                return in.readAllBytes();
+            }
+        }
+        return Files.readAllBytes(Path.of(location));
+    }
+
+    // Getters
+    public String getName() { return name; }
+    public String getFormat() { return format; }
+    public String getLocation() { return location; }
+    public FeedParser getParser() { return parser; }
+
+    @Override
+    public String toString() {
+        return name + " (" + format + ", " + location + ")";
+    }
+}
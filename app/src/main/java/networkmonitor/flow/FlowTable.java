@@ -0,0 +1,370 @@
+package networkmonitor.flow;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import networkmonitor.model.DecodedPacket;
+import networkmonitor.util.Hashing;
+import networkmonitor.util.ProbeIndex;
+
+/**
+ * Unidirectional flow accounting for export: packets are grouped by source and destination
+ * address, ports and IP protocol, and a flow ends when it has been idle for the idle timeout,
+ * when it has been open for the active timeout, when a TCP FIN or RST is seen, or when the
+ * table is full. Every ended flow is handed to the listener, which reads it through the
+ * getters before the entry is reused.
+ * <p>
+ * Flows live in parallel primitive arrays with an open-addressing index, so a packet costs one
+ * lookup and no allocation. Time is the capture timestamp of the packets; idle and active
+ * timeouts are also checked by a sweep over the table once per second of the clock given to
+ * tick(). IPv4 addresses are stored IPv4-mapped (zero high half, ::ffff:0:0/96 low half).
+ * Used by the capture thread only.
+ */
+public final class FlowTable {
+    // flowEndReason values (IANA IPFIX information element 136)
+    public static final int END_IDLE_TIMEOUT = 1;
+    public static final int END_ACTIVE_TIMEOUT = 2;
+    public static final int END_OF_FLOW = 3;
+    public static final int END_FORCED = 4;
+    public static final int END_LACK_OF_RESOURCES = 5;
+
+    // Milliseconds between two timeout sweeps
+    private static final long SWEEP_INTERVAL_MILLIS = 1000;
+
+    // Entries compared when the table is full; the least recently seen of them is ended
+    private static final int EVICTION_SAMPLES = 8;
+
+    /**
+     * Receives the flows as they end.
+     */
+    public interface Listener {
+        /**
+         * Called on the capture thread before the entry is reused.
+         * @param table The table, for the getters
+         * @param flow Entry of the ended flow
+         * @param reason One of the END_ constants
+         */
+        void flowEnded(FlowTable table, int flow, int reason);
+    }
+
+    // Configuration
+    private final int capacity;
+    private final long idleTimeoutMillis;
+    private final long activeTimeoutMillis;
+    private final Listener listener;
+
+    // Keys: address halves, ports (source << 16 | destination) and protocol, with their hash
+    private final long[] srcHighs;
+    private final long[] srcLows;
+    private final long[] dstHighs;
+    private final long[] dstLows;
+    private final int[] ports;
+    private final byte[] protocols;
+    private final long[] hashes;
+
+    // Open-addressing index from hash to entry
+    private final ProbeIndex index;
+
+    // Free entries as a stack
+    private final int[] free;
+    private int freeCount;
+
+    // Counters per entry; packets is 0 for a free entry
+    private final long[] bytes;
+    private final long[] packets;
+    private final long[] startMillis;
+    private final long[] endMillis;
+    private final byte[] tcpFlags;
+
+    // Latest capture time seen, and the next sweep on the tick() clock
+    private long latestMillis = Long.MIN_VALUE;
+    private long nextSweepMillis = Long.MIN_VALUE;
+    private int evictionCursor = 0;
+
+    // Statistics
+    private volatile int size = 0;
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong ended = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates an empty table.
+     * @param capacity Flows tracked at once
+     * @param idleTimeoutSeconds Seconds without a packet after which a flow ends
+     * @param activeTimeoutSeconds Seconds after which a long flow is reported and restarted
+     * @param listener Receives the ended flows
+     */
+    public FlowTable(int capacity, int idleTimeoutSeconds, int activeTimeoutSeconds, Listener listener) {
+        this.capacity = Math.max(1, capacity);
+        this.idleTimeoutMillis = Math.max(1, idleTimeoutSeconds) * 1000L;
+        this.activeTimeoutMillis = Math.max(1, activeTimeoutSeconds) * 1000L;
+        this.listener = listener;
+
+        srcHighs = new long[this.capacity];
+        srcLows = new long[this.capacity];
+        dstHighs = new long[this.capacity];
+        dstLows = new long[this.capacity];
+        ports = new int[this.capacity];
+        protocols = new byte[this.capacity];
+        hashes = new long[this.capacity];
+        index = new ProbeIndex(this.capacity * 2);
+
+        free = new int[this.capacity];
+        for (int i = 0; i < this.capacity; i++)
+            free[i] = this.capacity - 1 - i;
+        freeCount = this.capacity;
+
+        bytes = new long[this.capacity];
+        packets = new long[this.capacity];
+        startMillis = new long[this.capacity];
+        endMillis = new long[this.capacity];
+        tcpFlags = new byte[this.capacity];
+    }
+
+    /**
+     * Creates the table from the system properties networkmonitor.flows.maxFlows (65536),
+     * .idleTimeoutSeconds (15) and .activeTimeoutSeconds (60).
+     * @param listener Receives the ended flows
+     * @return The table
+     */
+    public static FlowTable fromSystemProperties(Listener listener) {
+        return new FlowTable(
+            Integer.getInteger("networkmonitor.flows.maxFlows", 65536),
+            Integer.getInteger("networkmonitor.flows.idleTimeoutSeconds", 15),
+            Integer.getInteger("networkmonitor.flows.activeTimeoutSeconds", 60),
+            listener);
+    }
+
+    /**
+     * Counts a packet in its flow, starting the flow if needed. Allocation-free.
+     * @param packet The decoded packet
+     */
+    public void record(DecodedPacket packet) {
+        if (packet.ipVersion != 4 && packet.ipVersion != 6)
+            return;
+        long now = Math.floorDiv(packet.captureNanos, 1_000_000L);
+        if (now > latestMillis)
+            latestMillis = now;
+
+        long srcHigh, srcLow, dstHigh, dstLow;
+        if (packet.ipVersion == 6) {
+            srcHigh = packet.srcAddrHi;
+            srcLow = packet.srcAddrLo;
+            dstHigh = packet.dstAddrHi;
+            dstLow = packet.dstAddrLo;
+        } else {
+            srcHigh = 0;
+            srcLow = 0xFFFFL << 32 | (packet.srcAddr & 0xFFFFFFFFL);
+            dstHigh = 0;
+            dstLow = 0xFFFFL << 32 | (packet.dstAddr & 0xFFFFFFFFL);
+        }
+        int portPair = (packet.srcPort & 0xFFFF) << 16 | (packet.dstPort & 0xFFFF);
+        long hash = Hashing.mix(Hashing.mix(srcHigh, srcLow) ^ dstHigh, dstLow) ^ (portPair * 0x9E3779B97F4A7C15L) ^ packet.protocol;
+
+        int flow = find(srcHigh, srcLow, dstHigh, dstLow, portPair, packet.protocol, hash);
+        if (flow >= 0 && (now - endMillis[flow] >= idleTimeoutMillis || now - startMillis[flow] >= activeTimeoutMillis)) {
+            end(flow, now - endMillis[flow] >= idleTimeoutMillis ? END_IDLE_TIMEOUT : END_ACTIVE_TIMEOUT);
+            flow = -1;
+        }
+        if (flow < 0)
+            flow = insert(srcHigh, srcLow, dstHigh, dstLow, portPair, packet.protocol, hash, now);
+
+        bytes[flow] += packet.frameLength;
+        packets[flow]++;
+        if (now > endMillis[flow])
+            endMillis[flow] = now;
+        if (packet.protocol == DecodedPacket.PROTO_TCP) {
+            tcpFlags[flow] |= (byte) packet.tcpFlags;
+            if ((packet.tcpFlags & (DecodedPacket.TCP_FIN | DecodedPacket.TCP_RST)) != 0)
+                end(flow, END_OF_FLOW);
+        }
+    }
+
+    /**
+     * Ends the flows that are idle or open for too long, at most once per second.
+     * @param nowMillis Current time on the clock of the packets: the wall clock for a live
+     *                  capture, getLatestMillis() for a replayed file
+     */
+    public void tick(long nowMillis) {
+        if (nowMillis < nextSweepMillis)
+            return;
+        nextSweepMillis = nowMillis + SWEEP_INTERVAL_MILLIS;
+        for (int flow = 0; flow < capacity; flow++) {
+            if (packets[flow] == 0)
+                continue;
+            if (nowMillis - endMillis[flow] >= idleTimeoutMillis)
+                end(flow, END_IDLE_TIMEOUT);
+            else if (nowMillis - startMillis[flow] >= activeTimeoutMillis)
+                end(flow, END_ACTIVE_TIMEOUT);
+        }
+    }
+
+    /**
+     * Ends every open flow, e.g. when capture stops.
+     * @param reason END_FORCED, normally
+     */
+    public void endAll(int reason) {
+        for (int flow = 0; flow < capacity; flow++)
+            if (packets[flow] != 0)
+                end(flow, reason);
+    }
+
+    private int find(long srcHigh, long srcLow, long dstHigh, long dstLow, int portPair, byte protocol, long hash) {
+        int entry;
+        for (int slot = index.slot(hash); (entry = index.get(slot)) >= 0; slot = index.next(slot))
+            if (hashes[entry] == hash && srcLows[entry] == srcLow && dstLows[entry] == dstLow && ports[entry] == portPair
+                    && srcHighs[entry] == srcHigh && dstHighs[entry] == dstHigh && protocols[entry] == protocol)
+                return entry;
+        return -1;
+    }
+
+    private int insert(long srcHigh, long srcLow, long dstHigh, long dstLow, int portPair, byte protocol, long hash, long now) {
+        if (freeCount == 0) {
+            evictions.incrementAndGet();
+            end(evictionCandidate(), END_LACK_OF_RESOURCES);
+        }
+        int flow = free[--freeCount];
+        srcHighs[flow] = srcHigh;
+        srcLows[flow] = srcLow;
+        dstHighs[flow] = dstHigh;
+        dstLows[flow] = dstLow;
+        ports[flow] = portPair;
+        protocols[flow] = protocol;
+        hashes[flow] = hash;
+        bytes[flow] = 0;
+        packets[flow] = 0;
+        startMillis[flow] = now;
+        endMillis[flow] = now;
+        tcpFlags[flow] = 0;
+
+        index.insert(hash, flow);
+        size++;
+        created.incrementAndGet();
+        return flow;
+    }
+
+    /**
+     * @return The least recently seen of a few entries after the rotating cursor (all are in use)
+     */
+    private int evictionCandidate() {
+        int oldest = evictionCursor;
+        for (int i = 1; i < EVICTION_SAMPLES; i++) {
+            int flow = (evictionCursor + i) % capacity;
+            if (endMillis[flow] < endMillis[oldest])
+                oldest = flow;
+        }
+        evictionCursor = (evictionCursor + EVICTION_SAMPLES) % capacity;
+        return oldest;
+    }
+
+    /**
+     * Reports a flow to the listener and frees its entry.
+     */
+    private void end(int flow, int reason) {
+        listener.flowEnded(this, flow, reason);
+        index.remove(flow, hashes);
+        packets[flow] = 0;
+        free[freeCount++] = flow;
+        size--;
+        ended.incrementAndGet();
+    }
+
+    /**
+     * @param flow Entry passed to the listener
+     * @return True for an IPv6 flow, false for an IPv4-mapped one
+     */
+    public boolean isIpV6(int flow) {
+        return srcHighs[flow] != 0 || (srcLows[flow] >>> 32) != 0xFFFFL;
+    }
+
+    public long getSrcHigh(int flow) {
+        return srcHighs[flow];
+    }
+
+    public long getSrcLow(int flow) {
+        return srcLows[flow];
+    }
+
+    public long getDstHigh(int flow) {
+        return dstHighs[flow];
+    }
+
+    public long getDstLow(int flow) {
+        return dstLows[flow];
+    }
+
+    public int getSrcPort(int flow) {
+        return ports[flow] >>> 16;
+    }
+
+    public int getDstPort(int flow) {
+        return ports[flow] & 0xFFFF;
+    }
+
+    public int getProtocol(int flow) {
+        return protocols[flow] & 0xFF;
+    }
+
+    public long getBytes(int flow) {
+        return bytes[flow];
+    }
+
+    public long getPackets(int flow) {
+        return packets[flow];
+    }
+
+    /**
+     * @return Capture time of the first packet, epoch milliseconds
+     */
+    public long getStartMillis(int flow) {
+        return startMillis[flow];
+    }
+
+    /**
+     * @return Capture time of the last packet, epoch milliseconds
+     */
+    public long getEndMillis(int flow) {
+        return endMillis[flow];
+    }
+
+    /**
+     * @return TCP flags seen in the flow, ORed together
+     */
+    public int getTcpFlags(int flow) {
+        return tcpFlags[flow] & 0xFF;
+    }
+
+    /**
+     * @return Latest capture time seen, epoch milliseconds, the clock for tick() when replaying a file
+     */
+    public long getLatestMillis() {
+        return latestMillis;
+    }
+
+    /**
+     * @return Flows currently open
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Flows started since creation
+     */
+    public long getCreatedCount() {
+        return created.get();
+    }
+
+    /**
+     * @return Flows ended since creation
+     */
+    public long getEndedCount() {
+        return ended.get();
+    }
+
+    /**
+     * @return Flows ended early because the table was full
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+}
@@ -0,0 +1,618 @@
+package networkmonitor.flow;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import networkmonitor.util.IpAddresses;
+
+/**
+ * Receives IPFIX (RFC 7011) messages over UDP from any number of sensors and merges their flow
+ * records into one flow view. A sensor is an exporter address and observation domain; its
+ * templates are learned from its template sets, and its sequence numbers tell how many records
+ * were lost on the way. Any template carrying the usual 5-tuple and counter elements is
+ * understood, not only the ones IpfixExporter sends.
+ * <p>
+ * Records of the same 5-tuple are merged into one flow. Each sensor's records are summed
+ * separately and the flow counts the largest sum, so a flow seen by two sensors on its path
+ * is counted once, and the number of sensors that saw it is kept. Flows not updated for the
+ * retention time are dropped, and the least recently updated one is dropped when the view is
+ * full. Records are parsed on the receiver thread; the snapshots can be taken from any thread.
+ */
+public final class IpfixCollector {
+    // Logger for the collector setup and malformed messages
+    private static final Logger LOGGER = Logger.getLogger(IpfixCollector.class.getName());
+
+    // Largest UDP payload
+    private static final int MAX_DATAGRAM = 65535;
+
+    // Field length meaning "variable length" in a field specifier (RFC 7011 section 7)
+    private static final int VARIABLE_LENGTH = 65535;
+
+    // Configuration
+    private final int port;
+    private final int maxFlows;
+    private final long retentionMillis;
+
+    // Sensors by exporter address and domain, in arrival order
+    private final Map<String, Sensor> sensors = new LinkedHashMap<>();
+
+    // Merged flows, least recently updated first
+    private final LinkedHashMap<FlowKey, MergedFlow> flows = new LinkedHashMap<>(1024, 0.75f, true);
+
+    // Totals
+    private long messages = 0;
+    private long records = 0;
+    private long lostRecords = 0;
+    private long unknownTemplateSets = 0;
+    private long malformedMessages = 0;
+
+    private DatagramChannel channel;
+
+    /**
+     * Creates the collector; nothing is opened before start().
+     * @param port UDP port to listen on
+     * @param maxFlows Merged flows kept at once
+     * @param retentionSeconds Seconds a flow stays in the view after its last record
+     */
+    public IpfixCollector(int port, int maxFlows, int retentionSeconds) {
+        this.port = port;
+        this.maxFlows = Math.max(1, maxFlows);
+        this.retentionMillis = TimeUnit.SECONDS.toMillis(Math.max(1, retentionSeconds));
+    }
+
+    /**
+     * Creates the collector from the system properties networkmonitor.collector.maxFlows (100000)
+     * and .retentionSeconds (300).
+     * @param port UDP port to listen on
+     * @return The collector
+     */
+    public static IpfixCollector fromSystemProperties(int port) {
+        return new IpfixCollector(port,
+            Integer.getInteger("networkmonitor.collector.maxFlows", 100_000),
+            Integer.getInteger("networkmonitor.collector.retentionSeconds", 300));
+    }
+
+    /**
+     * Binds the UDP port and starts the receiver thread.
+     * @throws IOException If the port cannot be bound
+     */
+    public void start() throws IOException {
+        channel = DatagramChannel.open();
+        channel.bind(new InetSocketAddress(port));
+        Thread receiver = new Thread(this::receiveLoop, "ipfix-collector");
+        receiver.setDaemon(true);
+        receiver.start();
+        LOGGER.info(String.format("event=collector_started port=%d max_flows=%d retention_s=%d",
+            getPort(), maxFlows, TimeUnit.MILLISECONDS.toSeconds(retentionMillis)));
+    }
+
+    /**
+     * @return The bound UDP port, or the configured one before start()
+     */
+    public int getPort() {
+        try {
+            if (channel != null && channel.getLocalAddress() instanceof InetSocketAddress local)
+                return local.getPort();
+        } catch (IOException e) {
+            // Closed, fall back to the configured port
+        }
+        return port;
+    }
+
+    /**
+     * Closes the socket; the receiver thread ends.
+     */
+    public void close() {
+        try {
+            if (channel != null)
+                channel.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Error closing the collector socket", e);
+        }
+    }
+
+    private void receiveLoop() {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_DATAGRAM);
+        while (channel.isOpen()) {
+            try {
+                buffer.clear();
+                SocketAddress exporter = channel.receive(buffer);
+                buffer.flip();
+                parseMessage(exporter, buffer, System.currentTimeMillis());
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "IPFIX receive failed: {0}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Parses one IPFIX message and merges its data records.
+     * @param exporter Source of the datagram
+     * @param buffer The datagram, between position and limit
+     * @param nowMillis Wall-clock time of reception
+     */
+    synchronized void parseMessage(SocketAddress exporter, ByteBuffer buffer, long nowMillis) {
+        try {
+            if (buffer.remaining() < IpfixExporter.MESSAGE_HEADER_BYTES || buffer.getShort(buffer.position()) != IpfixExporter.VERSION) {
+                malformedMessages++;
+                return;
+            }
+            int start = buffer.position();
+            int length = buffer.getShort(start + 2) & 0xFFFF;
+            long sequence = buffer.getInt(start + 8) & 0xFFFFFFFFL;
+            long domain = buffer.getInt(start + 12) & 0xFFFFFFFFL;
+            if (length < IpfixExporter.MESSAGE_HEADER_BYTES || length > buffer.remaining()) {
+                malformedMessages++;
+                return;
+            }
+
+            String exporterName = formatExporter(exporter);
+            Sensor sensor = sensors.computeIfAbsent(exporterName + "/" + domain, k -> new Sensor(exporterName, domain));
+            messages++;
+            sensor.messages++;
+            sensor.lastSeenMillis = nowMillis;
+
+            int end = start + length;
+            int messageRecords = 0;
+            int offset = start + IpfixExporter.MESSAGE_HEADER_BYTES;
+            while (offset + IpfixExporter.SET_HEADER_BYTES <= end) {
+                int setId = buffer.getShort(offset) & 0xFFFF;
+                int setLength = buffer.getShort(offset + 2) & 0xFFFF;
+                if (setLength < IpfixExporter.SET_HEADER_BYTES || offset + setLength > end) {
+                    malformedMessages++;
+                    break;
+                }
+                int body = offset + IpfixExporter.SET_HEADER_BYTES;
+                int setEnd = offset + setLength;
+                if (setId == IpfixExporter.TEMPLATE_SET_ID) {
+                    parseTemplates(sensor, buffer, body, setEnd);
+                } else if (setId >= 256) {
+                    Template template = sensor.templates.get(setId);
+                    if (template == null)
+                        unknownTemplateSets++;
+                    else
+                        messageRecords += parseRecords(sensor, template, buffer, body, setEnd, nowMillis);
+                }
+                offset = setEnd;
+            }
+
+            // The sequence number counts the data records sent before this message (RFC 7011 section 3.1)
+            if (sensor.expectedSequence >= 0) {
+                long gap = (sequence - sensor.expectedSequence) & 0xFFFFFFFFL;
+                if (gap != 0 && gap < 0x80000000L) {
+                    sensor.lostRecords += gap;
+                    lostRecords += gap;
+                }
+            }
+            sensor.expectedSequence = (sequence + messageRecords) & 0xFFFFFFFFL;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            malformedMessages++;
+        }
+    }
+
+    private static void parseTemplates(Sensor sensor, ByteBuffer buffer, int offset, int end) {
+        while (offset + 4 <= end) {
+            int templateId = buffer.getShort(offset) & 0xFFFF;
+            int fieldCount = buffer.getShort(offset + 2) & 0xFFFF;
+            offset += 4;
+            if (templateId < 256)
+                return; // padding
+            int[] ids = new int[fieldCount];
+            int[] lengths = new int[fieldCount];
+            for (int i = 0; i < fieldCount; i++) {
+                int id = buffer.getShort(offset) & 0xFFFF;
+                lengths[i] = buffer.getShort(offset + 2) & 0xFFFF;
+                offset += 4;
+                if ((id & 0x8000) != 0) {
+                    // Enterprise-specific element: skip its enterprise number, never interpreted
+                    ids[i] = -1;
+                    offset += 4;
+                } else {
+                    ids[i] = id;
+                }
+            }
+            if (fieldCount == 0)
+                sensor.templates.remove(templateId); // withdrawal
+            else
+                sensor.templates.put(templateId, new Template(ids, lengths));
+        }
+    }
+
+    /**
+     * Decodes the records of one data set.
+     * @return Records decoded
+     */
+    private int parseRecords(Sensor sensor, Template template, ByteBuffer buffer, int offset, int end, long nowMillis) {
+        int count = 0;
+        int minLength = template.minLength;
+        while (offset + minLength <= end && minLength > 0) {
+            FlowKey key = new FlowKey();
+            long octets = 0, packets = 0, startMillis = 0, endMillis = 0, durationMillis = -1;
+            int flags = 0, srcAsn = 0, dstAsn = 0;
+            for (int i = 0; i < template.ids.length; i++) {
+                int length = template.lengths[i];
+                if (length == VARIABLE_LENGTH) {
+                    length = buffer.get(offset++) & 0xFF;
+                    if (length == 255) {
+                        length = buffer.getShort(offset) & 0xFFFF;
+                        offset += 2;
+                    }
+                }
+                switch (template.ids[i]) {
+                    case IpfixExporter.IE_SOURCE_IPV4_ADDRESS -> key.srcLow = 0xFFFFL << 32 | readUnsigned(buffer, offset, length);
+                    case IpfixExporter.IE_DESTINATION_IPV4_ADDRESS -> key.dstLow = 0xFFFFL << 32 | readUnsigned(buffer, offset, length);
+                    case IpfixExporter.IE_SOURCE_IPV6_ADDRESS -> {
+                        key.srcHigh = buffer.getLong(offset);
+                        key.srcLow = buffer.getLong(offset + 8);
+                    }
+                    case IpfixExporter.IE_DESTINATION_IPV6_ADDRESS -> {
+                        key.dstHigh = buffer.getLong(offset);
+                        key.dstLow = buffer.getLong(offset + 8);
+                    }
+                    case IpfixExporter.IE_SOURCE_TRANSPORT_PORT -> key.srcPort = (int) readUnsigned(buffer, offset, length);
+                    case IpfixExporter.IE_DESTINATION_TRANSPORT_PORT -> key.dstPort = (int) readUnsigned(buffer, offset, length);
+                    case IpfixExporter.IE_PROTOCOL_IDENTIFIER -> key.protocol = (int) readUnsigned(buffer, offset, length);
+                    case IpfixExporter.IE_TCP_CONTROL_BITS -> flags = (int) readUnsigned(buffer, offset, length) & 0xFF;
+                    case IpfixExporter.IE_OCTET_DELTA_COUNT -> octets = readUnsigned(buffer, offset, length);
+                    case IpfixExporter.IE_PACKET_DELTA_COUNT -> packets = readUnsigned(buffer, offset, length);
+                    case IpfixExporter.IE_FLOW_START_MILLISECONDS -> startMillis = readUnsigned(buffer, offset, length);
+                    case IpfixExporter.IE_FLOW_END_MILLISECONDS -> endMillis = readUnsigned(buffer, offset, length);
+                    case IpfixExporter.IE_FLOW_DURATION_MILLISECONDS -> durationMillis = readUnsigned(buffer, offset, length);
+                    case IpfixExporter.IE_BGP_SOURCE_AS_NUMBER -> srcAsn = (int) readUnsigned(buffer, offset, length);
+                    case IpfixExporter.IE_BGP_DESTINATION_AS_NUMBER -> dstAsn = (int) readUnsigned(buffer, offset, length);
+                    default -> {
+                        // Not part of the flow view
+                    }
+                }
+                offset += length;
+            }
+            if (offset > end)
+                break;
+            if (startMillis == 0)
+                startMillis = durationMillis >= 0 ? endMillis - durationMillis : endMillis;
+            merge(sensor, key, octets, packets, startMillis, endMillis, flags, srcAsn, dstAsn, nowMillis);
+            count++;
+        }
+        sensor.records += count;
+        records += count;
+        return count;
+    }
+
+    private static long readUnsigned(ByteBuffer buffer, int offset, int length) {
+        long value = 0;
+        for (int i = 0; i < Math.min(length, 8); i++)
+            value = value << 8 | (buffer.get(offset + i) & 0xFF);
+        return value;
+    }
+
+    private void merge(Sensor sensor, FlowKey key, long octets, long packets, long startMillis, long endMillis, int flags,
+                       int srcAsn, int dstAsn, long nowMillis) {
+        MergedFlow flow = flows.get(key);
+        if (flow == null) {
+            if (flows.size() >= maxFlows) {
+                Iterator<MergedFlow> eldest = flows.values().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+            flow = new MergedFlow(key, startMillis);
+            flows.put(key, flow);
+        }
+        flow.add(sensor.id, octets, packets, startMillis, endMillis, flags, nowMillis);
+        if (srcAsn != 0)
+            flow.srcAsn = srcAsn;
+        if (dstAsn != 0)
+            flow.dstAsn = dstAsn;
+    }
+
+    /**
+     * Drops the flows not updated for the retention time.
+     */
+    private void expire(long nowMillis) {
+        Iterator<MergedFlow> iterator = flows.values().iterator();
+        while (iterator.hasNext()) {
+            MergedFlow flow = iterator.next();
+            if (nowMillis - flow.updatedMillis < retentionMillis)
+                break;
+            iterator.remove();
+        }
+    }
+
+    private static String formatExporter(SocketAddress address) {
+        if (address instanceof InetSocketAddress inet)
+            return (inet.getAddress() == null ? inet.getHostString() : inet.getAddress().getHostAddress()) + ":" + inet.getPort();
+        return String.valueOf(address);
+    }
+
+    /**
+     * @param limit Most flows returned
+     * @return The merged flows with the most bytes, largest first
+     */
+    public synchronized List<FlowSummary> getTopFlows(int limit) {
+        expire(System.currentTimeMillis());
+        List<MergedFlow> all = new ArrayList<>(flows.values());
+        all.sort(Comparator.comparingLong(MergedFlow::getBytes).reversed());
+        List<FlowSummary> top = new ArrayList<>(Math.min(limit, all.size()));
+        for (MergedFlow flow : all.subList(0, Math.min(limit, all.size())))
+            top.add(flow.summarize());
+        return top;
+    }
+
+    /**
+     * @return One line of statistics per sensor, in order of first contact
+     */
+    public synchronized List<SensorSummary> getSensors() {
+        List<SensorSummary> list = new ArrayList<>(sensors.size());
+        for (Sensor sensor : sensors.values())
+            list.add(new SensorSummary(sensor.exporter, sensor.domain, sensor.messages, sensor.records, sensor.lostRecords,
+                sensor.templates.size(), sensor.lastSeenMillis));
+        return list;
+    }
+
+    /**
+     * @return Merged flows in the view
+     */
+    public synchronized int getFlowCount() {
+        return flows.size();
+    }
+
+    public synchronized long getMessages() {
+        return messages;
+    }
+
+    public synchronized long getRecords() {
+        return records;
+    }
+
+    /**
+     * @return Records missing according to the sequence numbers
+     */
+    public synchronized long getLostRecords() {
+        return lostRecords;
+    }
+
+    /**
+     * @return Data sets skipped because their template was not known yet
+     */
+    public synchronized long getUnknownTemplateSets() {
+        return unknownTemplateSets;
+    }
+
+    public synchronized long getMalformedMessages() {
+        return malformedMessages;
+    }
+
+    /**
+     * A template: element ids (-1 for enterprise-specific ones) and field lengths.
+     */
+    private static final class Template {
+        final int[] ids;
+        final int[] lengths;
+        final int minLength;
+
+        Template(int[] ids, int[] lengths) {
+            this.ids = ids;
+            this.lengths = lengths;
+            int length = 0;
+            for (int fieldLength : lengths)
+                length += fieldLength == VARIABLE_LENGTH ? 1 : fieldLength;
+            this.minLength = length;
+        }
+    }
+
+    /**
+     * State of one exporter and observation domain.
+     */
+    private final class Sensor {
+        final int id = sensors.size();
+        final String exporter;
+        final long domain;
+        final Map<Integer, Template> templates = new HashMap<>();
+        long expectedSequence = -1;
+        long messages;
+        long records;
+        long lostRecords;
+        long lastSeenMillis;
+
+        Sensor(String exporter, long domain) {
+            this.exporter = exporter;
+            this.domain = domain;
+        }
+    }
+
+    /**
+     * 5-tuple of a merged flow; IPv4 addresses are IPv4-mapped.
+     */
+    private static final class FlowKey {
+        long srcHigh;
+        long srcLow;
+        long dstHigh;
+        long dstLow;
+        int srcPort;
+        int dstPort;
+        int protocol;
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof FlowKey k && srcHigh == k.srcHigh && srcLow == k.srcLow && dstHigh == k.dstHigh
+                && dstLow == k.dstLow && srcPort == k.srcPort && dstPort == k.dstPort && protocol == k.protocol;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(srcHigh, srcLow, dstHigh, dstLow, srcPort, dstPort, protocol);
+        }
+    }
+
+    /**
+     * A flow merged from the records of one or more sensors.
+     */
+    private static final class MergedFlow {
+        final FlowKey key;
+        long startMillis;
+        long endMillis;
+        long updatedMillis;
+        int tcpFlags;
+        int srcAsn;
+        int dstAsn;
+
+        // Totals per sensor, indexed like sensorIds
+        int[] sensorIds = new int[1];
+        long[] sensorBytes = new long[1];
+        long[] sensorPackets = new long[1];
+        int sensorCount = 0;
+
+        // Largest per-sensor totals, the flow's counts
+        long bytes;
+        long packets;
+
+        MergedFlow(FlowKey key, long startMillis) {
+            this.key = key;
+            this.startMillis = startMillis;
+        }
+
+        void add(int sensorId, long octets, long packetCount, long start, long end, int flags, long nowMillis) {
+            int slot = 0;
+            while (slot < sensorCount && sensorIds[slot] != sensorId)
+                slot++;
+            if (slot == sensorCount) {
+                if (sensorCount == sensorIds.length) {
+                    sensorIds = Arrays.copyOf(sensorIds, sensorCount * 2);
+                    sensorBytes = Arrays.copyOf(sensorBytes, sensorCount * 2);
+                    sensorPackets = Arrays.copyOf(sensorPackets, sensorCount * 2);
+                }
+                sensorIds[slot] = sensorId;
+                sensorCount++;
+            }
+            sensorBytes[slot] += octets;
+            sensorPackets[slot] += packetCount;
+            bytes = Math.max(bytes, sensorBytes[slot]);
+            packets = Math.max(packets, sensorPackets[slot]);
+            startMillis = Math.min(startMillis, start);
+            endMillis = Math.max(endMillis, end);
+            tcpFlags |= flags;
+            updatedMillis = nowMillis;
+        }
+
+        long getBytes() {
+            return bytes;
+        }
+
+        FlowSummary summarize() {
+            return new FlowSummary(IpAddresses.format(key.srcHigh, key.srcLow), key.srcPort,
+                IpAddresses.format(key.dstHigh, key.dstLow), key.dstPort, key.protocol,
+                bytes, packets, startMillis, endMillis, tcpFlags, srcAsn, dstAsn, sensorCount);
+        }
+    }
+
+    /**
+     * Immutable copy of a merged flow.
+     */
+    public static final class FlowSummary {
+        private final String source;
+        private final int sourcePort;
+        private final String destination;
+        private final int destinationPort;
+        private final int protocol;
+        private final long bytes;
+        private final long packets;
+        private final long startMillis;
+        private final long endMillis;
+        private final int tcpFlags;
+        private final int sourceAsn;
+        private final int destinationAsn;
+        private final int sensors;
+
+        FlowSummary(String source, int sourcePort, String destination, int destinationPort, int protocol,
+                    long bytes, long packets, long startMillis, long endMillis, int tcpFlags,
+                    int sourceAsn, int destinationAsn, int sensors) {
+            this.source = source;
+            this.sourcePort = sourcePort;
+            this.destination = destination;
+            this.destinationPort = destinationPort;
+            this.protocol = protocol;
+            this.bytes = bytes;
+            this.packets = packets;
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+            this.tcpFlags = tcpFlags;
+            this.sourceAsn = sourceAsn;
+            this.destinationAsn = destinationAsn;
+            this.sensors = sensors;
+        }
+
+        public String getSource() { return source; }
+        public int getSourcePort() { return sourcePort; }
+        public String getDestination() { return destination; }
+        public int getDestinationPort() { return destinationPort; }
+        public int getProtocol() { return protocol; }
+        public long getBytes() { return bytes; }
+        public long getPackets() { return packets; }
+        public long getStartMillis() { return startMillis; }
+        public long getEndMillis() { return endMillis; }
+        public int getTcpFlags() { return tcpFlags; }
+
+        /**
+         * @return AS numbers reported by the sensors, 0 if unknown
+         */
+        public long getSourceAsn() { return Integer.toUnsignedLong(sourceAsn); }
+        public long getDestinationAsn() { return Integer.toUnsignedLong(destinationAsn); }
+
+        /**
+         * @return Sensors that reported the flow
+         */
+        public int getSensors() { return sensors; }
+    }
+
+    /**
+     * Immutable statistics of one sensor.
+     */
+    public static final class SensorSummary {
+        private final String exporter;
+        private final long domain;
+        private final long messages;
+        private final long records;
+        private final long lostRecords;
+        private final int templates;
+        private final long lastSeenMillis;
+
+        SensorSummary(String exporter, long domain, long messages, long records, long lostRecords, int templates, long lastSeenMillis) {
+            this.exporter = exporter;
+            this.domain = domain;
+            this.messages = messages;
+            this.records = records;
+            this.lostRecords = lostRecords;
+            this.templates = templates;
+            this.lastSeenMillis = lastSeenMillis;
+        }
+
+        /**
+         * @return Exporter address and port
+         */
+        public String getExporter() { return exporter; }
+        public long getDomain() { return domain; }
+        public long getMessages() { return messages; }
+        public long getRecords() { return records; }
+        public long getLostRecords() { return lostRecords; }
+        public int getTemplates() { return templates; }
+        public long getLastSeenMillis() { return lastSeenMillis; }
+    }
+}
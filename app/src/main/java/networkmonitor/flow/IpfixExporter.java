@@ -0,0 +1,309 @@
+package networkmonitor.flow;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import networkmonitor.geo.GeoIpCache;
+
+/**
+ * Exports the ended flows of a FlowTable as IPFIX (RFC 7011) over UDP. Records are packed into
+ * datagrams of at most the configured MTU and sent when a datagram is full or its oldest
+ * record has waited for the flush interval, so a busy sensor sends about one datagram per
+ * 30 flows. The two templates (IPv4 and IPv6) use reduced-size encoding for the counters and
+ * the duration, 47 and 63 bytes per record; over UDP they are resent periodically so a
+ * collector started later learns them. IPv4 records also carry the source and destination
+ * AS numbers from the GeoIP database, 0 when unknown.
+ * <p>
+ * The socket is non-blocking and a datagram that cannot be sent is counted and dropped; the
+ * collector sees the gap in the sequence numbers. Used by the capture thread only.
+ */
+public final class IpfixExporter implements FlowTable.Listener {
+    // Logger for the exporter setup and send failures
+    private static final Logger LOGGER = Logger.getLogger(IpfixExporter.class.getName());
+
+    // Message and set headers (RFC 7011 sections 3.1 and 3.3.2)
+    static final int VERSION = 10;
+    static final int MESSAGE_HEADER_BYTES = 16;
+    static final int SET_HEADER_BYTES = 4;
+    static final int TEMPLATE_SET_ID = 2;
+
+    // Template ids of the data sets
+    public static final int TEMPLATE_IPV4 = 256;
+    public static final int TEMPLATE_IPV6 = 257;
+
+    // Information elements (IANA ids)
+    static final int IE_OCTET_DELTA_COUNT = 1;
+    static final int IE_PACKET_DELTA_COUNT = 2;
+    static final int IE_PROTOCOL_IDENTIFIER = 4;
+    static final int IE_TCP_CONTROL_BITS = 6;
+    static final int IE_SOURCE_TRANSPORT_PORT = 7;
+    static final int IE_SOURCE_IPV4_ADDRESS = 8;
+    static final int IE_DESTINATION_TRANSPORT_PORT = 11;
+    static final int IE_DESTINATION_IPV4_ADDRESS = 12;
+    static final int IE_BGP_SOURCE_AS_NUMBER = 16;
+    static final int IE_BGP_DESTINATION_AS_NUMBER = 17;
+    static final int IE_SOURCE_IPV6_ADDRESS = 27;
+    static final int IE_DESTINATION_IPV6_ADDRESS = 28;
+    static final int IE_FLOW_END_REASON = 136;
+    static final int IE_FLOW_START_MILLISECONDS = 152;
+    static final int IE_FLOW_END_MILLISECONDS = 153;
+    static final int IE_FLOW_DURATION_MILLISECONDS = 161;
+
+    // Field specifiers of the templates as (id, length) pairs, in record order
+    private static final int[] IPV4_FIELDS = {
+        IE_SOURCE_IPV4_ADDRESS, 4, IE_DESTINATION_IPV4_ADDRESS, 4,
+        IE_SOURCE_TRANSPORT_PORT, 2, IE_DESTINATION_TRANSPORT_PORT, 2, IE_PROTOCOL_IDENTIFIER, 1, IE_TCP_CONTROL_BITS, 1,
+        IE_OCTET_DELTA_COUNT, 8, IE_PACKET_DELTA_COUNT, 4,
+        IE_FLOW_END_MILLISECONDS, 8, IE_FLOW_DURATION_MILLISECONDS, 4, IE_FLOW_END_REASON, 1,
+        IE_BGP_SOURCE_AS_NUMBER, 4, IE_BGP_DESTINATION_AS_NUMBER, 4};
+    private static final int[] IPV6_FIELDS = {
+        IE_SOURCE_IPV6_ADDRESS, 16, IE_DESTINATION_IPV6_ADDRESS, 16,
+        IE_SOURCE_TRANSPORT_PORT, 2, IE_DESTINATION_TRANSPORT_PORT, 2, IE_PROTOCOL_IDENTIFIER, 1, IE_TCP_CONTROL_BITS, 1,
+        IE_OCTET_DELTA_COUNT, 8, IE_PACKET_DELTA_COUNT, 4,
+        IE_FLOW_END_MILLISECONDS, 8, IE_FLOW_DURATION_MILLISECONDS, 4, IE_FLOW_END_REASON, 1};
+    private static final int IPV4_RECORD_BYTES = recordLength(IPV4_FIELDS);
+    private static final int IPV6_RECORD_BYTES = recordLength(IPV6_FIELDS);
+
+    // Configuration
+    private final InetSocketAddress collector;
+    private final long observationDomain;
+    private final long flushIntervalMillis;
+    private final long templateIntervalMillis;
+    private final GeoIpCache geoIp;
+
+    // Datagram being filled: the open data set starts at setStart, 0 if none
+    private final ByteBuffer message;
+    private int setTemplate = 0;
+    private int setStart = 0;
+    private int messageRecords = 0;
+    private long messageStartMillis = 0;
+
+    // Sequence number: data records sent before the current message, modulo 2^32
+    private long sequence = 0;
+    private long nextTemplatesMillis = Long.MIN_VALUE;
+
+    private DatagramChannel channel;
+
+    // Statistics
+    private final AtomicLong recordsExported = new AtomicLong();
+    private final AtomicLong messagesSent = new AtomicLong();
+    private final AtomicLong messagesDropped = new AtomicLong();
+
+    /**
+     * Creates the exporter; the socket is opened on the first send.
+     * @param collector Address of the collector
+     * @param observationDomain Observation domain id, tells several sensors behind one address apart
+     * @param mtu Largest datagram, in bytes
+     * @param flushIntervalMillis Longest time a record waits in a partly filled datagram
+     * @param templateIntervalSeconds Seconds between two template refreshes
+     * @param geoIp AS number lookups, or null to export 0
+     */
+    public IpfixExporter(InetSocketAddress collector, long observationDomain, int mtu, long flushIntervalMillis, int templateIntervalSeconds,
+                         GeoIpCache geoIp) {
+        this.collector = collector;
+        this.observationDomain = observationDomain & 0xFFFFFFFFL;
+        this.flushIntervalMillis = Math.max(1, flushIntervalMillis);
+        this.templateIntervalMillis = TimeUnit.SECONDS.toMillis(Math.max(1, templateIntervalSeconds));
+        this.geoIp = geoIp;
+        int size = Math.max(mtu, MESSAGE_HEADER_BYTES + templateSetLength() + SET_HEADER_BYTES + IPV6_RECORD_BYTES);
+        message = ByteBuffer.allocate(Math.min(size, 65535));
+    }
+
+    /**
+     * Creates the exporter from the system properties networkmonitor.ipfix.collector
+     * (host:port, required), .domain (1), .mtu (1400), .flushMillis (1000) and
+     * .templateSeconds (60); AS numbers come from the default GeoIP database.
+     * @return The exporter, or null if no collector is configured
+     */
+    public static IpfixExporter fromSystemProperties() {
+        String target = System.getProperty("networkmonitor.ipfix.collector");
+        if (target == null || target.isBlank())
+            return null;
+        int colon = target.lastIndexOf(':');
+        if (colon <= 0) {
+            LOGGER.log(Level.WARNING, "Invalid IPFIX collector {0}, expected host:port; flow export is off.", target);
+            return null;
+        }
+        String host = target.substring(0, colon);
+        if (host.startsWith("[") && host.endsWith("]"))
+            host = host.substring(1, host.length() - 1);
+        return new IpfixExporter(
+            new InetSocketAddress(host, Integer.parseInt(target.substring(colon + 1))),
+            Long.getLong("networkmonitor.ipfix.domain", 1L),
+            Integer.getInteger("networkmonitor.ipfix.mtu", 1400),
+            Long.getLong("networkmonitor.ipfix.flushMillis", 1000L),
+            Integer.getInteger("networkmonitor.ipfix.templateSeconds", 60),
+            GeoIpCache.forDefaultDatabase());
+    }
+
+    private static int recordLength(int[] fields) {
+        int length = 0;
+        for (int i = 1; i < fields.length; i += 2)
+            length += fields[i];
+        return length;
+    }
+
+    private static int templateSetLength() {
+        return SET_HEADER_BYTES + 4 + IPV4_FIELDS.length * 2 + 4 + IPV6_FIELDS.length * 2;
+    }
+
+    @Override
+    public void flowEnded(FlowTable table, int flow, int reason) {
+        long now = System.currentTimeMillis();
+        boolean ipV6 = table.isIpV6(flow);
+        int template = ipV6 ? TEMPLATE_IPV6 : TEMPLATE_IPV4;
+        int recordBytes = ipV6 ? IPV6_RECORD_BYTES : IPV4_RECORD_BYTES;
+
+        if (message.position() == 0)
+            beginMessage(now);
+        int needed = recordBytes + (template == setTemplate ? 0 : SET_HEADER_BYTES);
+        if (message.remaining() < needed) {
+            send();
+            beginMessage(now);
+        }
+        if (template != setTemplate) {
+            closeSet();
+            setTemplate = template;
+            setStart = message.position();
+            message.putShort((short) template).putShort((short) 0);
+        }
+
+        if (ipV6) {
+            message.putLong(table.getSrcHigh(flow)).putLong(table.getSrcLow(flow));
+            message.putLong(table.getDstHigh(flow)).putLong(table.getDstLow(flow));
+        } else {
+            message.putInt((int) table.getSrcLow(flow)).putInt((int) table.getDstLow(flow));
+        }
+        message.putShort((short) table.getSrcPort(flow));
+        message.putShort((short) table.getDstPort(flow));
+        message.put((byte) table.getProtocol(flow));
+        message.put((byte) table.getTcpFlags(flow));
+        message.putLong(table.getBytes(flow));
+        message.putInt((int) Math.min(table.getPackets(flow), 0xFFFFFFFFL));
+        message.putLong(table.getEndMillis(flow));
+        message.putInt((int) Math.min(table.getEndMillis(flow) - table.getStartMillis(flow), 0xFFFFFFFFL));
+        message.put((byte) reason);
+        if (!ipV6) {
+            message.putInt(geoIp == null ? 0 : geoIp.getAsn((int) table.getSrcLow(flow)));
+            message.putInt(geoIp == null ? 0 : geoIp.getAsn((int) table.getDstLow(flow)));
+        }
+        if (messageRecords++ == 0)
+            messageStartMillis = now;
+    }
+
+    /**
+     * Sends the pending records once they have waited for the flush interval, and a
+     * template-only message when the templates are due and nothing else is pending.
+     * @param nowMillis Wall-clock time
+     */
+    public void tick(long nowMillis) {
+        if (messageRecords > 0 && nowMillis - messageStartMillis >= flushIntervalMillis) {
+            send();
+        } else if (messageRecords == 0 && nowMillis >= nextTemplatesMillis) {
+            if (message.position() == 0)
+                beginMessage(nowMillis);
+            send();
+        }
+    }
+
+    /**
+     * Sends the pending records now, e.g. when capture stops.
+     */
+    public void flush() {
+        if (messageRecords > 0)
+            send();
+    }
+
+    /**
+     * Starts a message, with the template set first when the templates are due.
+     */
+    private void beginMessage(long nowMillis) {
+        message.clear();
+        message.position(MESSAGE_HEADER_BYTES);
+        setTemplate = 0;
+        messageRecords = 0;
+        if (nowMillis >= nextTemplatesMillis) {
+            nextTemplatesMillis = nowMillis + templateIntervalMillis;
+            message.putShort((short) TEMPLATE_SET_ID).putShort((short) templateSetLength());
+            putTemplate(TEMPLATE_IPV4, IPV4_FIELDS);
+            putTemplate(TEMPLATE_IPV6, IPV6_FIELDS);
+        }
+    }
+
+    private void putTemplate(int templateId, int[] fields) {
+        message.putShort((short) templateId).putShort((short) (fields.length / 2));
+        for (int field : fields)
+            message.putShort((short) field);
+    }
+
+    private void closeSet() {
+        if (setTemplate != 0)
+            message.putShort(setStart + 2, (short) (message.position() - setStart));
+        setTemplate = 0;
+    }
+
+    /**
+     * Completes the header of the current message and sends it without blocking.
+     */
+    private void send() {
+        closeSet();
+        int length = message.position();
+        message.putShort(0, (short) VERSION);
+        message.putShort(2, (short) length);
+        message.putInt(4, (int) (System.currentTimeMillis() / 1000));
+        message.putInt(8, (int) sequence);
+        message.putInt(12, (int) observationDomain);
+        message.flip();
+        int records = messageRecords;
+        sequence = (sequence + records) & 0xFFFFFFFFL;
+        messageRecords = 0;
+        try {
+            if (channel == null) {
+                channel = DatagramChannel.open();
+                channel.configureBlocking(false);
+                channel.connect(collector);
+                LOGGER.info(String.format("event=ipfix_export collector=%s domain=%d mtu=%d",
+                    collector, observationDomain, message.capacity()));
+            }
+            if (channel.write(message) == length) {
+                messagesSent.incrementAndGet();
+                recordsExported.addAndGet(records);
+            } else {
+                messagesDropped.incrementAndGet();
+            }
+        } catch (IOException e) {
+            // A connected UDP socket reports an unreachable collector on a later send; keep going
+            if (messagesDropped.getAndIncrement() == 0)
+                LOGGER.log(Level.WARNING, "IPFIX export to {0} failed: {1}", new Object[]{collector, e.getMessage()});
+        } finally {
+            message.clear();
+        }
+    }
+
+    /**
+     * @return Flow records sent
+     */
+    public long getRecordsExported() {
+        return recordsExported.get();
+    }
+
+    /**
+     * @return IPFIX messages sent
+     */
+    public long getMessagesSent() {
+        return messagesSent.get();
+    }
+
+    /**
+     * @return IPFIX messages dropped because the socket was full or the send failed
+     */
+    public long getMessagesDropped() {
+        return messagesDropped.get();
+    }
+}
@@ -0,0 +1,167 @@
+package networkmonitor.geo;
+
+import networkmonitor.util.ProbeIndex;
+
+/**
+ * Small LRU cache of GeoIpDatabase lookups: address to range index, including misses. Busy
+ * addresses repeat a lot, so most lookups end after one hash probe instead of the ~20 steps
+ * of the binary search over the mapped file. Entries live in primitive arrays with an
+ * open-addressing index and an LRU list, so lookups allocate nothing.
+ * <p>
+ * Not thread-safe: each thread that looks addresses up owns its cache.
+ */
+public final class GeoIpCache {
+    private final GeoIpDatabase database;
+    private final int capacity;
+
+    // Entries: address, range index (-1 = not in the database) and hash of the address
+    private final int[] addresses;
+    private final int[] ranges;
+    private final long[] hashes;
+
+    // Open-addressing index from hash to entry
+    private final ProbeIndex index;
+
+    // LRU list, most recent at the head
+    private final int[] previous;
+    private final int[] next;
+    private int head = -1;
+    private int tail = -1;
+    private int size = 0;
+
+    // Statistics
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * Creates an empty cache.
+     * @param database The database behind the cache
+     * @param capacity Addresses kept
+     */
+    public GeoIpCache(GeoIpDatabase database, int capacity) {
+        this.database = database;
+        this.capacity = Math.max(1, capacity);
+        addresses = new int[this.capacity];
+        ranges = new int[this.capacity];
+        hashes = new long[this.capacity];
+        index = new ProbeIndex(this.capacity * 2);
+        previous = new int[this.capacity];
+        next = new int[this.capacity];
+    }
+
+    /**
+     * Creates a cache of the default database with -Dnetworkmonitor.geoip.cacheSize entries (4096).
+     * @return The cache, or null if there is no database
+     */
+    public static GeoIpCache forDefaultDatabase() {
+        GeoIpDatabase database = GeoIpDatabase.getDefault();
+        return database == null ? null : new GeoIpCache(database, Integer.getInteger("networkmonitor.geoip.cacheSize", 4096));
+    }
+
+    /**
+     * @return The database behind the cache, for the accessors of a range
+     */
+    public GeoIpDatabase getDatabase() {
+        return database;
+    }
+
+    /**
+     * Finds the range containing an address. Allocation-free.
+     * @param address IPv4 address
+     * @return The range index, or -1 if no range contains the address
+     */
+    public int findRange(int address) {
+        int hash = hash(address);
+        int entry;
+        for (int slot = index.slot(hash); (entry = index.get(slot)) >= 0; slot = index.next(slot)) {
+            if (addresses[entry] == address) {
+                hits++;
+                moveToHead(entry);
+                return ranges[entry];
+            }
+        }
+
+        misses++;
+        int range = database.findRange(address);
+        if (size == capacity) {
+            entry = tail;
+            unlink(entry);
+            index.remove(entry, hashes);
+        } else {
+            entry = size++;
+        }
+        addresses[entry] = address;
+        ranges[entry] = range;
+        hashes[entry] = hash;
+        // The eviction may have shifted the probe chain, so probe again from the home slot
+        index.insert(hash, entry);
+        linkAtHead(entry);
+        return range;
+    }
+
+    /**
+     * @param address IPv4 address
+     * @return The AS number of the address, 0 if unknown
+     */
+    public int getAsn(int address) {
+        int range = findRange(address);
+        return range < 0 ? 0 : database.getAsn(range);
+    }
+
+    /**
+     * @param address IPv4 address
+     * @return "country ASnumber name" of the address, or "" if unknown
+     */
+    public String describe(int address) {
+        return database.describe(findRange(address));
+    }
+
+    private static int hash(int address) {
+        int h = address * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void moveToHead(int entry) {
+        if (entry == head)
+            return;
+        unlink(entry);
+        linkAtHead(entry);
+    }
+
+    private void unlink(int entry) {
+        int before = previous[entry];
+        int after = next[entry];
+        if (before >= 0)
+            next[before] = after;
+        else
+            head = after;
+        if (after >= 0)
+            previous[after] = before;
+        else
+            tail = before;
+    }
+
+    private void linkAtHead(int entry) {
+        previous[entry] = -1;
+        next[entry] = head;
+        if (head >= 0)
+            previous[head] = entry;
+        head = entry;
+        if (tail < 0)
+            tail = entry;
+    }
+
+    /**
+     * @return Lookups answered from the cache
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return Lookups that searched the database
+     */
+    public long getMisses() {
+        return misses;
+    }
+}
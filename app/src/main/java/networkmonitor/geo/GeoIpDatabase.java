@@ -0,0 +1,334 @@
+package networkmonitor.geo;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import networkmonitor.util.IpAddresses;
+
+/**
+ * Read-only IPv4 range database mapping an address to its country and autonomous system.
+ * The binary file is compiled once from a CSV/TSV export and memory-mapped, so opening it
+ * costs no parsing and the pages are shared with the OS cache. Ranges are stored as sorted
+ * start and end int arrays (sign bit flipped, so signed order is address order). A /16 index
+ * built at open time (256 KB on the heap) narrows a lookup to the ranges starting in the
+ * address's /16, which a branch-free binary search then finishes in a few steps.
+ * Organization names are decoded only when asked for.
+ * <p>
+ * A lookup is thread-safe and allocation-free. Hot paths put a GeoIpCache in front of it.
+ * IPv6 is not covered.
+ */
+public final class GeoIpDatabase {
+    // Logger for loading and compiling
+    private static final Logger LOGGER = Logger.getLogger(GeoIpDatabase.class.getName());
+
+    // File layout: header, then starts, ends, asns, organizations (int[n] each), countries
+    // (short[n], padded to 4 bytes), organization offsets (int[m + 1]) and UTF-8 names
+    private static final int MAGIC = 0x4E4D4749; // "NMGI"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+
+    // Lazily opened database of -Dnetworkmonitor.geoip.file
+    private static final class DefaultHolder {
+        static final GeoIpDatabase INSTANCE = openDefault();
+    }
+
+    private final int size;
+    private final IntBuffer starts;
+    private final IntBuffer ends;
+    private final IntBuffer asns;
+    private final IntBuffer organizations;
+    private final ShortBuffer countries;
+    private final IntBuffer organizationOffsets;
+    private final ByteBuffer organizationBytes;
+
+    // First range starting at or after each /16, indexed by the top 16 address bits, plus the end
+    private final int[] blockFirst = new int[(1 << 16) + 1];
+
+    private GeoIpDatabase(MappedByteBuffer map) throws IOException {
+        if (map.capacity() < HEADER_BYTES || map.getInt(0) != MAGIC || map.getInt(4) != VERSION)
+            throw new IOException("Not a GeoIP database of version " + VERSION);
+        size = map.getInt(8);
+        int organizationCount = map.getInt(12);
+        int nameBytes = map.getInt(16);
+
+        int offset = HEADER_BYTES;
+        starts = map.slice(offset, size * 4).asIntBuffer();
+        offset += size * 4;
+        ends = map.slice(offset, size * 4).asIntBuffer();
+        offset += size * 4;
+        asns = map.slice(offset, size * 4).asIntBuffer();
+        offset += size * 4;
+        organizations = map.slice(offset, size * 4).asIntBuffer();
+        offset += size * 4;
+        countries = map.slice(offset, size * 2).asShortBuffer();
+        offset += (size * 2 + 3) & ~3;
+        organizationOffsets = map.slice(offset, (organizationCount + 1) * 4).asIntBuffer();
+        offset += (organizationCount + 1) * 4;
+        organizationBytes = map.slice(offset, nameBytes);
+
+        int block = 0;
+        for (int i = 0; i < size; i++) {
+            int startBlock = (starts.get(i) ^ Integer.MIN_VALUE) >>> 16;
+            while (block <= startBlock)
+                blockFirst[block++] = i;
+        }
+        while (block < blockFirst.length)
+            blockFirst[block++] = size;
+    }
+
+    /**
+     * Maps a compiled database file.
+     * @param file The file written by compile()
+     * @return The database
+     * @throws IOException If the file cannot be read or is not a database
+     */
+    public static GeoIpDatabase open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return new GeoIpDatabase(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Truncated GeoIP database " + file, e);
+        }
+    }
+
+    /**
+     * @return The database of -Dnetworkmonitor.geoip.file (default geoip.bin), opened on the
+     *         first call, or null if the file does not exist or cannot be read
+     */
+    public static GeoIpDatabase getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    private static GeoIpDatabase openDefault() {
+        Path file = Path.of(System.getProperty("networkmonitor.geoip.file", "geoip.bin"));
+        long start = System.nanoTime();
+        try {
+            GeoIpDatabase database = open(file);
+            LOGGER.info(String.format("event=geoip_loaded file=%s ranges=%d load_ms=%d",
+                file, database.size(), (System.nanoTime() - start) / 1_000_000));
+            return database;
+        } catch (NoSuchFileException e) {
+            LOGGER.log(Level.INFO, "No GeoIP database at {0}, owner lookups are off.", file);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot open the GeoIP database " + file, e);
+        }
+        return null;
+    }
+
+    /**
+     * Finds the range containing an address. Thread-safe and allocation-free.
+     * @param address IPv4 address
+     * @return The range index, or -1 if no range contains the address
+     */
+    public int findRange(int address) {
+        int key = address ^ Integer.MIN_VALUE;
+        // Candidates: the last range starting before this /16, and the ones starting in it
+        int block = address >>> 16;
+        int low = Math.max(0, blockFirst[block] - 1);
+        int n = blockFirst[block + 1] - low;
+        if (n <= 0)
+            return -1;
+        // Halve the candidates without a data-dependent branch; ends on the last start <= key
+        while (n > 1) {
+            int half = n >>> 1;
+            low = starts.get(low + half) <= key ? low + half : low;
+            n -= half;
+        }
+        return starts.get(low) <= key && key <= ends.get(low) ? low : -1;
+    }
+
+    /**
+     * @return Number of ranges
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param range Index returned by findRange()
+     * @return Autonomous system number, 0 if unknown or not routed
+     */
+    public int getAsn(int range) {
+        return asns.get(range);
+    }
+
+    /**
+     * @param range Index returned by findRange()
+     * @return ISO 3166 country code, or "" if unknown
+     */
+    public String getCountry(int range) {
+        short code = countries.get(range);
+        if (code == 0)
+            return "";
+        return new String(new char[]{(char) ((code >>> 8) & 0xFF), (char) (code & 0xFF)});
+    }
+
+    /**
+     * @param range Index returned by findRange()
+     * @return Name of the autonomous system, or "" if unknown
+     */
+    public String getOrganization(int range) {
+        int organization = organizations.get(range);
+        if (organization < 0)
+            return "";
+        int from = organizationOffsets.get(organization);
+        int to = organizationOffsets.get(organization + 1);
+        byte[] name = new byte[to - from];
+        organizationBytes.get(from, name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param range Index returned by findRange(), or -1
+     * @return "country ASnumber name", e.g. "US AS13335 CLOUDFLARENET", or "" for -1
+     */
+    public String describe(int range) {
+        if (range < 0)
+            return "";
+        StringBuilder text = new StringBuilder(getCountry(range));
+        int asn = getAsn(range);
+        if (asn != 0)
+            text.append(text.length() > 0 ? " " : "").append("AS").append(Integer.toUnsignedString(asn));
+        String organization = getOrganization(range);
+        if (!organization.isEmpty())
+            text.append(text.length() > 0 ? " " : "").append(organization);
+        return text.toString();
+    }
+
+    /**
+     * Compiles a range list into the binary format. Each line holds the first address, the last
+     * address, the AS number, the country code and the AS name, separated by tabs or commas (the
+     * ip2asn-v4.tsv layout); the name may contain commas and quotes around fields are removed.
+     * Lines starting with # and IPv6 lines are skipped, and ranges overlapping an earlier one
+     * are dropped. The output is written to a temporary file and moved into place.
+     * @param csv The source list
+     * @param output The database file
+     * @return Number of ranges written
+     * @throws IOException If the list cannot be read or the database written
+     */
+    public static int compile(Path csv, Path output) throws IOException {
+        long start = System.nanoTime();
+        List<long[]> ranges = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        int skipped = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#"))
+                    continue;
+                String[] fields = line.split(line.indexOf('\t') >= 0 ? "\t" : ",", 5);
+                if (fields.length < 4) {
+                    skipped++;
+                    continue;
+                }
+                long first = IpAddresses.parseIpV4(unquote(fields[0]));
+                long last = IpAddresses.parseIpV4(unquote(fields[1]));
+                if (first < 0 || last < first) {
+                    skipped++;
+                    continue;
+                }
+                long asn;
+                try {
+                    asn = Long.parseLong(unquote(fields[2]).replaceFirst("^(?i)AS", ""));
+                } catch (NumberFormatException e) {
+                    skipped++;
+                    continue;
+                }
+                String country = unquote(fields[3]).toUpperCase();
+                short code = country.length() == 2 && country.chars().allMatch(c -> c >= 'A' && c <= 'Z')
+                    ? (short) (country.charAt(0) << 8 | country.charAt(1)) : 0;
+                String name = fields.length > 4 ? unquote(fields[4]) : "";
+                names.add(name.isEmpty() || "Not routed".equalsIgnoreCase(name) ? null : name);
+                ranges.add(new long[]{first, last, asn, code, names.size() - 1});
+            }
+        }
+
+        ranges.sort((a, b) -> Long.compare(a[0], b[0]));
+        List<long[]> kept = new ArrayList<>(ranges.size());
+        Map<String, Integer> organizationIds = new HashMap<>();
+        List<byte[]> organizationNames = new ArrayList<>();
+        long coveredTo = -1;
+        for (long[] range : ranges) {
+            if (range[0] <= coveredTo) {
+                skipped++;
+                continue;
+            }
+            // Names are numbered in address order, and only for the kept ranges
+            String name = names.get((int) range[4]);
+            range[4] = name == null ? -1 : organizationIds.computeIfAbsent(name, n -> {
+                organizationNames.add(n.getBytes(StandardCharsets.UTF_8));
+                return organizationNames.size() - 1;
+            });
+            kept.add(range);
+            coveredTo = range[1];
+        }
+
+        int n = kept.size();
+        Path temp = output.resolveSibling(output.getFileName() + ".tmp");
+        try (OutputStream file = Files.newOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            int nameBytes = 0;
+            for (byte[] name : organizationNames)
+                nameBytes += name.length;
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(n);
+            out.writeInt(organizationNames.size());
+            out.writeInt(nameBytes);
+            out.writeInt(0);
+            for (long[] range : kept)
+                out.writeInt((int) range[0] ^ Integer.MIN_VALUE);
+            for (long[] range : kept)
+                out.writeInt((int) range[1] ^ Integer.MIN_VALUE);
+            for (long[] range : kept)
+                out.writeInt((int) range[2]);
+            for (long[] range : kept)
+                out.writeInt((int) range[4]);
+            for (long[] range : kept)
+                out.writeShort((int) range[3]);
+            if ((n & 1) != 0)
+                out.writeShort(0);
+            int offset = 0;
+            for (byte[] name : organizationNames) {
+                out.writeInt(offset);
+                offset += name.length;
+            }
+            out.writeInt(offset);
+            for (byte[] name : organizationNames)
+                out.write(name);
+        }
+        Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        LOGGER.info(String.format("event=geoip_compiled source=%s file=%s ranges=%d organizations=%d skipped=%d bytes=%d compile_ms=%d",
+            csv, output, n, organizationNames.size(), skipped, Files.size(output), (System.nanoTime() - start) / 1_000_000));
+        return n;
+    }
+
+    private static String unquote(String field) {
+        String text = field.trim();
+        if (text.length() >= 2 && text.charAt(0) == '"' && text.charAt(text.length() - 1) == '"')
+            text = text.substring(1, text.length() - 1).replace("\"\"", "\"");
+        return text;
+    }
+}
@@ -11,7 +11,7 @@ import java.util.logging.Logger;
 
 /**
  * The main application window for the Network Monitor.
- * Manages navigation between the Menu, Monitor, and IDS views using CardLayout.
+ * Manages navigation between the Menu, Monitor, and Top Talkers views using CardLayout.
  */
 public class ApplicationFrame extends JFrame {
     // Logger for debugging and information
@@ -24,6 +24,8 @@ public class ApplicationFrame extends JFrame {
     // View Identifiers
     private static final String VIEW_MENU = "Menu";
     private static final String VIEW_PACKET_MONITOR = "Packet monitoring";
+    private static final String VIEW_TOP_TALKERS = "Top talkers";
+    private static final String VIEW_CHARTS = "Throughput charts";
 
     // Theme Fonts
     public static final String SANS_SERIF_FONT = "SansSerif";
@@ -102,12 +104,14 @@ public class ApplicationFrame extends JFrame {
     }
 
     /**
-     * Initializes and adds all views (Menu, Monitor, IDS) to the CardLayout.
+     * Initializes and adds all views (Menu, Monitor, Top Talkers, Charts) to the CardLayout.
      */
     private void initViews() {
         // Create the Menu Panel with actions to switch views
         MainMenuPanel mainMenu = new MainMenuPanel(
-            e -> showView(VIEW_PACKET_MONITOR)
+            e -> showView(VIEW_PACKET_MONITOR),
+            e -> showView(VIEW_TOP_TALKERS),
+            e -> showView(VIEW_CHARTS)
         );
 
         // Add views to the card layout
@@ -120,6 +124,22 @@ public class ApplicationFrame extends JFrame {
         );
 
         cardPanel.add(packetMonitor, VIEW_PACKET_MONITOR);
+
+        // Create the Top Talkers Panel with a back action
+        TopTalkersPanel topTalkers = new TopTalkersPanel(
+            e -> showView(VIEW_MENU),
+            globalCaptureService
+        );
+
+        cardPanel.add(topTalkers, VIEW_TOP_TALKERS);
+
+        // Create the Throughput Charts Panel with a back action
+        ThroughputChartsPanel charts = new ThroughputChartsPanel(
+            e -> showView(VIEW_MENU),
+            globalCaptureService
+        );
+
+        cardPanel.add(charts, VIEW_CHARTS);
     }
 
     /**
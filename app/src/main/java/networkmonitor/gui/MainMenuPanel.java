@@ -21,15 +21,17 @@ public class MainMenuPanel extends JPanel {
     /**
      * Constructs the main menu panel.
      * @param packetListener Action to perform when Packet Monitoring is clicked.
+     * @param topTalkersListener Action to perform when Top Talkers is clicked.
+     * @param chartsListener Action to perform when Throughput Charts is clicked.
      */
-    public MainMenuPanel(ActionListener packetListener) {
-        initComponents(packetListener);
+    public MainMenuPanel(ActionListener packetListener, ActionListener topTalkersListener, ActionListener chartsListener) {
+        initComponents(packetListener, topTalkersListener, chartsListener);
     }
 
     /**
      * Initializes components and layout.
      */
-    private void initComponents(ActionListener packetListener) {
+    private void initComponents(ActionListener packetListener, ActionListener topTalkersListener, ActionListener chartsListener) {
         // Set Panel Background
         setBackground(ApplicationFrame.COLOR_BACKGROUND);
         setLayout(new GridBagLayout());
@@ -70,9 +72,19 @@ public class MainMenuPanel extends JPanel {
         layout.gridy = 2;
         add(packetMonitoringBtn, layout);
 
+        FlatButton topTalkersBtn = new FlatButton("Top Talkers");
+        topTalkersBtn.addActionListener(topTalkersListener);
+        layout.gridy = 3;
+        add(topTalkersBtn, layout);
+
+        FlatButton chartsBtn = new FlatButton("Throughput Charts");
+        chartsBtn.addActionListener(chartsListener);
+        layout.gridy = 4;
+        add(chartsBtn, layout);
+
         FlatButton exitBtn = new FlatButton("Close Application", Color.DARK_GRAY, Color.GRAY);
         exitBtn.addActionListener(e -> System.exit(0));
-        layout.gridy = 3;
+        layout.gridy = 5;
         add(exitBtn, layout);
     }
 }
\ No newline at end of file
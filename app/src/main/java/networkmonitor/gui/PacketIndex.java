@@ -0,0 +1,162 @@
+package networkmonitor.gui;
+
+import networkmonitor.model.PacketStore;
+import networkmonitor.util.IntList;
+
+/**
+ * Secondary indexes over the PacketStore for instant filtering:
+ * protocol -> rows, IPv4 address (source or destination) -> rows, and blocked rows.
+ * Rows are recorded as their sequence number (since the last clear) in ascending order,
+ * so evicted rows are simply the prefix below the store's start sequence.
+ * Maintained on the EDT; the indexes are rebuilt once the evicted entries outnumber the live ones.
+ */
+public class PacketIndex {
+    // Rows per IP protocol number
+    private final IntList[] byProtocol = new IntList[256];
+
+    // Blocked rows
+    private final IntList blocked = new IntList(256);
+
+    // Open-addressing map: IPv4 address -> rows involving it
+    private int[] addressKeys = new int[1024];
+    private IntList[] addressRows = new IntList[1024];
+    private int addressCount = 0;
+
+    // Number of index entries that point to rows evicted from the store
+    private long staleEntries = 0;
+    private long liveEntries = 0;
+
+    /**
+     * Indexes one row. EDT only.
+     * @param store The store holding the row.
+     * @param seq The sequence number of the row.
+     */
+    public void add(PacketStore store, long seq) {
+        int row = (int) seq;
+        int protocol = store.getProtocolBySeq(seq) & 0xFF;
+        if (byProtocol[protocol] == null)
+            byProtocol[protocol] = new IntList(256);
+        byProtocol[protocol].add(row);
+        liveEntries++;
+
+        if (store.isBlockedBySeq(seq)) {
+            blocked.add(row);
+            liveEntries++;
+        }
+
+        // Only IPv4 addresses are indexed; IPv6 rows are found by scanning
+        if (store.isIpV6BySeq(seq))
+            return;
+
+        int src = store.getSrcAddrBySeq(seq);
+        int dst = store.getDstAddrBySeq(seq);
+        addressList(src).add(row);
+        liveEntries++;
+        if (dst != src) {
+            addressList(dst).add(row);
+            liveEntries++;
+        }
+    }
+
+    /**
+     * Accounts for rows evicted from the store and rebuilds the indexes when
+     * most entries are stale. EDT only.
+     * @param store The store after eviction.
+     * @param evictedRows Number of rows evicted.
+     * @param fromSeq First retained sequence number, used if a rebuild happens.
+     * @param toSeq End of the indexed range, used if a rebuild happens.
+     */
+    public void evicted(PacketStore store, int evictedRows, long fromSeq, long toSeq) {
+        // Each row has about three entries (protocol, source, destination)
+        long stale = evictedRows * 3L;
+        staleEntries += stale;
+        liveEntries -= stale;
+        if (staleEntries > Math.max(liveEntries, 4096))
+            rebuild(store, fromSeq, toSeq);
+    }
+
+    /**
+     * Drops every entry and re-indexes a range of rows. EDT only.
+     * @param store The store holding the rows.
+     * @param fromSeq First sequence number to index (inclusive).
+     * @param toSeq Last sequence number to index (exclusive).
+     */
+    public void rebuild(PacketStore store, long fromSeq, long toSeq) {
+        clear();
+        for (long seq = fromSeq; seq < toSeq; seq++)
+            add(store, seq);
+    }
+
+    /**
+     * Removes every entry. EDT only.
+     */
+    public void clear() {
+        for (int i = 0; i < byProtocol.length; i++)
+            byProtocol[i] = null;
+        blocked.clear();
+        addressKeys = new int[1024];
+        addressRows = new IntList[1024];
+        addressCount = 0;
+        staleEntries = 0;
+        liveEntries = 0;
+    }
+
+    /**
+     * @param protocol IP protocol number.
+     * @return Rows of that protocol (may contain evicted rows at the front), or null.
+     */
+    public IntList protocolRows(byte protocol) {
+        return byProtocol[protocol & 0xFF];
+    }
+
+    /**
+     * @return Blocked rows (may contain evicted rows at the front).
+     */
+    public IntList blockedRows() {
+        return blocked;
+    }
+
+    /**
+     * @param address IPv4 address.
+     * @return Rows with that source or destination (may contain evicted rows at the front), or null.
+     */
+    public IntList addressRows(int address) {
+        int index = findSlot(address);
+        return addressRows[index];
+    }
+
+    private IntList addressList(int address) {
+        int index = findSlot(address);
+        if (addressRows[index] == null) {
+            addressKeys[index] = address;
+            addressRows[index] = new IntList(4);
+            if (++addressCount * 2 > addressKeys.length) {
+                growAddresses();
+                index = findSlot(address);
+            }
+        }
+        return addressRows[index];
+    }
+
+    private int findSlot(int address) {
+        int mask = addressKeys.length - 1;
+        int index = (address * 0x9E3779B9 >>> 7) & mask;
+        while (addressRows[index] != null && addressKeys[index] != address)
+            index = (index + 1) & mask;
+        return index;
+    }
+
+    private void growAddresses() {
+        int[] oldKeys = addressKeys;
+        IntList[] oldRows = addressRows;
+        addressKeys = new int[oldKeys.length * 2];
+        addressRows = new IntList[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldRows[i] == null)
+                continue;
+            int index = findSlot(oldKeys[i]);
+            addressKeys[index] = oldKeys[i];
+            addressRows[index] = oldRows[i];
+        }
+    }
+}
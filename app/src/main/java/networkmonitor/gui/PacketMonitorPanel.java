@@ -2,15 +2,26 @@ package networkmonitor.gui;
 
 import java.awt.*;
 import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.JTableHeader;
 import javax.swing.table.TableColumnModel;
 
+import networkmonitor.dns.HostnameCache;
 import networkmonitor.gui.ApplicationFrame.FlatButton;
+import networkmonitor.metrics.Metrics;
+import networkmonitor.service.AdaptiveSampler;
 import networkmonitor.service.CaptureService;
+import networkmonitor.service.PacketEventBus;
+import networkmonitor.model.AppProtocol;
+import networkmonitor.model.DecodedPacket;
 import networkmonitor.model.PacketInfo;
+import networkmonitor.model.PacketStore;
 
 /**
  * Panel for Packet Monitoring mode.
@@ -19,11 +30,40 @@ import networkmonitor.model.PacketInfo;
 public class PacketMonitorPanel extends JPanel {
     // UI Components
     private JTable packetTable;
-    private DefaultTableModel tableModel;
+    private PacketTableModel tableModel;
+    private PacketTableSorter tableSorter;
+    private JTextField searchField;
+    private Timer searchDebounceTimer;
     private JLabel statusLabel;
+    private JLabel samplingLabel;
+    private Timer samplingLabelTimer;
     
     // Transient because CaptureService is not Serializable
     private transient CaptureService captureService;
+
+    // Table subscription on the capture event bus, null while paused
+    private transient PacketEventBus.Subscription tableSubscription;
+
+    // Sampler between the bus and the table, limits UI work under high packet rates
+    private transient AdaptiveSampler sampler;
+
+    // Counters at the last sampling label update: published to the table, shown, dropped by the bus
+    private long lastPublished;
+    private long lastShown;
+    private long lastBusDropped;
+
+    // Queue capacity of the table subscriber
+    private static final int TABLE_QUEUE_CAPACITY = 4096;
+
+    // Rows kept in the columnar store (about 26 bytes each)
+    private static final int STORE_CAPACITY = Integer.getInteger("networkmonitor.ui.storeCapacity", 1_000_000);
+
+    // Packets received from the bus, appended to the table in batches on the EDT
+    private final transient List<PacketInfo> pendingPackets = new ArrayList<>();
+    private Timer tableFlushTimer;
+
+    // Set while a repaint for newly resolved host names is queued on the EDT
+    private final AtomicBoolean hostRepaintQueued = new AtomicBoolean();
     
     /**
      * Constructs the Packet Monitor Panel.
@@ -73,17 +113,47 @@ public class PacketMonitorPanel extends JPanel {
         statusLabel.setForeground(Color.GRAY);
         statusLabel.setFont(new Font("SansSerif", Font.PLAIN, 14));
 
+        samplingLabel = new JLabel();
+        samplingLabel.setForeground(Color.GRAY);
+        samplingLabel.setFont(new Font("SansSerif", Font.PLAIN, 14));
+
         // Adding buttons in requested order: Start -> Reset -> Stop
         leftControls.add(startBtn);
         leftControls.add(resetBtn); 
         leftControls.add(stopBtn);
         leftControls.add(Box.createHorizontalStrut(10));
         leftControls.add(statusLabel);
+        leftControls.add(samplingLabel);
+
+        // Refresh the sampling ratio twice per second
+        samplingLabelTimer = new Timer(500, e -> updateSamplingLabel());
 
         // 2. RIGHT SIDE: Navigation
         JPanel rightControls = new JPanel(new FlowLayout(FlowLayout.RIGHT, 15, 10));
         rightControls.setBackground(ApplicationFrame.COLOR_BACKGROUND);
 
+        // Search box: filter applied 300 ms after the last keystroke, or on Enter
+        searchField = new JTextField(22);
+        searchField.setFont(new Font("Monospaced", Font.PLAIN, 13));
+        searchField.setToolTipText("Filter: tcp, udp, other, blocked, 10.0.0.1, src:/dst:IP, 10.0.0.0/8, port:/sport:/dport:443");
+        searchDebounceTimer = new Timer(300, e -> applySearch());
+        searchDebounceTimer.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override public void insertUpdate(DocumentEvent e) { searchDebounceTimer.restart(); }
+            @Override public void removeUpdate(DocumentEvent e) { searchDebounceTimer.restart(); }
+            @Override public void changedUpdate(DocumentEvent e) { searchDebounceTimer.restart(); }
+        });
+        searchField.addActionListener(e -> {
+            searchDebounceTimer.stop();
+            applySearch();
+        });
+
+        JLabel searchLabel = new JLabel("Search:");
+        searchLabel.setForeground(Color.GRAY);
+        searchLabel.setFont(new Font("SansSerif", Font.PLAIN, 14));
+        rightControls.add(searchLabel);
+        rightControls.add(searchField);
+
         // Default Purple Button for Back
         FlatButton backBtn = new FlatButton("Back to Menu", 30, 35);
         backBtn.addActionListener(e -> {
@@ -111,40 +181,18 @@ public class PacketMonitorPanel extends JPanel {
      * Initializes the packet table with model, renderers, and styles.
      */
     private void initTable() {
-        String[] columnNames = {"No.", "Time", "Source IP", "Destination IP", "Protocol", "Length", "Info", "Blocked"};
-        
-        // 1. Model Definition with Types (For Correct Sorting)
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            /**
-             * Overrides to make cells non-editable and define column classes.
-             * @param row Row index
-             * @param column Column index
-             * @return false to make all cells non-editable
-             */
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
+        // 1. Model holding the PacketInfo rows (typed columns for correct sorting)
+        tableModel = new PacketTableModel(new PacketStore(STORE_CAPACITY));
 
-            /**
-             * Defines the class type for each column to ensure proper sorting.
-             * @param columnIndex Index of the column
-             * @return Class type of the column
-             */
-            @Override
-            public Class<?> getColumnClass(int columnIndex) {
-                if (columnIndex == 0 || columnIndex == 5)
-                    return Integer.class;
-
-                if (columnIndex == 7)
-                    return Boolean.class;
-
-                return String.class;
-            }
-        };
+        // 2. Batched insertion: one model event per flush instead of one invokeLater per packet
+        tableFlushTimer = new Timer(100, e -> flushPendingPackets());
+        tableFlushTimer.start();
 
         packetTable = new JTable(tableModel);
-        packetTable.setAutoCreateRowSorter(true);
+
+        // Incremental sorter with indexed filtering (the default TableRowSorter re-sorts on every insert)
+        tableSorter = new PacketTableSorter(tableModel);
+        packetTable.setRowSorter(tableSorter);
 
         // 3. Visual Styling (Dark Theme Base)
         packetTable.setBackground(new Color(60, 63, 65));
@@ -171,8 +219,8 @@ public class PacketMonitorPanel extends JPanel {
         columnModel.getColumn(0).setMaxWidth(80);
         columnModel.getColumn(1).setPreferredWidth(100);
         columnModel.getColumn(1).setMaxWidth(150);
-        columnModel.getColumn(2).setPreferredWidth(120);
-        columnModel.getColumn(3).setPreferredWidth(120);
+        columnModel.getColumn(2).setPreferredWidth(220);
+        columnModel.getColumn(3).setPreferredWidth(220);
         columnModel.getColumn(4).setPreferredWidth(70);
         columnModel.getColumn(4).setMaxWidth(90);
         columnModel.getColumn(5).setPreferredWidth(60);
@@ -182,6 +230,19 @@ public class PacketMonitorPanel extends JPanel {
         columnModel.getColumn(7).setMinWidth(0);
         columnModel.getColumn(7).setMaxWidth(0);
         columnModel.getColumn(7).setWidth(0);
+        columnModel.getColumn(8).setPreferredWidth(220);
+        columnModel.getColumn(9).setPreferredWidth(160);
+
+        // 6. Repaint the visible rows when host names arrive, at most one queued repaint at a time
+        HostnameCache hostnames = HostnameCache.getDefault();
+        if (hostnames != null)
+            hostnames.addListener(() -> {
+                if (hostRepaintQueued.compareAndSet(false, true))
+                    SwingUtilities.invokeLater(() -> {
+                        hostRepaintQueued.set(false);
+                        packetTable.repaint();
+                    });
+            });
     }
 
     /**
@@ -189,7 +250,15 @@ public class PacketMonitorPanel extends JPanel {
      */
     private void resumeGuiUpdates() {
         if (captureService != null) {
-            captureService.setPacketListener(this::addPacketToTable);
+            if (tableSubscription == null) {
+                sampler = AdaptiveSampler.fromSystemProperties(this::addPacketToTable);
+                tableSubscription = captureService.getEventBus().subscribe("table", TABLE_QUEUE_CAPACITY,
+                    PacketEventBus.BackpressurePolicy.DROP_OLDEST, sampler);
+                lastPublished = 0;
+                lastShown = 0;
+                lastBusDropped = 0;
+                samplingLabelTimer.start();
+            }
             captureService.startCapturing();
             statusLabel.setText("Status: Capturing");
             statusLabel.setForeground(Color.GREEN);
@@ -201,7 +270,64 @@ public class PacketMonitorPanel extends JPanel {
      */
     private void pauseGuiUpdates() {
         if (captureService != null) {
-            captureService.setPacketListener(null);
+            captureService.getEventBus().unsubscribe(tableSubscription);
+            tableSubscription = null;
+        }
+        if (sampler != null) {
+            sampler.close();
+            sampler = null;
+        }
+        samplingLabelTimer.stop();
+        samplingLabel.setText("");
+    }
+
+    /**
+     * Shows the share of the packets shown in the live view since the last update in the
+     * status bar: packets published to the table against packets the sampler forwarded,
+     * so packets dropped by a full bus queue count as well as sampled-out ones.
+     */
+    private void updateSamplingLabel() {
+        if (sampler == null || tableSubscription == null)
+            return;
+
+        long published = tableSubscription.getPublished();
+        long shown = sampler.getForwarded();
+        long busDropped = tableSubscription.getDropped();
+        long arrived = published - lastPublished;
+        long displayed = shown - lastShown;
+        boolean queueFull = busDropped > lastBusDropped;
+        lastPublished = published;
+        lastShown = shown;
+        lastBusDropped = busDropped;
+
+        long ratio = Math.max(1, Math.round((double) arrived / Math.max(1, displayed)));
+        if (ratio == 1 && !queueFull) {
+            samplingLabel.setText("| Sampling: full");
+            samplingLabel.setForeground(Color.GRAY);
+        } else {
+            String mode = sampler.getCurrentRatio() <= 1 ? ""
+                : sampler.getMode() == AdaptiveSampler.Mode.RESERVOIR ? "reservoir" : "1-in-N";
+            if (queueFull)
+                mode = mode.isEmpty() ? "queue full" : mode + ", queue full";
+            else if (mode.isEmpty())
+                mode = "queue lag";
+            samplingLabel.setText("| Sampling: 1/" + ratio + " (" + mode + ")");
+            samplingLabel.setForeground(Color.ORANGE);
+        }
+    }
+
+    /**
+     * Parses the search box and hands the query to the sorter.
+     * Invalid queries are shown in red and leave the current filter in place.
+     */
+    private void applySearch() {
+        try {
+            tableSorter.setQuery(PacketQuery.parse(searchField.getText()));
+            searchField.setForeground(Color.BLACK);
+            searchField.setToolTipText(null);
+        } catch (IllegalArgumentException ex) {
+            searchField.setForeground(Color.RED);
+            searchField.setToolTipText(ex.getMessage());
         }
     }
 
@@ -220,29 +346,51 @@ public class PacketMonitorPanel extends JPanel {
      * Clears the table and resets the packet counter.
      */
     private void clearData() {
-        if (tableModel != null)
-            tableModel.setRowCount(0);
+        synchronized (pendingPackets) {
+            pendingPackets.clear();
+        }
+        if (tableModel != null) {
+            // The sorter's worker may still be reading the store
+            tableSorter.cancelPendingView();
+            tableModel.clear();
+        }
 
         if (captureService != null)
             captureService.resetPacketCount();
     }
 
     /**
-     * Adds a captured packet to the table in a thread-safe manner.
+     * Queues a captured packet for the table in a thread-safe manner.
      * @param packet The PacketInfo object containing packet details.
      */
     public void addPacketToTable(PacketInfo packet) {
-        SwingUtilities.invokeLater(() -> {
-            tableModel.addRow(new Object[]{
-                packet.getNumber(), packet.getTimestamp(), packet.getSourceIp(), packet.getDestIp(),
-                packet.getProtocol(), packet.getLength(), packet.getInfo(), packet.isBlocked()
-            });
-            packetTable.scrollRectToVisible(packetTable.getCellRect(packetTable.getRowCount() - 1, 0, true));
-        });
+        synchronized (pendingPackets) {
+            pendingPackets.add(packet);
+        }
     }
 
     /**
-     * Custom Cell Renderer to handle row coloring based on Protocol.
+     * Moves the queued packets into the table store. Runs on the EDT.
+     */
+    private void flushPendingPackets() {
+        List<PacketInfo> batch;
+        synchronized (pendingPackets) {
+            if (pendingPackets.isEmpty())
+                return;
+            batch = new ArrayList<>(pendingPackets);
+            pendingPackets.clear();
+        }
+
+        tableModel.addPackets(batch);
+        packetTable.scrollRectToVisible(packetTable.getCellRect(packetTable.getRowCount() - 1, 0, true));
+
+        long now = System.nanoTime();
+        for (PacketInfo packet : batch)
+            Metrics.VERDICT_TO_UI.record(now - packet.getVerdictNanos());
+    }
+
+    /**
+     * Custom Cell Renderer to handle row coloring based on Protocol (application protocol first).
      */
     private static class PacketTableCellRenderer extends DefaultTableCellRenderer {
         private static final Color COLOR_TCP_BG = new Color(225, 240, 255);
@@ -254,6 +402,24 @@ public class PacketMonitorPanel extends JPanel {
         private static final Color COLOR_BLOCKED_BG = new Color(255, 102, 102);
         private static final Color COLOR_BLOCKED_FG = Color.WHITE;
 
+        // Backgrounds of the classified application protocols, by AppProtocol id (null = by IP protocol)
+        private static final Color[] COLOR_APP_BG = new Color[AppProtocol.COUNT];
+        static {
+            COLOR_APP_BG[AppProtocol.DNS] = new Color(230, 220, 255);
+            COLOR_APP_BG[AppProtocol.MDNS] = new Color(230, 220, 255);
+            COLOR_APP_BG[AppProtocol.HTTP] = new Color(220, 255, 220);
+            COLOR_APP_BG[AppProtocol.TLS] = new Color(200, 225, 250);
+            COLOR_APP_BG[AppProtocol.QUIC] = new Color(200, 240, 240);
+            COLOR_APP_BG[AppProtocol.SSH] = new Color(255, 230, 200);
+            COLOR_APP_BG[AppProtocol.NTP] = new Color(240, 240, 240);
+            COLOR_APP_BG[AppProtocol.DHCP] = new Color(240, 240, 240);
+            COLOR_APP_BG[AppProtocol.SMB] = new Color(255, 220, 240);
+            COLOR_APP_BG[AppProtocol.SMTP] = new Color(245, 235, 210);
+            COLOR_APP_BG[AppProtocol.FTP] = new Color(245, 235, 210);
+            COLOR_APP_BG[AppProtocol.RDP] = new Color(255, 230, 200);
+            COLOR_APP_BG[AppProtocol.SNMP] = new Color(240, 240, 240);
+        }
+
         /**
          * Overrides the default rendering to apply custom colors based on protocol type.
          * @param table The JTable.
@@ -277,17 +443,19 @@ public class PacketMonitorPanel extends JPanel {
                 return c;
 
             int modelRow = table.convertRowIndexToModel(row);
-            
-            Boolean isBlocked = (Boolean) table.getModel().getValueAt(modelRow, 7);
-            String protocol = (String) table.getModel().getValueAt(modelRow, 4);
+            PacketStore store = ((PacketTableModel) table.getModel()).getStore();
+            byte protocol = store.getProtocol(modelRow);
 
-            if (Boolean.TRUE.equals(isBlocked)) {
+            if (store.isBlocked(modelRow) || store.getSignatureId(modelRow) != 0) {
                 c.setBackground(COLOR_BLOCKED_BG);
                 c.setForeground(COLOR_BLOCKED_FG);
-            } else if ("TCP".equalsIgnoreCase(protocol)) {
+            } else if (COLOR_APP_BG[store.getAppProtocol(modelRow)] != null) {
+                c.setBackground(COLOR_APP_BG[store.getAppProtocol(modelRow)]);
+                c.setForeground(Color.BLACK);
+            } else if (protocol == DecodedPacket.PROTO_TCP) {
                 c.setBackground(COLOR_TCP_BG);
                 c.setForeground(COLOR_TCP_FG);
-            } else if ("UDP".equalsIgnoreCase(protocol)) {
+            } else if (protocol == DecodedPacket.PROTO_UDP) {
                 c.setBackground(COLOR_UDP_BG);
                 c.setForeground(COLOR_UDP_FG);
             } else {
@@ -0,0 +1,183 @@
+package networkmonitor.gui;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import networkmonitor.model.DecodedPacket;
+import networkmonitor.model.PacketStore;
+import networkmonitor.util.IntList;
+import networkmonitor.util.IpAddresses;
+
+/**
+ * Parsed search-box query. Terms are separated by spaces and must all match:
+ * <ul>
+ *   <li>{@code tcp}, {@code udp}, {@code other} - protocol</li>
+ *   <li>{@code blocked} - blacklisted destination</li>
+ *   <li>{@code alert} - payload signature or header rule hit</li>
+ *   <li>{@code ipv4}, {@code ipv6} - address family</li>
+ *   <li>{@code 10.0.0.1}, {@code src:10.0.0.1}, {@code dst:10.0.0.1} - IPv4 address</li>
+ *   <li>{@code 10.0.0.0/8} - IPv4 address range (source or destination)</li>
+ *   <li>{@code port:443}, {@code sport:443}, {@code dport:443} - port</li>
+ * </ul>
+ * Protocol, blocked and exact-address terms are answered by the PacketIndex;
+ * the remaining terms are checked row by row on the candidates.
+ */
+public final class PacketQuery {
+    // Term kinds
+    private static final int PROTOCOL = 0;
+    private static final int BLOCKED = 1;
+    private static final int ADDRESS = 2;
+    private static final int SRC_ADDRESS = 3;
+    private static final int DST_ADDRESS = 4;
+    private static final int PREFIX = 5;
+    private static final int PORT = 6;
+    private static final int SRC_PORT = 7;
+    private static final int DST_PORT = 8;
+    private static final int FAMILY = 9;
+    private static final int ALERT = 10;
+
+    // Parsed terms as parallel primitive arrays
+    private final int[] kinds;
+    private final int[] values;
+    private final int[] masks;
+
+    private PacketQuery(int[] kinds, int[] values, int[] masks) {
+        this.kinds = kinds;
+        this.values = values;
+        this.masks = masks;
+    }
+
+    /**
+     * Parses the text of the search box.
+     * @param text The query text.
+     * @return The query, or null if the text is blank (no filter).
+     * @throws IllegalArgumentException If a term is not understood.
+     */
+    public static PacketQuery parse(String text) {
+        if (text == null || text.isBlank())
+            return null;
+
+        List<int[]> terms = new ArrayList<>();
+        for (String token : text.trim().toLowerCase(Locale.ROOT).split("\\s+"))
+            terms.add(parseTerm(token));
+
+        int[] kinds = new int[terms.size()];
+        int[] values = new int[terms.size()];
+        int[] masks = new int[terms.size()];
+        for (int i = 0; i < terms.size(); i++) {
+            kinds[i] = terms.get(i)[0];
+            values[i] = terms.get(i)[1];
+            masks[i] = terms.get(i)[2];
+        }
+        return new PacketQuery(kinds, values, masks);
+    }
+
+    private static int[] parseTerm(String token) {
+        switch (token) {
+            case "tcp": return new int[]{PROTOCOL, DecodedPacket.PROTO_TCP, 0};
+            case "udp": return new int[]{PROTOCOL, DecodedPacket.PROTO_UDP, 0};
+            case "other": return new int[]{PROTOCOL, DecodedPacket.PROTO_OTHER, 0};
+            case "blocked": return new int[]{BLOCKED, 0, 0};
+            case "alert": return new int[]{ALERT, 0, 0};
+            case "ipv4": return new int[]{FAMILY, 4, 0};
+            case "ipv6": return new int[]{FAMILY, 6, 0};
+            default: break;
+        }
+
+        int colon = token.indexOf(':');
+        String key = colon < 0 ? "" : token.substring(0, colon);
+        String value = token.substring(colon + 1);
+        switch (key) {
+            case "": return parseAddressTerm(ADDRESS, value);
+            case "src": return parseAddressTerm(SRC_ADDRESS, value);
+            case "dst": return parseAddressTerm(DST_ADDRESS, value);
+            case "port": return new int[]{PORT, parsePort(token, value), 0};
+            case "sport": return new int[]{SRC_PORT, parsePort(token, value), 0};
+            case "dport": return new int[]{DST_PORT, parsePort(token, value), 0};
+            default: throw new IllegalArgumentException("Unknown search term: " + token);
+        }
+    }
+
+    private static int[] parseAddressTerm(int kind, String value) {
+        int slash = value.indexOf('/');
+        long address = IpAddresses.parseIpV4(slash < 0 ? value : value.substring(0, slash));
+        if (address < 0)
+            throw new IllegalArgumentException("Not an IPv4 address: " + value);
+        if (slash < 0)
+            return new int[]{kind, (int) address, -1};
+
+        int bits = Integer.parseInt(value.substring(slash + 1));
+        if (bits < 0 || bits > 32 || kind != ADDRESS)
+            throw new IllegalArgumentException("Invalid prefix: " + value);
+        int mask = bits == 0 ? 0 : -1 << (32 - bits);
+        return new int[]{PREFIX, (int) address & mask, mask};
+    }
+
+    private static int parsePort(String token, String value) {
+        try {
+            int port = Integer.parseInt(value);
+            if (port >= 0 && port <= 0xFFFF)
+                return port;
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Invalid port: " + token);
+    }
+
+    /**
+     * Picks the smallest index list that must contain every match.
+     * @param index The secondary indexes.
+     * @return The candidate rows, an empty list if nothing can match, or null if a full scan is needed.
+     */
+    IntList candidates(PacketIndex index) {
+        IntList best = null;
+        for (int i = 0; i < kinds.length; i++) {
+            IntList list;
+            switch (kinds[i]) {
+                case PROTOCOL -> list = index.protocolRows((byte) values[i]);
+                case BLOCKED -> list = index.blockedRows();
+                case ADDRESS, SRC_ADDRESS, DST_ADDRESS -> list = index.addressRows(values[i]);
+                default -> { continue; }
+            }
+            if (list == null)
+                return new IntList(0);
+            if (best == null || list.size() < best.size())
+                best = list;
+        }
+        return best;
+    }
+
+    /**
+     * Checks every term against one row. Safe to call off the EDT for retained rows.
+     * @param store The store.
+     * @param seq The row's sequence number.
+     * @return true if all terms match.
+     */
+    public boolean matches(PacketStore store, long seq) {
+        for (int i = 0; i < kinds.length; i++) {
+            int value = values[i];
+            int kind = kinds[i];
+            if (kind >= ADDRESS && kind <= PREFIX && store.isIpV6BySeq(seq))
+                return false;
+
+            boolean match = switch (kind) {
+                case PROTOCOL -> store.getProtocolBySeq(seq) == (byte) value;
+                case BLOCKED -> store.isBlockedBySeq(seq);
+                case ADDRESS -> store.getSrcAddrBySeq(seq) == value || store.getDstAddrBySeq(seq) == value;
+                case SRC_ADDRESS -> store.getSrcAddrBySeq(seq) == value;
+                case DST_ADDRESS -> store.getDstAddrBySeq(seq) == value;
+                case PREFIX -> (store.getSrcAddrBySeq(seq) & masks[i]) == value || (store.getDstAddrBySeq(seq) & masks[i]) == value;
+                case PORT -> store.getSrcPortBySeq(seq) == value || store.getDstPortBySeq(seq) == value;
+                case SRC_PORT -> store.getSrcPortBySeq(seq) == value;
+                case DST_PORT -> store.getDstPortBySeq(seq) == value;
+                case FAMILY -> store.isIpV6BySeq(seq) == (value == 6);
+                case ALERT -> store.getSignatureIdBySeq(seq) != 0;
+                default -> false;
+            };
+            if (!match)
+                return false;
+        }
+        return true;
+    }
+}
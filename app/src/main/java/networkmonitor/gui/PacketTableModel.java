@@ -0,0 +1,239 @@
+package networkmonitor.gui;
+
+import java.util.Arrays;
+import javax.swing.table.AbstractTableModel;
+
+import networkmonitor.dns.HostnameCache;
+import networkmonitor.geo.GeoIpCache;
+import networkmonitor.model.PacketInfo;
+import networkmonitor.model.PacketStore;
+import networkmonitor.process.ProcessAttribution;
+import networkmonitor.util.IpAddresses;
+
+/**
+ * Table model backed by the columnar PacketStore.
+ * No per-row objects are kept: numbers are read from the primitive columns and the
+ * display strings are formatted on demand, with a small direct-mapped cache so that
+ * repainting the visible rows does not format them again. The owner column is only looked
+ * up when a cell of it is painted, and so are the host names shown after the addresses: an
+ * address whose name is still being resolved shows alone until a later repaint.
+ */
+public class PacketTableModel extends AbstractTableModel {
+    // Column layout
+    public static final int COL_NUMBER = 0;
+    public static final int COL_TIME = 1;
+    public static final int COL_SOURCE = 2;
+    public static final int COL_DESTINATION = 3;
+    public static final int COL_PROTOCOL = 4;
+    public static final int COL_LENGTH = 5;
+    public static final int COL_INFO = 6;
+    public static final int COL_BLOCKED = 7;
+    public static final int COL_OWNER = 8;
+    public static final int COL_PROCESS = 9;
+
+    private static final String[] COLUMN_NAMES = {"No.", "Time", "Source IP", "Destination IP", "Protocol", "Length", "Info", "Blocked", "Owner", "Process"};
+
+    // Size of the formatted-text cache (a few screens of rows)
+    private static final int TEXT_CACHE_SIZE = 512;
+
+    // Extra slots of the cached texts: address with its host name, once the name is known
+    private static final int SLOT_SOURCE_HOST = COLUMN_NAMES.length;
+    private static final int SLOT_DESTINATION_HOST = COLUMN_NAMES.length + 1;
+
+    // Backing store, only written on the EDT
+    private final transient PacketStore store;
+
+    // Country and AS lookups of the owner column, used on the EDT; null without a GeoIP database
+    private final transient GeoIpCache geoIp = GeoIpCache.forDefaultDatabase();
+
+    // Reverse-DNS names of the address columns; null if disabled
+    private final transient HostnameCache hostnames = HostnameCache.getDefault();
+
+    // Command names of the process column; null if process attribution is unavailable
+    private final transient ProcessAttribution processes = ProcessAttribution.getDefault();
+
+    // Direct-mapped cache: sequence number -> formatted cells of that row
+    private final long[] cachedSeqs = new long[TEXT_CACHE_SIZE];
+    private final String[][] cachedTexts = new String[TEXT_CACHE_SIZE][];
+
+    /**
+     * Constructs the model.
+     * @param store The store holding the rows.
+     */
+    public PacketTableModel(PacketStore store) {
+        this.store = store;
+        Arrays.fill(cachedSeqs, -1);
+    }
+
+    /**
+     * @return The backing store.
+     */
+    public PacketStore getStore() {
+        return store;
+    }
+
+    /**
+     * Appends a batch of packets and fires the matching events. Must be called on the EDT.
+     * @param packets The packets to append, in capture order.
+     */
+    public void addPackets(Iterable<PacketInfo> packets) {
+        int firstNewRow = store.size();
+        int evicted = 0;
+        int added = 0;
+        for (PacketInfo packet : packets) {
+            if (store.append(packet))
+                evicted++;
+            added++;
+        }
+        if (added == 0)
+            return;
+
+        if (evicted > 0) {
+            fireTableRowsDeleted(0, evicted - 1);
+            firstNewRow -= evicted;
+        }
+        fireTableRowsInserted(firstNewRow, store.size() - 1);
+    }
+
+    /**
+     * Removes all rows. Must be called on the EDT.
+     */
+    public void clear() {
+        store.clear();
+        Arrays.fill(cachedSeqs, -1);
+        Arrays.fill(cachedTexts, null);
+        fireTableDataChanged();
+    }
+
+    @Override
+    public int getRowCount() {
+        return store.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    /**
+     * Defines the class type for each column to ensure proper sorting.
+     * @param columnIndex Index of the column
+     * @return Class type of the column
+     */
+    @Override
+    public Class<?> getColumnClass(int columnIndex) {
+        if (columnIndex == COL_NUMBER || columnIndex == COL_LENGTH)
+            return Integer.class;
+
+        if (columnIndex == COL_BLOCKED)
+            return Boolean.class;
+
+        return String.class;
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        return switch (columnIndex) {
+            case COL_NUMBER -> store.getNumber(rowIndex);
+            case COL_LENGTH -> store.getLength(rowIndex);
+            case COL_BLOCKED -> store.isBlocked(rowIndex);
+            case COL_PROTOCOL -> PacketInfo.protocolName(store.getProtocol(rowIndex), store.getAppProtocol(rowIndex));
+            case COL_OWNER -> owner(rowIndex);
+            case COL_PROCESS -> process(rowIndex);
+            case COL_SOURCE, COL_DESTINATION -> host(rowIndex, columnIndex);
+            default -> texts(rowIndex)[columnIndex];
+        };
+    }
+
+    /**
+     * Returns the owner of the destination, or of the source when the destination is not in
+     * the GeoIP database (e.g. a private address), looking it up on first use.
+     */
+    private String owner(int rowIndex) {
+        String[] texts = texts(rowIndex);
+        if (texts[COL_OWNER] == null) {
+            String owner = "";
+            if (geoIp != null && !store.isIpV6(rowIndex)) {
+                int range = geoIp.findRange(store.getDstAddr(rowIndex));
+                if (range < 0)
+                    range = geoIp.findRange(store.getSrcAddr(rowIndex));
+                owner = geoIp.getDatabase().describe(range);
+            }
+            texts[COL_OWNER] = owner;
+        }
+        return texts[COL_OWNER];
+    }
+
+    /**
+     * Returns "command (pid)" of the local process of the row, "" if none.
+     */
+    private String process(int rowIndex) {
+        int pid = store.getPid(rowIndex);
+        if (pid == 0 || processes == null)
+            return "";
+        String[] texts = texts(rowIndex);
+        if (texts[COL_PROCESS] != null)
+            return texts[COL_PROCESS];
+        // Cached once the command name is known
+        String text = processes.describe(pid);
+        if (processes.getCommand(pid) != null)
+            texts[COL_PROCESS] = text;
+        return text;
+    }
+
+    /**
+     * Returns "address (name)" once the name of the address is known, the address alone
+     * while it is being resolved or if it has none. Lookups never block.
+     */
+    private String host(int rowIndex, int columnIndex) {
+        String[] texts = texts(rowIndex);
+        int slot = columnIndex == COL_SOURCE ? SLOT_SOURCE_HOST : SLOT_DESTINATION_HOST;
+        if (texts[slot] != null)
+            return texts[slot];
+        if (hostnames == null)
+            return texts[columnIndex];
+
+        String name;
+        if (store.isIpV6(rowIndex))
+            name = columnIndex == COL_SOURCE
+                ? hostnames.lookupIpV6(store.getSrcAddrHi(rowIndex), store.getSrcAddrLo(rowIndex))
+                : hostnames.lookupIpV6(store.getDstAddrHi(rowIndex), store.getDstAddrLo(rowIndex));
+        else
+            name = hostnames.lookupIpV4(columnIndex == COL_SOURCE ? store.getSrcAddr(rowIndex) : store.getDstAddr(rowIndex));
+        if (name == null)
+            return texts[columnIndex];
+        texts[slot] = name.isEmpty() ? texts[columnIndex] : texts[columnIndex] + " (" + name + ")";
+        return texts[slot];
+    }
+
+    /**
+     * Returns the formatted text cells of a row, formatting them on a cache miss.
+     */
+    private String[] texts(int rowIndex) {
+        long seq = store.getStartSequence() + rowIndex;
+        int index = (int) (seq % TEXT_CACHE_SIZE);
+        if (cachedSeqs[index] == seq)
+            return cachedTexts[index];
+
+        String[] texts = new String[COLUMN_NAMES.length + 2];
+        texts[COL_TIME] = PacketInfo.formatTime(store.getCaptureMillis(rowIndex));
+        if (store.isIpV6(rowIndex)) {
+            texts[COL_SOURCE] = IpAddresses.formatIpV6(store.getSrcAddrHi(rowIndex), store.getSrcAddrLo(rowIndex));
+            texts[COL_DESTINATION] = IpAddresses.formatIpV6(store.getDstAddrHi(rowIndex), store.getDstAddrLo(rowIndex));
+        } else {
+            texts[COL_SOURCE] = IpAddresses.formatIpV4(store.getSrcAddr(rowIndex));
+            texts[COL_DESTINATION] = IpAddresses.formatIpV4(store.getDstAddr(rowIndex));
+        }
+        texts[COL_INFO] = PacketInfo.formatInfo(store.getProtocol(rowIndex), store.getSrcPort(rowIndex), store.getDstPort(rowIndex),
+            store.getAlertKind(rowIndex), store.getSignatureId(rowIndex));
+
+        cachedSeqs[index] = seq;
+        cachedTexts[index] = texts;
+        return texts;
+    }
+}
@@ -0,0 +1,508 @@
+package networkmonitor.gui;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import javax.swing.SwingUtilities;
+
+import networkmonitor.geo.GeoIpDatabase;
+import networkmonitor.model.AlertKind;
+import networkmonitor.model.DecodedPacket;
+import networkmonitor.model.PacketStore;
+import networkmonitor.process.ProcessAttribution;
+import networkmonitor.util.IntList;
+
+/**
+ * Sort and filter engine for the packet table, replacing the default TableRowSorter.
+ * <p>
+ * The view is an array of packed longs: the 32-bit sort key of the row in the high half
+ * and its sequence number in the low half, kept in ascending order. New rows are
+ * sorted among themselves and merged into the view (no full re-sort), evicted rows are
+ * compacted away, and descending order is just reading the array backwards.
+ * Model/view conversions are an array read (model) or a binary search (view).
+ * <p>
+ * Filtering uses the PacketIndex to start from the smallest candidate list. Changing
+ * the sort column or the query on a large table is computed on a worker thread and the
+ * finished view is swapped in on the EDT in one step; rows that arrived meanwhile are
+ * merged in at the swap.
+ * <p>
+ * Sequence numbers are counted from the last clear and must stay below 2^32.
+ */
+public class PacketTableSorter extends RowSorter<PacketTableModel> {
+    // Up to this many rows, a new view is computed directly on the EDT
+    private static final int SYNC_LIMIT = 20_000;
+
+    // A view computation checks every 4096 rows whether it was cancelled
+    private static final int STALE_CHECK_MASK = 4096 - 1;
+
+    // Position of each AlertKind's label in text order, so the Info key sorts "[RULE" before "[SCAN" and "[SIG"
+    private static final int[] ALERT_KIND_RANKS = alertKindRanks();
+
+    // Model and its store
+    private final PacketTableModel model;
+    private final PacketStore store;
+    private final PacketIndex index = new PacketIndex();
+
+    // Computes large views off the EDT
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "table-sorter");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Requested state (what the header and the search box show)
+    private List<SortKey> sortKeys = List.of();
+    private PacketQuery query;
+
+    // Active state (what the current view was built with)
+    private int activeColumn = -1;
+    private boolean activeDescending = false;
+    private PacketQuery activeQuery;
+
+    // Rows known to the sorter, in sequence numbers: [startSeq, endSeq)
+    private long startSeq;
+    private long endSeq;
+
+    // Packed view entries (null = identity mapping, no sort and no filter)
+    private long[] view;
+    private int viewSize;
+
+    // Incremented on each request (EDT only); stale worker results are discarded and running builds stop early
+    private volatile long generation = 0;
+
+    /**
+     * Creates the sorter for a table model.
+     * @param model The packet table model.
+     */
+    public PacketTableSorter(PacketTableModel model) {
+        this.model = model;
+        this.store = model.getStore();
+        this.startSeq = store.getStartSequence();
+        this.endSeq = store.getEndSequence();
+        index.rebuild(store, startSeq, endSeq);
+    }
+
+    @Override
+    public PacketTableModel getModel() {
+        return model;
+    }
+
+    // --- Sorting and filtering requests (EDT) ---
+
+    /**
+     * Cycles the sort order of a column: ascending, descending, unsorted.
+     * @param column Model column index.
+     */
+    @Override
+    public void toggleSortOrder(int column) {
+        SortKey current = sortKeys.isEmpty() ? null : sortKeys.get(0);
+        if (current == null || current.getColumn() != column)
+            setSortKeys(List.of(new SortKey(column, SortOrder.ASCENDING)));
+        else if (current.getSortOrder() == SortOrder.ASCENDING)
+            setSortKeys(List.of(new SortKey(column, SortOrder.DESCENDING)));
+        else
+            setSortKeys(List.of());
+    }
+
+    @Override
+    public List<? extends SortKey> getSortKeys() {
+        return sortKeys;
+    }
+
+    /**
+     * Sets the sort key. Only the first key is used.
+     * @param keys The sort keys, or null/empty for capture order.
+     */
+    @Override
+    public void setSortKeys(List<? extends SortKey> keys) {
+        List<SortKey> newKeys = keys == null || keys.isEmpty() || keys.get(0).getSortOrder() == SortOrder.UNSORTED
+            ? List.of() : List.of(keys.get(0));
+        if (newKeys.equals(sortKeys))
+            return;
+
+        sortKeys = newKeys;
+        fireSortOrderChanged();
+        requestView();
+    }
+
+    /**
+     * Sets the search-box filter.
+     * @param newQuery The parsed query, or null to show every row.
+     */
+    public void setQuery(PacketQuery newQuery) {
+        query = newQuery;
+        requestView();
+    }
+
+    /**
+     * Builds the view for the requested state, on the EDT for small tables, on the worker otherwise.
+     * If only the direction of the active column changed, the view is reused as is.
+     */
+    private void requestView() {
+        generation++;
+        int column = sortKeys.isEmpty() ? -1 : sortKeys.get(0).getColumn();
+        boolean descending = !sortKeys.isEmpty() && sortKeys.get(0).getSortOrder() == SortOrder.DESCENDING;
+        PacketQuery requestedQuery = query;
+
+        if (column == activeColumn && requestedQuery == activeQuery) {
+            int[] previous = currentMapping();
+            activeDescending = descending;
+            fireRowSorterChanged(previous);
+            return;
+        }
+
+        if (column < 0 && requestedQuery == null) {
+            int[] previous = currentMapping();
+            activate(column, descending, null, null, 0);
+            fireRowSorterChanged(previous);
+            return;
+        }
+
+        long from = startSeq;
+        long to = endSeq;
+        IntList candidateList = requestedQuery == null ? null : requestedQuery.candidates(index);
+        int[] candidates = candidateList == null ? null
+            : candidateList.copyRange(candidateList.lowerBoundUnsigned((int) from), candidateList.size());
+
+        long requestGeneration = generation;
+        if (to - from <= SYNC_LIMIT) {
+            long[] result = buildView(requestGeneration, column, requestedQuery, candidates, from, to);
+            apply(requestGeneration, column, descending, requestedQuery, result, to);
+        } else {
+            worker.execute(() -> {
+                long[] result = buildView(requestGeneration, column, requestedQuery, candidates, from, to);
+                if (result != null)
+                    SwingUtilities.invokeLater(() -> apply(requestGeneration, column, descending, requestedQuery, result, to));
+            });
+        }
+    }
+
+    /**
+     * Stops the view computation of the worker, if one is running, and waits until it has ended,
+     * so that the store can be cleared without the worker reading its columns. Must be called on the EDT.
+     */
+    public void cancelPendingView() {
+        generation++;
+        try {
+            worker.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Computes the sorted packed entries of the matching rows in [from, to). Safe off the EDT.
+     * @param requestGeneration Generation of the request; the computation stops once it is stale
+     * @return The entries, exactly as many as matched, or null if the request became stale.
+     */
+    private long[] buildView(long requestGeneration, int column, PacketQuery filter, int[] candidates, long from, long to) {
+        long[] result;
+        int count = 0;
+        if (candidates != null) {
+            result = new long[candidates.length];
+            for (int i = 0; i < candidates.length; i++) {
+                if ((i & STALE_CHECK_MASK) == 0 && requestGeneration != generation)
+                    return null;
+                long seq = Integer.toUnsignedLong(candidates[i]);
+                if (seq < to && filter.matches(store, seq))
+                    result[count++] = pack(sortKey(column, seq), seq);
+            }
+        } else {
+            result = new long[(int) (to - from)];
+            for (long seq = from; seq < to; seq++) {
+                if (((seq - from) & STALE_CHECK_MASK) == 0 && requestGeneration != generation)
+                    return null;
+                if (filter == null || filter.matches(store, seq))
+                    result[count++] = pack(sortKey(column, seq), seq);
+            }
+        }
+        Arrays.sort(result, 0, count);
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Swaps in a computed view on the EDT, then catches up with the rows evicted
+     * and inserted since the computation started.
+     */
+    private void apply(long requestGeneration, int column, boolean descending, PacketQuery filter, long[] result, long computedUpTo) {
+        if (requestGeneration != generation)
+            return;
+
+        int[] previous = currentMapping();
+        activate(column, descending, filter, result, result.length);
+        compactEvicted();
+        if (computedUpTo < endSeq)
+            mergeRows(computedUpTo, endSeq);
+        fireRowSorterChanged(previous);
+    }
+
+    private void activate(int column, boolean descending, PacketQuery filter, long[] newView, int newSize) {
+        activeColumn = column;
+        activeDescending = descending;
+        activeQuery = filter;
+        view = newView;
+        viewSize = newSize;
+    }
+
+    // --- Model notifications (EDT) ---
+
+    @Override
+    public void modelStructureChanged() {
+        allRowsChanged();
+    }
+
+    @Override
+    public void allRowsChanged() {
+        startSeq = store.getStartSequence();
+        endSeq = store.getEndSequence();
+        index.rebuild(store, startSeq, endSeq);
+        activate(-1, false, null, null, 0);
+        requestView();
+    }
+
+    @Override
+    public void rowsInserted(int firstRow, int endRow) {
+        if (startSeq + firstRow != endSeq) {
+            allRowsChanged();
+            return;
+        }
+
+        long newEnd = startSeq + endRow + 1;
+        for (long seq = endSeq; seq < newEnd; seq++)
+            index.add(store, seq);
+
+        long oldEnd = endSeq;
+        endSeq = newEnd;
+        if (view != null)
+            mergeRows(oldEnd, newEnd);
+    }
+
+    @Override
+    public void rowsDeleted(int firstRow, int endRow) {
+        if (firstRow != 0) {
+            allRowsChanged();
+            return;
+        }
+
+        int evicted = endRow + 1;
+        startSeq += evicted;
+        index.evicted(store, evicted, startSeq, endSeq);
+        if (view != null)
+            compactEvicted();
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow) {
+        // Rows are immutable once captured
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow, int column) {
+        // Rows are immutable once captured
+    }
+
+    // --- Conversions ---
+
+    @Override
+    public int convertRowIndexToModel(int viewIndex) {
+        if (view == null)
+            return viewIndex;
+        if (viewIndex < 0 || viewIndex >= viewSize)
+            throw new IndexOutOfBoundsException("Invalid view index: " + viewIndex);
+
+        int position = activeDescending ? viewSize - 1 - viewIndex : viewIndex;
+        return (int) (unpackSeq(view[position]) - startSeq);
+    }
+
+    @Override
+    public int convertRowIndexToView(int modelIndex) {
+        if (view == null)
+            return modelIndex;
+
+        long seq = startSeq + modelIndex;
+        if (modelIndex < 0 || seq >= endSeq || (activeQuery != null && !activeQuery.matches(store, seq)))
+            return -1;
+
+        int position = Arrays.binarySearch(view, 0, viewSize, pack(sortKey(activeColumn, seq), seq));
+        if (position < 0)
+            return -1;
+        return activeDescending ? viewSize - 1 - position : position;
+    }
+
+    @Override
+    public int getViewRowCount() {
+        return view == null ? (int) (endSeq - startSeq) : viewSize;
+    }
+
+    @Override
+    public int getModelRowCount() {
+        return model.getRowCount();
+    }
+
+    // --- View maintenance ---
+
+    /**
+     * Sorts the matching rows of [fromSeq, toSeq) and merges them into the view.
+     */
+    private void mergeRows(long fromSeq, long toSeq) {
+        long[] added = new long[(int) (toSeq - fromSeq)];
+        int count = 0;
+        for (long seq = fromSeq; seq < toSeq; seq++)
+            if (activeQuery == null || activeQuery.matches(store, seq))
+                added[count++] = pack(sortKey(activeColumn, seq), seq);
+        if (count == 0)
+            return;
+        Arrays.sort(added, 0, count);
+
+        if (viewSize + count > view.length)
+            view = Arrays.copyOf(view, Math.max(viewSize + count, view.length + (view.length >> 1)));
+
+        // Merge from the back so that no temporary array is needed
+        int i = viewSize - 1;
+        int j = count - 1;
+        int k = viewSize + count - 1;
+        while (j >= 0) {
+            if (i >= 0 && view[i] > added[j])
+                view[k--] = view[i--];
+            else
+                view[k--] = added[j--];
+        }
+        viewSize += count;
+    }
+
+    /**
+     * Removes the entries of rows that were evicted from the store.
+     */
+    private void compactEvicted() {
+        int kept = 0;
+        for (int i = 0; i < viewSize; i++)
+            if (unpackSeq(view[i]) >= startSeq)
+                view[kept++] = view[i];
+        viewSize = kept;
+    }
+
+    /**
+     * @return The current view-to-model mapping, passed to listeners so that JTable can keep the selection.
+     */
+    private int[] currentMapping() {
+        int[] mapping = new int[getViewRowCount()];
+        for (int i = 0; i < mapping.length; i++)
+            mapping[i] = convertRowIndexToModel(i);
+        return mapping;
+    }
+
+    // --- Sort keys ---
+
+    /**
+     * Maps a cell to an unsigned 32-bit key whose order matches the column's display order.
+     * IPv6 addresses are keyed by their first 32 bits, so rows of one /32 stay together.
+     * @param column Model column, or -1 for capture order.
+     * @param seq Row sequence number.
+     * @return The key in the low 32 bits.
+     */
+    private long sortKey(int column, long seq) {
+        return switch (column) {
+            case PacketTableModel.COL_NUMBER -> signedKey(store.getNumberBySeq(seq));
+            case PacketTableModel.COL_TIME -> signedKey(store.getTimeOffsetBySeq(seq));
+            case PacketTableModel.COL_SOURCE -> store.isIpV6BySeq(seq)
+                ? store.getSrcAddrHiBySeq(seq) >>> 32 : Integer.toUnsignedLong(store.getSrcAddrBySeq(seq));
+            case PacketTableModel.COL_DESTINATION -> store.isIpV6BySeq(seq)
+                ? store.getDstAddrHiBySeq(seq) >>> 32 : Integer.toUnsignedLong(store.getDstAddrBySeq(seq));
+            case PacketTableModel.COL_PROTOCOL -> (store.getProtocolBySeq(seq) & 0xFF) << 8 | store.getAppProtocolBySeq(seq) & 0xFF;
+            case PacketTableModel.COL_LENGTH -> signedKey(store.getLengthBySeq(seq));
+            case PacketTableModel.COL_INFO -> infoKey(seq);
+            case PacketTableModel.COL_BLOCKED -> store.isBlockedBySeq(seq) ? 1 : 0;
+            case PacketTableModel.COL_OWNER -> ownerKey(seq);
+            case PacketTableModel.COL_PROCESS -> processKey(seq);
+            default -> 0;
+        };
+    }
+
+    /**
+     * Keys the Info column like its text: port summaries ("Raw IP Data" first), then the rows
+     * prefixed with a rule hit by alert kind and rule id. The ports take the low 31 bits, so
+     * destination ports that differ only in the lowest bit keep capture order.
+     */
+    private long infoKey(long seq) {
+        int ruleId = store.getSignatureIdBySeq(seq);
+        if (ruleId != 0) {
+            int kind = store.getAlertKindBySeq(seq);
+            int rank = kind >= 0 && kind < AlertKind.COUNT ? ALERT_KIND_RANKS[kind] : 0;
+            return Integer.toUnsignedLong(Integer.MIN_VALUE | rank << 28 | Math.min(ruleId, 0x0FFFFFFF));
+        }
+        byte protocol = store.getProtocolBySeq(seq);
+        if (protocol != DecodedPacket.PROTO_TCP && protocol != DecodedPacket.PROTO_UDP)
+            return 0;
+        return (long) store.getSrcPortBySeq(seq) << 15 | store.getDstPortBySeq(seq) >>> 1;
+    }
+
+    /**
+     * Keys the owner column like describe(range): country code, then AS number (numbers above
+     * 65535 tie), for the same address the model describes. The database is searched directly
+     * since this may run on the worker thread.
+     */
+    private long ownerKey(long seq) {
+        GeoIpDatabase geoIp = GeoIpDatabase.getDefault();
+        if (geoIp == null || store.isIpV6BySeq(seq))
+            return 0;
+        int range = geoIp.findRange(store.getDstAddrBySeq(seq));
+        if (range < 0)
+            range = geoIp.findRange(store.getSrcAddrBySeq(seq));
+        if (range < 0)
+            return 0;
+        String country = geoIp.getCountry(range);
+        long countryKey = country.isEmpty() ? 0 : country.charAt(0) << 8 | country.charAt(1);
+        return countryKey << 16 | Math.min(Integer.toUnsignedLong(geoIp.getAsn(range)), 0xFFFF);
+    }
+
+    /**
+     * Keys the process column like its "command (pid)" text by the first four characters of the
+     * command name; rows whose names share them keep capture order. A process whose name is
+     * not known is shown as "(pid)" and sorts by pid among the others.
+     */
+    private long processKey(long seq) {
+        int pid = store.getPidBySeq(seq);
+        ProcessAttribution processes = ProcessAttribution.getDefault();
+        if (pid == 0 || processes == null)
+            return 0;
+        String command = processes.getCommand(pid);
+        if (command == null)
+            return (long) '(' << 24 | Math.min(pid, 0xFFFFFF);
+        long key = 0;
+        for (int i = 0; i < 4; i++)
+            key = key << 8 | (i < command.length() ? Math.min(command.charAt(i), 0xFF) : 0);
+        return key;
+    }
+
+    private static int[] alertKindRanks() {
+        Integer[] kinds = new Integer[AlertKind.COUNT];
+        for (int kind = 0; kind < kinds.length; kind++)
+            kinds[kind] = kind;
+        Arrays.sort(kinds, (a, b) -> AlertKind.label(a.byteValue()).compareTo(AlertKind.label(b.byteValue())));
+        int[] ranks = new int[kinds.length];
+        for (int rank = 0; rank < kinds.length; rank++)
+            ranks[kinds[rank]] = rank;
+        return ranks;
+    }
+
+    private static long signedKey(int value) {
+        return Integer.toUnsignedLong(value ^ Integer.MIN_VALUE);
+    }
+
+    /**
+     * Packs key and sequence number so that signed long order equals (key, seq) order.
+     */
+    private static long pack(long key, long seq) {
+        return ((key << 32) ^ Long.MIN_VALUE) | (seq & 0xFFFFFFFFL);
+    }
+
+    private static long unpackSeq(long packed) {
+        return packed & 0xFFFFFFFFL;
+    }
+}
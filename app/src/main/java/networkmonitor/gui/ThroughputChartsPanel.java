@@ -0,0 +1,354 @@
+package networkmonitor.gui;
+
+import java.awt.*;
+import java.awt.event.ActionListener;
+import javax.swing.*;
+
+import networkmonitor.analytics.ThroughputHistory;
+import networkmonitor.analytics.ThroughputHistory.Resolution;
+import networkmonitor.analytics.ThroughputHistory.Series;
+import networkmonitor.gui.ApplicationFrame.FlatButton;
+import networkmonitor.service.CaptureService;
+import networkmonitor.util.Lttb;
+
+/**
+ * Panel for the Throughput Charts view: packets/s, bytes/s, blocked packets/s and the
+ * protocol mix over the last minute, hour, day or week.
+ * The charts read the per-second ring buffers of {@link ThroughputHistory}, keep one point
+ * per pixel column with LTTB downsampling and draw with plain Java2D polylines into
+ * preallocated coordinate arrays, so a full day repaints in a few milliseconds without
+ * per-point garbage.
+ */
+public class ThroughputChartsPanel extends JPanel {
+    // Refresh interval of the charts, the sampling period of the history
+    private static final int REFRESH_MILLIS = 1000;
+
+    // Chart colors
+    private static final Color COLOR_CHART_BG = new Color(60, 63, 65);
+    private static final Color COLOR_GRID = new Color(85, 88, 90);
+    private static final Color COLOR_PACKETS = new Color(124, 77, 255);
+    private static final Color COLOR_BYTES = new Color(38, 166, 154);
+    private static final Color COLOR_BLOCKED = new Color(239, 83, 80);
+    private static final Color COLOR_TCP = new Color(66, 133, 244);
+    private static final Color COLOR_UDP = new Color(255, 179, 0);
+    private static final Color COLOR_OTHER = new Color(158, 158, 158);
+
+    private static final Font TITLE_FONT = new Font(ApplicationFrame.SANS_SERIF_FONT, Font.BOLD, 13);
+    private static final Font AXIS_FONT = new Font("Monospaced", Font.PLAIN, 11);
+
+    // Plot margins inside a chart
+    private static final int MARGIN_LEFT = 80;
+    private static final int MARGIN_RIGHT = 15;
+    private static final int MARGIN_TOP = 28;
+    private static final int MARGIN_BOTTOM = 22;
+
+    // Horizontal grid lines above the baseline
+    private static final int GRID_LINES = 4;
+
+    // Most series in one chart, plus a buffer for the stacked total
+    private static final int MAX_SERIES = 3;
+
+    /**
+     * Time spans a chart can show.
+     */
+    enum Range {
+        MINUTE("Minute", "-60 s", Resolution.SECOND, 60),
+        HOUR("Hour", "-1 h", Resolution.SECOND, 3_600),
+        DAY("Day", "-24 h", Resolution.SECOND, 86_400),
+        WEEK("Week", "-7 d", Resolution.MINUTE, 10_080);
+
+        private final String title;
+        private final String startLabel;
+        private final Resolution resolution;
+        private final int points;
+
+        Range(String title, String startLabel, Resolution resolution, int points) {
+            this.title = title;
+            this.startLabel = startLabel;
+            this.resolution = resolution;
+            this.points = points;
+        }
+    }
+
+    // Transient because ThroughputHistory is not Serializable
+    private final transient ThroughputHistory history;
+
+    // Selected time span, EDT only
+    private Range range = Range.MINUTE;
+
+    // Scratch buffers shared by the charts, which all paint on the EDT
+    private final float[][] values = new float[MAX_SERIES + 1][largestRange()];
+    private final int[] indices = new int[largestRange()];
+    private int[] xs = new int[0];
+    private int[] ys = new int[0];
+
+    private JLabel rangeLabel;
+    private final Timer refreshTimer;
+
+    /**
+     * Constructs the Throughput Charts panel.
+     * @param backAction Action to perform when the "Back to Menu" button is clicked.
+     * @param sharedService The global CaptureService instance from ApplicationFrame.
+     */
+    public ThroughputChartsPanel(ActionListener backAction, CaptureService sharedService) {
+        this.history = sharedService.getThroughputHistory();
+
+        setLayout(new BorderLayout());
+        setBackground(ApplicationFrame.COLOR_BACKGROUND);
+
+        // --- TOP: Toolbar with the range selection and navigation ---
+        JPanel toolbar = new JPanel(new BorderLayout());
+        toolbar.setBackground(ApplicationFrame.COLOR_BACKGROUND);
+        toolbar.setBorder(BorderFactory.createMatteBorder(0, 0, 1, 0, Color.GRAY));
+
+        JPanel leftControls = new JPanel(new FlowLayout(FlowLayout.LEFT, 15, 10));
+        leftControls.setBackground(ApplicationFrame.COLOR_BACKGROUND);
+        JLabel titleLabel = new JLabel("Throughput");
+        titleLabel.setForeground(ApplicationFrame.COLOR_TEXT);
+        titleLabel.setFont(new Font(ApplicationFrame.SANS_SERIF_FONT, Font.BOLD, 16));
+        rangeLabel = new JLabel();
+        rangeLabel.setForeground(Color.GRAY);
+        rangeLabel.setFont(new Font(ApplicationFrame.SANS_SERIF_FONT, Font.PLAIN, 14));
+        leftControls.add(titleLabel);
+        leftControls.add(rangeLabel);
+        for (Range option : Range.values()) {
+            FlatButton rangeBtn = new FlatButton(option.title, 20, 25);
+            rangeBtn.addActionListener(e -> selectRange(option));
+            leftControls.add(rangeBtn);
+        }
+
+        JPanel rightControls = new JPanel(new FlowLayout(FlowLayout.RIGHT, 15, 10));
+        rightControls.setBackground(ApplicationFrame.COLOR_BACKGROUND);
+        FlatButton backBtn = new FlatButton("Back to Menu", 30, 35);
+        backBtn.addActionListener(backAction);
+        rightControls.add(backBtn);
+
+        toolbar.add(leftControls, BorderLayout.WEST);
+        toolbar.add(rightControls, BorderLayout.EAST);
+        add(toolbar, BorderLayout.NORTH);
+
+        // --- CENTER: One chart per measure ---
+        JPanel charts = new JPanel(new GridLayout(0, 1, 0, 10));
+        charts.setBackground(ApplicationFrame.COLOR_BACKGROUND);
+        charts.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        charts.add(new Chart(new Series[] {Series.PACKETS}, new Color[] {COLOR_PACKETS}, false));
+        charts.add(new Chart(new Series[] {Series.BYTES}, new Color[] {COLOR_BYTES}, false));
+        charts.add(new Chart(new Series[] {Series.BLOCKED}, new Color[] {COLOR_BLOCKED}, false));
+        charts.add(new Chart(new Series[] {Series.TCP, Series.UDP, Series.OTHER},
+            new Color[] {COLOR_TCP, COLOR_UDP, COLOR_OTHER}, true));
+        add(charts, BorderLayout.CENTER);
+
+        selectRange(Range.MINUTE);
+
+        // Only repaints while the panel is on screen
+        refreshTimer = new Timer(REFRESH_MILLIS, e -> {
+            if (isShowing())
+                repaint();
+        });
+        refreshTimer.start();
+    }
+
+    private static int largestRange() {
+        int largest = 0;
+        for (Range option : Range.values())
+            largest = Math.max(largest, option.points);
+        return largest;
+    }
+
+    private void selectRange(Range selected) {
+        range = selected;
+        rangeLabel.setText("| Last " + selected.title.toLowerCase());
+        repaint();
+    }
+
+    /**
+     * Grows the coordinate arrays; they only reallocate when the panel gets wider.
+     */
+    private void ensureCoordinates(int points) {
+        if (xs.length < points + 2) {
+            xs = new int[points + 2];
+            ys = new int[points + 2];
+        }
+    }
+
+    /**
+     * Formats a rate for the axis and the titles.
+     * @param value The rate per second
+     * @param isBytes Whether the rate is in bytes
+     * @return e.g. "1.5 MiB/s", "12.3k"
+     */
+    static String formatRate(double value, boolean isBytes) {
+        if (isBytes)
+            return TopTalkersPanel.formatBytes(Math.round(value)) + "/s";
+        if (value >= 1_000_000)
+            return String.format("%.1fM", value / 1_000_000);
+        if (value >= 1_000)
+            return String.format("%.1fk", value / 1_000);
+        return value >= 10 || value == 0 ? String.format("%.0f", value) : String.format("%.1f", value);
+    }
+
+    /**
+     * Rounds a grid step up to 1, 2 or 5 times a power of ten.
+     */
+    private static double niceCeiling(double value) {
+        if (value <= 0)
+            return 1;
+        double magnitude = Math.pow(10, Math.floor(Math.log10(value)));
+        double scaled = value / magnitude;
+        if (scaled <= 1)
+            return magnitude;
+        if (scaled <= 2)
+            return 2 * magnitude;
+        if (scaled <= 5)
+            return 5 * magnitude;
+        return 10 * magnitude;
+    }
+
+    /**
+     * One chart: a line per series, or the series stacked as filled areas.
+     */
+    private class Chart extends JComponent {
+        private final Series[] series;
+        private final Color[] colors;
+        private final boolean stacked;
+        private final boolean isBytes;
+
+        Chart(Series[] series, Color[] colors, boolean stacked) {
+            this.series = series;
+            this.colors = colors;
+            this.stacked = stacked;
+            this.isBytes = series[0] == Series.BYTES;
+            setPreferredSize(new Dimension(800, 150));
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            Graphics2D g2 = (Graphics2D) g;
+            g2.setColor(COLOR_CHART_BG);
+            g2.fillRect(0, 0, getWidth(), getHeight());
+            g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+
+            int plotWidth = getWidth() - MARGIN_LEFT - MARGIN_RIGHT;
+            int plotHeight = getHeight() - MARGIN_TOP - MARGIN_BOTTOM;
+            paintTitle(g2);
+            if (plotWidth < 3 || plotHeight < 3)
+                return;
+
+            int count = history.copyRecent(series, range.resolution, range.points, values);
+            // The stacked total goes into the extra buffer; it picks the points of every layer
+            float[] total = values[MAX_SERIES];
+            if (stacked) {
+                for (int i = 0; i < count; i++) {
+                    float sum = 0;
+                    for (int s = 0; s < series.length; s++)
+                        sum += values[s][i];
+                    total[i] = sum;
+                }
+            }
+
+            float max = 0;
+            for (int s = 0; s < (stacked ? 1 : series.length); s++) {
+                float[] line = stacked ? total : values[s];
+                for (int i = 0; i < count; i++)
+                    max = Math.max(max, line[i]);
+            }
+            double axisMax = niceCeiling(max / GRID_LINES) * GRID_LINES;
+            paintGrid(g2, plotWidth, plotHeight, axisMax);
+            if (count < 2)
+                return;
+
+            ensureCoordinates(plotWidth);
+            int baseline = MARGIN_TOP + plotHeight - 1;
+            // The newest value sits on the right edge, a filling history grows from there
+            int offset = range.points - count;
+            if (stacked) {
+                int kept = Lttb.downsample(total, count, plotWidth, indices);
+                for (int layer = series.length - 1; layer >= 0; layer--) {
+                    for (int k = 0; k < kept; k++) {
+                        int i = indices[k];
+                        float sum = 0;
+                        for (int s = 0; s <= layer; s++)
+                            sum += values[s][i];
+                        xs[k] = toX(offset + i, plotWidth);
+                        ys[k] = toY(sum, axisMax, plotHeight);
+                    }
+                    xs[kept] = xs[kept - 1];
+                    ys[kept] = baseline;
+                    xs[kept + 1] = xs[0];
+                    ys[kept + 1] = baseline;
+                    g2.setColor(colors[layer]);
+                    g2.fillPolygon(xs, ys, kept + 2);
+                }
+            } else {
+                for (int s = 0; s < series.length; s++) {
+                    int kept = Lttb.downsample(values[s], count, plotWidth, indices);
+                    for (int k = 0; k < kept; k++) {
+                        xs[k] = toX(offset + indices[k], plotWidth);
+                        ys[k] = toY(values[s][indices[k]], axisMax, plotHeight);
+                    }
+                    g2.setColor(colors[s]);
+                    g2.drawPolyline(xs, ys, kept);
+                }
+            }
+        }
+
+        private int toX(int slot, int plotWidth) {
+            return MARGIN_LEFT + (int) ((long) slot * (plotWidth - 1) / Math.max(1, range.points - 1));
+        }
+
+        private int toY(double value, double axisMax, int plotHeight) {
+            return MARGIN_TOP + plotHeight - 1 - (int) Math.round(Math.min(value, axisMax) / axisMax * (plotHeight - 1));
+        }
+
+        /**
+         * Draws the chart name with the rate of the last second, and the legend of a stacked chart.
+         */
+        private void paintTitle(Graphics2D g2) {
+            g2.setFont(TITLE_FONT);
+            FontMetrics metrics = g2.getFontMetrics();
+            int x = MARGIN_LEFT;
+            int y = 5 + metrics.getAscent();
+            String title;
+            if (stacked) {
+                title = "Protocol mix (packets/s)";
+            } else {
+                title = series[0].getTitle() + "  " + formatRate(history.getLatest(series[0]), isBytes);
+            }
+            g2.setColor(ApplicationFrame.COLOR_TEXT);
+            g2.drawString(title, x, y);
+            if (!stacked)
+                return;
+
+            x += metrics.stringWidth(title) + 20;
+            for (int s = 0; s < series.length; s++) {
+                g2.setColor(colors[s]);
+                g2.fillRect(x, y - 10, 10, 10);
+                x += 14;
+                String entry = series[s].getTitle() + " " + formatRate(history.getLatest(series[s]), false);
+                g2.setColor(ApplicationFrame.COLOR_TEXT);
+                g2.drawString(entry, x, y);
+                x += metrics.stringWidth(entry) + 15;
+            }
+        }
+
+        /**
+         * Draws the horizontal grid with its value labels and the time axis labels.
+         */
+        private void paintGrid(Graphics2D g2, int plotWidth, int plotHeight, double axisMax) {
+            g2.setFont(AXIS_FONT);
+            FontMetrics metrics = g2.getFontMetrics();
+            for (int line = 0; line <= GRID_LINES; line++) {
+                double value = axisMax * line / GRID_LINES;
+                int y = toY(value, axisMax, plotHeight);
+                g2.setColor(COLOR_GRID);
+                g2.drawLine(MARGIN_LEFT, y, MARGIN_LEFT + plotWidth - 1, y);
+                String label = formatRate(value, isBytes);
+                g2.setColor(Color.LIGHT_GRAY);
+                g2.drawString(label, MARGIN_LEFT - 8 - metrics.stringWidth(label), y + metrics.getAscent() / 2 - 1);
+            }
+            int y = getHeight() - 6;
+            g2.drawString(range.startLabel, MARGIN_LEFT, y);
+            g2.drawString("now", MARGIN_LEFT + plotWidth - metrics.stringWidth("now"), y);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package networkmonitor.gui;
+
+import java.awt.*;
+import java.awt.event.ActionListener;
+import java.util.List;
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.JTableHeader;
+import javax.swing.table.TableColumnModel;
+
+import networkmonitor.analytics.TopTalkers;
+import networkmonitor.analytics.TopTalkers.Dimension;
+import networkmonitor.analytics.TopTalkers.Talker;
+import networkmonitor.gui.ApplicationFrame.FlatButton;
+import networkmonitor.service.CaptureService;
+
+/**
+ * Panel for the Top Talkers view: the heaviest source addresses, destination addresses
+ * and destination ports of the sliding window, one table each.
+ * The tables are filled from the snapshot the capture thread publishes once per second;
+ * nothing here runs per packet.
+ */
+public class TopTalkersPanel extends JPanel {
+    // Refresh interval of the tables
+    private static final int REFRESH_MILLIS = 1000;
+
+    // Transient because CaptureService is not Serializable
+    private final transient CaptureService captureService;
+
+    // UI Components
+    private final TalkerTableModel[] tableModels = new TalkerTableModel[Dimension.values().length];
+    private JLabel summaryLabel;
+    private final Timer refreshTimer;
+
+    // Last snapshot shown, to skip repaints when the capture thread has not published a new one
+    private transient TopTalkers.Snapshot shownSnapshot;
+
+    /**
+     * Constructs the Top Talkers panel.
+     * @param backAction Action to perform when the "Back to Menu" button is clicked.
+     * @param sharedService The global CaptureService instance from ApplicationFrame.
+     */
+    public TopTalkersPanel(ActionListener backAction, CaptureService sharedService) {
+        this.captureService = sharedService;
+
+        setLayout(new BorderLayout());
+        setBackground(ApplicationFrame.COLOR_BACKGROUND);
+
+        // --- TOP: Toolbar with the window summary and navigation ---
+        JPanel toolbar = new JPanel(new BorderLayout());
+        toolbar.setBackground(ApplicationFrame.COLOR_BACKGROUND);
+        toolbar.setBorder(BorderFactory.createMatteBorder(0, 0, 1, 0, Color.GRAY));
+
+        JPanel leftControls = new JPanel(new FlowLayout(FlowLayout.LEFT, 15, 10));
+        leftControls.setBackground(ApplicationFrame.COLOR_BACKGROUND);
+        JLabel titleLabel = new JLabel("Top Talkers");
+        titleLabel.setForeground(ApplicationFrame.COLOR_TEXT);
+        titleLabel.setFont(new Font(ApplicationFrame.SANS_SERIF_FONT, Font.BOLD, 16));
+        summaryLabel = new JLabel("Waiting for traffic");
+        summaryLabel.setForeground(Color.GRAY);
+        summaryLabel.setFont(new Font(ApplicationFrame.SANS_SERIF_FONT, Font.PLAIN, 14));
+        leftControls.add(titleLabel);
+        leftControls.add(summaryLabel);
+
+        JPanel rightControls = new JPanel(new FlowLayout(FlowLayout.RIGHT, 15, 10));
+        rightControls.setBackground(ApplicationFrame.COLOR_BACKGROUND);
+        FlatButton backBtn = new FlatButton("Back to Menu", 30, 35);
+        backBtn.addActionListener(backAction);
+        rightControls.add(backBtn);
+
+        toolbar.add(leftControls, BorderLayout.WEST);
+        toolbar.add(rightControls, BorderLayout.EAST);
+        add(toolbar, BorderLayout.NORTH);
+
+        // --- CENTER: One table per dimension ---
+        JPanel tables = new JPanel(new GridLayout(1, 0, 10, 0));
+        tables.setBackground(ApplicationFrame.COLOR_BACKGROUND);
+        tables.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        for (Dimension dimension : Dimension.values()) {
+            tableModels[dimension.ordinal()] = new TalkerTableModel(dimension);
+            tables.add(createTablePane(tableModels[dimension.ordinal()]));
+        }
+        add(tables, BorderLayout.CENTER);
+
+        // Only refreshes while the panel is on screen
+        refreshTimer = new Timer(REFRESH_MILLIS, e -> refresh());
+        refreshTimer.start();
+    }
+
+    /**
+     * Creates a styled table for one dimension inside a titled scroll pane.
+     */
+    private JScrollPane createTablePane(TalkerTableModel model) {
+        JTable table = new JTable(model);
+        table.setBackground(new Color(60, 63, 65));
+        table.setForeground(Color.WHITE);
+        table.setGridColor(new Color(100, 100, 100));
+        table.setRowHeight(25);
+        table.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        table.setFillsViewportHeight(true);
+
+        JTableHeader header = table.getTableHeader();
+        header.setBackground(new Color(45, 45, 48));
+        header.setForeground(Color.WHITE);
+        header.setFont(new Font(ApplicationFrame.SANS_SERIF_FONT, Font.BOLD, 13));
+        header.setReorderingAllowed(false);
+
+        DefaultTableCellRenderer rightAligned = new DefaultTableCellRenderer();
+        rightAligned.setHorizontalAlignment(SwingConstants.RIGHT);
+        TableColumnModel columnModel = table.getColumnModel();
+        columnModel.getColumn(0).setMaxWidth(40);
+        columnModel.getColumn(1).setPreferredWidth(160);
+        for (int column = 2; column < columnModel.getColumnCount(); column++)
+            columnModel.getColumn(column).setCellRenderer(rightAligned);
+
+        JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.getViewport().setBackground(ApplicationFrame.COLOR_BACKGROUND);
+        scrollPane.setBackground(ApplicationFrame.COLOR_BACKGROUND);
+        scrollPane.setBorder(BorderFactory.createTitledBorder(BorderFactory.createLineBorder(Color.GRAY),
+            model.dimension.getTitle(), 0, 0, new Font(ApplicationFrame.SANS_SERIF_FONT, Font.BOLD, 13), ApplicationFrame.COLOR_TEXT));
+        return scrollPane;
+    }
+
+    /**
+     * Shows the latest snapshot. Runs on the EDT once per second.
+     */
+    private void refresh() {
+        if (!isShowing())
+            return;
+
+        TopTalkers.Snapshot snapshot = captureService.getTopTalkers().getSnapshot();
+        if (snapshot == shownSnapshot)
+            return;
+        shownSnapshot = snapshot;
+
+        for (TalkerTableModel model : tableModels)
+            model.setTalkers(snapshot.getTalkers(model.dimension), snapshot.getTotalBytes());
+
+        if (snapshot.getTotalPackets() == 0) {
+            summaryLabel.setText("Waiting for traffic");
+            return;
+        }
+        summaryLabel.setText(String.format("| Last %d s: %s in %,d packets (estimates at most +%s)",
+            Math.max(1, snapshot.getWindowNanos() / 1_000_000_000L), formatBytes(snapshot.getTotalBytes()),
+            snapshot.getTotalPackets(), formatBytes(snapshot.getErrorBytes())));
+    }
+
+    /**
+     * Formats a byte count with a binary unit.
+     * @param bytes The count
+     * @return e.g. "512 B", "1.5 MiB"
+     */
+    static String formatBytes(long bytes) {
+        if (bytes < 1024)
+            return bytes + " B";
+        String[] units = {"KiB", "MiB", "GiB", "TiB"};
+        double value = bytes;
+        int unit = -1;
+        while (value >= 1024 && unit < units.length - 1) {
+            value /= 1024;
+            unit++;
+        }
+        return String.format("%.1f %s", value, units[unit]);
+    }
+
+    /**
+     * Rows of one dimension: rank, talker, bytes, packets and share of the window's bytes.
+     */
+    private static class TalkerTableModel extends AbstractTableModel {
+        private static final String[] COLUMN_NAMES = {"#", "Talker", "Bytes", "Packets", "Share"};
+
+        private final Dimension dimension;
+        private transient List<Talker> talkers = List.of();
+        private long totalBytes;
+
+        TalkerTableModel(Dimension dimension) {
+            this.dimension = dimension;
+        }
+
+        void setTalkers(List<Talker> talkers, long totalBytes) {
+            this.talkers = talkers;
+            this.totalBytes = totalBytes;
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return talkers.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMN_NAMES.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMN_NAMES[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            Talker talker = talkers.get(row);
+            switch (column) {
+                case 0: return row + 1;
+                case 1: return talker.getLabel();
+                case 2: return formatBytes(talker.getBytes());
+                case 3: return String.format("%,d", talker.getPackets());
+                default: return totalBytes == 0 ? "" : String.format("%.1f %%", 100.0 * Math.min(talker.getBytes(), totalBytes) / totalBytes);
+            }
+        }
+    }
+}
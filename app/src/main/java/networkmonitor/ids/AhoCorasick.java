@@ -0,0 +1,184 @@
+package networkmonitor.ids;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Multi-pattern matcher compiled into a deterministic automaton (Aho-Corasick with the
+ * failure links folded into the transitions), so scanning costs one table read per input
+ * byte no matter how many patterns are loaded.
+ * <p>
+ * Input bytes are first mapped to byte classes: bytes that occur in no pattern share class 0,
+ * which shrinks each row of the table to the size of the patterns' alphabet. The transitions
+ * live in one flat int array indexed by {@code row + class}; entries hold the row offset of
+ * the target state, bit-inverted when the target state completes a pattern. A scan therefore
+ * needs no per-state objects and no extra lookup on the common no-match path.
+ * <p>
+ * The state passed between calls is an opaque int (0 = start), so a scan can resume across
+ * the chunks of a stream. Immutable after construction and safe to share between threads.
+ */
+public final class AhoCorasick {
+    /**
+     * Receives pattern hits during a scan.
+     */
+    @FunctionalInterface
+    public interface MatchListener {
+        /**
+         * Called for each input position where a pattern ends.
+         * @param ruleId Id of the longest pattern ending at this position.
+         * @param end Offset just past the last byte of the match.
+         */
+        void onMatch(int ruleId, int end);
+    }
+
+    // Input byte -> byte class
+    private final int[] classes = new int[256];
+
+    // Number of byte classes (row length)
+    private final int alphabetSize;
+
+    // Transitions: table[row + class] = target row, or ~target row if the target has an output
+    private final int[] table;
+
+    // Rule id per state (0 = none), indexed by row / alphabetSize
+    private final int[] outputs;
+
+    private final int stateCount;
+
+    /**
+     * Compiles the automaton.
+     * @param patterns The byte patterns (non-empty).
+     * @param ruleIds Rule id per pattern (non-zero). The first pattern wins when two are identical.
+     * @param caseInsensitive If true, ASCII letters match regardless of case.
+     */
+    public AhoCorasick(List<byte[]> patterns, int[] ruleIds, boolean caseInsensitive) {
+        // 1. Byte classes over the patterns' alphabet
+        int classCount = 1;
+        for (byte[] pattern : patterns) {
+            if (pattern.length == 0)
+                throw new IllegalArgumentException("Empty pattern");
+            for (byte b : pattern) {
+                int value = caseInsensitive ? toLower(b & 0xFF) : b & 0xFF;
+                if (classes[value] == 0)
+                    classes[value] = classCount++;
+            }
+        }
+        if (caseInsensitive)
+            for (int c = 'A'; c <= 'Z'; c++)
+                classes[c] = classes[c + ('a' - 'A')];
+        alphabetSize = classCount;
+
+        // 2. Trie: goto[state * alphabetSize + class] = child state (0 = none, the root is never a child)
+        int maxStates = 1;
+        for (byte[] pattern : patterns)
+            maxStates += pattern.length;
+        if ((long) maxStates * alphabetSize > Integer.MAX_VALUE / 2)
+            throw new IllegalArgumentException("Pattern set too large: " + maxStates + " states x " + alphabetSize + " classes");
+
+        int[] transitions = new int[alphabetSize * 64];
+        int[] stateOutputs = new int[64];
+        int states = 1;
+        for (int p = 0; p < patterns.size(); p++) {
+            int state = 0;
+            for (byte b : patterns.get(p)) {
+                int index = state * alphabetSize + classes[b & 0xFF];
+                if (transitions[index] == 0) {
+                    if ((states + 1) * alphabetSize > transitions.length) {
+                        transitions = Arrays.copyOf(transitions, Math.max(transitions.length * 2, (states + 1) * alphabetSize));
+                        stateOutputs = Arrays.copyOf(stateOutputs, transitions.length / alphabetSize);
+                    }
+                    transitions[index] = states++;
+                }
+                state = transitions[index];
+            }
+            if (stateOutputs[state] == 0)
+                stateOutputs[state] = ruleIds[p];
+        }
+        stateCount = states;
+
+        // 3. Breadth-first: failure links, missing transitions and inherited outputs
+        int[] failure = new int[states];
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        for (int c = 0; c < alphabetSize; c++) {
+            int child = transitions[c];
+            if (child != 0)
+                queue[tail++] = child;
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            int fail = failure[state];
+            if (stateOutputs[state] == 0)
+                stateOutputs[state] = stateOutputs[fail];
+            for (int c = 0; c < alphabetSize; c++) {
+                int index = state * alphabetSize + c;
+                int child = transitions[index];
+                if (child != 0) {
+                    failure[child] = transitions[fail * alphabetSize + c];
+                    queue[tail++] = child;
+                } else {
+                    transitions[index] = transitions[fail * alphabetSize + c];
+                }
+            }
+        }
+
+        // 4. Flat table of row offsets, inverted for targets with an output
+        table = new int[states * alphabetSize];
+        for (int i = 0; i < table.length; i++) {
+            int target = transitions[i];
+            int row = target * alphabetSize;
+            table[i] = stateOutputs[target] != 0 ? ~row : row;
+        }
+        outputs = Arrays.copyOf(stateOutputs, states);
+    }
+
+    /**
+     * Scans bytes, reporting every position where a pattern ends. Allocation-free.
+     * @param data The input.
+     * @param offset First byte to scan.
+     * @param length Number of bytes to scan.
+     * @param state State returned by the previous scan of the same stream, or 0 to start fresh.
+     * @param listener Receives the hits.
+     * @return The state after the last byte.
+     */
+    public int scan(byte[] data, int offset, int length, int state, MatchListener listener) {
+        final int[] transitions = table;
+        final int[] byteClasses = classes;
+        int row = state;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int next = transitions[row + byteClasses[data[i] & 0xFF]];
+            if (next < 0) {
+                next = ~next;
+                listener.onMatch(outputs[next / alphabetSize], i + 1);
+            }
+            row = next;
+        }
+        return row;
+    }
+
+    /**
+     * @return Number of automaton states.
+     */
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    /**
+     * @return Number of byte classes (table row length).
+     */
+    public int getAlphabetSize() {
+        return alphabetSize;
+    }
+
+    /**
+     * @return Heap used by the transition table, in bytes.
+     */
+    public long getTableBytes() {
+        return table.length * 4L + outputs.length * 4L;
+    }
+
+    private static int toLower(int value) {
+        return value >= 'A' && value <= 'Z' ? value + ('a' - 'A') : value;
+    }
+}
@@ -0,0 +1,297 @@
+package networkmonitor.ids;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import networkmonitor.model.DecodedPacket;
+
+/**
+ * Header rules compiled for bit-vector classification. Each field (protocol, TCP flags,
+ * source and destination address, source and destination port) is cut into the elementary
+ * intervals formed by the rule boundaries, and each interval carries the bit vector of the
+ * rules it satisfies. A packet costs one table or binary-search lookup per field, then an
+ * AND of six bit vectors; the first set bit is the matching rule with the lowest index.
+ * <p>
+ * Every vector has a summary with one bit per 64-bit word (aggregated bit vectors), and the
+ * AND starts on the summaries, so only words that are non-zero in all six vectors are read.
+ * The work per packet therefore grows with the number of candidate rules, not with the
+ * size of the rule set. Identical vectors are shared. Immutable and safe to share between threads.
+ */
+public final class HeaderClassifier {
+    // Number of TCP flag combinations; index FLAGS_NONE is used when flags do not apply
+    private static final int FLAGS_NONE = 256;
+
+    private final HeaderRule[] rules;
+    private final Map<Integer, HeaderRule> rulesById = new HashMap<>();
+
+    // Interned vectors and their summaries
+    private final long[][] vectors;
+    private final long[][] summaries;
+
+    // Vector index per protocol number and per TCP flags value
+    private final int[] protocolVectors = new int[256];
+    private final int[] flagVectors = new int[FLAGS_NONE + 1];
+
+    // Range fields
+    private final RangeField sources;
+    private final RangeField destinations;
+    private final RangeField sourcePorts;
+    private final RangeField destinationPorts;
+
+    /**
+     * Compiles the rules. Earlier rules take precedence when several match.
+     * @param rules The rules in priority order.
+     */
+    public HeaderClassifier(List<HeaderRule> rules) {
+        this.rules = rules.toArray(new HeaderRule[0]);
+        int n = this.rules.length;
+        for (HeaderRule rule : this.rules)
+            rulesById.putIfAbsent(rule.getId(), rule);
+        VectorPool pool = new VectorPool(n);
+
+        long[] bits = new long[words(n)];
+        for (int protocol = 0; protocol < 256; protocol++) {
+            Arrays.fill(bits, 0);
+            for (int i = 0; i < n; i++) {
+                int ruleProtocol = this.rules[i].getProtocol();
+                if (ruleProtocol < 0 || ruleProtocol == protocol)
+                    set(bits, i);
+            }
+            protocolVectors[protocol] = pool.intern(bits);
+        }
+        for (int flags = 0; flags <= FLAGS_NONE; flags++) {
+            Arrays.fill(bits, 0);
+            for (int i = 0; i < n; i++) {
+                HeaderRule rule = this.rules[i];
+                if (rule.getFlagMask() == 0 || (flags < FLAGS_NONE && (flags & rule.getFlagMask()) == rule.getFlagValue()))
+                    set(bits, i);
+            }
+            flagVectors[flags] = pool.intern(bits);
+        }
+
+        long[] from = new long[n];
+        long[] to = new long[n];
+        for (int i = 0; i < n; i++) { from[i] = this.rules[i].getSrcFrom(); to[i] = this.rules[i].getSrcTo(); }
+        sources = new RangeField(from, to, 0xFFFFFFFFL, pool);
+        for (int i = 0; i < n; i++) { from[i] = this.rules[i].getDstFrom(); to[i] = this.rules[i].getDstTo(); }
+        destinations = new RangeField(from, to, 0xFFFFFFFFL, pool);
+        for (int i = 0; i < n; i++) { from[i] = this.rules[i].getSrcPortFrom(); to[i] = this.rules[i].getSrcPortTo(); }
+        sourcePorts = new RangeField(from, to, 0xFFFF, pool);
+        for (int i = 0; i < n; i++) { from[i] = this.rules[i].getDstPortFrom(); to[i] = this.rules[i].getDstPortTo(); }
+        destinationPorts = new RangeField(from, to, 0xFFFF, pool);
+
+        vectors = pool.vectors.toArray(new long[0][]);
+        summaries = pool.summaries.toArray(new long[0][]);
+    }
+
+    /**
+     * Finds the first rule matching a decoded packet. Allocation-free.
+     * IPv6 packets only see rules without address conditions, and non-first IP fragments
+     * (which carry no transport header) only rules without port or flag conditions.
+     * @param packet The decoded packet.
+     * @return The matching rule, or null.
+     */
+    public HeaderRule classify(DecodedPacket packet) {
+        if (rules.length == 0)
+            return null;
+
+        boolean noTransport = packet.isFragment && packet.fragmentOffset > 0;
+        boolean ipV6 = packet.ipVersion == 6;
+        int protocol = packet.protocol & 0xFF;
+
+        int p = protocolVectors[protocol];
+        int f = flagVectors[protocol == DecodedPacket.PROTO_TCP && !noTransport ? packet.tcpFlags & 0xFF : FLAGS_NONE];
+        int sa = ipV6 ? sources.any : sources.lookup(packet.srcAddr & 0xFFFFFFFFL);
+        int da = ipV6 ? destinations.any : destinations.lookup(packet.dstAddr & 0xFFFFFFFFL);
+        int sp = noTransport ? sourcePorts.any : sourcePorts.lookup(packet.srcPort & 0xFFFF);
+        int dp = noTransport ? destinationPorts.any : destinationPorts.lookup(packet.dstPort & 0xFFFF);
+
+        long[] sumP = summaries[p], sumF = summaries[f], sumSa = summaries[sa];
+        long[] sumDa = summaries[da], sumSp = summaries[sp], sumDp = summaries[dp];
+        for (int s = 0; s < sumP.length; s++) {
+            long candidates = sumP[s] & sumF[s] & sumSa[s] & sumDa[s] & sumSp[s] & sumDp[s];
+            while (candidates != 0) {
+                int w = (s << 6) + Long.numberOfTrailingZeros(candidates);
+                long match = vectors[p][w] & vectors[f][w] & vectors[sa][w]
+                    & vectors[da][w] & vectors[sp][w] & vectors[dp][w];
+                if (match != 0)
+                    return rules[(w << 6) + Long.numberOfTrailingZeros(match)];
+                candidates &= candidates - 1;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return Number of compiled rules.
+     */
+    public int size() {
+        return rules.length;
+    }
+
+    /**
+     * @param ruleId A rule id.
+     * @return The first rule with that id, or null.
+     */
+    public HeaderRule getRule(int ruleId) {
+        return rulesById.get(ruleId);
+    }
+
+    /**
+     * @return Number of distinct bit vectors after sharing.
+     */
+    public int getVectorCount() {
+        return vectors.length;
+    }
+
+    /**
+     * @return Approximate heap used by the vectors and the interval tables, in bytes.
+     */
+    public long getTableBytes() {
+        long bytes = (protocolVectors.length + flagVectors.length) * 4L;
+        for (int i = 0; i < vectors.length; i++)
+            bytes += (vectors[i].length + summaries[i].length) * 8L;
+        for (RangeField field : new RangeField[]{sources, destinations, sourcePorts, destinationPorts})
+            bytes += field.starts.length * 12L;
+        return bytes;
+    }
+
+    private static int words(int bits) {
+        return Math.max(1, (bits + 63) >>> 6);
+    }
+
+    private static void set(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    /**
+     * One range field: sorted interval starts and the vector index of each interval.
+     */
+    private static final class RangeField {
+        private final long[] starts;
+        private final int[] vectorIndexes;
+
+        // Vector of the rules without a condition on this field
+        private final int any;
+
+        RangeField(long[] from, long[] to, long max, VectorPool pool) {
+            int n = from.length;
+
+            // Interval boundaries: 0, every range start and every position just past a range end
+            long[] boundaries = new long[2 * n + 1];
+            int count = 0;
+            boundaries[count++] = 0;
+            for (int i = 0; i < n; i++) {
+                boundaries[count++] = from[i];
+                if (to[i] < max)
+                    boundaries[count++] = to[i] + 1;
+            }
+            Arrays.sort(boundaries, 0, count);
+            int unique = 0;
+            for (int i = 0; i < count; i++)
+                if (unique == 0 || boundaries[i] != boundaries[unique - 1])
+                    boundaries[unique++] = boundaries[i];
+
+            // Sweep: rules sorted by start and by end, one snapshot of the active set per interval
+            Integer[] byStart = new Integer[n];
+            Integer[] byEnd = new Integer[n];
+            for (int i = 0; i < n; i++)
+                byStart[i] = byEnd[i] = i;
+            Arrays.sort(byStart, (a, b) -> Long.compare(from[a], from[b]));
+            Arrays.sort(byEnd, (a, b) -> Long.compare(to[a], to[b]));
+
+            long[] active = new long[words(n)];
+            long[] intervalStarts = new long[unique];
+            int[] indexes = new int[unique];
+            int nextStart = 0;
+            int nextEnd = 0;
+            for (int k = 0; k < unique; k++) {
+                long position = boundaries[k];
+                while (nextStart < n && from[byStart[nextStart]] <= position)
+                    set(active, byStart[nextStart++]);
+                while (nextEnd < n && to[byEnd[nextEnd]] < position) {
+                    int rule = byEnd[nextEnd++];
+                    active[rule >>> 6] &= ~(1L << rule);
+                }
+                intervalStarts[k] = position;
+                indexes[k] = pool.intern(active);
+            }
+            starts = intervalStarts;
+            vectorIndexes = indexes;
+
+            Arrays.fill(active, 0);
+            for (int i = 0; i < n; i++)
+                if (from[i] == 0 && to[i] == max)
+                    set(active, i);
+            any = pool.intern(active);
+        }
+
+        int lookup(long value) {
+            int low = 0;
+            int high = starts.length - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (starts[mid] <= value)
+                    low = mid;
+                else
+                    high = mid - 1;
+            }
+            return vectorIndexes[low];
+        }
+    }
+
+    /**
+     * Deduplicates bit vectors and computes their summaries.
+     */
+    private static final class VectorPool {
+        private final int summaryWords;
+        private final List<long[]> vectors = new ArrayList<>();
+        private final List<long[]> summaries = new ArrayList<>();
+        private final Map<VectorKey, Integer> indexes = new HashMap<>();
+
+        VectorPool(int ruleCount) {
+            this.summaryWords = words(words(ruleCount));
+        }
+
+        int intern(long[] bits) {
+            VectorKey key = new VectorKey(bits);
+            Integer index = indexes.get(key);
+            if (index != null)
+                return index;
+
+            long[] copy = bits.clone();
+            long[] summary = new long[summaryWords];
+            for (int w = 0; w < copy.length; w++)
+                if (copy[w] != 0)
+                    set(summary, w);
+            vectors.add(copy);
+            summaries.add(summary);
+            indexes.put(new VectorKey(copy), vectors.size() - 1);
+            return vectors.size() - 1;
+        }
+    }
+
+    // Map key comparing vectors by content
+    private static final class VectorKey {
+        private final long[] bits;
+
+        VectorKey(long[] bits) {
+            this.bits = bits;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof VectorKey))
+                return false;
+            return Arrays.equals(bits, ((VectorKey) o).bits);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(bits);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package networkmonitor.ids;
+
+import java.util.Locale;
+
+import networkmonitor.util.IpAddresses;
+
+/**
+ * One header rule: conditions on the IP protocol, IPv4 source and destination ranges,
+ * port ranges and TCP flags, and the action taken when all of them hold.
+ * <p>
+ * The match part reads {@code proto src sport -> dst dport [flags:SET[/MASK]]}, e.g.
+ * {@code udp 10.0.0.0/8 any -> any 6881-6889} or {@code tcp any any -> any 23 flags:S/SA}.
+ * <ul>
+ *   <li>proto: {@code any}, {@code ip}, {@code tcp}, {@code udp}, {@code icmp} or a protocol number</li>
+ *   <li>addresses: {@code any}, {@code 10.0.0.1}, {@code 10.0.0.0/8} or {@code 10.0.0.1-10.0.0.9}</li>
+ *   <li>ports: {@code any}, {@code 23}, {@code 6881-6889} or {@code 6881:6889}</li>
+ *   <li>flags (TCP only): letters F S R P A U E C that must be set, optionally followed by
+ *       the letters to compare, so {@code S/SA} means SYN set and ACK clear</li>
+ * </ul>
+ * Address conditions apply to IPv4 packets only; IPv6 packets match rules whose addresses are {@code any}.
+ */
+public final class HeaderRule {
+    /**
+     * What happens to a packet matching the rule.
+     */
+    public enum Action {
+        /** Tag the packet with the rule id. */
+        ALERT,
+        /** Tag the packet and mark it as blocked. */
+        BLOCK
+    }
+
+    // Letters of the TCP flag bits, lowest bit first
+    private static final String FLAG_LETTERS = "FSRPAUEC";
+
+    private final int id;
+    private final String name;
+    private final Action action;
+
+    // Conditions: -1 = any protocol; inclusive ranges, addresses unsigned
+    private final int protocol;
+    private final long srcFrom, srcTo;
+    private final long dstFrom, dstTo;
+    private final int srcPortFrom, srcPortTo;
+    private final int dstPortFrom, dstPortTo;
+
+    // TCP flags: (flags & flagMask) == flagValue, flagMask 0 = no condition
+    private final int flagMask;
+    private final int flagValue;
+
+    private HeaderRule(int id, String name, Action action, int protocol, long[] src, int[] srcPorts,
+                       long[] dst, int[] dstPorts, int flagMask, int flagValue) {
+        this.id = id;
+        this.name = name;
+        this.action = action;
+        this.protocol = protocol;
+        this.srcFrom = src[0];
+        this.srcTo = src[1];
+        this.dstFrom = dst[0];
+        this.dstTo = dst[1];
+        this.srcPortFrom = srcPorts[0];
+        this.srcPortTo = srcPorts[1];
+        this.dstPortFrom = dstPorts[0];
+        this.dstPortTo = dstPorts[1];
+        this.flagMask = flagMask;
+        this.flagValue = flagValue;
+    }
+
+    /**
+     * Parses a rule.
+     * @param id Rule id, must be positive (0 means "no match" in PacketInfo).
+     * @param name Short description shown in logs.
+     * @param action {@code alert} or {@code block}.
+     * @param match The match part, see the class description.
+     * @return The rule.
+     * @throws IllegalArgumentException If a field is not understood.
+     */
+    public static HeaderRule parse(int id, String name, String action, String match) {
+        if (id <= 0)
+            throw new IllegalArgumentException("Rule id must be positive: " + id);
+
+        Action parsedAction;
+        try {
+            parsedAction = Action.valueOf(action.strip().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("unknown action '" + action.strip() + "'");
+        }
+
+        String[] tokens = match.strip().toLowerCase(Locale.ROOT).split("\\s+");
+        if ((tokens.length != 6 && tokens.length != 7) || !tokens[3].equals("->"))
+            throw new IllegalArgumentException("expected 'proto src sport -> dst dport [flags:SET/MASK]'");
+
+        int flagMask = 0;
+        int flagValue = 0;
+        if (tokens.length == 7) {
+            if (!tokens[6].startsWith("flags:"))
+                throw new IllegalArgumentException("unknown option '" + tokens[6] + "'");
+            String spec = tokens[6].substring("flags:".length());
+            int slash = spec.indexOf('/');
+            flagValue = parseFlags(slash < 0 ? spec : spec.substring(0, slash));
+            flagMask = slash < 0 ? flagValue : parseFlags(spec.substring(slash + 1)) | flagValue;
+            if (flagMask == 0)
+                throw new IllegalArgumentException("empty flags condition");
+        }
+
+        int protocol = parseProtocol(tokens[0]);
+        if (flagMask != 0 && protocol != 6 && protocol != -1)
+            throw new IllegalArgumentException("flags require tcp");
+        return new HeaderRule(id, name, parsedAction, flagMask != 0 ? 6 : protocol,
+            parseAddresses(tokens[1]), parsePorts(tokens[2]), parseAddresses(tokens[4]), parsePorts(tokens[5]),
+            flagMask, flagValue);
+    }
+
+    private static int parseProtocol(String token) {
+        switch (token) {
+            case "any", "ip": return -1;
+            case "tcp": return 6;
+            case "udp": return 17;
+            case "icmp": return 1;
+            default: break;
+        }
+        try {
+            int protocol = Integer.parseInt(token);
+            if (protocol >= 0 && protocol <= 255)
+                return protocol;
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("invalid protocol '" + token + "'");
+    }
+
+    private static long[] parseAddresses(String token) {
+        if (token.equals("any"))
+            return new long[]{0, 0xFFFFFFFFL};
+
+        int dash = token.indexOf('-');
+        if (dash >= 0) {
+            long from = IpAddresses.parseIpV4(token.substring(0, dash));
+            long to = IpAddresses.parseIpV4(token.substring(dash + 1));
+            if (from < 0 || to < 0 || from > to)
+                throw new IllegalArgumentException("invalid address range '" + token + "'");
+            return new long[]{from, to};
+        }
+
+        int slash = token.indexOf('/');
+        long address = IpAddresses.parseIpV4(slash < 0 ? token : token.substring(0, slash));
+        if (address < 0)
+            throw new IllegalArgumentException("not an IPv4 address '" + token + "'");
+        if (slash < 0)
+            return new long[]{address, address};
+
+        int bits;
+        try {
+            bits = Integer.parseInt(token.substring(slash + 1));
+        } catch (NumberFormatException e) {
+            bits = -1;
+        }
+        if (bits < 0 || bits > 32)
+            throw new IllegalArgumentException("invalid prefix '" + token + "'");
+        long size = 1L << (32 - bits);
+        long from = address & ~(size - 1) & 0xFFFFFFFFL;
+        return new long[]{from, from + size - 1};
+    }
+
+    private static int[] parsePorts(String token) {
+        if (token.equals("any"))
+            return new int[]{0, 0xFFFF};
+
+        int separator = Math.max(token.indexOf('-'), token.indexOf(':'));
+        try {
+            int from = Integer.parseInt(separator < 0 ? token : token.substring(0, separator));
+            int to = separator < 0 ? from : Integer.parseInt(token.substring(separator + 1));
+            if (from >= 0 && from <= to && to <= 0xFFFF)
+                return new int[]{from, to};
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("invalid port range '" + token + "'");
+    }
+
+    private static int parseFlags(String letters) {
+        int flags = 0;
+        for (int i = 0; i < letters.length(); i++) {
+            int bit = FLAG_LETTERS.indexOf(Character.toUpperCase(letters.charAt(i)));
+            if (bit < 0)
+                throw new IllegalArgumentException("unknown TCP flag '" + letters.charAt(i) + "'");
+            flags |= 1 << bit;
+        }
+        return flags;
+    }
+
+    // Rules without an address condition on a side also apply to IPv6 packets
+    boolean isAnySource() {
+        return srcFrom == 0 && srcTo == 0xFFFFFFFFL;
+    }
+
+    boolean isAnyDestination() {
+        return dstFrom == 0 && dstTo == 0xFFFFFFFFL;
+    }
+
+    // Getters
+    public int getId() { return id; }
+    public String getName() { return name; }
+    public Action getAction() { return action; }
+    public int getProtocol() { return protocol; }
+    public long getSrcFrom() { return srcFrom; }
+    public long getSrcTo() { return srcTo; }
+    public long getDstFrom() { return dstFrom; }
+    public long getDstTo() { return dstTo; }
+    public int getSrcPortFrom() { return srcPortFrom; }
+    public int getSrcPortTo() { return srcPortTo; }
+    public int getDstPortFrom() { return dstPortFrom; }
+    public int getDstPortTo() { return dstPortTo; }
+    public int getFlagMask() { return flagMask; }
+    public int getFlagValue() { return flagValue; }
+
+    @Override
+    public String toString() {
+        return id + " (" + name + ")";
+    }
+}
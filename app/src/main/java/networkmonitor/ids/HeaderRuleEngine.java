@@ -0,0 +1,230 @@
+package networkmonitor.ids;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import networkmonitor.model.DecodedPacket;
+
+/**
+ * Holds the compiled header rules used by the capture thread and swaps in a new
+ * HeaderClassifier when the rule file changes. The new rules are parsed and compiled on the
+ * watcher thread and published through a volatile field, so capture never waits for a reload;
+ * a file that cannot be read leaves the previous rules in place, invalid lines are logged and skipped.
+ * <p>
+ * Rule files have one rule per line, {@code id;name;action;match} (see HeaderRule for the
+ * match syntax); lines starting with # are comments.
+ */
+public final class HeaderRuleEngine {
+    // Logger for rule loading and reloads
+    private static final Logger LOGGER = Logger.getLogger(HeaderRuleEngine.class.getName());
+
+    // Rules bundled with the application, used when no rule file is configured (not reloaded)
+    private static final String DEFAULT_RESOURCE = "/header.rules";
+
+    // Quiet time after a change event before reloading, so editors can finish writing
+    private static final long RELOAD_DELAY_MS = 250;
+
+    // Rule file, or null when the bundled rules are used
+    private final Path file;
+
+    // Current rules, replaced as a whole on reload
+    private volatile HeaderClassifier classifier;
+
+    private final AtomicLong reloads = new AtomicLong();
+    private WatchService watchService;
+
+    private HeaderRuleEngine(Path file, HeaderClassifier classifier) {
+        this.file = file;
+        this.classifier = classifier;
+    }
+
+    /**
+     * Loads the rules named by the networkmonitor.headerRules.file system property (watched for
+     * changes), or the bundled rules. Setting networkmonitor.headerRules.enabled=false disables
+     * header rules.
+     * @return The engine, or null if disabled.
+     */
+    public static HeaderRuleEngine fromSystemProperties() {
+        if (!Boolean.parseBoolean(System.getProperty("networkmonitor.headerRules.enabled", "true")))
+            return null;
+
+        String file = System.getProperty("networkmonitor.headerRules.file");
+        if (file != null) {
+            HeaderRuleEngine engine = new HeaderRuleEngine(Path.of(file).toAbsolutePath(), new HeaderClassifier(List.of()));
+            engine.reload();
+            engine.startWatching();
+            return engine;
+        }
+
+        List<HeaderRule> rules = List.of();
+        InputStream in = HeaderRuleEngine.class.getResourceAsStream(DEFAULT_RESOURCE);
+        if (in != null) {
+            try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                rules = parse(reader);
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Could not load the bundled header rules", e);
+            }
+        }
+        LOGGER.log(Level.INFO, "Loaded {0} header rules from bundled rules.", rules.size());
+        return new HeaderRuleEngine(null, new HeaderClassifier(rules));
+    }
+
+    /**
+     * Parses a rule file. Invalid lines are logged and skipped.
+     * @param reader The rule text.
+     * @return The rules in file order.
+     * @throws IOException If reading fails.
+     */
+    public static List<HeaderRule> parse(Reader reader) throws IOException {
+        List<HeaderRule> rules = new ArrayList<>();
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        int lineNumber = 0;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+
+            String[] fields = line.split(";", 4);
+            try {
+                if (fields.length < 4)
+                    throw new IllegalArgumentException("expected id;name;action;match");
+                rules.add(HeaderRule.parse(Integer.parseInt(fields[0].strip()), fields[1].strip(), fields[2], fields[3]));
+            } catch (IllegalArgumentException e) {
+                LOGGER.log(Level.WARNING, "Skipping header rule on line {0}: {1}", new Object[]{lineNumber, e.getMessage()});
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Finds the first rule matching a packet. Capture thread; allocation-free.
+     * @param packet The decoded packet.
+     * @return The matching rule, or null.
+     */
+    public HeaderRule classify(DecodedPacket packet) {
+        return classifier.classify(packet);
+    }
+
+    /**
+     * Re-reads and recompiles the rule file. On failure the current rules stay active.
+     * @return true if the new rules are active.
+     */
+    public boolean reload() {
+        if (file == null)
+            return false;
+
+        long start = System.nanoTime();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            HeaderClassifier compiled = new HeaderClassifier(parse(reader));
+            classifier = compiled;
+            reloads.incrementAndGet();
+            LOGGER.info(String.format("event=header_rules_loaded file=%s rules=%d vectors=%d table_bytes=%d compile_ms=%d",
+                file, compiled.size(), compiled.getVectorCount(), compiled.getTableBytes(), (System.nanoTime() - start) / 1_000_000));
+            return true;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Keeping the previous header rules, could not load " + file + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Starts a daemon thread that reloads the rule file whenever it is written or replaced.
+     */
+    private void startWatching() {
+        Path directory = file.getParent();
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Header rule file will not be reloaded, cannot watch " + directory, e);
+            return;
+        }
+
+        Thread watcher = new Thread(this::watchLoop, "header-rule-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void watchLoop() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents())
+                    if (file.getFileName().equals(event.context()))
+                        changed = true;
+                key.reset();
+                if (!changed)
+                    continue;
+
+                // Coalesce the burst of events of one save
+                Thread.sleep(RELOAD_DELAY_MS);
+                WatchKey burst;
+                while ((burst = watchService.poll()) != null) {
+                    burst.pollEvents();
+                    burst.reset();
+                }
+                reload();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // stopped
+        }
+    }
+
+    /**
+     * Stops watching the rule file.
+     */
+    public void close() {
+        if (watchService == null)
+            return;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Error closing the header rule watcher", e);
+        }
+    }
+
+    /**
+     * @param ruleId A rule id.
+     * @return The rule's name, or null if no current rule has that id.
+     */
+    public String getRuleName(int ruleId) {
+        HeaderRule rule = classifier.getRule(ruleId);
+        return rule == null ? null : rule.getName();
+    }
+
+    /**
+     * @return Number of active rules.
+     */
+    public int size() {
+        return classifier.size();
+    }
+
+    /**
+     * @return Number of successful loads of the rule file.
+     */
+    public long getReloadCount() {
+        return reloads.get();
+    }
+}
@@ -0,0 +1,335 @@
+package networkmonitor.ids;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import networkmonitor.model.DecodedPacket;
+import networkmonitor.util.Hashing;
+import networkmonitor.util.HyperLogLog;
+import networkmonitor.util.IpAddresses;
+
+/**
+ * Behavioural detector for sources that scan or flood: per source address it counts the
+ * distinct destination ports and hosts it tries to reach (HyperLogLog) and its pure SYNs
+ * against its ACKs (time-bucketed counters), and flags the source while a threshold is
+ * exceeded. Packets of a flagged source are tagged with one of the rule ids below, so they
+ * are highlighted like signature and header rule hits.
+ * <p>
+ * Connection attempts are TCP SYNs without ACK and UDP packets from an ephemeral source
+ * port (1024 and up), so servers answering many clients are not mistaken for scanners.
+ * Distinct counts cover the current and the previous window (jumping window); SYN and ACK
+ * counts slide over the last window in six buckets.
+ * <p>
+ * Memory is fixed: the source table is set-associative with eight sources per set and about
+ * 350 bytes per source. A new source takes an idle entry (unseen for two windows), or else
+ * the least recently seen one of its set, so spoofed-source floods only churn the table.
+ * Used by the capture thread only.
+ */
+public final class ScanDetector {
+    // Logger for alert onsets
+    private static final Logger LOGGER = Logger.getLogger(ScanDetector.class.getName());
+
+    // Rule ids reported in PacketInfo.getSignatureId(), with AlertKind.SCAN
+    public static final int PORT_SCAN_ID = 3000001;
+    public static final int HOST_SWEEP_ID = 3000002;
+    public static final int SYN_FLOOD_ID = 3000003;
+
+    // HyperLogLog precision: 64 registers per sketch, about 13% standard error
+    private static final int PRECISION = 6;
+    private static final int REGISTERS = 1 << PRECISION;
+
+    // Per source: ports of the current window, ports of the previous one, then the same for hosts
+    private static final int SKETCH_BYTES = 4 * REGISTERS;
+
+    // Sources per set and SYN/ACK buckets per window
+    private static final int WAYS = 8;
+    private static final int BUCKETS = 6;
+
+    // Thresholds
+    private final int portThreshold;
+    private final int hostThreshold;
+    private final int synThreshold;
+    private final double synRatio;
+
+    // Time base
+    private final long windowNanos;
+    private final long bucketNanos;
+    private final long idleNanos;
+
+    // Source table, indexed by entry
+    private final int setMask;
+    private final boolean[] used;
+    private final long[] sourceHighs;
+    private final long[] sourceLows;
+    private final long[] lastSeen;
+    private final long[] windows;
+    private final long[] buckets;
+    private final byte[] sketches;
+    private final int[] syns;
+    private final int[] acks;
+    private final int[] distinctPorts;
+    private final int[] distinctHosts;
+    private final int[] alerts;
+
+    // Statistics
+    private final AtomicLong alertCount = new AtomicLong();
+    private final AtomicLong idleEvictions = new AtomicLong();
+    private final AtomicLong forcedEvictions = new AtomicLong();
+
+    /**
+     * Creates the detector and allocates its table.
+     * @param maxSources Sources tracked at once, rounded up to a power of two (at least 8)
+     * @param windowSeconds Length of the detection window
+     * @param portThreshold Distinct destination ports that make a port scan
+     * @param hostThreshold Distinct destination hosts that make a host sweep
+     * @param synThreshold Pure SYNs in the window that make a SYN flood, together with synRatio
+     * @param synRatio Smallest share of SYNs among the source's SYNs and ACKs for a SYN flood
+     */
+    public ScanDetector(int maxSources, int windowSeconds, int portThreshold, int hostThreshold, int synThreshold, double synRatio) {
+        int sets = Integer.highestOneBit(Math.max(1, (maxSources + WAYS - 1) / WAYS) * 2 - 1);
+        int capacity = sets * WAYS;
+        this.setMask = sets - 1;
+        this.portThreshold = portThreshold;
+        this.hostThreshold = hostThreshold;
+        this.synThreshold = synThreshold;
+        this.synRatio = synRatio;
+        this.windowNanos = TimeUnit.SECONDS.toNanos(Math.max(1, windowSeconds));
+        this.bucketNanos = windowNanos / BUCKETS;
+        this.idleNanos = 2 * windowNanos;
+
+        used = new boolean[capacity];
+        sourceHighs = new long[capacity];
+        sourceLows = new long[capacity];
+        lastSeen = new long[capacity];
+        windows = new long[capacity];
+        buckets = new long[capacity];
+        sketches = new byte[capacity * SKETCH_BYTES];
+        syns = new int[capacity * BUCKETS];
+        acks = new int[capacity * BUCKETS];
+        distinctPorts = new int[capacity];
+        distinctHosts = new int[capacity];
+        alerts = new int[capacity];
+    }
+
+    /**
+     * Creates the detector from the system properties networkmonitor.scan.maxSources (8192),
+     * .windowSeconds (30), .portThreshold (100), .hostThreshold (100), .synThreshold (200) and
+     * .synRatio (0.9). Setting networkmonitor.scan.enabled=false disables it.
+     * @return The detector, or null if disabled
+     */
+    public static ScanDetector fromSystemProperties() {
+        if (!Boolean.parseBoolean(System.getProperty("networkmonitor.scan.enabled", "true")))
+            return null;
+        return new ScanDetector(
+            Integer.getInteger("networkmonitor.scan.maxSources", 8192),
+            Integer.getInteger("networkmonitor.scan.windowSeconds", 30),
+            Integer.getInteger("networkmonitor.scan.portThreshold", 100),
+            Integer.getInteger("networkmonitor.scan.hostThreshold", 100),
+            Integer.getInteger("networkmonitor.scan.synThreshold", 200),
+            Double.parseDouble(System.getProperty("networkmonitor.scan.synRatio", "0.9")));
+    }
+
+    /**
+     * Counts a packet against its source. Allocation-free unless an alert starts.
+     * @param packet The decoded packet
+     * @param nowNanos Current System.nanoTime()
+     * @return The rule id of the alert its source is under, or 0
+     */
+    public int inspect(DecodedPacket packet, long nowNanos) {
+        long high;
+        long low;
+        if (packet.ipVersion == 6) {
+            high = packet.srcAddrHi;
+            low = packet.srcAddrLo;
+        } else {
+            high = 0;
+            low = 0xFFFFL << 32 | (packet.srcAddr & 0xFFFFFFFFL);
+        }
+        int entry = lookup(high, low, nowNanos);
+        lastSeen[entry] = nowNanos;
+        boolean changed = roll(entry, nowNanos);
+
+        boolean tcp = packet.protocol == DecodedPacket.PROTO_TCP;
+        boolean syn = tcp && (packet.tcpFlags & (DecodedPacket.TCP_SYN | DecodedPacket.TCP_ACK)) == DecodedPacket.TCP_SYN;
+        boolean attempt = syn || (packet.protocol == DecodedPacket.PROTO_UDP && (packet.srcPort & 0xFFFF) >= 1024);
+
+        if (attempt && packet.dstPort != 0) {
+            int sketch = entry * SKETCH_BYTES;
+            long port = (packet.protocol & 0xFFL) << 16 | (packet.dstPort & 0xFFFF);
+            long host = packet.ipVersion == 6 ? Hashing.mix(packet.dstAddrHi, packet.dstAddrLo) : Hashing.mix(0, packet.dstAddr & 0xFFFFFFFFL);
+            if (HyperLogLog.add(sketches, sketch, PRECISION, Hashing.mix(0, port))) {
+                distinctPorts[entry] = (int) HyperLogLog.estimateUnion(sketches, sketch, sketch + REGISTERS, PRECISION);
+                changed = true;
+            }
+            if (HyperLogLog.add(sketches, sketch + 2 * REGISTERS, PRECISION, host)) {
+                distinctHosts[entry] = (int) HyperLogLog.estimateUnion(sketches, sketch + 2 * REGISTERS, sketch + 3 * REGISTERS, PRECISION);
+                changed = true;
+            }
+        }
+
+        if (tcp) {
+            int bucket = entry * BUCKETS + (int) Math.floorMod(buckets[entry], (long) BUCKETS);
+            if (syn) {
+                syns[bucket]++;
+                changed = true;
+            } else if ((packet.tcpFlags & DecodedPacket.TCP_ACK) != 0) {
+                acks[bucket]++;
+            }
+        }
+
+        if (changed)
+            evaluate(entry);
+        return alerts[entry];
+    }
+
+    /**
+     * Finds the entry of a source, or claims one in its set: an empty or idle entry if
+     * possible, otherwise the least recently seen.
+     */
+    private int lookup(long high, long low, long nowNanos) {
+        int first = ((int) (Hashing.mix(high, low) >>> 32) & setMask) * WAYS;
+        int victim = -1;
+        for (int entry = first; entry < first + WAYS; entry++) {
+            if (!used[entry]) {
+                if (victim < 0 || used[victim])
+                    victim = entry;
+                continue;
+            }
+            if (sourceHighs[entry] == high && sourceLows[entry] == low)
+                return entry;
+            if (victim < 0 || (used[victim] && lastSeen[entry] - lastSeen[victim] < 0))
+                victim = entry;
+        }
+
+        if (used[victim]) {
+            if (nowNanos - lastSeen[victim] > idleNanos)
+                idleEvictions.incrementAndGet();
+            else
+                forcedEvictions.incrementAndGet();
+        }
+        claim(victim, high, low, nowNanos);
+        return victim;
+    }
+
+    private void claim(int entry, long high, long low, long nowNanos) {
+        used[entry] = true;
+        sourceHighs[entry] = high;
+        sourceLows[entry] = low;
+        windows[entry] = Math.floorDiv(nowNanos, windowNanos);
+        buckets[entry] = Math.floorDiv(nowNanos, bucketNanos);
+        Arrays.fill(sketches, entry * SKETCH_BYTES, (entry + 1) * SKETCH_BYTES, (byte) 0);
+        Arrays.fill(syns, entry * BUCKETS, (entry + 1) * BUCKETS, 0);
+        Arrays.fill(acks, entry * BUCKETS, (entry + 1) * BUCKETS, 0);
+        distinctPorts[entry] = 0;
+        distinctHosts[entry] = 0;
+        alerts[entry] = 0;
+    }
+
+    /**
+     * Moves the entry's sketches and buckets forward to the current time.
+     * @return true if anything expired
+     */
+    private boolean roll(int entry, long nowNanos) {
+        boolean rolled = false;
+        long window = Math.floorDiv(nowNanos, windowNanos);
+        if (window != windows[entry]) {
+            int sketch = entry * SKETCH_BYTES;
+            for (int dimension = 0; dimension < 2; dimension++) {
+                int current = sketch + 2 * dimension * REGISTERS;
+                if (window - windows[entry] == 1)
+                    System.arraycopy(sketches, current, sketches, current + REGISTERS, REGISTERS);
+                else
+                    HyperLogLog.clear(sketches, current + REGISTERS, PRECISION);
+                HyperLogLog.clear(sketches, current, PRECISION);
+            }
+            distinctPorts[entry] = (int) HyperLogLog.estimateUnion(sketches, sketch, sketch + REGISTERS, PRECISION);
+            distinctHosts[entry] = (int) HyperLogLog.estimateUnion(sketches, sketch + 2 * REGISTERS, sketch + 3 * REGISTERS, PRECISION);
+            windows[entry] = window;
+            rolled = true;
+        }
+
+        long bucket = Math.floorDiv(nowNanos, bucketNanos);
+        long steps = Math.min(BUCKETS, bucket - buckets[entry]);
+        for (long step = 1; step <= steps; step++) {
+            int index = entry * BUCKETS + (int) Math.floorMod(buckets[entry] + step, (long) BUCKETS);
+            syns[index] = 0;
+            acks[index] = 0;
+            rolled = true;
+        }
+        buckets[entry] = bucket;
+        return rolled;
+    }
+
+    /**
+     * Updates the alert of an entry and logs when a new one starts.
+     */
+    private void evaluate(int entry) {
+        int synCount = 0;
+        int ackCount = 0;
+        for (int i = entry * BUCKETS; i < (entry + 1) * BUCKETS; i++) {
+            synCount += syns[i];
+            ackCount += acks[i];
+        }
+
+        int alert = 0;
+        if (synCount >= synThreshold && synCount >= synRatio * (synCount + ackCount))
+            alert = SYN_FLOOD_ID;
+        else if (distinctPorts[entry] >= portThreshold)
+            alert = PORT_SCAN_ID;
+        else if (distinctHosts[entry] >= hostThreshold)
+            alert = HOST_SWEEP_ID;
+
+        if (alert != 0 && alert != alerts[entry]) {
+            alertCount.incrementAndGet();
+            if (LOGGER.isLoggable(Level.WARNING))
+                LOGGER.warning(String.format("event=scan_alert rule=%d name=\"%s\" src=%s distinct_ports=%d distinct_hosts=%d syns=%d acks=%d",
+                    alert, getRuleName(alert), IpAddresses.format(sourceHighs[entry], sourceLows[entry]), distinctPorts[entry], distinctHosts[entry], synCount, ackCount));
+        }
+        alerts[entry] = alert;
+    }
+
+    /**
+     * @param ruleId A rule id
+     * @return The name of one of this detector's rules, or null
+     */
+    public static String getRuleName(int ruleId) {
+        switch (ruleId) {
+            case PORT_SCAN_ID: return "Port scan";
+            case HOST_SWEEP_ID: return "Host sweep";
+            case SYN_FLOOD_ID: return "SYN flood";
+            default: return null;
+        }
+    }
+
+    /**
+     * @return Number of alerts started (a source moving from no alert or another alert into one)
+     */
+    public long getAlertCount() {
+        return alertCount.get();
+    }
+
+    /**
+     * @return Sources dropped after being idle for two windows
+     */
+    public long getIdleEvictions() {
+        return idleEvictions.get();
+    }
+
+    /**
+     * @return Active sources dropped because their set was full (high under spoofed floods)
+     */
+    public long getForcedEvictions() {
+        return forcedEvictions.get();
+    }
+
+    /**
+     * @return Memory of the source table, in bytes
+     */
+    public long getMemoryBytes() {
+        long capacity = used.length;
+        return capacity * (1 + 5 * 8 + SKETCH_BYTES + 2L * BUCKETS * 4 + 3 * 4);
+    }
+}
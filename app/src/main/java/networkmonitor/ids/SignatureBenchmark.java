@@ -0,0 +1,156 @@
+package networkmonitor.ids;
+
+import java.io.EOFException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.pcap4j.core.NotOpenException;
+import org.pcap4j.core.PcapHandle;
+import org.pcap4j.core.PcapNativeException;
+import org.pcap4j.core.Pcaps;
+
+import networkmonitor.model.DecodedPacket;
+import networkmonitor.service.PacketDecoder;
+
+/**
+ * Offline throughput benchmark of the signature automata over the TCP/UDP payloads of a pcap file,
+ * for 10, 1 000 and 10 000 rules. Half of the patterns are cut from the capture's own payloads
+ * (so they do match), half are random bytes. Patterns are generated from a fixed seed, so runs are comparable.
+ */
+public final class SignatureBenchmark {
+    // Logger for benchmark results
+    private static final Logger LOGGER = Logger.getLogger(SignatureBenchmark.class.getName());
+
+    // Rule counts to measure
+    private static final int[] RULE_COUNTS = {10, 1_000, 10_000};
+
+    // Minimum measuring time per rule count
+    private static final long MEASURE_NANOS = 2_000_000_000L;
+
+    // Pattern generation
+    private static final long SEED = 0x5EED;
+    private static final int MIN_PATTERN_LENGTH = 4;
+    private static final int MAX_PATTERN_LENGTH = 16;
+
+    private SignatureBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark and logs one result line per rule count.
+     * @param pcapPath Path of the capture file.
+     */
+    public static void run(String pcapPath) {
+        List<byte[]> payloads = readPayloads(pcapPath);
+        long totalBytes = 0;
+        for (byte[] payload : payloads)
+            totalBytes += payload.length;
+        if (totalBytes == 0) {
+            LOGGER.log(Level.SEVERE, "No TCP/UDP payload found in {0}", pcapPath);
+            return;
+        }
+        LOGGER.info(String.format("event=benchmark_input file=%s payloads=%d payload_bytes=%d", pcapPath, payloads.size(), totalBytes));
+
+        for (int ruleCount : RULE_COUNTS) {
+            List<SignatureRule> rules = generateRules(ruleCount, payloads);
+
+            long buildStart = System.nanoTime();
+            SignatureSet signatures = new SignatureSet(rules);
+            long buildNanos = System.nanoTime() - buildStart;
+            AhoCorasick automaton = signatures.getCaseSensitive();
+            LOGGER.info(String.format("event=benchmark_build patterns=%d build_ms=%d states=%d alphabet=%d table_bytes=%d",
+                ruleCount, buildNanos / 1_000_000, automaton.getStateCount(), automaton.getAlphabetSize(), signatures.getTableBytes()));
+
+            HitCounter hits = new HitCounter();
+            scanAll(automaton, payloads, hits);
+
+            hits.count = 0;
+            long passes = 0;
+            long start = System.nanoTime();
+            long elapsed;
+            do {
+                scanAll(automaton, payloads, hits);
+                passes++;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < MEASURE_NANOS);
+
+            double seconds = elapsed / 1_000_000_000.0;
+            LOGGER.info(String.format("event=benchmark patterns=%d passes=%d mb_per_s=%.1f packets_per_s=%d hits_per_pass=%d",
+                ruleCount, passes, passes * totalBytes / seconds / (1024 * 1024),
+                Math.round(passes * payloads.size() / seconds), hits.count / passes));
+        }
+    }
+
+    private static void scanAll(AhoCorasick automaton, List<byte[]> payloads, HitCounter hits) {
+        for (byte[] payload : payloads)
+            automaton.scan(payload, 0, payload.length, 0, hits);
+    }
+
+    /**
+     * Reads the capture and keeps a copy of each non-empty TCP/UDP payload.
+     */
+    private static List<byte[]> readPayloads(String pcapPath) {
+        List<byte[]> payloads = new ArrayList<>();
+        PcapHandle handle = null;
+        try {
+            handle = Pcaps.openOffline(pcapPath);
+            PacketDecoder decoder = new PacketDecoder(handle.getDlt().value());
+            DecodedPacket decoded = new DecodedPacket();
+            while (true) {
+                byte[] frame;
+                try {
+                    frame = handle.getNextRawPacketEx();
+                } catch (EOFException e) {
+                    break;
+                } catch (TimeoutException e) {
+                    continue;
+                }
+                if (!decoder.decode(frame, 0L, decoded) || decoded.payloadLength == 0)
+                    continue;
+                if (decoded.protocol != DecodedPacket.PROTO_TCP && decoded.protocol != DecodedPacket.PROTO_UDP)
+                    continue;
+                byte[] payload = new byte[decoded.payloadLength];
+                System.arraycopy(decoded.data, decoded.payloadOffset, payload, 0, payload.length);
+                payloads.add(payload);
+            }
+        } catch (PcapNativeException | NotOpenException e) {
+            LOGGER.log(Level.SEVERE, "Cannot read capture file " + pcapPath, e);
+        } finally {
+            if (handle != null && handle.isOpen())
+                handle.close();
+        }
+        return payloads;
+    }
+
+    /**
+     * Generates case-sensitive rules, every other one cut from a payload and the rest random.
+     */
+    private static List<SignatureRule> generateRules(int count, List<byte[]> payloads) {
+        Random random = new Random(SEED);
+        List<SignatureRule> rules = new ArrayList<>(count);
+        for (int id = 1; id <= count; id++) {
+            int length = MIN_PATTERN_LENGTH + random.nextInt(MAX_PATTERN_LENGTH - MIN_PATTERN_LENGTH + 1);
+            byte[] pattern = new byte[length];
+            byte[] source = payloads.get(random.nextInt(payloads.size()));
+            if (id % 2 == 0 && source.length >= length)
+                System.arraycopy(source, random.nextInt(source.length - length + 1), pattern, 0, length);
+            else
+                random.nextBytes(pattern);
+            rules.add(new SignatureRule(id, "bench-" + id, pattern, false));
+        }
+        return rules;
+    }
+
+    // Counts matches without allocating
+    private static final class HitCounter implements AhoCorasick.MatchListener {
+        long count;
+
+        @Override
+        public void onMatch(int ruleId, int end) {
+            count++;
+        }
+    }
+}
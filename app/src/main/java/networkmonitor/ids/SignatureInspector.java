@@ -0,0 +1,76 @@
+package networkmonitor.ids;
+
+import networkmonitor.model.DecodedPacket;
+import networkmonitor.reassembly.PayloadInspector;
+import networkmonitor.reassembly.PayloadSegment;
+import networkmonitor.reassembly.ReassemblyEngine;
+
+/**
+ * Inspection stage that runs the signature automata over reassembled TCP streams and
+ * UDP payloads. The automaton state is kept per stream, so patterns split across segments
+ * or IP fragments are found. The first hit of the packet being processed is kept until
+ * the capture service collects it with {@link #takeMatch()}. Capture thread only.
+ */
+public class SignatureInspector implements PayloadInspector, AhoCorasick.MatchListener {
+    private final SignatureSet signatures;
+
+    // Per-stream state slots: case-sensitive automaton, then case-insensitive automaton
+    private final int stateSlot;
+
+    // First rule hit since the last takeMatch (0 = none)
+    private int pendingMatch = 0;
+
+    /**
+     * Creates the stage and registers it on the reassembly engine.
+     * @param signatures The compiled rules.
+     * @param reassembly The engine delivering payloads.
+     */
+    public SignatureInspector(SignatureSet signatures, ReassemblyEngine reassembly) {
+        this.signatures = signatures;
+        this.stateSlot = reassembly.allocateStateSlots(2);
+        reassembly.addInspector(this);
+    }
+
+    @Override
+    public void inspect(PayloadSegment segment) {
+        if (segment.protocol != DecodedPacket.PROTO_TCP && segment.protocol != DecodedPacket.PROTO_UDP)
+            return;
+
+        int[] state = segment.state;
+        if (segment.gap) {
+            state[stateSlot] = 0;
+            state[stateSlot + 1] = 0;
+        }
+
+        AhoCorasick sensitive = signatures.getCaseSensitive();
+        if (sensitive != null)
+            state[stateSlot] = sensitive.scan(segment.data, segment.offset, segment.length, state[stateSlot], this);
+
+        AhoCorasick insensitive = signatures.getCaseInsensitive();
+        if (insensitive != null)
+            state[stateSlot + 1] = insensitive.scan(segment.data, segment.offset, segment.length, state[stateSlot + 1], this);
+    }
+
+    @Override
+    public void onMatch(int ruleId, int end) {
+        if (pendingMatch == 0)
+            pendingMatch = ruleId;
+    }
+
+    /**
+     * Returns and clears the rule hit of the packet just processed.
+     * @return The rule id, or 0 if no signature matched.
+     */
+    public int takeMatch() {
+        int match = pendingMatch;
+        pendingMatch = 0;
+        return match;
+    }
+
+    /**
+     * @return The rules being matched.
+     */
+    public SignatureSet getSignatures() {
+        return signatures;
+    }
+}
@@ -0,0 +1,40 @@
+package networkmonitor.ids;
+
+/**
+ * One payload signature: a byte pattern and the rule id reported when it is found.
+ */
+public final class SignatureRule {
+    private final int id;
+    private final String name;
+    private final byte[] pattern;
+    private final boolean caseInsensitive;
+
+    /**
+     * Creates a rule.
+     * @param id Rule id, must be positive (0 means "no match" in PacketInfo).
+     * @param name Short description shown in logs.
+     * @param pattern The bytes to search for.
+     * @param caseInsensitive If true, ASCII letters match regardless of case.
+     */
+    public SignatureRule(int id, String name, byte[] pattern, boolean caseInsensitive) {
+        if (id <= 0)
+            throw new IllegalArgumentException("Rule id must be positive: " + id);
+        if (pattern.length == 0)
+            throw new IllegalArgumentException("Rule " + id + " has an empty pattern");
+        this.id = id;
+        this.name = name;
+        this.pattern = pattern.clone();
+        this.caseInsensitive = caseInsensitive;
+    }
+
+    // Getters
+    public int getId() { return id; }
+    public String getName() { return name; }
+    public byte[] getPattern() { return pattern.clone(); }
+    public boolean isCaseInsensitive() { return caseInsensitive; }
+
+    @Override
+    public String toString() {
+        return id + " (" + name + ")";
+    }
+}
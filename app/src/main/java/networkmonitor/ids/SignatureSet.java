@@ -0,0 +1,199 @@
+package networkmonitor.ids;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A compiled set of signature rules: one automaton for the case-sensitive patterns and
+ * one for the case-insensitive ones, so a payload is scanned at most twice in total.
+ * <p>
+ * Rule files have one rule per line, {@code id;name;content[;nocase]}, where content is
+ * text with optional Snort-style hex runs ({@code GET|20|/}); lines starting with # are comments.
+ */
+public final class SignatureSet {
+    // Logger for rule loading
+    private static final Logger LOGGER = Logger.getLogger(SignatureSet.class.getName());
+
+    // Rules bundled with the application, used when no rule file is configured
+    private static final String DEFAULT_RESOURCE = "/signatures.rules";
+
+    private final AhoCorasick caseSensitive;
+    private final AhoCorasick caseInsensitive;
+    private final Map<Integer, String> names = new HashMap<>();
+    private final int size;
+
+    /**
+     * Compiles a rule list.
+     * @param rules The rules.
+     */
+    public SignatureSet(List<SignatureRule> rules) {
+        List<byte[]> sensitivePatterns = new ArrayList<>();
+        List<byte[]> insensitivePatterns = new ArrayList<>();
+        int[] sensitiveIds = new int[rules.size()];
+        int[] insensitiveIds = new int[rules.size()];
+        for (SignatureRule rule : rules) {
+            if (rule.isCaseInsensitive()) {
+                insensitiveIds[insensitivePatterns.size()] = rule.getId();
+                insensitivePatterns.add(rule.getPattern());
+            } else {
+                sensitiveIds[sensitivePatterns.size()] = rule.getId();
+                sensitivePatterns.add(rule.getPattern());
+            }
+            names.putIfAbsent(rule.getId(), rule.getName());
+        }
+        caseSensitive = sensitivePatterns.isEmpty() ? null : new AhoCorasick(sensitivePatterns, sensitiveIds, false);
+        caseInsensitive = insensitivePatterns.isEmpty() ? null : new AhoCorasick(insensitivePatterns, insensitiveIds, true);
+        size = rules.size();
+    }
+
+    /**
+     * Loads the rules named by the networkmonitor.signatures.file system property, or the bundled rules.
+     * Setting networkmonitor.signatures.enabled=false disables signature inspection.
+     * @return The compiled set, or null if disabled, empty or unreadable.
+     */
+    public static SignatureSet loadFromSystemProperties() {
+        if (!Boolean.parseBoolean(System.getProperty("networkmonitor.signatures.enabled", "true")))
+            return null;
+
+        String file = System.getProperty("networkmonitor.signatures.file");
+        try {
+            List<SignatureRule> rules;
+            if (file != null) {
+                try (Reader reader = Files.newBufferedReader(Path.of(file), StandardCharsets.UTF_8)) {
+                    rules = parse(reader);
+                }
+            } else {
+                InputStream in = SignatureSet.class.getResourceAsStream(DEFAULT_RESOURCE);
+                if (in == null)
+                    return null;
+                try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                    rules = parse(reader);
+                }
+            }
+            if (rules.isEmpty())
+                return null;
+
+            SignatureSet set = new SignatureSet(rules);
+            LOGGER.log(Level.INFO, "Loaded {0} payload signatures from {1}.", new Object[]{rules.size(), file != null ? file : "bundled rules"});
+            return set;
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Could not read signature rules: " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Parses a rule file. Invalid lines are logged and skipped.
+     * @param reader The rule text.
+     * @return The rules in file order.
+     * @throws IOException If reading fails.
+     */
+    public static List<SignatureRule> parse(Reader reader) throws IOException {
+        List<SignatureRule> rules = new ArrayList<>();
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        int lineNumber = 0;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+
+            String[] fields = line.split(";", 4);
+            try {
+                if (fields.length < 3)
+                    throw new IllegalArgumentException("expected id;name;content[;nocase]");
+                boolean nocase = fields.length == 4 && fields[3].strip().equalsIgnoreCase("nocase");
+                rules.add(new SignatureRule(Integer.parseInt(fields[0].strip()), fields[1].strip(), parseContent(fields[2]), nocase));
+            } catch (IllegalArgumentException e) {
+                LOGGER.log(Level.WARNING, "Skipping signature rule on line {0}: {1}", new Object[]{lineNumber, e.getMessage()});
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Decodes rule content: plain text with hex runs between pipes, e.g. {@code "|0d 0a|Host:"}.
+     * @param content The content field.
+     * @return The pattern bytes.
+     */
+    public static byte[] parseContent(String content) {
+        byte[] text = content.getBytes(StandardCharsets.UTF_8);
+        byte[] out = new byte[text.length];
+        int length = 0;
+        boolean hex = false;
+        int pendingNibble = -1;
+        for (byte b : text) {
+            if (b == '|') {
+                if (hex && pendingNibble >= 0)
+                    throw new IllegalArgumentException("odd number of hex digits in " + content);
+                hex = !hex;
+            } else if (!hex) {
+                out[length++] = b;
+            } else if (b != ' ') {
+                int digit = Character.digit(b, 16);
+                if (digit < 0)
+                    throw new IllegalArgumentException("invalid hex digit '" + (char) b + "' in " + content);
+                if (pendingNibble < 0) {
+                    pendingNibble = digit;
+                } else {
+                    out[length++] = (byte) (pendingNibble << 4 | digit);
+                    pendingNibble = -1;
+                }
+            }
+        }
+        if (hex)
+            throw new IllegalArgumentException("unterminated hex run in " + content);
+        return Arrays.copyOf(out, length);
+    }
+
+    /**
+     * @return Automaton of the case-sensitive rules, or null if there are none.
+     */
+    public AhoCorasick getCaseSensitive() {
+        return caseSensitive;
+    }
+
+    /**
+     * @return Automaton of the case-insensitive rules, or null if there are none.
+     */
+    public AhoCorasick getCaseInsensitive() {
+        return caseInsensitive;
+    }
+
+    /**
+     * @param ruleId A rule id.
+     * @return The rule's name, or null if unknown.
+     */
+    public String getRuleName(int ruleId) {
+        return names.get(ruleId);
+    }
+
+    /**
+     * @return Number of rules.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Heap used by the automata tables, in bytes.
+     */
+    public long getTableBytes() {
+        return (caseSensitive == null ? 0 : caseSensitive.getTableBytes())
+            + (caseInsensitive == null ? 0 : caseInsensitive.getTableBytes());
+    }
+}
@@ -0,0 +1,473 @@
+package networkmonitor.ids;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import networkmonitor.model.DecodedPacket;
+import networkmonitor.util.Hashing;
+import networkmonitor.util.IpAddresses;
+import networkmonitor.util.ProbeIndex;
+
+/**
+ * Volumetric anomaly detection: for every host and IP protocol it learns the usual bytes per
+ * second, per minute and per hour as exponentially weighted moving averages and variances,
+ * and flags the host while the current second, minute or hour exceeds the mean by more than
+ * sigma standard deviations. Both the source and the destination of a packet are counted,
+ * so a host's series covers what it sends and receives.
+ * <p>
+ * A series is updated when its period ends: the finished period is one sample, and periods
+ * without traffic are applied in closed form, so each packet costs O(1) however long a
+ * host was idle. The current period is compared with the precomputed threshold on every
+ * packet, so a spike is flagged while it happens rather than when the hour is over.
+ * Time is the capture timestamp of the packets.
+ * <p>
+ * The series live in parallel primitive arrays with an open-addressing index and an LRU
+ * list; when the table is full the least recently seen host is dropped. The learned means
+ * and variances are checkpointed to a file and read back at startup, so baselines survive
+ * restarts. Used by the capture thread only; checkpoints are written on a background thread.
+ */
+public final class VolumeAnomalyDetector {
+    // Logger for anomalies and checkpoints
+    private static final Logger LOGGER = Logger.getLogger(VolumeAnomalyDetector.class.getName());
+
+    // Rule id reported in PacketInfo.getSignatureId(), with AlertKind.VOLUME
+    public static final int ANOMALY_ID = 3000004;
+
+    // Resolutions: period length, EWMA weight (about 60 periods of memory for seconds and
+    // minutes, a day for hours) and periods learned before alerting
+    private static final int RESOLUTIONS = 3;
+    private static final long[] PERIOD_SECONDS = {1, 60, 3600};
+    private static final double[] ALPHAS = {1.0 / 60, 1.0 / 60, 1.0 / 24};
+    private static final int[] WARMUP_PERIODS = {60, 30, 24};
+    private static final String[] RESOLUTION_NAMES = {"1s", "1m", "1h"};
+
+    // Period of a series that has not seen a packet since it was created or loaded
+    private static final long NO_PERIOD = Long.MIN_VALUE;
+
+    // Checkpoint file layout: magic "NMBL", version, count, then one record per series, oldest first
+    private static final int MAGIC = 0x4E4D424C;
+    private static final int VERSION = 1;
+    private static final int RECORD_BYTES = 8 + 8 + 1 + RESOLUTIONS * (8 + 8 + 4);
+
+    // Configuration
+    private final int capacity;
+    private final double sigma;
+    private final long minBytesPerSecond;
+    private final Path checkpointFile;
+    private final long checkpointIntervalMillis;
+
+    // Keys: address halves and protocol, with their hash
+    private final long[] highs;
+    private final long[] lows;
+    private final byte[] protocols;
+    private final long[] hashes;
+
+    // Open-addressing index from hash to entry
+    private final ProbeIndex index;
+
+    // LRU list, most recent at the head
+    private final int[] previous;
+    private final int[] next;
+    private int head = -1;
+    private int tail = -1;
+    private int size = 0;
+
+    // Series, at [entry * RESOLUTIONS + resolution]
+    private final long[] periods;
+    private final long[] accumulated;
+    private final double[] means;
+    private final double[] variances;
+    private final int[] samples;
+    private final long[] thresholds;
+
+    // Resolutions alerting per entry, as a bit mask
+    private final byte[] alerting;
+
+    // Statistics
+    private final AtomicLong anomalies = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    // Checkpoints
+    private final ExecutorService checkpointWriter;
+    private long nextCheckpointMillis;
+
+    /**
+     * Creates the detector and loads the checkpoint if there is one.
+     * @param capacity Hosts and protocols tracked at once
+     * @param sigma Standard deviations above the mean that make an anomaly
+     * @param minBytesPerSecond Smallest rate ever flagged, so quiet hosts do not alert on small bursts
+     * @param checkpointFile Checkpoint location, or null for no checkpoints
+     * @param checkpointMinutes Minutes between two checkpoints
+     */
+    public VolumeAnomalyDetector(int capacity, double sigma, long minBytesPerSecond, Path checkpointFile, int checkpointMinutes) {
+        this.capacity = Math.max(1, capacity);
+        this.sigma = sigma;
+        this.minBytesPerSecond = minBytesPerSecond;
+        this.checkpointFile = checkpointFile == null ? null : checkpointFile.toAbsolutePath();
+        this.checkpointIntervalMillis = TimeUnit.MINUTES.toMillis(Math.max(1, checkpointMinutes));
+
+        highs = new long[this.capacity];
+        lows = new long[this.capacity];
+        protocols = new byte[this.capacity];
+        hashes = new long[this.capacity];
+        index = new ProbeIndex(this.capacity * 4);
+        previous = new int[this.capacity];
+        next = new int[this.capacity];
+
+        int series = this.capacity * RESOLUTIONS;
+        periods = new long[series];
+        accumulated = new long[series];
+        means = new double[series];
+        variances = new double[series];
+        samples = new int[series];
+        thresholds = new long[series];
+        alerting = new byte[this.capacity];
+
+        if (this.checkpointFile == null) {
+            checkpointWriter = null;
+        } else {
+            checkpointWriter = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "baseline-checkpoint");
+                thread.setDaemon(true);
+                return thread;
+            });
+            load();
+        }
+        nextCheckpointMillis = System.currentTimeMillis() + checkpointIntervalMillis;
+    }
+
+    /**
+     * Creates the detector from the system properties networkmonitor.baseline.maxKeys (16384),
+     * .sigma (4), .minBytesPerSecond (1000000), .file (baselines.bin) and .checkpointMinutes (5).
+     * Setting networkmonitor.baseline.enabled=false disables it.
+     * @return The detector, or null if disabled
+     */
+    public static VolumeAnomalyDetector fromSystemProperties() {
+        if (!Boolean.parseBoolean(System.getProperty("networkmonitor.baseline.enabled", "true")))
+            return null;
+        return new VolumeAnomalyDetector(
+            Integer.getInteger("networkmonitor.baseline.maxKeys", 16384),
+            Double.parseDouble(System.getProperty("networkmonitor.baseline.sigma", "4")),
+            Long.getLong("networkmonitor.baseline.minBytesPerSecond", 1_000_000L),
+            Path.of(System.getProperty("networkmonitor.baseline.file", "baselines.bin")),
+            Integer.getInteger("networkmonitor.baseline.checkpointMinutes", 5));
+    }
+
+    /**
+     * Counts a packet for its source and destination. Allocation-free unless an anomaly starts.
+     * @param packet The decoded packet
+     * @return ANOMALY_ID if the source or destination is above its baseline, otherwise 0
+     */
+    public int inspect(DecodedPacket packet) {
+        long second = Math.floorDiv(packet.captureNanos, 1_000_000_000L);
+        boolean anomaly;
+        if (packet.ipVersion == 6) {
+            anomaly = update(packet.srcAddrHi, packet.srcAddrLo, packet.protocol, second, packet.frameLength);
+            anomaly |= update(packet.dstAddrHi, packet.dstAddrLo, packet.protocol, second, packet.frameLength);
+        } else {
+            anomaly = update(0, 0xFFFFL << 32 | (packet.srcAddr & 0xFFFFFFFFL), packet.protocol, second, packet.frameLength);
+            anomaly |= update(0, 0xFFFFL << 32 | (packet.dstAddr & 0xFFFFFFFFL), packet.protocol, second, packet.frameLength);
+        }
+        return anomaly ? ANOMALY_ID : 0;
+    }
+
+    /**
+     * Adds bytes to the series of one host and protocol.
+     * @return true if one of its resolutions is above the threshold
+     */
+    private boolean update(long high, long low, byte protocol, long second, long bytes) {
+        long hash = Hashing.mix(high ^ (protocol & 0xFFL) << 56, low);
+        int entry = find(high, low, protocol, hash);
+        if (entry < 0)
+            entry = insert(high, low, protocol, hash);
+        else
+            moveToHead(entry);
+
+        int mask = 0;
+        for (int r = 0; r < RESOLUTIONS; r++) {
+            int series = entry * RESOLUTIONS + r;
+            long period = Math.floorDiv(second, PERIOD_SECONDS[r]);
+            if (period > periods[series])
+                closePeriod(series, r, period);
+            accumulated[series] += bytes;
+            if (accumulated[series] > thresholds[series])
+                mask |= 1 << r;
+        }
+
+        if (mask != 0 && (mask & ~alerting[entry]) != 0)
+            reportAnomaly(entry, mask & ~alerting[entry]);
+        alerting[entry] = (byte) mask;
+        return mask != 0;
+    }
+
+    /**
+     * Ends the current period of a series: its bytes become a sample, the periods without
+     * packets in between count as zero samples, and the threshold is recomputed.
+     */
+    private void closePeriod(int series, int resolution, long period) {
+        if (periods[series] != NO_PERIOD) {
+            addSample(series, resolution, accumulated[series]);
+            long idlePeriods = period - periods[series] - 1;
+            if (idlePeriods > 0)
+                addZeroSamples(series, resolution, idlePeriods);
+        }
+        periods[series] = period;
+        accumulated[series] = 0;
+        thresholds[series] = threshold(series, resolution);
+    }
+
+    private void addSample(int series, int resolution, double value) {
+        if (samples[series]++ == 0) {
+            means[series] = value;
+            variances[series] = 0;
+            return;
+        }
+        double alpha = ALPHAS[resolution];
+        double difference = value - means[series];
+        double increment = alpha * difference;
+        means[series] += increment;
+        variances[series] = (1 - alpha) * (variances[series] + difference * increment);
+    }
+
+    /**
+     * Applies n zero samples at once: with d = (1 - alpha)^n the mean becomes d * mean and the
+     * variance d * (variance + mean^2 * (1 - d)), the closed form of n single updates.
+     */
+    private void addZeroSamples(int series, int resolution, long count) {
+        if (samples[series] == 0)
+            return;
+        double decay = Math.pow(1 - ALPHAS[resolution], count);
+        double mean = means[series];
+        variances[series] = decay * (variances[series] + mean * mean * (1 - decay));
+        means[series] = decay * mean;
+        samples[series] = (int) Math.min(Integer.MAX_VALUE, samples[series] + count);
+    }
+
+    private long threshold(int series, int resolution) {
+        if (samples[series] < WARMUP_PERIODS[resolution])
+            return Long.MAX_VALUE;
+        double limit = means[series] + sigma * Math.sqrt(variances[series]);
+        return (long) Math.ceil(Math.max(limit, (double) minBytesPerSecond * PERIOD_SECONDS[resolution]));
+    }
+
+    private void reportAnomaly(int entry, int newResolutions) {
+        anomalies.incrementAndGet();
+        if (!LOGGER.isLoggable(Level.WARNING))
+            return;
+        for (int r = 0; r < RESOLUTIONS; r++) {
+            if ((newResolutions & 1 << r) == 0)
+                continue;
+            int series = entry * RESOLUTIONS + r;
+            LOGGER.warning(String.format("event=volume_anomaly host=%s proto=%s resolution=%s bytes=%d mean=%.0f stddev=%.0f threshold=%d",
+                IpAddresses.format(highs[entry], lows[entry]), formatProtocol(protocols[entry]), RESOLUTION_NAMES[r], accumulated[series],
+                means[series], Math.sqrt(variances[series]), thresholds[series]));
+        }
+    }
+
+    private int find(long high, long low, byte protocol, long hash) {
+        int entry;
+        for (int slot = index.slot(hash); (entry = index.get(slot)) >= 0; slot = index.next(slot))
+            if (highs[entry] == high && lows[entry] == low && protocols[entry] == protocol)
+                return entry;
+        return -1;
+    }
+
+    /**
+     * Takes a free entry, or the least recently used one when the table is full, and resets its series.
+     */
+    private int insert(long high, long low, byte protocol, long hash) {
+        int entry;
+        if (size < capacity) {
+            entry = size++;
+        } else {
+            entry = tail;
+            index.remove(entry, hashes);
+            unlink(entry);
+            evictions.incrementAndGet();
+        }
+
+        highs[entry] = high;
+        lows[entry] = low;
+        protocols[entry] = protocol;
+        hashes[entry] = hash;
+        index.insert(hash, entry);
+
+        int first = entry * RESOLUTIONS;
+        Arrays.fill(periods, first, first + RESOLUTIONS, NO_PERIOD);
+        Arrays.fill(accumulated, first, first + RESOLUTIONS, 0);
+        Arrays.fill(means, first, first + RESOLUTIONS, 0);
+        Arrays.fill(variances, first, first + RESOLUTIONS, 0);
+        Arrays.fill(samples, first, first + RESOLUTIONS, 0);
+        Arrays.fill(thresholds, first, first + RESOLUTIONS, Long.MAX_VALUE);
+        alerting[entry] = 0;
+
+        linkAtHead(entry);
+        return entry;
+    }
+
+    private void moveToHead(int entry) {
+        if (entry == head)
+            return;
+        unlink(entry);
+        linkAtHead(entry);
+    }
+
+    private void unlink(int entry) {
+        if (previous[entry] >= 0)
+            next[previous[entry]] = next[entry];
+        else
+            head = next[entry];
+        if (next[entry] >= 0)
+            previous[next[entry]] = previous[entry];
+        else
+            tail = previous[entry];
+    }
+
+    private void linkAtHead(int entry) {
+        previous[entry] = -1;
+        next[entry] = head;
+        if (head >= 0)
+            previous[head] = entry;
+        head = entry;
+        if (tail < 0)
+            tail = entry;
+    }
+
+    /**
+     * Writes a checkpoint when one is due. Call it regularly from the capture thread; the
+     * table is serialized here and written to disk on a background thread.
+     */
+    public void tick() {
+        long now = System.currentTimeMillis();
+        if (checkpointWriter == null || now < nextCheckpointMillis)
+            return;
+        nextCheckpointMillis = now + checkpointIntervalMillis;
+        byte[] data = serialize();
+        checkpointWriter.execute(() -> write(data));
+    }
+
+    /**
+     * Writes a checkpoint immediately on the calling thread (capture thread, when capture stops).
+     */
+    public void checkpoint() {
+        if (checkpointWriter != null)
+            write(serialize());
+    }
+
+    private byte[] serialize() {
+        ByteBuffer buffer = ByteBuffer.allocate(12 + size * RECORD_BYTES);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(size);
+        for (int entry = tail; entry >= 0; entry = previous[entry]) {
+            buffer.putLong(highs[entry]).putLong(lows[entry]).put(protocols[entry]);
+            for (int r = 0; r < RESOLUTIONS; r++) {
+                int series = entry * RESOLUTIONS + r;
+                buffer.putDouble(means[series]).putDouble(variances[series]).putInt(samples[series]);
+            }
+        }
+        return buffer.array();
+    }
+
+    private void write(byte[] data) {
+        long start = System.nanoTime();
+        Path temp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        try {
+            Files.write(temp, data);
+            Files.move(temp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOGGER.fine(String.format("event=baseline_checkpoint file=%s bytes=%d write_ms=%d",
+                checkpointFile, data.length, (System.nanoTime() - start) / 1_000_000));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not write the baseline checkpoint " + checkpointFile, e);
+        }
+    }
+
+    /**
+     * Restores the series of the checkpoint. Their current periods start with the next packet,
+     * so the time the application was not running does not count as idle time.
+     */
+    private void load() {
+        byte[] data;
+        try {
+            data = Files.readAllBytes(checkpointFile);
+        } catch (NoSuchFileException e) {
+            LOGGER.log(Level.INFO, "No baseline checkpoint at {0} yet.", checkpointFile);
+            return;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not read the baseline checkpoint " + checkpointFile, e);
+            return;
+        }
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                LOGGER.log(Level.WARNING, "Ignoring {0}, it is not a baseline checkpoint of this version.", checkpointFile);
+                return;
+            }
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                long high = buffer.getLong();
+                long low = buffer.getLong();
+                byte protocol = buffer.get();
+                long hash = Hashing.mix(high ^ (protocol & 0xFFL) << 56, low);
+                int entry = find(high, low, protocol, hash);
+                if (entry < 0)
+                    entry = insert(high, low, protocol, hash);
+                else
+                    moveToHead(entry);
+                for (int r = 0; r < RESOLUTIONS; r++) {
+                    int series = entry * RESOLUTIONS + r;
+                    means[series] = buffer.getDouble();
+                    variances[series] = buffer.getDouble();
+                    samples[series] = buffer.getInt();
+                    thresholds[series] = threshold(series, r);
+                }
+            }
+            LOGGER.info(String.format("event=baseline_loaded file=%s series=%d", checkpointFile, size));
+        } catch (BufferUnderflowException e) {
+            LOGGER.log(Level.WARNING, "Baseline checkpoint {0} is truncated, keeping the {1} series read so far.",
+                new Object[]{checkpointFile, size});
+        }
+    }
+
+    private static String formatProtocol(byte protocol) {
+        switch (protocol) {
+            case DecodedPacket.PROTO_TCP: return "tcp";
+            case DecodedPacket.PROTO_UDP: return "udp";
+            case 1: return "icmp";
+            case 58: return "icmpv6";
+            default: return Integer.toString(protocol & 0xFF);
+        }
+    }
+
+    /**
+     * @return Anomalies started (a series crossing its threshold)
+     */
+    public long getAnomalyCount() {
+        return anomalies.get();
+    }
+
+    /**
+     * @return Hosts dropped because the table was full
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return Number of hosts and protocols tracked
+     */
+    public int size() {
+        return size;
+    }
+}
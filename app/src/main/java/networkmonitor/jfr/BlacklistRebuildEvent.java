@@ -0,0 +1,39 @@
+package networkmonitor.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A rebuild of the in-memory blacklist cache and lookup indexes, from the database or the local snapshot.
+ */
+@Name("networkmonitor.BlacklistRebuild")
+@Label("Blacklist Rebuild")
+@Category({"Network Monitor", "Blacklist"})
+@Description("Blacklist cache and index rebuild")
+@Threshold("0 ms")
+@StackTrace(false)
+public class BlacklistRebuildEvent extends Event {
+    @Label("Origin")
+    @Description("database or snapshot")
+    public String origin;
+
+    @Label("Entries")
+    public int entries;
+
+    @Label("IPv4 Addresses")
+    public int ipV4Addresses;
+
+    @Label("IPv4 Prefixes")
+    public int ipV4Prefixes;
+
+    @Label("IPv6 Addresses")
+    public int ipV6Addresses;
+
+    @Label("IPv6 Prefixes")
+    public int ipV6Prefixes;
+}
@@ -0,0 +1,40 @@
+package networkmonitor.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A packet that was blocked, timed from the end of decoding to the verdict (reassembly,
+ * signature inspection, blacklist lookup and header rules).
+ */
+@Name("networkmonitor.BlockedVerdict")
+@Label("Blocked Verdict")
+@Category({"Network Monitor", "Capture"})
+@Description("A packet blocked by the blacklist or a header rule")
+@Threshold("0 ms")
+@StackTrace(false)
+public class BlockedVerdictEvent extends Event {
+    @Label("Source Address")
+    public String sourceAddress;
+
+    @Label("Destination Address")
+    public String destinationAddress;
+
+    @Label("Protocol")
+    public int protocol;
+
+    @Label("Source Port")
+    public int sourcePort;
+
+    @Label("Destination Port")
+    public int destinationPort;
+
+    @Label("Rule Id")
+    @Description("Blocking header rule, 0 if the destination is blacklisted")
+    public int ruleId;
+}
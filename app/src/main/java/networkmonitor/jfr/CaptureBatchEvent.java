@@ -0,0 +1,36 @@
+package networkmonitor.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A burst of packets read and processed by the capture thread without waiting for the
+ * next one: it ends at the first read timeout or after CaptureService's batch limit.
+ * A long batch means capture fell behind, e.g. during a GC pause or safepoint.
+ */
+@Name("networkmonitor.CaptureBatch")
+@Label("Capture Batch")
+@Category({"Network Monitor", "Capture"})
+@Description("Packets read and processed back to back by the capture thread")
+@Threshold("10 ms")
+@StackTrace(false)
+public class CaptureBatchEvent extends Event {
+    @Label("Interface")
+    public String interfaceName;
+
+    @Label("Packets")
+    public int packets;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Label("Blocked Packets")
+    public int blockedPackets;
+}
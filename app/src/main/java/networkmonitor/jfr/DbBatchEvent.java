@@ -0,0 +1,39 @@
+package networkmonitor.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * One blacklist write transaction (BlacklistDao.save, saveAll or applyDiff).
+ */
+@Name("networkmonitor.DbBatch")
+@Label("Database Batch")
+@Category({"Network Monitor", "Database"})
+@Description("Blacklist rows written in one transaction")
+@Threshold("0 ms")
+@StackTrace(false)
+public class DbBatchEvent extends Event {
+    @Label("Operation")
+    public String operation;
+
+    @Label("Backend")
+    public String backend;
+
+    @Label("Source")
+    @Description("Feed whose rows were written, null for manual entries")
+    public String source;
+
+    @Label("Inserted Rows")
+    public int inserted;
+
+    @Label("Deleted Rows")
+    public int deleted;
+
+    @Label("Committed")
+    public boolean committed;
+}
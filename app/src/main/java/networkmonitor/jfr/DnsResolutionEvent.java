@@ -0,0 +1,29 @@
+package networkmonitor.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A DNS lookup of a blacklisted domain.
+ */
+@Name("networkmonitor.DnsResolution")
+@Label("DNS Resolution")
+@Category({"Network Monitor", "Blacklist"})
+@Description("Resolution of a blacklisted domain to its addresses")
+@Threshold("20 ms")
+@StackTrace(false)
+public class DnsResolutionEvent extends Event {
+    @Label("Domain")
+    public String domain;
+
+    @Label("Addresses")
+    public int addresses;
+
+    @Label("Resolved")
+    public boolean resolved;
+}
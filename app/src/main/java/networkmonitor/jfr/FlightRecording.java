@@ -0,0 +1,93 @@
+package networkmonitor.jfr;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+/**
+ * Optional in-process continuous JFR recording with the JDK's default settings plus the
+ * Network Monitor events (bundled networkmonitor.jfc). It keeps the last
+ * networkmonitor.jfr.maxAgeMinutes on disk and is dumped to networkmonitor.jfr.file on exit,
+ * or on demand with {@code jcmd <pid> JFR.dump name=networkmonitor}.
+ * <p>
+ * Each event can be switched and tuned with {@code networkmonitor.jfr.event.<Event>.<setting>},
+ * e.g. {@code -Dnetworkmonitor.jfr.event.CaptureBatch.threshold="50 ms"} or
+ * {@code -Dnetworkmonitor.jfr.event.BlockedVerdict.enabled=false}.
+ */
+public final class FlightRecording {
+    // Logger for recording startup
+    private static final Logger LOGGER = Logger.getLogger(FlightRecording.class.getName());
+
+    // Event settings bundled with the application
+    private static final String SETTINGS_RESOURCE = "/networkmonitor.jfc";
+
+    // Prefix of the per-event system properties
+    private static final String EVENT_PROPERTY_PREFIX = "networkmonitor.jfr.event.";
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private FlightRecording() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Starts the recording if networkmonitor.jfr.enabled=true. Failures are logged.
+     * @return The running recording, or null.
+     */
+    public static Recording startFromSystemProperties() {
+        if (!Boolean.getBoolean("networkmonitor.jfr.enabled"))
+            return null;
+
+        try {
+            Recording recording = new Recording(settings());
+            recording.setName("networkmonitor");
+            recording.setToDisk(true);
+            recording.setMaxAge(Duration.ofMinutes(Integer.getInteger("networkmonitor.jfr.maxAgeMinutes", 30)));
+            recording.setDestination(Path.of(System.getProperty("networkmonitor.jfr.file", "networkmonitor.jfr")));
+            recording.setDumpOnExit(true);
+            recording.start();
+            LOGGER.log(Level.INFO, "Flight recording started, dumped to {0} on exit.", recording.getDestination());
+            return recording;
+        } catch (IOException | ParseException | IllegalStateException | SecurityException e) {
+            LOGGER.log(Level.WARNING, "Could not start the flight recording", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return The default settings, the bundled event settings and the system property overrides
+     */
+    static Map<String, String> settings() throws IOException, ParseException {
+        Map<String, String> settings = new HashMap<>(Configuration.getConfiguration("default").getSettings());
+
+        InputStream in = FlightRecording.class.getResourceAsStream(SETTINGS_RESOURCE);
+        if (in != null) {
+            try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                settings.putAll(Configuration.create(reader).getSettings());
+            }
+        }
+
+        for (String key : System.getProperties().stringPropertyNames()) {
+            if (!key.startsWith(EVENT_PROPERTY_PREFIX))
+                continue;
+            String eventSetting = key.substring(EVENT_PROPERTY_PREFIX.length());
+            int dot = eventSetting.lastIndexOf('.');
+            if (dot > 0)
+                settings.put("networkmonitor." + eventSetting.substring(0, dot) + "#" + eventSetting.substring(dot + 1), System.getProperty(key));
+        }
+        return settings;
+    }
+}
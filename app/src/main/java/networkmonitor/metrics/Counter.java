@@ -0,0 +1,57 @@
+package networkmonitor.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Monotonic counter, either owned (incremented through {@link #add}) or backed by a
+ * value another component already maintains.
+ */
+public class Counter implements CounterMXBean {
+    private final String name;
+    private final String help;
+    private final LongAdder adder;
+    private final LongSupplier source;
+
+    /**
+     * Creates an owned counter.
+     * @param name Metric name (snake_case, without the _total suffix)
+     * @param help One-line description
+     */
+    public Counter(String name, String help) {
+        this.name = name;
+        this.help = help;
+        this.adder = new LongAdder();
+        this.source = adder::sum;
+    }
+
+    /**
+     * Creates a counter that reads an existing value.
+     * @param name Metric name (snake_case, without the _total suffix)
+     * @param help One-line description
+     * @param source Supplies the current value
+     */
+    public Counter(String name, String help, LongSupplier source) {
+        this.name = name;
+        this.help = help;
+        this.adder = null;
+        this.source = source;
+    }
+
+    /**
+     * Adds to an owned counter. Allocation-free.
+     * @param delta The increment
+     */
+    public void add(long delta) {
+        adder.add(delta);
+    }
+
+    // Getters
+    public String getName() { return name; }
+    public String getHelp() { return help; }
+
+    @Override
+    public long getValue() {
+        return source.getAsLong();
+    }
+}
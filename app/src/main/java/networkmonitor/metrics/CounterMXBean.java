@@ -0,0 +1,8 @@
+package networkmonitor.metrics;
+
+/**
+ * JMX view of a counter.
+ */
+public interface CounterMXBean {
+    long getValue();
+}
@@ -0,0 +1,152 @@
+package networkmonitor.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram with logarithmic buckets in the style of HdrHistogram: every power of two
+ * is split into 8 linear sub-buckets, so any recorded value is known within 12.5% from
+ * 1 ns up to about 18 minutes in 312 counters. Recording is a few shifts and one atomic
+ * increment, allocation-free and safe from any thread; readers see a consistent-enough
+ * view without stopping writers.
+ */
+public class LatencyHistogram implements LatencyHistogramMXBean {
+    // Sub-buckets per power of two (2^SUB_BUCKET_BITS)
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // Largest tracked power of two; larger values land in the last bucket
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final String name;
+    private final String help;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Creates an empty histogram.
+     * @param name Metric name (snake_case, without unit)
+     * @param help One-line description
+     */
+    public LatencyHistogram(String name, String help) {
+        this.name = name;
+        this.help = help;
+    }
+
+    /**
+     * Records one duration. Negative values (clock skew) count as 0.
+     * @param nanos Duration in nanoseconds
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketIndex(value));
+        total.incrementAndGet();
+        sum.addAndGet(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value))
+            currentMax = max.get();
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT)
+            return BUCKET_COUNT - 1;
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @param index A bucket index
+     * @return Smallest value above the bucket (exclusive upper bound), in nanoseconds
+     */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS)
+            return index + 1L;
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = index % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * Estimates a quantile.
+     * @param quantile 0..1
+     * @return Upper bound of the bucket holding the quantile, in nanoseconds (0 if empty)
+     */
+    public long getValueAtQuantile(double quantile) {
+        long count = total.get();
+        if (count == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= rank)
+                return Math.min(bucketUpperBound(i) - 1, max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * Counts the recorded values below a bound.
+     * @param exclusiveBound A power of two, in nanoseconds
+     * @return Number of values smaller than the bound
+     */
+    public long getCountBelow(long exclusiveBound) {
+        long below = 0;
+        for (int i = 0; i < BUCKET_COUNT && bucketUpperBound(i) <= exclusiveBound; i++)
+            below += counts.get(i);
+        return below;
+    }
+
+    /**
+     * @return Sum of the recorded values, in nanoseconds
+     */
+    public long getSumNanos() {
+        return sum.get();
+    }
+
+    // Getters
+    public String getName() { return name; }
+    public String getHelp() { return help; }
+
+    @Override
+    public long getCount() {
+        return total.get();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        long count = total.get();
+        return count == 0 ? 0 : sum.get() / 1000.0 / count;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return max.get() / 1000.0;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return getValueAtQuantile(0.5) / 1000.0;
+    }
+
+    @Override
+    public double getP90Micros() {
+        return getValueAtQuantile(0.9) / 1000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return getValueAtQuantile(0.99) / 1000.0;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return getValueAtQuantile(0.999) / 1000.0;
+    }
+}
@@ -0,0 +1,14 @@
+package networkmonitor.metrics;
+
+/**
+ * JMX view of a LatencyHistogram. Values are in microseconds.
+ */
+public interface LatencyHistogramMXBean {
+    long getCount();
+    double getMeanMicros();
+    double getMaxMicros();
+    double getP50Micros();
+    double getP90Micros();
+    double getP99Micros();
+    double getP999Micros();
+}
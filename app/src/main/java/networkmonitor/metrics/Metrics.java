@@ -0,0 +1,125 @@
+package networkmonitor.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Process-wide metrics: the per-stage latency histograms, owned counters, and counters
+ * registered by the components that already keep them. Exposed as MBeans under the
+ * "networkmonitor" JMX domain and, unless disabled, as Prometheus text on
+ * http://127.0.0.1:&lt;networkmonitor.metrics.port&gt;/metrics (default 9464, -1 = off).
+ */
+public final class Metrics {
+    // Logger for exporter startup
+    private static final Logger LOGGER = Logger.getLogger(Metrics.class.getName());
+
+    // Stage latencies
+    public static final LatencyHistogram CAPTURE_TO_DECODE = new LatencyHistogram("capture_to_decode",
+        "Time from the pcap capture timestamp until the headers are decoded (live capture only)");
+    public static final LatencyHistogram DECODE_TO_VERDICT = new LatencyHistogram("decode_to_verdict",
+        "Time from decoding until the reassembly, signature, rule and blacklist verdict");
+    public static final LatencyHistogram VERDICT_TO_UI = new LatencyHistogram("verdict_to_ui",
+        "Time from the verdict until the packet is added to the table");
+    public static final LatencyHistogram DB_BATCH = new LatencyHistogram("db_batch",
+        "Duration of blacklist database write transactions");
+
+    // Owned counters
+    public static final Counter DB_ROWS = new Counter("db_rows_written", "Blacklist rows inserted or deleted");
+
+    private static final List<LatencyHistogram> HISTOGRAMS = List.of(CAPTURE_TO_DECODE, DECODE_TO_VERDICT, VERDICT_TO_UI, DB_BATCH);
+    private static final Map<String, Counter> COUNTERS = new ConcurrentHashMap<>();
+
+    // Offset from System.nanoTime() to epoch nanoseconds, for comparing with pcap timestamps
+    private static final long EPOCH_OFFSET_NANOS = System.currentTimeMillis() * 1_000_000L - System.nanoTime();
+
+    private static boolean started = false;
+
+    static {
+        COUNTERS.put(DB_ROWS.getName(), DB_ROWS);
+    }
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Metrics() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Converts a System.nanoTime() reading to epoch nanoseconds (millisecond accuracy).
+     * @param nanoTime A System.nanoTime() value
+     * @return Epoch nanoseconds
+     */
+    public static long toEpochNanos(long nanoTime) {
+        return nanoTime + EPOCH_OFFSET_NANOS;
+    }
+
+    /**
+     * Registers (or replaces) a counter backed by an existing value.
+     * @param name Metric name (snake_case, without the _total suffix)
+     * @param help One-line description
+     * @param source Supplies the current value
+     */
+    public static synchronized void registerCounter(String name, String help, LongSupplier source) {
+        Counter counter = new Counter(name, help, source);
+        COUNTERS.put(name, counter);
+        if (started)
+            registerMBean(counter, "Counter", name);
+    }
+
+    /**
+     * Registers the MBeans and starts the Prometheus endpoint. Later calls do nothing.
+     */
+    public static synchronized void start() {
+        if (started)
+            return;
+        started = true;
+
+        for (LatencyHistogram histogram : HISTOGRAMS)
+            registerMBean(histogram, "Latency", histogram.getName());
+        for (Counter counter : COUNTERS.values())
+            registerMBean(counter, "Counter", counter.getName());
+
+        int port = Integer.getInteger("networkmonitor.metrics.port", 9464);
+        if (port >= 0)
+            PrometheusEndpoint.start(port);
+    }
+
+    private static void registerMBean(Object bean, String type, String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("networkmonitor:type=" + type + ",name=" + name);
+            if (server.isRegistered(objectName))
+                server.unregisterMBean(objectName);
+            server.registerMBean(bean, objectName);
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Could not register MBean " + name, e);
+        }
+    }
+
+    /**
+     * @return The latency histograms
+     */
+    public static List<LatencyHistogram> getHistograms() {
+        return HISTOGRAMS;
+    }
+
+    /**
+     * @return The counters, sorted by name
+     */
+    public static List<Counter> getCounters() {
+        List<Counter> counters = new ArrayList<>(COUNTERS.values());
+        counters.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return counters;
+    }
+}
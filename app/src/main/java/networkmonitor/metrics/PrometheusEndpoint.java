@@ -0,0 +1,109 @@
+package networkmonitor.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves the metrics in the Prometheus text exposition format on the loopback interface,
+ * using the JDK's built-in HTTP server with one daemon thread.
+ */
+final class PrometheusEndpoint {
+    // Logger for endpoint startup
+    private static final Logger LOGGER = Logger.getLogger(PrometheusEndpoint.class.getName());
+
+    // Metric name prefix
+    private static final String PREFIX = "networkmonitor_";
+
+    // Histogram buckets exported to Prometheus: powers of two from ~1 us to ~69 s
+    private static final int FIRST_BUCKET_EXPONENT = 10;
+    private static final int LAST_BUCKET_EXPONENT = 36;
+
+    private PrometheusEndpoint() {
+    }
+
+    /**
+     * Starts the endpoint; a failure (e.g. the port is taken) is logged and otherwise ignored.
+     * The server is created on a daemon thread because its dispatcher thread inherits the
+     * daemon status of its creator and must not keep the JVM alive.
+     * @param port TCP port on 127.0.0.1
+     */
+    static void start(int port) {
+        Thread starter = new Thread(() -> startServer(port), "metrics-http");
+        starter.setDaemon(true);
+        starter.start();
+    }
+
+    private static void startServer(int port) {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            server.createContext("/metrics", PrometheusEndpoint::handle);
+            server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "metrics-http");
+                thread.setDaemon(true);
+                return thread;
+            }));
+            server.start();
+            LOGGER.log(Level.INFO, "Prometheus metrics on http://{0}:{1}/metrics",
+                new Object[]{InetAddress.getLoopbackAddress().getHostAddress(), String.valueOf(server.getAddress().getPort())});
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not start the Prometheus endpoint on port " + port, e);
+        }
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /**
+     * @return All metrics in the text exposition format
+     */
+    static String render() {
+        StringBuilder text = new StringBuilder(8192);
+        for (Counter counter : Metrics.getCounters()) {
+            String name = PREFIX + counter.getName() + "_total";
+            text.append("# HELP ").append(name).append(' ').append(counter.getHelp()).append('\n');
+            text.append("# TYPE ").append(name).append(" counter\n");
+            text.append(name).append(' ').append(counter.getValue()).append('\n');
+        }
+
+        for (LatencyHistogram histogram : Metrics.getHistograms()) {
+            String name = PREFIX + histogram.getName() + "_seconds";
+            long count = histogram.getCount();
+            text.append("# HELP ").append(name).append(' ').append(histogram.getHelp()).append('\n');
+            text.append("# TYPE ").append(name).append(" histogram\n");
+            for (int exponent = FIRST_BUCKET_EXPONENT; exponent <= LAST_BUCKET_EXPONENT; exponent++) {
+                long bound = 1L << exponent;
+                text.append(name).append("_bucket{le=\"").append(seconds(bound)).append("\"} ")
+                    .append(histogram.getCountBelow(bound)).append('\n');
+            }
+            text.append(name).append("_bucket{le=\"+Inf\"} ").append(count).append('\n');
+            text.append(name).append("_sum ").append(seconds(histogram.getSumNanos())).append('\n');
+            text.append(name).append("_count ").append(count).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+}
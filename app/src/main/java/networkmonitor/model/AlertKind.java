@@ -0,0 +1,35 @@
+package networkmonitor.model;
+
+/**
+ * Origin of the rule id a packet is tagged with, stored in one byte per packet next to the id.
+ * Payload signatures, header rules and the detectors number their rules independently, so the
+ * id alone does not say which of them matched. Kind 0 means the packet raised no alert.
+ */
+public final class AlertKind {
+    public static final byte NONE = 0;
+    public static final byte SIGNATURE = 1;
+    public static final byte HEADER_RULE = 2;
+    public static final byte SCAN = 3;
+    public static final byte VOLUME = 4;
+
+    // Labels shown before the rule id in the "Info" column, by kind
+    private static final String[] LABELS = {
+        "", "SIG", "RULE", "SCAN", "VOLUME"
+    };
+
+    /**
+     * Number of kinds, NONE included.
+     */
+    public static final int COUNT = LABELS.length;
+
+    private AlertKind() {
+    }
+
+    /**
+     * @param kind Alert kind
+     * @return Label of the kind, or "" for NONE and unknown kinds
+     */
+    public static String label(byte kind) {
+        return kind > 0 && kind < COUNT ? LABELS[kind] : "";
+    }
+}
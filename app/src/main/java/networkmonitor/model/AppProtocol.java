@@ -0,0 +1,43 @@
+package networkmonitor.model;
+
+/**
+ * Application protocols recognized by the ProtocolClassifier, as small ids stored in one
+ * byte per packet. Id 0 means not classified: the packet is then shown by its IP protocol.
+ */
+public final class AppProtocol {
+    public static final byte NONE = 0;
+    public static final byte DNS = 1;
+    public static final byte MDNS = 2;
+    public static final byte HTTP = 3;
+    public static final byte TLS = 4;
+    public static final byte QUIC = 5;
+    public static final byte SSH = 6;
+    public static final byte NTP = 7;
+    public static final byte DHCP = 8;
+    public static final byte SMB = 9;
+    public static final byte SMTP = 10;
+    public static final byte FTP = 11;
+    public static final byte RDP = 12;
+    public static final byte SNMP = 13;
+
+    // Display names by id
+    private static final String[] NAMES = {
+        "", "DNS", "mDNS", "HTTP", "TLS", "QUIC", "SSH", "NTP", "DHCP", "SMB", "SMTP", "FTP", "RDP", "SNMP"
+    };
+
+    /**
+     * Number of ids, NONE included, e.g. for arrays of per-protocol counters.
+     */
+    public static final int COUNT = NAMES.length;
+
+    private AppProtocol() {
+    }
+
+    /**
+     * @param id Application protocol id
+     * @return Display name, or "" for NONE and unknown ids
+     */
+    public static String name(byte id) {
+        return id > 0 && id < COUNT ? NAMES[id] : "";
+    }
+}
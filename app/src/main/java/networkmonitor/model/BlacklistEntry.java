@@ -24,6 +24,10 @@ public class BlacklistEntry {
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
+    // Name of the feed that owns the row, null for manual entries
+    @Column(name = "source")
+    private String source;
+
     /**
      * Default constructor required by JPA.
      */
@@ -40,10 +44,36 @@ public class BlacklistEntry {
         this.createdAt = LocalDateTime.now(); // We set the date on the Java side
     }
 
+    /**
+     * Constructor to create a BlacklistEntry owned by a feed
+     * @param ipAddress
+     * @param websiteName
+     * @param source Feed name
+     */
+    public BlacklistEntry(String ipAddress, String websiteName, String source) {
+        this(ipAddress, websiteName);
+        this.source = source;
+    }
+
+    /**
+     * Constructor to restore a stored BlacklistEntry
+     * @param ipAddress
+     * @param websiteName
+     * @param source Feed name, or null
+     * @param createdAt Original creation time
+     */
+    public BlacklistEntry(String ipAddress, String websiteName, String source, LocalDateTime createdAt) {
+        this.ipAddress = ipAddress;
+        this.websiteName = websiteName;
+        this.source = source;
+        this.createdAt = createdAt;
+    }
+
     // Getters
     public String getIpAddress() { return ipAddress; }
     public String getWebsiteName() { return websiteName; }
     public LocalDateTime getCreatedAt() { return createdAt; }
+    public String getSource() { return source; }
 
     /**
      * String representation of the BlacklistEntry
@@ -0,0 +1,86 @@
+package networkmonitor.model;
+
+/**
+ * Mutable, reusable view of the headers of the packet currently being processed.
+ * Filled by PacketDecoder directly from the raw frame bytes, so decoding allocates nothing.
+ * One instance belongs to the capture thread; it must not be kept after processing returns.
+ */
+public class DecodedPacket {
+    // IP protocol numbers (IANA)
+    public static final byte PROTO_OTHER = 0;
+    public static final byte PROTO_TCP = 6;
+    public static final byte PROTO_UDP = 17;
+
+    // TCP flags
+    public static final int TCP_FIN = 0x01;
+    public static final int TCP_SYN = 0x02;
+    public static final int TCP_RST = 0x04;
+    public static final int TCP_ACK = 0x10;
+
+    // Raw frame and capture metadata
+    public byte[] data;
+    public int frameLength;
+    public long captureNanos;
+
+    // Network layer (protocol is the IPv6 upper-layer header after the extension headers)
+    public int ipVersion;
+    public int ipOffset;
+    public byte protocol;
+
+    // IPv4 addresses (ipVersion 4)
+    public int srcAddr;
+    public int dstAddr;
+
+    // IPv6 addresses as high/low 64-bit halves (ipVersion 6)
+    public long srcAddrHi;
+    public long srcAddrLo;
+    public long dstAddrHi;
+    public long dstAddrLo;
+
+    // IP fragmentation: fragmentOffset in bytes, fragmentId is 16-bit for IPv4 and 32-bit for IPv6;
+    // fragmentDataOffset/fragmentProtocol describe the fragmentable part (after the IPv6 fragment header)
+    public boolean isFragment;
+    public boolean moreFragments;
+    public int fragmentOffset;
+    public int fragmentId;
+    public int fragmentDataOffset;
+    public byte fragmentProtocol;
+
+    // Transport layer (ports are unsigned 16-bit values stored in shorts)
+    public short srcPort;
+    public short dstPort;
+    public int tcpSeq;
+    public int tcpFlags;
+    public int payloadOffset;
+    public int payloadLength;
+
+    /**
+     * Clears the fields of the previous packet.
+     */
+    public void reset() {
+        data = null;
+        frameLength = 0;
+        captureNanos = 0;
+        ipVersion = 0;
+        ipOffset = 0;
+        srcAddr = 0;
+        dstAddr = 0;
+        srcAddrHi = 0;
+        srcAddrLo = 0;
+        dstAddrHi = 0;
+        dstAddrLo = 0;
+        protocol = PROTO_OTHER;
+        isFragment = false;
+        moreFragments = false;
+        fragmentOffset = 0;
+        fragmentId = 0;
+        fragmentDataOffset = 0;
+        fragmentProtocol = PROTO_OTHER;
+        srcPort = 0;
+        dstPort = 0;
+        tcpSeq = 0;
+        tcpFlags = 0;
+        payloadOffset = 0;
+        payloadLength = 0;
+    }
+}
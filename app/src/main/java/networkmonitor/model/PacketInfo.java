@@ -1,41 +1,172 @@
 package networkmonitor.model;
 
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+import networkmonitor.util.IpAddresses;
+
 /**
  * DTO (Data Transfer Object) class representing a captured network packet.
  * Uses the Builder Pattern to fix SonarLint S107 (Constructor has >7 parameters).
+ * Holds only primitive header fields; display strings are formatted on first use
+ * (normally by the table renderer) and cached in the instance.
  */
 public class PacketInfo {
+    // Shared formatter for the time column (thread-safe, created once)
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
     // Packet fields
     private final int number;
-    private final String timestamp;
-    private final String sourceIp;
-    private final String destIp;
-    private final String protocol;
+    private final long captureNanos;
+    private final byte ipVersion;
+    private final int srcAddr;
+    private final int dstAddr;
+    private final long srcAddrHi;
+    private final long srcAddrLo;
+    private final long dstAddrHi;
+    private final long dstAddrLo;
+    private final short srcPort;
+    private final short dstPort;
+    private final byte protocol;
+    private final byte appProtocol;
     private final int length;
-    private final String info;
     private final boolean isBlocked;
+    private final int signatureId;
+    private final byte alertKind;
+    private final int pid;
+
+    // System.nanoTime() when the verdict was reached, for the verdict-to-UI latency
+    private final long verdictNanos;
+
+    // Lazily formatted display strings (racy but idempotent caching of immutable Strings)
+    private String timestamp;
+    private String sourceIp;
+    private String destIp;
+    private String info;
 
     // Private constructor, only accessible via Builder
     private PacketInfo(Builder builder) {
         this.number = builder.number;
-        this.timestamp = builder.timestamp;
-        this.sourceIp = builder.sourceIp;
-        this.destIp = builder.destIp;
+        this.captureNanos = builder.captureNanos;
+        this.ipVersion = builder.ipVersion;
+        this.srcAddr = builder.srcAddr;
+        this.dstAddr = builder.dstAddr;
+        this.srcAddrHi = builder.srcAddrHi;
+        this.srcAddrLo = builder.srcAddrLo;
+        this.dstAddrHi = builder.dstAddrHi;
+        this.dstAddrLo = builder.dstAddrLo;
+        this.srcPort = builder.srcPort;
+        this.dstPort = builder.dstPort;
         this.protocol = builder.protocol;
+        this.appProtocol = builder.appProtocol;
         this.length = builder.length;
-        this.info = builder.info;
         this.isBlocked = builder.isBlocked;
+        this.signatureId = builder.signatureId;
+        this.alertKind = builder.alertKind;
+        this.pid = builder.pid;
+        this.verdictNanos = builder.verdictNanos;
     }
 
-    // Getters
+    // Getters (primitive)
     public int getNumber() { return number; }
-    public String getTimestamp() { return timestamp; }
-    public String getSourceIp() { return sourceIp; }
-    public String getDestIp() { return destIp; }
-    public String getProtocol() { return protocol; }
+    public long getCaptureNanos() { return captureNanos; }
+    public boolean isIpV6() { return ipVersion == 6; }
+    public int getSrcAddr() { return srcAddr; }
+    public int getDstAddr() { return dstAddr; }
+    public long getSrcAddrHi() { return srcAddrHi; }
+    public long getSrcAddrLo() { return srcAddrLo; }
+    public long getDstAddrHi() { return dstAddrHi; }
+    public long getDstAddrLo() { return dstAddrLo; }
+    public int getSrcPort() { return srcPort & 0xFFFF; }
+    public int getDstPort() { return dstPort & 0xFFFF; }
+    public byte getProtocolNumber() { return protocol; }
+    public byte getAppProtocol() { return appProtocol; }
     public int getLength() { return length; }
-    public String getInfo() { return info; }
     public boolean isBlocked() { return isBlocked; }
+    public int getSignatureId() { return signatureId; }
+    public byte getAlertKind() { return alertKind; }
+    public boolean isAlert() { return signatureId != 0; }
+    public int getPid() { return pid; }
+    public long getVerdictNanos() { return verdictNanos; }
+
+    // Getters (display, formatted on first call)
+    public String getTimestamp() {
+        if (timestamp == null)
+            timestamp = TIME_FORMAT.format(Instant.ofEpochSecond(0, captureNanos));
+        return timestamp;
+    }
+
+    /**
+     * Formats a capture time like the "Time" column.
+     * @param epochMillis Capture time in epoch milliseconds
+     * @return Time of day as HH:mm:ss.SSS
+     */
+    public static String formatTime(long epochMillis) {
+        return TIME_FORMAT.format(Instant.ofEpochMilli(epochMillis));
+    }
+
+    public String getSourceIp() {
+        if (sourceIp == null)
+            sourceIp = isIpV6() ? IpAddresses.formatIpV6(srcAddrHi, srcAddrLo) : IpAddresses.formatIpV4(srcAddr);
+        return sourceIp;
+    }
+
+    public String getDestIp() {
+        if (destIp == null)
+            destIp = isIpV6() ? IpAddresses.formatIpV6(dstAddrHi, dstAddrLo) : IpAddresses.formatIpV4(dstAddr);
+        return destIp;
+    }
+
+    public String getProtocol() {
+        return protocolName(protocol, appProtocol);
+    }
+
+    public String getInfo() {
+        if (info == null)
+            info = formatInfo(protocol, getSrcPort(), getDstPort(), alertKind, signatureId);
+        return info;
+    }
+
+    /**
+     * Builds the text of the "Info" column.
+     * @param protocol IANA protocol number
+     * @param srcPort Source port
+     * @param dstPort Destination port
+     * @param alertKind AlertKind of the rule id
+     * @param signatureId Matched signature, header rule or detector rule, 0 if none
+     * @return Port summary for TCP/UDP, "Raw IP Data" otherwise, prefixed with the kind and id
+     *         of the matched rule, e.g. "[SIG 1000001]" or "[SCAN 3000001]"
+     */
+    public static String formatInfo(byte protocol, int srcPort, int dstPort, byte alertKind, int signatureId) {
+        String text = protocol == DecodedPacket.PROTO_TCP || protocol == DecodedPacket.PROTO_UDP
+            ? "SrcPort: " + srcPort + " -> DstPort: " + dstPort
+            : "Raw IP Data";
+        return signatureId != 0 ? "[" + AlertKind.label(alertKind) + " " + signatureId + "] " + text : text;
+    }
+
+    /**
+     * Display name of an IP protocol number.
+     * @param protocol IANA protocol number
+     * @return "TCP", "UDP" or "Other"
+     */
+    public static String protocolName(byte protocol) {
+        if (protocol == DecodedPacket.PROTO_TCP)
+            return "TCP";
+        if (protocol == DecodedPacket.PROTO_UDP)
+            return "UDP";
+        return "Other";
+    }
+
+    /**
+     * Display name of the "Protocol" column.
+     * @param protocol IANA protocol number
+     * @param appProtocol AppProtocol id, NONE if not classified
+     * @return The application protocol name, or the IP protocol name if not classified
+     */
+    public static String protocolName(byte protocol, byte appProtocol) {
+        return appProtocol != AppProtocol.NONE ? AppProtocol.name(appProtocol) : protocolName(protocol);
+    }
 
     /**
      * Builder class to construct PacketInfo objects cleanly.
@@ -43,27 +174,67 @@ public class PacketInfo {
     public static class Builder {
         // Builder fields
         private int number;
-        private String timestamp;
-        private String sourceIp;
-        private String destIp;
-        private String protocol;
+        private long captureNanos;
+        private byte ipVersion = 4;
+        private int srcAddr;
+        private int dstAddr;
+        private long srcAddrHi;
+        private long srcAddrLo;
+        private long dstAddrHi;
+        private long dstAddrLo;
+        private short srcPort;
+        private short dstPort;
+        private byte protocol;
+        private byte appProtocol;
         private int length;
-        private String info;
         private boolean isBlocked;
+        private int signatureId;
+        private byte alertKind;
+        private int pid;
+        private long verdictNanos;
 
         // Setter methods for builder pattern
         public Builder number(int number) { this.number = number; return this; }
-        public Builder timestamp(String timestamp) { this.timestamp = timestamp; return this; }
-        public Builder sourceIp(String sourceIp) { this.sourceIp = sourceIp; return this; }
-        public Builder destIp(String destIp) { this.destIp = destIp; return this; }
-        public Builder protocol(String protocol) { this.protocol = protocol; return this; }
+        public Builder captureNanos(long captureNanos) { this.captureNanos = captureNanos; return this; }
+        public Builder srcAddr(int srcAddr) { this.srcAddr = srcAddr; return this; }
+        public Builder dstAddr(int dstAddr) { this.dstAddr = dstAddr; return this; }
+        public Builder srcAddrV6(long high, long low) { this.ipVersion = 6; this.srcAddrHi = high; this.srcAddrLo = low; return this; }
+        public Builder dstAddrV6(long high, long low) { this.ipVersion = 6; this.dstAddrHi = high; this.dstAddrLo = low; return this; }
+        public Builder srcPort(short srcPort) { this.srcPort = srcPort; return this; }
+        public Builder dstPort(short dstPort) { this.dstPort = dstPort; return this; }
+        public Builder protocol(byte protocol) { this.protocol = protocol; return this; }
+        public Builder appProtocol(byte appProtocol) { this.appProtocol = appProtocol; return this; }
         public Builder length(int length) { this.length = length; return this; }
-        public Builder info(String info) { this.info = info; return this; }
         public Builder isBlocked(boolean isBlocked) { this.isBlocked = isBlocked; return this; }
+        public Builder signatureId(int signatureId) { this.signatureId = signatureId; return this; }
+        public Builder alertKind(byte alertKind) { this.alertKind = alertKind; return this; }
+        public Builder pid(int pid) { this.pid = pid; return this; }
+        public Builder verdictNanos(long verdictNanos) { this.verdictNanos = verdictNanos; return this; }
+
+        /**
+         * Copies the header fields of a decoded packet.
+         * @param packet The decoded packet
+         * @return this builder
+         */
+        public Builder from(DecodedPacket packet) {
+            this.captureNanos = packet.captureNanos;
+            this.ipVersion = (byte) packet.ipVersion;
+            this.srcAddr = packet.srcAddr;
+            this.dstAddr = packet.dstAddr;
+            this.srcAddrHi = packet.srcAddrHi;
+            this.srcAddrLo = packet.srcAddrLo;
+            this.dstAddrHi = packet.dstAddrHi;
+            this.dstAddrLo = packet.dstAddrLo;
+            this.srcPort = packet.srcPort;
+            this.dstPort = packet.dstPort;
+            this.protocol = packet.protocol;
+            this.length = packet.frameLength;
+            return this;
+        }
 
         // Builds the PacketInfo object
         public PacketInfo build() {
             return new PacketInfo(this);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,357 @@
+package networkmonitor.model;
+
+import java.util.Arrays;
+
+/**
+ * Columnar (struct-of-arrays) in-memory store of recent packets.
+ * Each packet costs about 26 bytes spread over primitive arrays instead of a
+ * PacketInfo, an Object[] row, boxed values and Strings. The arrays grow by doubling
+ * up to the capacity; after that the store works as a ring and evicts the oldest rows.
+ * <p>
+ * IPv6 rows keep their 128-bit addresses in four long columns that are only allocated
+ * once the first IPv6 packet arrives (32 extra bytes per row); their int address columns hold 0.
+ * Alerts are stored the same way, in an int (rule id) and a byte (AlertKind) column allocated on the first hit, and
+ * so are the pids of the local processes, on the first attributed packet.
+ * <p>
+ * Rows are addressed either by row index (0 = oldest retained packet) or by sequence
+ * number (monotonic since the last clear). Writes must come from a single thread (the EDT);
+ * other threads may read rows below {@link #getEndSequence()} and must re-check
+ * {@link #getStartSequence()} afterwards, since the ring may have overwritten them.
+ */
+public class PacketStore {
+    // Smallest array size allocated on first use
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // Maximum number of retained rows
+    private final int capacity;
+
+    // Columns
+    private int[] numbers = new int[0];
+    private int[] timeOffsets = new int[0];
+    private int[] srcAddrs = new int[0];
+    private int[] dstAddrs = new int[0];
+    private short[] srcPorts = new short[0];
+    private short[] dstPorts = new short[0];
+    private byte[] protocols = new byte[0];
+    private byte[] appProtocols = new byte[0];
+    private int[] lengths = new int[0];
+    private long[] blockedBits = new long[0];
+    private long[] ipV6Bits = new long[0];
+
+    // Matched rule id and its AlertKind per row (0 = none), empty until the first hit
+    private int[] signatureIds = new int[0];
+    private byte[] alertKinds = new byte[0];
+
+    // Local process per row (0 = none), empty until the first attributed packet
+    private int[] pids = new int[0];
+
+    // IPv6 address columns, empty until the first IPv6 row
+    private long[] srcAddrHis = new long[0];
+    private long[] srcAddrLos = new long[0];
+    private long[] dstAddrHis = new long[0];
+    private long[] dstAddrLos = new long[0];
+
+    // Time base: timeOffsets are milliseconds since baseMillis
+    private long baseMillis = -1;
+
+    // Sequence window [startSeq, endSeq) of retained rows
+    private volatile long startSeq = 0;
+    private volatile long endSeq = 0;
+
+    // Running totals over the retained rows
+    private long retainedBytes = 0;
+    private int retainedBlocked = 0;
+
+    /**
+     * Creates an empty store.
+     * @param capacity Maximum number of rows kept before the oldest are evicted.
+     */
+    public PacketStore(int capacity) {
+        this.capacity = Math.max(INITIAL_CAPACITY, capacity);
+    }
+
+    /**
+     * Appends a packet, evicting the oldest row if the store is full. Writer thread only.
+     * @param packet The packet to store.
+     * @return true if a row was evicted to make room.
+     */
+    public boolean append(PacketInfo packet) {
+        long captureMillis = packet.getCaptureNanos() / 1_000_000L;
+        if (baseMillis < 0)
+            baseMillis = captureMillis;
+
+        boolean evicted = false;
+        long seq = endSeq;
+        if (seq - startSeq == capacity) {
+            evictOldest();
+            evicted = true;
+        } else if (seq - startSeq == numbers.length) {
+            grow();
+        }
+
+        int slot = slot(seq);
+        numbers[slot] = packet.getNumber();
+        timeOffsets[slot] = (int) Math.min(Integer.MAX_VALUE, captureMillis - baseMillis);
+        srcAddrs[slot] = packet.getSrcAddr();
+        dstAddrs[slot] = packet.getDstAddr();
+        srcPorts[slot] = (short) packet.getSrcPort();
+        dstPorts[slot] = (short) packet.getDstPort();
+        protocols[slot] = packet.getProtocolNumber();
+        appProtocols[slot] = packet.getAppProtocol();
+        lengths[slot] = packet.getLength();
+        setBit(blockedBits, slot, packet.isBlocked());
+        setBit(ipV6Bits, slot, packet.isIpV6());
+        if (packet.isAlert() && signatureIds.length == 0) {
+            signatureIds = new int[numbers.length];
+            alertKinds = new byte[numbers.length];
+        }
+        if (signatureIds.length > 0) {
+            signatureIds[slot] = packet.getSignatureId();
+            alertKinds[slot] = packet.getAlertKind();
+        }
+        if (packet.getPid() != 0 && pids.length == 0)
+            pids = new int[numbers.length];
+        if (pids.length > 0)
+            pids[slot] = packet.getPid();
+        if (packet.isIpV6()) {
+            if (srcAddrHis.length == 0)
+                allocateIpV6Columns(numbers.length);
+            srcAddrHis[slot] = packet.getSrcAddrHi();
+            srcAddrLos[slot] = packet.getSrcAddrLo();
+            dstAddrHis[slot] = packet.getDstAddrHi();
+            dstAddrLos[slot] = packet.getDstAddrLo();
+        }
+
+        retainedBytes += packet.getLength();
+        if (packet.isBlocked())
+            retainedBlocked++;
+
+        endSeq = seq + 1;
+        return evicted;
+    }
+
+    /**
+     * Removes all rows and releases the arrays. Writer thread only; readers on other threads
+     * must have stopped first (see PacketTableSorter.cancelPendingView), since the sequence
+     * numbers restart at 0 and the columns are replaced.
+     */
+    public void clear() {
+        numbers = new int[0];
+        timeOffsets = new int[0];
+        srcAddrs = new int[0];
+        dstAddrs = new int[0];
+        srcPorts = new short[0];
+        dstPorts = new short[0];
+        protocols = new byte[0];
+        appProtocols = new byte[0];
+        lengths = new int[0];
+        blockedBits = new long[0];
+        ipV6Bits = new long[0];
+        signatureIds = new int[0];
+        alertKinds = new byte[0];
+        pids = new int[0];
+        allocateIpV6Columns(0);
+        baseMillis = -1;
+        retainedBytes = 0;
+        retainedBlocked = 0;
+        startSeq = 0;
+        endSeq = 0;
+    }
+
+    private void evictOldest() {
+        int slot = slot(startSeq);
+        retainedBytes -= lengths[slot];
+        if (isBit(blockedBits, slot))
+            retainedBlocked--;
+        startSeq = startSeq + 1;
+    }
+
+    /**
+     * Doubles the arrays (bounded by the capacity). Only happens before the first wrap-around,
+     * so the rows are still stored at slots 0..n-1 and can be copied as they are.
+     */
+    private void grow() {
+        int newLength = (int) Math.min(capacity, Math.max(INITIAL_CAPACITY, (long) numbers.length * 2));
+        numbers = Arrays.copyOf(numbers, newLength);
+        timeOffsets = Arrays.copyOf(timeOffsets, newLength);
+        srcAddrs = Arrays.copyOf(srcAddrs, newLength);
+        dstAddrs = Arrays.copyOf(dstAddrs, newLength);
+        srcPorts = Arrays.copyOf(srcPorts, newLength);
+        dstPorts = Arrays.copyOf(dstPorts, newLength);
+        protocols = Arrays.copyOf(protocols, newLength);
+        appProtocols = Arrays.copyOf(appProtocols, newLength);
+        lengths = Arrays.copyOf(lengths, newLength);
+        blockedBits = Arrays.copyOf(blockedBits, (newLength + 63) >>> 6);
+        ipV6Bits = Arrays.copyOf(ipV6Bits, (newLength + 63) >>> 6);
+        if (signatureIds.length > 0) {
+            signatureIds = Arrays.copyOf(signatureIds, newLength);
+            alertKinds = Arrays.copyOf(alertKinds, newLength);
+        }
+        if (pids.length > 0)
+            pids = Arrays.copyOf(pids, newLength);
+        if (srcAddrHis.length > 0) {
+            srcAddrHis = Arrays.copyOf(srcAddrHis, newLength);
+            srcAddrLos = Arrays.copyOf(srcAddrLos, newLength);
+            dstAddrHis = Arrays.copyOf(dstAddrHis, newLength);
+            dstAddrLos = Arrays.copyOf(dstAddrLos, newLength);
+        }
+    }
+
+    private void allocateIpV6Columns(int length) {
+        srcAddrHis = new long[length];
+        srcAddrLos = new long[length];
+        dstAddrHis = new long[length];
+        dstAddrLos = new long[length];
+    }
+
+    private int slot(long seq) {
+        return (int) (seq % capacity);
+    }
+
+    private static void setBit(long[] bits, int slot, boolean value) {
+        if (value)
+            bits[slot >>> 6] |= 1L << slot;
+        else
+            bits[slot >>> 6] &= ~(1L << slot);
+    }
+
+    private static boolean isBit(long[] bits, int slot) {
+        return (bits[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    // --- Size and addressing ---
+
+    /**
+     * @return Number of retained rows.
+     */
+    public int size() {
+        return (int) (endSeq - startSeq);
+    }
+
+    /**
+     * @return Maximum number of retained rows.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return Sequence number of the oldest retained row.
+     */
+    public long getStartSequence() {
+        return startSeq;
+    }
+
+    /**
+     * @return Sequence number the next appended row will get.
+     */
+    public long getEndSequence() {
+        return endSeq;
+    }
+
+    /**
+     * @return Approximate heap used by the column arrays, in bytes.
+     */
+    public long getMemoryFootprint() {
+        return (long) numbers.length * (4 + 4 + 4 + 4 + 2 + 2 + 1 + 1 + 4) + (blockedBits.length + ipV6Bits.length) * 8L
+            + srcAddrHis.length * 32L + signatureIds.length * 5L + pids.length * 4L;
+    }
+
+    // --- Column access by row index (0 = oldest) ---
+
+    private int rowSlot(int row) {
+        return slot(startSeq + row);
+    }
+
+    public int getNumber(int row) { return numbers[rowSlot(row)]; }
+    public int getSrcAddr(int row) { return srcAddrs[rowSlot(row)]; }
+    public int getDstAddr(int row) { return dstAddrs[rowSlot(row)]; }
+    public int getSrcPort(int row) { return srcPorts[rowSlot(row)] & 0xFFFF; }
+    public int getDstPort(int row) { return dstPorts[rowSlot(row)] & 0xFFFF; }
+    public byte getProtocol(int row) { return protocols[rowSlot(row)]; }
+    public byte getAppProtocol(int row) { return appProtocols[rowSlot(row)]; }
+    public int getLength(int row) { return lengths[rowSlot(row)]; }
+    public boolean isBlocked(int row) { return isBit(blockedBits, rowSlot(row)); }
+    public boolean isIpV6(int row) { return isBit(ipV6Bits, rowSlot(row)); }
+    public int getSignatureId(int row) { return signatureIds.length == 0 ? 0 : signatureIds[rowSlot(row)]; }
+    public byte getAlertKind(int row) { return alertKinds.length == 0 ? 0 : alertKinds[rowSlot(row)]; }
+    public int getPid(int row) { return pids.length == 0 ? 0 : pids[rowSlot(row)]; }
+    public long getSrcAddrHi(int row) { return srcAddrHis[rowSlot(row)]; }
+    public long getSrcAddrLo(int row) { return srcAddrLos[rowSlot(row)]; }
+    public long getDstAddrHi(int row) { return dstAddrHis[rowSlot(row)]; }
+    public long getDstAddrLo(int row) { return dstAddrLos[rowSlot(row)]; }
+
+    /**
+     * @param row Row index
+     * @return Capture time of the row in epoch milliseconds
+     */
+    public long getCaptureMillis(int row) {
+        return baseMillis + timeOffsets[rowSlot(row)];
+    }
+
+    // --- Column access by sequence number ---
+
+    public int getNumberBySeq(long seq) { return numbers[slot(seq)]; }
+    public int getTimeOffsetBySeq(long seq) { return timeOffsets[slot(seq)]; }
+    public int getSrcAddrBySeq(long seq) { return srcAddrs[slot(seq)]; }
+    public int getDstAddrBySeq(long seq) { return dstAddrs[slot(seq)]; }
+    public int getSrcPortBySeq(long seq) { return srcPorts[slot(seq)] & 0xFFFF; }
+    public int getDstPortBySeq(long seq) { return dstPorts[slot(seq)] & 0xFFFF; }
+    public byte getProtocolBySeq(long seq) { return protocols[slot(seq)]; }
+    public byte getAppProtocolBySeq(long seq) { return appProtocols[slot(seq)]; }
+    public int getLengthBySeq(long seq) { return lengths[slot(seq)]; }
+    public boolean isBlockedBySeq(long seq) { return isBit(blockedBits, slot(seq)); }
+    public boolean isIpV6BySeq(long seq) { return isBit(ipV6Bits, slot(seq)); }
+    public int getSignatureIdBySeq(long seq) { return signatureIds.length == 0 ? 0 : signatureIds[slot(seq)]; }
+    public byte getAlertKindBySeq(long seq) { return alertKinds.length == 0 ? 0 : alertKinds[slot(seq)]; }
+    public int getPidBySeq(long seq) { return pids.length == 0 ? 0 : pids[slot(seq)]; }
+    public long getSrcAddrHiBySeq(long seq) { return srcAddrHis[slot(seq)]; }
+    public long getDstAddrHiBySeq(long seq) { return dstAddrHis[slot(seq)]; }
+
+    // --- Aggregations over the retained rows ---
+
+    /**
+     * @return Sum of the lengths of the retained packets.
+     */
+    public long getTotalBytes() {
+        return retainedBytes;
+    }
+
+    /**
+     * @return Number of retained blocked packets.
+     */
+    public int getBlockedCount() {
+        return retainedBlocked;
+    }
+
+    /**
+     * Sums packets and bytes per IP protocol number in one pass over two columns.
+     * @param packetsOut Array of 256 entries receiving packet counts.
+     * @param bytesOut Array of 256 entries receiving byte counts.
+     */
+    public void aggregateByProtocol(long[] packetsOut, long[] bytesOut) {
+        int size = size();
+        for (int row = 0; row < size; row++) {
+            int slot = rowSlot(row);
+            int protocol = protocols[slot] & 0xFF;
+            packetsOut[protocol]++;
+            bytesOut[protocol] += lengths[slot];
+        }
+    }
+
+    /**
+     * Sums the bytes sent to or from one IPv4 address (IPv6 rows are skipped).
+     * @param address The address as a big-endian int.
+     * @return Total bytes of the retained packets involving that address.
+     */
+    public long getBytesForAddress(int address) {
+        long total = 0;
+        int size = size();
+        for (int row = 0; row < size; row++) {
+            int slot = rowSlot(row);
+            if ((srcAddrs[slot] == address || dstAddrs[slot] == address) && !isBit(ipV6Bits, slot))
+                total += lengths[slot];
+        }
+        return total;
+    }
+}
@@ -0,0 +1,100 @@
+package networkmonitor.model;
+
+import jakarta.persistence.*;
+
+/**
+ * JPA Entity class representing the traffic of one source, destination and protocol during
+ * one time bucket. Maps to the "traffic_rollup" table; the same table holds the minute, hour
+ * and day tiers, told apart by resolution_seconds.
+ */
+@Entity
+@Table(name = "traffic_rollup", indexes = {
+    @Index(name = "ix_traffic_rollup_tier", columnList = "resolution_seconds, bucket_start"),
+    @Index(name = "ix_traffic_rollup_src", columnList = "src_address, resolution_seconds, bucket_start"),
+    @Index(name = "ix_traffic_rollup_dst", columnList = "dst_address, resolution_seconds, bucket_start")
+})
+public class TrafficRollup {
+    // Address of the row that sums up the keys that did not fit in memory during a minute
+    public static final String OVERFLOW_ADDRESS = "*";
+
+    // Primary key
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY) // Auto-increment ID
+    private long id;
+
+    // 60, 3600 or 86400
+    @Column(name = "resolution_seconds", nullable = false)
+    private int resolutionSeconds;
+
+    // Start of the bucket in epoch seconds (UTC), a multiple of resolution_seconds
+    @Column(name = "bucket_start", nullable = false)
+    private long bucketStart;
+
+    @Column(name = "src_address", nullable = false, length = 45)
+    private String srcAddress;
+
+    @Column(name = "dst_address", nullable = false, length = 45)
+    private String dstAddress;
+
+    // IP protocol number (6 TCP, 17 UDP, ...)
+    @Column(name = "protocol", nullable = false)
+    private int protocol;
+
+    @Column(name = "bytes", nullable = false)
+    private long bytes;
+
+    @Column(name = "packets", nullable = false)
+    private long packets;
+
+    // Packets with a blacklisted destination or a blocking header rule
+    @Column(name = "blocked", nullable = false)
+    private long blocked;
+
+    /**
+     * Default constructor required by JPA.
+     */
+    public TrafficRollup() {}
+
+    /**
+     * Constructor to create a TrafficRollup
+     * @param resolutionSeconds Length of the bucket
+     * @param bucketStart Start of the bucket in epoch seconds
+     * @param srcAddress Source address
+     * @param dstAddress Destination address
+     * @param protocol IP protocol number
+     * @param bytes Frame bytes
+     * @param packets Packets
+     * @param blocked Blocked packets
+     */
+    public TrafficRollup(int resolutionSeconds, long bucketStart, String srcAddress, String dstAddress, int protocol,
+                         long bytes, long packets, long blocked) {
+        this.resolutionSeconds = resolutionSeconds;
+        this.bucketStart = bucketStart;
+        this.srcAddress = srcAddress;
+        this.dstAddress = dstAddress;
+        this.protocol = protocol;
+        this.bytes = bytes;
+        this.packets = packets;
+        this.blocked = blocked;
+    }
+
+    // Getters
+    public int getResolutionSeconds() { return resolutionSeconds; }
+    public long getBucketStart() { return bucketStart; }
+    public String getSrcAddress() { return srcAddress; }
+    public String getDstAddress() { return dstAddress; }
+    public int getProtocol() { return protocol; }
+    public long getBytes() { return bytes; }
+    public long getPackets() { return packets; }
+    public long getBlocked() { return blocked; }
+
+    /**
+     * String representation of the TrafficRollup
+     * @return Formatted string with the bucket, the addresses and the totals
+     */
+    @Override
+    public String toString() {
+        return bucketStart + "/" + resolutionSeconds + "s " + srcAddress + " -> " + dstAddress + " proto " + protocol
+            + ": " + bytes + " bytes, " + packets + " packets, " + blocked + " blocked";
+    }
+}
@@ -0,0 +1,289 @@
+package networkmonitor.process;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import networkmonitor.model.DecodedPacket;
+
+/**
+ * Reads the socket tables of /proc/net (tcp, tcp6, udp, udp6) and finds the process of each
+ * socket inode through the socket:[inode] links of /proc/&lt;pid&gt;/fd.
+ * <p>
+ * The fd scan is incremental: owners found by earlier scans are kept while their socket
+ * exists, so only the processes of new sockets are searched for, new processes first and
+ * then the ones that opened sockets most recently, stopping as soon as every new socket is
+ * found. Sockets no readable process owns (e.g. of other users without root) are not
+ * searched for again, except in processes started since. Used by the refresh thread only.
+ */
+final class ProcScanner {
+    // Socket tables and their protocol
+    private static final String[] TABLES = {"net/tcp", "net/tcp6", "net/udp", "net/udp6"};
+    private static final byte[] TABLE_PROTOCOLS = {DecodedPacket.PROTO_TCP, DecodedPacket.PROTO_TCP, DecodedPacket.PROTO_UDP, DecodedPacket.PROTO_UDP};
+
+    // Addresses in the tables are 32-bit words printed in host byte order
+    private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+    private final Path root;
+
+    // Incremental state: owner of each socket inode, sockets nobody readable owns, known processes
+    private final Map<Long, Integer> owners = new HashMap<>();
+    private Set<Long> orphans = new HashSet<>();
+    private Set<Integer> knownPids = new HashSet<>();
+    private final Map<Integer, Long> lastFound = new HashMap<>();
+    private final Map<Integer, String> commands = new HashMap<>();
+    private long generation = 0;
+
+    // Statistics of the last scan
+    private int lastSockets;
+    private int lastProcessesScanned;
+
+    /**
+     * @param root Mount point of procfs, normally /proc
+     */
+    ProcScanner(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * Reads the socket tables, finds the owners of the new sockets and builds the index.
+     * @param localAddresses Addresses of this host
+     * @return The index of the sockets whose owner is known
+     * @throws IOException If the socket tables cannot be read
+     */
+    SocketIndex scan(List<InetAddress> localAddresses) throws IOException {
+        generation++;
+        List<long[]> sockets = new ArrayList<>();
+        for (int i = 0; i < TABLES.length; i++) {
+            Path table = root.resolve(TABLES[i]);
+            if (Files.isReadable(table))
+                readTable(table, TABLE_PROTOCOLS[i], sockets);
+        }
+        Set<Long> inodes = new HashSet<>();
+        for (long[] socket : sockets)
+            inodes.add(socket[7]);
+
+        Set<Integer> pids = listPids();
+        owners.keySet().retainAll(inodes);
+        owners.values().retainAll(pids);
+        lastFound.keySet().retainAll(pids);
+        commands.keySet().retainAll(pids);
+        findOwners(inodes, pids);
+        knownPids = pids;
+
+        SocketIndex.Builder builder = new SocketIndex.Builder(sockets.size() + localAddresses.size());
+        Map<Integer, String> socketCommands = new HashMap<>();
+        for (long[] socket : sockets) {
+            Integer pid = owners.get(socket[7]);
+            if (pid == null)
+                continue;
+            builder.addSocket((byte) socket[0], socket[1], socket[2], (int) socket[3], socket[4], socket[5], (int) socket[6], pid);
+            socketCommands.computeIfAbsent(pid, this::command);
+        }
+        for (InetAddress address : localAddresses) {
+            long[] halves = halves(address.getAddress());
+            builder.addLocalAddress(halves[0], halves[1]);
+        }
+        lastSockets = sockets.size();
+        return builder.build(Map.copyOf(socketCommands));
+    }
+
+    /**
+     * Searches the fd links of the processes for the sockets without a known owner.
+     */
+    private void findOwners(Set<Long> inodes, Set<Integer> pids) {
+        Set<Long> wanted = new HashSet<>(inodes);
+        wanted.removeAll(owners.keySet());
+        Set<Long> fresh = new HashSet<>(wanted);
+        fresh.removeAll(orphans);
+
+        // New processes first (highest pid first), then the ones that opened sockets most recently
+        List<Integer> order = new ArrayList<>();
+        List<Integer> known = new ArrayList<>();
+        for (Integer pid : pids)
+            (knownPids.contains(pid) ? known : order).add(pid);
+        order.sort((a, b) -> Integer.compare(b, a));
+        int newCount = order.size();
+        known.sort((a, b) -> {
+            int recent = Long.compare(lastFound.getOrDefault(b, 0L), lastFound.getOrDefault(a, 0L));
+            return recent != 0 ? recent : Integer.compare(b, a);
+        });
+        order.addAll(known);
+
+        int scanned = 0;
+        for (int i = 0; i < order.size() && !wanted.isEmpty(); i++) {
+            // Old processes only for new sockets; the orphans are only searched in new processes
+            if (i >= newCount && fresh.isEmpty())
+                break;
+            int pid = order.get(i);
+            scanned++;
+            if (scanFds(pid, wanted, fresh))
+                lastFound.put(pid, generation);
+        }
+        orphans = wanted;
+        lastProcessesScanned = scanned;
+    }
+
+    /**
+     * Records the owner of the wanted socket inodes among the fds of a process.
+     * @return True if one was found
+     */
+    private boolean scanFds(int pid, Set<Long> wanted, Set<Long> fresh) {
+        boolean found = false;
+        try (DirectoryStream<Path> fds = Files.newDirectoryStream(root.resolve(Integer.toString(pid)).resolve("fd"))) {
+            for (Path fd : fds) {
+                String target;
+                try {
+                    target = Files.readSymbolicLink(fd).toString();
+                } catch (IOException | UnsupportedOperationException e) {
+                    // Closed meanwhile, or not a link
+                    continue;
+                }
+                if (!target.startsWith("socket:[") || !target.endsWith("]"))
+                    continue;
+                long inode;
+                try {
+                    inode = Long.parseLong(target, 8, target.length() - 1, 10);
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (wanted.remove(inode)) {
+                    fresh.remove(inode);
+                    owners.put(inode, pid);
+                    found = true;
+                }
+            }
+        } catch (IOException e) {
+            // Exited, or fds of another user without the permission to read them
+        }
+        return found;
+    }
+
+    private Set<Integer> listPids() throws IOException {
+        Set<Integer> pids = new HashSet<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(root)) {
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                if (!name.isEmpty() && name.chars().allMatch(c -> c >= '0' && c <= '9') && name.length() < 10)
+                    pids.add(Integer.parseInt(name));
+            }
+        }
+        return pids;
+    }
+
+    /**
+     * Reads one socket table: "sl local_address rem_address st tx:rx tr:when retrnsmt uid timeout inode ...",
+     * addresses as hex ADDR:PORT. Sockets without inode (e.g. TIME_WAIT) are skipped.
+     * @param out Receives {protocol, local high, local low, local port, remote high, remote low, remote port, inode}
+     */
+    private static void readTable(Path table, byte protocol, List<long[]> out) throws IOException {
+        List<String> lines = Files.readAllLines(table, StandardCharsets.US_ASCII);
+        for (int i = 1; i < lines.size(); i++) {
+            String[] fields = lines.get(i).trim().split("\\s+");
+            if (fields.length < 10)
+                continue;
+            try {
+                long inode = Long.parseLong(fields[9]);
+                if (inode == 0)
+                    continue;
+                long[] socket = new long[8];
+                socket[0] = protocol;
+                if (!parseEndpoint(fields[1], socket, 1) || !parseEndpoint(fields[2], socket, 4))
+                    continue;
+                socket[7] = inode;
+                out.add(socket);
+            } catch (NumberFormatException e) {
+                // Malformed line
+            }
+        }
+    }
+
+    /**
+     * Parses ADDR:PORT into high, low and port at out[offset..offset+2].
+     */
+    private static boolean parseEndpoint(String text, long[] out, int offset) {
+        int colon = text.indexOf(':');
+        if (colon != 8 && colon != 32)
+            return false;
+        if (colon == 8) {
+            int address = word(text, 0);
+            out[offset] = 0;
+            out[offset + 1] = address == 0 ? 0 : 0xFFFFL << 32 | (address & 0xFFFFFFFFL);
+        } else {
+            out[offset] = (long) word(text, 0) << 32 | (word(text, 8) & 0xFFFFFFFFL);
+            out[offset + 1] = (long) word(text, 16) << 32 | (word(text, 24) & 0xFFFFFFFFL);
+        }
+        out[offset + 2] = Integer.parseInt(text, colon + 1, text.length(), 16);
+        return true;
+    }
+
+    /**
+     * Parses 8 hex digits of a host-order word into network order.
+     */
+    private static int word(String text, int start) {
+        int value = Integer.parseUnsignedInt(text, start, start + 8, 16);
+        return LITTLE_ENDIAN ? Integer.reverseBytes(value) : value;
+    }
+
+    /**
+     * @return High and low halves of an address, IPv4-mapped for IPv4, 0/0 for the unspecified one
+     */
+    static long[] halves(byte[] address) {
+        long high = 0;
+        long low = 0;
+        if (address.length == 4) {
+            int value = (address[0] & 0xFF) << 24 | (address[1] & 0xFF) << 16 | (address[2] & 0xFF) << 8 | (address[3] & 0xFF);
+            low = value == 0 ? 0 : 0xFFFFL << 32 | (value & 0xFFFFFFFFL);
+        } else {
+            for (int i = 0; i < 8; i++) {
+                high = high << 8 | (address[i] & 0xFF);
+                low = low << 8 | (address[8 + i] & 0xFF);
+            }
+        }
+        return new long[]{high, low};
+    }
+
+    /**
+     * @return The command name of a process from /proc/&lt;pid&gt;/comm, cached; "?" if unreadable
+     */
+    private String command(int pid) {
+        return commands.computeIfAbsent(pid, p -> {
+            try {
+                return Files.readString(root.resolve(Integer.toString(p)).resolve("comm"), StandardCharsets.UTF_8).strip();
+            } catch (IOException e) {
+                return "?";
+            }
+        });
+    }
+
+    /**
+     * @return Sockets in the tables at the last scan
+     */
+    int getLastSockets() {
+        return lastSockets;
+    }
+
+    /**
+     * @return Processes whose fds were searched by the last scan
+     */
+    int getLastProcessesScanned() {
+        return lastProcessesScanned;
+    }
+
+    /**
+     * @return Sockets whose owner was not found
+     */
+    int getOrphans() {
+        return orphans.size();
+    }
+}
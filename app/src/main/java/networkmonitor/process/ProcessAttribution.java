@@ -0,0 +1,322 @@
+package networkmonitor.process;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import networkmonitor.model.DecodedPacket;
+
+/**
+ * Maps the packets of this host to the local process that owns their socket (Linux only).
+ * A background thread rebuilds the socket index from /proc every refreshMillis, searching
+ * /proc/&lt;pid&gt;/fd only for the owners of new sockets (see ProcScanner), and publishes it
+ * with one volatile write. The capture thread looks packets up in the published index, so
+ * the hot path never touches the filesystem, takes no lock and allocates nothing.
+ * <p>
+ * Sockets opened and closed between two refreshes are not seen, and neither are the
+ * sockets of other users' processes without root. Packets and bytes are summed per pid for
+ * up to maxProcesses processes.
+ */
+public final class ProcessAttribution {
+    // Logger for the refresh
+    private static final Logger LOGGER = Logger.getLogger(ProcessAttribution.class.getName());
+
+    // Lazily created and started attribution of the system properties
+    private static final class DefaultHolder {
+        static final ProcessAttribution INSTANCE = createDefault();
+    }
+
+    // Socket index of the last refresh, replaced as a whole
+    private volatile SocketIndex index = SocketIndex.EMPTY;
+
+    // Refresh
+    private final ProcScanner scanner;
+    private final long refreshMillis;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "process-attribution");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Command names by pid, kept after the process exits for the table and the totals
+    private final Map<Integer, String> commands = new ConcurrentHashMap<>();
+
+    // Per-process totals: entries appended by the capture thread, published by processCount
+    private final int maxProcesses;
+    private final int[] totalPids;
+    private final int[] totalIndex;
+    private final AtomicLongArray packets;
+    private final AtomicLongArray bytes;
+    private volatile int processCount = 0;
+    private final AtomicLong unattributedPackets = new AtomicLong();
+
+    // Refresh statistics
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong refreshFailures = new AtomicLong();
+
+    /**
+     * Creates the attribution; start() begins the refreshes.
+     * @param procRoot Mount point of procfs, normally /proc
+     * @param refreshMillis Time between two refreshes of the socket index
+     * @param maxProcesses Processes with traffic totals
+     */
+    public ProcessAttribution(Path procRoot, long refreshMillis, int maxProcesses) {
+        this.scanner = new ProcScanner(procRoot);
+        this.refreshMillis = Math.max(100, refreshMillis);
+        this.maxProcesses = Math.max(1, maxProcesses);
+        totalPids = new int[this.maxProcesses];
+        totalIndex = new int[Integer.highestOneBit(this.maxProcesses * 2 - 1) << 1];
+        packets = new AtomicLongArray(this.maxProcesses);
+        bytes = new AtomicLongArray(this.maxProcesses);
+    }
+
+    /**
+     * Creates the attribution from the system properties networkmonitor.process.refreshMillis
+     * (1000) and .maxProcesses (4096). Setting networkmonitor.process.enabled=false disables it.
+     * @return The attribution, not started, or null if disabled or if there is no /proc/net/tcp
+     */
+    public static ProcessAttribution fromSystemProperties() {
+        if (!Boolean.parseBoolean(System.getProperty("networkmonitor.process.enabled", "true")))
+            return null;
+        Path procRoot = Path.of("/proc");
+        if (!Files.isReadable(procRoot.resolve("net/tcp")))
+            return null;
+        return new ProcessAttribution(procRoot,
+            Long.getLong("networkmonitor.process.refreshMillis", 1000L),
+            Integer.getInteger("networkmonitor.process.maxProcesses", 4096));
+    }
+
+    private static ProcessAttribution createDefault() {
+        ProcessAttribution attribution = fromSystemProperties();
+        if (attribution != null)
+            attribution.start();
+        return attribution;
+    }
+
+    /**
+     * @return The started attribution of the system properties, created on the first call, or null if unavailable
+     */
+    public static ProcessAttribution getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Starts the periodic refresh on the background thread, the first one at once.
+     */
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly, 0, refreshMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the refresh; the last index stays in use.
+     */
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (IOException | RuntimeException e) {
+            refreshFailures.incrementAndGet();
+            LOGGER.log(Level.FINE, "Socket table refresh failed", e);
+        }
+    }
+
+    /**
+     * Rebuilds the socket index now and publishes it. Normally run by the background thread.
+     * @throws IOException If /proc cannot be read
+     */
+    public synchronized void refresh() throws IOException {
+        long start = System.nanoTime();
+        SocketIndex next = scanner.scan(localAddresses());
+        index = next;
+        commands.putAll(next.getCommands());
+        if (commands.size() > 4 * maxProcesses)
+            pruneCommands(next);
+        refreshes.incrementAndGet();
+        if (LOGGER.isLoggable(Level.FINE))
+            LOGGER.fine(String.format("event=process_refresh sockets=%d indexed=%d processes_scanned=%d orphans=%d ms=%d",
+                scanner.getLastSockets(), next.size(), scanner.getLastProcessesScanned(), scanner.getOrphans(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+    }
+
+    /**
+     * Keeps the names of the processes owning sockets and of the ones with totals.
+     */
+    private void pruneCommands(SocketIndex current) {
+        Set<Integer> keep = new HashSet<>(current.getCommands().keySet());
+        int count = processCount;
+        for (int i = 0; i < count; i++)
+            keep.add(totalPids[i]);
+        commands.keySet().retainAll(keep);
+    }
+
+    private static List<InetAddress> localAddresses() {
+        List<InetAddress> addresses = new ArrayList<>();
+        try {
+            for (NetworkInterface networkInterface : Collections.list(NetworkInterface.getNetworkInterfaces()))
+                addresses.addAll(Collections.list(networkInterface.getInetAddresses()));
+        } catch (SocketException e) {
+            LOGGER.log(Level.FINE, "Cannot list the local addresses", e);
+        }
+        return addresses;
+    }
+
+    /**
+     * Finds the local process of a packet and adds the packet to its totals.
+     * Lock-free and allocation-free; used by the capture thread only.
+     * @param packet The decoded packet
+     * @return The pid, or 0 if no local socket of a known process matches
+     */
+    public int attribute(DecodedPacket packet) {
+        if (packet.protocol != DecodedPacket.PROTO_TCP && packet.protocol != DecodedPacket.PROTO_UDP || packet.isFragment)
+            return 0;
+        long srcHigh;
+        long srcLow;
+        long dstHigh;
+        long dstLow;
+        if (packet.ipVersion == 6) {
+            srcHigh = packet.srcAddrHi;
+            srcLow = packet.srcAddrLo;
+            dstHigh = packet.dstAddrHi;
+            dstLow = packet.dstAddrLo;
+        } else {
+            srcHigh = 0;
+            srcLow = packet.srcAddr == 0 ? 0 : 0xFFFFL << 32 | (packet.srcAddr & 0xFFFFFFFFL);
+            dstHigh = 0;
+            dstLow = packet.dstAddr == 0 ? 0 : 0xFFFFL << 32 | (packet.dstAddr & 0xFFFFFFFFL);
+        }
+        int pid = index.find(packet.protocol, srcHigh, srcLow, packet.srcPort & 0xFFFF, dstHigh, dstLow, packet.dstPort & 0xFFFF);
+        if (pid == 0) {
+            // Single writer: a plain read-add-write is enough
+            unattributedPackets.lazySet(unattributedPackets.get() + 1);
+            return 0;
+        }
+        count(pid, packet.frameLength);
+        return pid;
+    }
+
+    private void count(int pid, int length) {
+        int mask = totalIndex.length - 1;
+        int slot = (pid * 0x9E3779B9 >>> 16) & mask;
+        int entry;
+        while ((entry = totalIndex[slot]) != 0) {
+            if (totalPids[entry - 1] == pid)
+                break;
+            slot = (slot + 1) & mask;
+        }
+        if (entry == 0) {
+            int count = processCount;
+            if (count == maxProcesses)
+                return;
+            totalPids[count] = pid;
+            totalIndex[slot] = count + 1;
+            entry = count + 1;
+            processCount = count + 1;
+        }
+        packets.lazySet(entry - 1, packets.get(entry - 1) + 1);
+        bytes.lazySet(entry - 1, bytes.get(entry - 1) + length);
+    }
+
+    /**
+     * @param pid Process id
+     * @return Command name of the process, or null if it was never seen owning a socket
+     */
+    public String getCommand(int pid) {
+        return commands.get(pid);
+    }
+
+    /**
+     * @param pid Process id, 0 for none
+     * @return "command (pid)", or "" for 0
+     */
+    public String describe(int pid) {
+        if (pid == 0)
+            return "";
+        String command = commands.get(pid);
+        return command == null ? "(" + pid + ")" : command + " (" + pid + ")";
+    }
+
+    /**
+     * @param limit Processes returned at most
+     * @return The processes with the most bytes, heaviest first
+     */
+    public List<ProcessTraffic> getTopProcesses(int limit) {
+        int count = processCount;
+        List<ProcessTraffic> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            list.add(new ProcessTraffic(totalPids[i], commands.get(totalPids[i]), packets.get(i), bytes.get(i)));
+        list.sort(Comparator.comparingLong(ProcessTraffic::getBytes).reversed());
+        return list.subList(0, Math.min(limit, list.size()));
+    }
+
+    /**
+     * @return Processes with totals
+     */
+    public int getProcessCount() {
+        return processCount;
+    }
+
+    /**
+     * @return TCP/UDP packets no local socket of a known process matched
+     */
+    public long getUnattributedPackets() {
+        return unattributedPackets.get();
+    }
+
+    /**
+     * @return Sockets in the current index
+     */
+    public int getIndexedSockets() {
+        return index.size();
+    }
+
+    public long getRefreshes() {
+        return refreshes.get();
+    }
+
+    public long getRefreshFailures() {
+        return refreshFailures.get();
+    }
+
+    /**
+     * Traffic totals of one process.
+     */
+    public static final class ProcessTraffic {
+        private final int pid;
+        private final String command;
+        private final long packets;
+        private final long bytes;
+
+        ProcessTraffic(int pid, String command, long packets, long bytes) {
+            this.pid = pid;
+            this.command = command;
+            this.packets = packets;
+            this.bytes = bytes;
+        }
+
+        public int getPid() { return pid; }
+        public String getCommand() { return command == null ? "?" : command; }
+        public long getPackets() { return packets; }
+        public long getBytes() { return bytes; }
+    }
+}
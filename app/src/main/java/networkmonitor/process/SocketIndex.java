@@ -0,0 +1,183 @@
+package networkmonitor.process;
+
+import java.util.Map;
+
+import networkmonitor.util.Hashing;
+
+/**
+ * Immutable index of the local sockets: connection and bound address to owning pid, plus the
+ * local addresses of the host. Built by the background refresh and published as a whole, so
+ * the capture thread reads it without locks. Entries live in one open-addressing table of
+ * 64-bit fingerprints; lookups are allocation-free.
+ * <p>
+ * Addresses are high/low halves, IPv4-mapped for IPv4; the unspecified addresses 0.0.0.0
+ * and :: are both stored as 0/0.
+ */
+final class SocketIndex {
+    // Kinds of keys
+    private static final long CONNECTED = 1;
+    private static final long BOUND = 2;
+    private static final long LOCAL_ADDRESS = 3;
+
+    /**
+     * Index without sockets, used until the first refresh.
+     */
+    static final SocketIndex EMPTY = new Builder(0).build(Map.of());
+
+    private final long[] keys;
+    private final int[] pids;
+    private final int mask;
+    private final int sockets;
+    private final Map<Integer, String> commands;
+
+    private SocketIndex(long[] keys, int[] pids, int sockets, Map<Integer, String> commands) {
+        this.keys = keys;
+        this.pids = pids;
+        this.mask = keys.length - 1;
+        this.sockets = sockets;
+        this.commands = commands;
+    }
+
+    /**
+     * Finds the process of a packet seen on this host: its connected socket in either
+     * direction, else a socket bound to its local address and port, else a socket bound to
+     * the unspecified address on that port if the address is local.
+     * @return The pid, or 0 if no local socket matches
+     */
+    int find(byte protocol, long srcHigh, long srcLow, int srcPort, long dstHigh, long dstLow, int dstPort) {
+        int pid = get(connectedKey(protocol, srcHigh, srcLow, srcPort, dstHigh, dstLow, dstPort));
+        if (pid == 0)
+            pid = get(connectedKey(protocol, dstHigh, dstLow, dstPort, srcHigh, srcLow, srcPort));
+        if (pid == 0)
+            pid = get(boundKey(protocol, srcHigh, srcLow, srcPort));
+        if (pid == 0)
+            pid = get(boundKey(protocol, dstHigh, dstLow, dstPort));
+        if (pid == 0 && get(localKey(srcHigh, srcLow)) != 0)
+            pid = get(boundKey(protocol, 0, 0, srcPort));
+        if (pid == 0 && get(localKey(dstHigh, dstLow)) != 0)
+            pid = get(boundKey(protocol, 0, 0, dstPort));
+        return pid;
+    }
+
+    private int get(long key) {
+        int slot = (int) (key >>> 32) & mask;
+        long found;
+        while ((found = keys[slot]) != 0) {
+            if (found == key)
+                return pids[slot];
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    /**
+     * @param pid Process id
+     * @return Command name of a process that owned sockets at the refresh, or null
+     */
+    String getCommand(int pid) {
+        return commands.get(pid);
+    }
+
+    /**
+     * @return Command names by pid of the processes owning sockets
+     */
+    Map<Integer, String> getCommands() {
+        return commands;
+    }
+
+    /**
+     * @return Sockets in the index
+     */
+    int size() {
+        return sockets;
+    }
+
+    private static long connectedKey(byte protocol, long localHigh, long localLow, int localPort,
+                                     long remoteHigh, long remoteLow, int remotePort) {
+        long h = Hashing.mix(Hashing.mix(Hashing.mix(CONNECTED ^ (long) protocol << 8, localHigh) ^ localLow, remoteHigh) ^ remoteLow,
+            (long) localPort << 16 | remotePort);
+        return h | 1;
+    }
+
+    private static long boundKey(byte protocol, long localHigh, long localLow, int localPort) {
+        return Hashing.mix(Hashing.mix(BOUND ^ (long) protocol << 8, localHigh) ^ localLow, localPort) | 1;
+    }
+
+    private static long localKey(long high, long low) {
+        return Hashing.mix(Hashing.mix(LOCAL_ADDRESS, high), low) | 1;
+    }
+
+    /**
+     * Collects the sockets and local addresses of one refresh. The first socket added for a
+     * key wins (e.g. SO_REUSEPORT listeners of several processes).
+     */
+    static final class Builder {
+        private long[] keys;
+        private int[] pids;
+        private int size = 0;
+        private int sockets = 0;
+
+        /**
+         * @param expected Expected number of sockets and addresses
+         */
+        Builder(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(8, expected) * 4 - 1);
+            keys = new long[capacity];
+            pids = new int[capacity];
+        }
+
+        /**
+         * Adds a socket; an unconnected one (remote port 0) is indexed by its bound address.
+         */
+        void addSocket(byte protocol, long localHigh, long localLow, int localPort,
+                       long remoteHigh, long remoteLow, int remotePort, int pid) {
+            long key = remotePort == 0
+                ? boundKey(protocol, localHigh, localLow, localPort)
+                : connectedKey(protocol, localHigh, localLow, localPort, remoteHigh, remoteLow, remotePort);
+            if (put(key, pid))
+                sockets++;
+        }
+
+        /**
+         * Marks an address as one of this host's, for the sockets bound to the unspecified address.
+         */
+        void addLocalAddress(long high, long low) {
+            put(localKey(high, low), -1);
+        }
+
+        private boolean put(long key, int pid) {
+            if ((size + 1) * 2 > keys.length)
+                grow();
+            int mask = keys.length - 1;
+            int slot = (int) (key >>> 32) & mask;
+            while (keys[slot] != 0) {
+                if (keys[slot] == key)
+                    return false;
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            pids[slot] = pid;
+            size++;
+            return true;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldPids = pids;
+            keys = new long[oldKeys.length * 2];
+            pids = new int[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++)
+                if (oldKeys[i] != 0)
+                    put(oldKeys[i], oldPids[i]);
+        }
+
+        /**
+         * @param commands Command names by pid, kept as they are
+         * @return The index
+         */
+        SocketIndex build(Map<Integer, String> commands) {
+            return new SocketIndex(keys, pids, sockets, commands);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package networkmonitor.reassembly;
+
+import java.util.ArrayDeque;
+
+/**
+ * Fixed-size byte chunks for buffered fragments and out-of-order segments, with a hard cap
+ * on the bytes handed out. Released chunks are kept for reuse, so steady-state reassembly
+ * does not allocate. Owned by the capture thread; only the gauges may be read elsewhere.
+ */
+public class BufferPool {
+    // Size of one chunk (fits a full-size Ethernet segment)
+    public static final int CHUNK_SIZE = 2048;
+
+    // Maximum number of chunks handed out at the same time
+    private final long maxChunks;
+
+    // Chunks ready for reuse
+    private final ArrayDeque<byte[]> free = new ArrayDeque<>();
+
+    // Chunks currently handed out
+    private volatile long chunksInUse = 0;
+
+    /**
+     * Creates a pool.
+     * @param maxBytes Upper bound on the bytes handed out at the same time.
+     */
+    public BufferPool(long maxBytes) {
+        this.maxChunks = Math.max(1, maxBytes / CHUNK_SIZE);
+    }
+
+    /**
+     * Hands out a chunk.
+     * @return A chunk of CHUNK_SIZE bytes (contents undefined), or null if the cap is reached.
+     */
+    public byte[] acquire() {
+        if (chunksInUse >= maxChunks)
+            return null;
+        chunksInUse = chunksInUse + 1;
+        byte[] chunk = free.poll();
+        return chunk != null ? chunk : new byte[CHUNK_SIZE];
+    }
+
+    /**
+     * Returns a chunk to the pool.
+     * @param chunk A chunk obtained from {@link #acquire()}.
+     */
+    public void release(byte[] chunk) {
+        chunksInUse = chunksInUse - 1;
+        free.push(chunk);
+    }
+
+    /**
+     * @return Bytes currently handed out.
+     */
+    public long getBytesInUse() {
+        return chunksInUse * CHUNK_SIZE;
+    }
+
+    /**
+     * @return The cap on the bytes handed out.
+     */
+    public long getMaxBytes() {
+        return maxChunks * CHUNK_SIZE;
+    }
+}
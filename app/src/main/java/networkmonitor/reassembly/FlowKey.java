@@ -0,0 +1,97 @@
+package networkmonitor.reassembly;
+
+import networkmonitor.model.DecodedPacket;
+
+/**
+ * Directional flow identity: addresses, ports, protocol and (for IP fragments) the fragment id.
+ * IPv4 addresses are kept in the low half with a zero high half.
+ * Mutable so that one scratch instance can be reused for lookups; keys stored in maps are copies.
+ */
+public final class FlowKey {
+    private int ipVersion;
+    private long srcHi;
+    private long srcLo;
+    private long dstHi;
+    private long dstLo;
+    private int srcPort;
+    private int dstPort;
+    private int protocol;
+    private int fragmentId;
+
+    /**
+     * Fills the key with the addresses of a packet and the given transport identity.
+     * @param packet The decoded packet (addresses and IP version).
+     * @param srcPort Source port, 0 for fragments.
+     * @param dstPort Destination port, 0 for fragments.
+     * @param protocol IP protocol number.
+     * @param fragmentId Fragment id, 0 for streams.
+     * @return this key
+     */
+    public FlowKey set(DecodedPacket packet, int srcPort, int dstPort, int protocol, int fragmentId) {
+        this.ipVersion = packet.ipVersion;
+        if (packet.ipVersion == 6) {
+            srcHi = packet.srcAddrHi;
+            srcLo = packet.srcAddrLo;
+            dstHi = packet.dstAddrHi;
+            dstLo = packet.dstAddrLo;
+        } else {
+            srcHi = 0;
+            srcLo = packet.srcAddr & 0xFFFFFFFFL;
+            dstHi = 0;
+            dstLo = packet.dstAddr & 0xFFFFFFFFL;
+        }
+        this.srcPort = srcPort;
+        this.dstPort = dstPort;
+        this.protocol = protocol;
+        this.fragmentId = fragmentId;
+        return this;
+    }
+
+    /**
+     * @return An independent copy, suitable as a map key.
+     */
+    public FlowKey copy() {
+        FlowKey copy = new FlowKey();
+        copy.ipVersion = ipVersion;
+        copy.srcHi = srcHi;
+        copy.srcLo = srcLo;
+        copy.dstHi = dstHi;
+        copy.dstLo = dstLo;
+        copy.srcPort = srcPort;
+        copy.dstPort = dstPort;
+        copy.protocol = protocol;
+        copy.fragmentId = fragmentId;
+        return copy;
+    }
+
+    public int getIpVersion() { return ipVersion; }
+    public long getSrcHi() { return srcHi; }
+    public long getSrcLo() { return srcLo; }
+    public long getDstHi() { return dstHi; }
+    public long getDstLo() { return dstLo; }
+    public int getSrcPort() { return srcPort; }
+    public int getDstPort() { return dstPort; }
+    public int getProtocol() { return protocol; }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other)
+            return true;
+        if (!(other instanceof FlowKey key))
+            return false;
+        return srcLo == key.srcLo && dstLo == key.dstLo && srcHi == key.srcHi && dstHi == key.dstHi
+            && srcPort == key.srcPort && dstPort == key.dstPort && protocol == key.protocol
+            && fragmentId == key.fragmentId && ipVersion == key.ipVersion;
+    }
+
+    @Override
+    public int hashCode() {
+        long h = srcLo * 0x9E3779B97F4A7C15L;
+        h = (h ^ dstLo) * 0x9E3779B97F4A7C15L;
+        h = (h ^ srcHi ^ Long.rotateLeft(dstHi, 17)) * 0x9E3779B97F4A7C15L;
+        h ^= ((long) srcPort << 48) | ((long) dstPort << 32) | ((long) protocol << 24);
+        h ^= fragmentId & 0xFFFFFFFFL;
+        h *= 0x9E3779B97F4A7C15L;
+        return (int) (h ^ h >>> 32);
+    }
+}
@@ -0,0 +1,54 @@
+package networkmonitor.reassembly;
+
+/**
+ * An IP datagram being rebuilt from fragments. Fragment data is copied into pooled chunks
+ * at its offset; received ranges are tracked to detect overlaps and completion.
+ */
+final class FragmentedDatagram {
+    // Largest IP payload that can be described by fragment offsets
+    static final int MAX_LENGTH = 65535;
+
+    // Cap on the fragments of one datagram (tiny-fragment floods)
+    static final int MAX_FRAGMENTS = 64;
+
+    final FlowKey key;
+    final byte protocol;
+    final byte[][] chunks = new byte[(MAX_LENGTH + BufferPool.CHUNK_SIZE - 1) / BufferPool.CHUNK_SIZE][];
+    final int[] rangeStarts = new int[MAX_FRAGMENTS];
+    final int[] rangeEnds = new int[MAX_FRAGMENTS];
+
+    int rangeCount;
+    int receivedBytes;
+    int totalLength = -1;
+    long lastSeenNanos;
+
+    FragmentedDatagram(FlowKey key, byte protocol, long nowNanos) {
+        this.key = key;
+        this.protocol = protocol;
+        this.lastSeenNanos = nowNanos;
+    }
+
+    /**
+     * @return true if [start, end) intersects a range received earlier.
+     */
+    boolean overlaps(int start, int end) {
+        for (int i = 0; i < rangeCount; i++)
+            if (start < rangeEnds[i] && rangeStarts[i] < end)
+                return true;
+        return false;
+    }
+
+    /**
+     * @return The highest received byte offset (exclusive).
+     */
+    int highestEnd() {
+        int highest = 0;
+        for (int i = 0; i < rangeCount; i++)
+            highest = Math.max(highest, rangeEnds[i]);
+        return highest;
+    }
+
+    boolean isComplete() {
+        return totalLength >= 0 && receivedBytes == totalLength;
+    }
+}
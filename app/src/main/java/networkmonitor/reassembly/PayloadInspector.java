@@ -0,0 +1,15 @@
+package networkmonitor.reassembly;
+
+/**
+ * Downstream consumer of reconstructed payloads (signature matching, protocol classification, ...).
+ * Called on the capture thread for every in-order chunk of a TCP stream, every UDP payload and
+ * every reassembled IP datagram; implementations must not block and must not keep the segment.
+ */
+@FunctionalInterface
+public interface PayloadInspector {
+    /**
+     * Inspects one chunk of payload.
+     * @param segment Reusable view of the chunk, valid only during the call.
+     */
+    void inspect(PayloadSegment segment);
+}
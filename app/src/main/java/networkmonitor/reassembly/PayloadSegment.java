@@ -0,0 +1,50 @@
+package networkmonitor.reassembly;
+
+import networkmonitor.model.DecodedPacket;
+
+/**
+ * Reusable view of one chunk of reconstructed payload handed to the inspectors.
+ * <p>
+ * For TCP ({@link Kind#STREAM}) consecutive chunks of the same stream are contiguous
+ * unless {@link #gap} is set, so inspectors can carry matching state across chunks in
+ * the per-stream {@link #state} slots (all 0 when the stream starts).
+ */
+public final class PayloadSegment {
+    /**
+     * Origin of the bytes.
+     */
+    public enum Kind {
+        // In-order bytes of one direction of a TCP connection
+        STREAM,
+        // Complete UDP payload or other IP datagram (possibly reassembled from fragments)
+        DATAGRAM
+    }
+
+    // Number of per-stream state slots available to inspectors
+    public static final int STATE_SLOTS = 8;
+
+    // Origin of the bytes
+    public Kind kind;
+
+    // The packet that completed this chunk (addresses, IP version, capture time)
+    public DecodedPacket packet;
+
+    // Flow identity (directional) and IP protocol number
+    public FlowKey key;
+    public byte protocol;
+
+    // The payload bytes
+    public byte[] data;
+    public int offset;
+    public int length;
+
+    // Stream position of the first byte, and whether bytes are missing before it
+    public long streamOffset;
+    public boolean gap;
+
+    // True if the bytes come from reassembled IP fragments
+    public boolean reassembled;
+
+    // Per-stream inspector state (fresh zeros for datagrams), see ReassemblyEngine.allocateStateSlots
+    public int[] state;
+}
@@ -0,0 +1,620 @@
+package networkmonitor.reassembly;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import networkmonitor.model.DecodedPacket;
+
+/**
+ * Rebuilds IPv4/IPv6 datagrams from fragments and in-order TCP byte streams per flow,
+ * and feeds the reconstructed payloads to the registered PayloadInspectors.
+ * <p>
+ * Memory is bounded three ways: a global cap on buffered bytes (pooled chunks), a per-flow
+ * cap on buffered bytes, and a cap on the number of tracked flows and datagrams. When a cap
+ * is hit the least recently active flow is evicted, or the stream skips its gap and reports
+ * it to the inspectors. Idle flows and incomplete datagrams time out on capture time.
+ * <p>
+ * Overlapping IP fragments discard the whole datagram (RFC 5722); overlapping TCP data keeps
+ * the bytes seen first. Everything runs on the capture thread; counters and gauges may be read
+ * from any thread. Does nothing until an inspector is registered.
+ */
+public class ReassemblyEngine {
+    /**
+     * Event counters.
+     */
+    public enum Counter {
+        // IP fragments received
+        FRAGMENTS,
+        // Datagrams rebuilt from fragments
+        DATAGRAMS_REASSEMBLED,
+        // Datagrams discarded because fragments overlapped or disagreed on the length
+        FRAGMENT_OVERLAPS,
+        // Datagrams discarded for exceeding the size or fragment-count limits
+        FRAGMENT_DROPS,
+        // Incomplete datagrams discarded after the fragment timeout
+        FRAGMENT_TIMEOUTS,
+        // TCP segments seen
+        TCP_SEGMENTS,
+        // TCP segments that arrived ahead of the expected sequence number
+        TCP_OUT_OF_ORDER,
+        // TCP segments that only repeated delivered bytes
+        TCP_RETRANSMISSIONS,
+        // TCP segments partially overlapping delivered or buffered bytes
+        TCP_OVERLAPS,
+        // Holes given up on because the per-flow cap was reached
+        TCP_GAP_SKIPS,
+        // Streams discarded after the idle timeout
+        STREAM_TIMEOUTS,
+        // Flows or datagrams evicted to stay within the memory or flow caps
+        EVICTIONS,
+        // Out-of-order bytes dropped because no memory could be reclaimed
+        SEGMENT_DROPS,
+        // Payload bytes handed to the inspectors
+        BYTES_DELIVERED
+    }
+
+    // Defaults, overridable with system properties
+    public static final long DEFAULT_MAX_BYTES = 64L << 20;
+    public static final int DEFAULT_MAX_FLOW_BYTES = 256 << 10;
+    public static final int DEFAULT_MAX_FLOWS = 65_536;
+    public static final long DEFAULT_FRAGMENT_TIMEOUT_MS = 30_000;
+    public static final long DEFAULT_STREAM_TIMEOUT_MS = 120_000;
+
+    // How often idle flows are swept, in capture time
+    private static final long SWEEP_INTERVAL_NANOS = 1_000_000_000L;
+
+    private static final int COUNTER_COUNT = Counter.values().length;
+
+    // Limits
+    private final BufferPool pool;
+    private final int maxFlowBytes;
+    private final int maxFlows;
+    private final long fragmentTimeoutNanos;
+    private final long streamTimeoutNanos;
+
+    // Registered inspectors (copy-on-write array, iterated without allocation)
+    private volatile PayloadInspector[] inspectors = new PayloadInspector[0];
+
+    // Per-stream state slots handed out to inspectors so far
+    private int allocatedSlots = 0;
+
+    // Tracked flows in least-recently-used order (access-ordered maps)
+    private final LinkedHashMap<FlowKey, TcpStream> streams = new LinkedHashMap<>(1024, 0.75f, true);
+    private final LinkedHashMap<FlowKey, FragmentedDatagram> datagrams = new LinkedHashMap<>(64, 0.75f, true);
+
+    // Reusable objects of the capture thread
+    private final ArrayDeque<TcpStream.Segment> freeSegments = new ArrayDeque<>();
+    private final FlowKey lookupKey = new FlowKey();
+    private final PayloadSegment segment = new PayloadSegment();
+    private final int[] datagramState = new int[PayloadSegment.STATE_SLOTS];
+    private final byte[] datagramBuffer = new byte[FragmentedDatagram.MAX_LENGTH];
+    private long nextSweepNanos = 0;
+
+    // Statistics
+    private final AtomicLongArray counters = new AtomicLongArray(COUNTER_COUNT);
+    private volatile int activeStreams = 0;
+    private volatile int activeDatagrams = 0;
+
+    /**
+     * Creates an engine.
+     * @param maxBytes Global cap on buffered bytes.
+     * @param maxFlowBytes Cap on the bytes buffered for one stream or datagram.
+     * @param maxFlows Cap on the number of tracked streams, and separately on pending datagrams.
+     * @param fragmentTimeoutMs Time after which an incomplete datagram is discarded.
+     * @param streamTimeoutMs Idle time after which a stream is discarded.
+     */
+    public ReassemblyEngine(long maxBytes, int maxFlowBytes, int maxFlows, long fragmentTimeoutMs, long streamTimeoutMs) {
+        this.pool = new BufferPool(maxBytes);
+        this.maxFlowBytes = Math.max(BufferPool.CHUNK_SIZE, maxFlowBytes);
+        this.maxFlows = Math.max(1, maxFlows);
+        this.fragmentTimeoutNanos = fragmentTimeoutMs * 1_000_000L;
+        this.streamTimeoutNanos = streamTimeoutMs * 1_000_000L;
+    }
+
+    /**
+     * Creates an engine configured by the networkmonitor.reassembly.* system properties
+     * (maxBytes, maxFlowBytes, maxFlows, fragmentTimeoutMs, streamTimeoutMs).
+     * @return The engine.
+     */
+    public static ReassemblyEngine fromSystemProperties() {
+        return new ReassemblyEngine(
+            Long.getLong("networkmonitor.reassembly.maxBytes", DEFAULT_MAX_BYTES),
+            Integer.getInteger("networkmonitor.reassembly.maxFlowBytes", DEFAULT_MAX_FLOW_BYTES),
+            Integer.getInteger("networkmonitor.reassembly.maxFlows", DEFAULT_MAX_FLOWS),
+            Long.getLong("networkmonitor.reassembly.fragmentTimeoutMs", DEFAULT_FRAGMENT_TIMEOUT_MS),
+            Long.getLong("networkmonitor.reassembly.streamTimeoutMs", DEFAULT_STREAM_TIMEOUT_MS));
+    }
+
+    /**
+     * Registers a consumer of reconstructed payloads.
+     * @param inspector The inspector, called on the capture thread.
+     */
+    public synchronized void addInspector(PayloadInspector inspector) {
+        PayloadInspector[] current = inspectors;
+        PayloadInspector[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = inspector;
+        inspectors = updated;
+    }
+
+    /**
+     * Reserves per-stream state slots ({@link PayloadSegment#state}) for one inspector.
+     * @param count Number of consecutive slots needed.
+     * @return Index of the first reserved slot.
+     * @throws IllegalStateException If the slots are exhausted.
+     */
+    public synchronized int allocateStateSlots(int count) {
+        if (allocatedSlots + count > PayloadSegment.STATE_SLOTS)
+            throw new IllegalStateException("Only " + PayloadSegment.STATE_SLOTS + " inspector state slots are available");
+        int first = allocatedSlots;
+        allocatedSlots += count;
+        return first;
+    }
+
+    /**
+     * @return true if at least one inspector is registered.
+     */
+    public boolean hasInspectors() {
+        return inspectors.length > 0;
+    }
+
+    // --- Packet processing (capture thread) ---
+
+    /**
+     * Feeds one decoded packet to the engine.
+     * @param packet The decoded packet; its bytes are copied if they need to be buffered.
+     */
+    public void process(DecodedPacket packet) {
+        if (inspectors.length == 0 || packet.ipVersion == 0)
+            return;
+
+        long now = packet.captureNanos;
+        if (now >= nextSweepNanos) {
+            expire(now);
+            nextSweepNanos = now + SWEEP_INTERVAL_NANOS;
+        }
+
+        if (packet.isFragment) {
+            addFragment(packet, now);
+        } else if (packet.protocol == DecodedPacket.PROTO_TCP && (packet.srcPort | packet.dstPort) != 0) {
+            handleTcp(packet, packet.srcPort & 0xFFFF, packet.dstPort & 0xFFFF, packet.tcpSeq, packet.tcpFlags,
+                packet.data, packet.payloadOffset, packet.payloadLength, false, now);
+        } else if (packet.payloadLength > 0) {
+            deliverDatagram(packet, packet.protocol, packet.srcPort & 0xFFFF, packet.dstPort & 0xFFFF,
+                packet.data, packet.payloadOffset, packet.payloadLength, false);
+        }
+    }
+
+    // --- IP defragmentation ---
+
+    private void addFragment(DecodedPacket packet, long now) {
+        counters.incrementAndGet(Counter.FRAGMENTS.ordinal());
+
+        int start = packet.fragmentOffset;
+        int length = packet.payloadOffset + packet.payloadLength - packet.fragmentDataOffset;
+        if (length <= 0)
+            return;
+        int end = start + length;
+
+        lookupKey.set(packet, 0, 0, packet.fragmentProtocol & 0xFF, packet.fragmentId);
+        FragmentedDatagram datagram = datagrams.get(lookupKey);
+        if (datagram == null) {
+            if (datagrams.size() >= maxFlows)
+                evictEldest(datagrams, null);
+            datagram = new FragmentedDatagram(lookupKey.copy(), packet.fragmentProtocol, now);
+            datagrams.put(datagram.key, datagram);
+            activeDatagrams = datagrams.size();
+        }
+        datagram.lastSeenNanos = now;
+
+        if (end > FragmentedDatagram.MAX_LENGTH || datagram.rangeCount == FragmentedDatagram.MAX_FRAGMENTS
+                || datagram.receivedBytes + length > maxFlowBytes) {
+            discard(datagram, Counter.FRAGMENT_DROPS);
+            return;
+        }
+        boolean inconsistentEnd = datagram.totalLength >= 0
+            ? end > datagram.totalLength || !packet.moreFragments
+            : !packet.moreFragments && datagram.highestEnd() > end;
+        if (inconsistentEnd || datagram.overlaps(start, end)) {
+            discard(datagram, Counter.FRAGMENT_OVERLAPS);
+            return;
+        }
+
+        if (!copyIntoChunks(datagram, packet.data, packet.fragmentDataOffset, start, length)) {
+            discard(datagram, Counter.EVICTIONS);
+            return;
+        }
+        datagram.rangeStarts[datagram.rangeCount] = start;
+        datagram.rangeEnds[datagram.rangeCount] = end;
+        datagram.rangeCount++;
+        datagram.receivedBytes += length;
+        if (!packet.moreFragments)
+            datagram.totalLength = end;
+
+        if (datagram.isComplete())
+            complete(datagram, packet, now);
+    }
+
+    private boolean copyIntoChunks(FragmentedDatagram datagram, byte[] data, int dataOffset, int start, int length) {
+        int position = start;
+        int end = start + length;
+        while (position < end) {
+            int chunkIndex = position / BufferPool.CHUNK_SIZE;
+            if (datagram.chunks[chunkIndex] == null) {
+                byte[] chunk = acquireChunk(datagram);
+                if (chunk == null)
+                    return false;
+                datagram.chunks[chunkIndex] = chunk;
+            }
+            int chunkOffset = position % BufferPool.CHUNK_SIZE;
+            int count = Math.min(end - position, BufferPool.CHUNK_SIZE - chunkOffset);
+            System.arraycopy(data, dataOffset + (position - start), datagram.chunks[chunkIndex], chunkOffset, count);
+            position += count;
+        }
+        return true;
+    }
+
+    private void complete(FragmentedDatagram datagram, DecodedPacket packet, long now) {
+        int total = datagram.totalLength;
+        for (int position = 0; position < total; position += BufferPool.CHUNK_SIZE)
+            System.arraycopy(datagram.chunks[position / BufferPool.CHUNK_SIZE], 0, datagramBuffer, position,
+                Math.min(BufferPool.CHUNK_SIZE, total - position));
+        discard(datagram, null);
+        counters.incrementAndGet(Counter.DATAGRAMS_REASSEMBLED.ordinal());
+
+        byte[] buffer = datagramBuffer;
+        if (datagram.protocol == DecodedPacket.PROTO_TCP && total >= 20) {
+            int headerLength = Math.min(total, Math.max(20, (buffer[12] >> 4 & 0x0F) * 4));
+            handleTcp(packet, u16(buffer, 0), u16(buffer, 2), i32(buffer, 4), buffer[13] & 0xFF,
+                buffer, headerLength, total - headerLength, true, now);
+        } else if (datagram.protocol == DecodedPacket.PROTO_UDP && total >= 8) {
+            deliverDatagram(packet, datagram.protocol, u16(buffer, 0), u16(buffer, 2), buffer, 8, total - 8, true);
+        } else {
+            deliverDatagram(packet, datagram.protocol, 0, 0, buffer, 0, total, true);
+        }
+    }
+
+    private void discard(FragmentedDatagram datagram, Counter reason) {
+        datagrams.remove(datagram.key);
+        releaseChunks(datagram);
+        activeDatagrams = datagrams.size();
+        if (reason != null)
+            counters.incrementAndGet(reason.ordinal());
+    }
+
+    private void releaseChunks(FragmentedDatagram datagram) {
+        for (int i = 0; i < datagram.chunks.length; i++) {
+            if (datagram.chunks[i] != null) {
+                pool.release(datagram.chunks[i]);
+                datagram.chunks[i] = null;
+            }
+        }
+    }
+
+    // --- TCP stream reassembly ---
+
+    private void handleTcp(DecodedPacket packet, int srcPort, int dstPort, int seq, int flags,
+                           byte[] data, int offset, int length, boolean reassembled, long now) {
+        counters.incrementAndGet(Counter.TCP_SEGMENTS.ordinal());
+
+        lookupKey.set(packet, srcPort, dstPort, DecodedPacket.PROTO_TCP, 0);
+        TcpStream stream = streams.get(lookupKey);
+        if ((flags & DecodedPacket.TCP_RST) != 0) {
+            if (stream != null)
+                closeStream(stream);
+            return;
+        }
+
+        boolean syn = (flags & DecodedPacket.TCP_SYN) != 0;
+        int dataSeq = syn ? seq + 1 : seq;
+        if (stream == null) {
+            // Pure ACKs do not open streams; mid-stream pickup starts at the first data byte
+            if (length == 0 && !syn)
+                return;
+            if (streams.size() >= maxFlows)
+                evictEldest(streams, null);
+            stream = new TcpStream(lookupKey.copy(), dataSeq, now);
+            streams.put(stream.key, stream);
+            activeStreams = streams.size();
+        } else if (syn && stream.deliveredBytes == 0 && stream.pending.isEmpty()) {
+            stream.nextSeq = dataSeq;
+        }
+        stream.lastSeenNanos = now;
+
+        if (length > 0)
+            addSegment(stream, packet, dataSeq, data, offset, length, reassembled);
+
+        if ((flags & DecodedPacket.TCP_FIN) != 0)
+            stream.finSeen = true;
+        if (stream.finSeen && stream.pending.isEmpty())
+            closeStream(stream);
+    }
+
+    private void addSegment(TcpStream stream, DecodedPacket packet, int seq, byte[] data, int offset, int length, boolean reassembled) {
+        int delta = seq - stream.nextSeq;
+        if (delta < 0) {
+            if (delta + length <= 0) {
+                counters.incrementAndGet(Counter.TCP_RETRANSMISSIONS.ordinal());
+                return;
+            }
+            // Keep the bytes already delivered, take only the new tail
+            counters.incrementAndGet(Counter.TCP_OVERLAPS.ordinal());
+            offset -= delta;
+            length += delta;
+            seq = stream.nextSeq;
+            delta = 0;
+        }
+
+        if (delta == 0) {
+            deliverStream(stream, packet, data, offset, length, reassembled);
+            drain(stream, packet);
+            return;
+        }
+
+        counters.incrementAndGet(Counter.TCP_OUT_OF_ORDER.ordinal());
+        if (stream.bufferedBytes + length > maxFlowBytes) {
+            // Per-flow cap reached: give up on the oldest hole and retry
+            counters.incrementAndGet(Counter.TCP_GAP_SKIPS.ordinal());
+            stream.nextSeq = stream.pending.isEmpty() ? seq : stream.pending.get(0).seq;
+            stream.gapPending = true;
+            drain(stream, packet);
+            addSegment(stream, packet, seq, data, offset, length, reassembled);
+            return;
+        }
+        buffer(stream, seq, data, offset, length);
+    }
+
+    /**
+     * Copies out-of-order bytes into pooled chunks, inserted in sequence order.
+     */
+    private void buffer(TcpStream stream, int seq, byte[] data, int offset, int length) {
+        for (int done = 0; done < length; done += BufferPool.CHUNK_SIZE) {
+            int pieceSeq = seq + done;
+            int pieceLength = Math.min(BufferPool.CHUNK_SIZE, length - done);
+
+            // Find the insert position; keep the bytes seen first on overlap
+            int relativeStart = pieceSeq - stream.nextSeq;
+            int index = 0;
+            boolean overlap = false;
+            for (TcpStream.Segment pending : stream.pending) {
+                int pendingStart = pending.seq - stream.nextSeq;
+                if (relativeStart < pendingStart + pending.length && pendingStart < relativeStart + pieceLength) {
+                    overlap = true;
+                    break;
+                }
+                if (pendingStart > relativeStart)
+                    break;
+                index++;
+            }
+            if (overlap) {
+                counters.incrementAndGet(Counter.TCP_OVERLAPS.ordinal());
+                continue;
+            }
+
+            byte[] chunk = acquireChunk(stream);
+            if (chunk == null) {
+                counters.incrementAndGet(Counter.SEGMENT_DROPS.ordinal());
+                return;
+            }
+            TcpStream.Segment piece = freeSegments.poll();
+            if (piece == null)
+                piece = new TcpStream.Segment();
+            System.arraycopy(data, offset + done, chunk, 0, pieceLength);
+            piece.seq = pieceSeq;
+            piece.length = pieceLength;
+            piece.chunk = chunk;
+            stream.pending.add(index, piece);
+            stream.bufferedBytes += pieceLength;
+        }
+    }
+
+    /**
+     * Delivers buffered segments that became contiguous with the delivered bytes.
+     */
+    private void drain(TcpStream stream, DecodedPacket packet) {
+        while (!stream.pending.isEmpty()) {
+            TcpStream.Segment first = stream.pending.get(0);
+            int delta = first.seq - stream.nextSeq;
+            if (delta > 0)
+                break;
+
+            stream.pending.remove(0);
+            int skip = -delta;
+            if (skip < first.length)
+                deliverStream(stream, packet, first.chunk, skip, first.length - skip, false);
+            if (skip > 0)
+                counters.incrementAndGet(Counter.TCP_OVERLAPS.ordinal());
+            stream.bufferedBytes -= first.length;
+            releaseSegment(first);
+        }
+    }
+
+    private void closeStream(TcpStream stream) {
+        streams.remove(stream.key);
+        releaseSegments(stream);
+        activeStreams = streams.size();
+    }
+
+    private void releaseSegments(TcpStream stream) {
+        for (TcpStream.Segment pending : stream.pending)
+            releaseSegment(pending);
+        stream.pending.clear();
+        stream.bufferedBytes = 0;
+    }
+
+    private void releaseSegment(TcpStream.Segment piece) {
+        pool.release(piece.chunk);
+        piece.chunk = null;
+        freeSegments.push(piece);
+    }
+
+    // --- Delivery ---
+
+    private void deliverStream(TcpStream stream, DecodedPacket packet, byte[] data, int offset, int length, boolean reassembled) {
+        PayloadSegment out = segment;
+        out.kind = PayloadSegment.Kind.STREAM;
+        out.packet = packet;
+        out.key = stream.key;
+        out.protocol = DecodedPacket.PROTO_TCP;
+        out.data = data;
+        out.offset = offset;
+        out.length = length;
+        out.streamOffset = stream.deliveredBytes;
+        out.gap = stream.gapPending;
+        out.reassembled = reassembled;
+        out.state = stream.state;
+        stream.gapPending = false;
+        stream.deliveredBytes += length;
+        stream.nextSeq += length;
+        inspect(out);
+    }
+
+    private void deliverDatagram(DecodedPacket packet, byte protocol, int srcPort, int dstPort,
+                                 byte[] data, int offset, int length, boolean reassembled) {
+        Arrays.fill(datagramState, 0);
+        PayloadSegment out = segment;
+        out.kind = PayloadSegment.Kind.DATAGRAM;
+        out.packet = packet;
+        out.key = lookupKey.set(packet, srcPort, dstPort, protocol & 0xFF, 0);
+        out.protocol = protocol;
+        out.data = data;
+        out.offset = offset;
+        out.length = length;
+        out.streamOffset = 0;
+        out.gap = false;
+        out.reassembled = reassembled;
+        out.state = datagramState;
+        inspect(out);
+    }
+
+    private void inspect(PayloadSegment out) {
+        counters.addAndGet(Counter.BYTES_DELIVERED.ordinal(), out.length);
+        for (PayloadInspector inspector : inspectors)
+            inspector.inspect(out);
+    }
+
+    // --- Memory and timeouts ---
+
+    /**
+     * Takes a chunk from the pool, evicting the least recently active flows (other than the owner) if needed.
+     */
+    private byte[] acquireChunk(Object owner) {
+        byte[] chunk;
+        while ((chunk = pool.acquire()) == null) {
+            if (!evictEldest(datagrams, owner) && !evictEldest(streams, owner))
+                return null;
+        }
+        return chunk;
+    }
+
+    /**
+     * Evicts the least recently active entry of a table.
+     * @return true if something was evicted.
+     */
+    private boolean evictEldest(Map<FlowKey, ?> table, Object owner) {
+        for (Object value : table.values()) {
+            if (value == owner)
+                continue;
+            if (value instanceof TcpStream stream)
+                closeStream(stream);
+            else
+                discard((FragmentedDatagram) value, null);
+            counters.incrementAndGet(Counter.EVICTIONS.ordinal());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Drops datagrams and streams that have been idle longer than their timeout.
+     */
+    private void expire(long now) {
+        Iterator<FragmentedDatagram> datagramIterator = datagrams.values().iterator();
+        while (datagramIterator.hasNext()) {
+            FragmentedDatagram datagram = datagramIterator.next();
+            if (now - datagram.lastSeenNanos < fragmentTimeoutNanos)
+                break;
+            datagramIterator.remove();
+            releaseChunks(datagram);
+            counters.incrementAndGet(Counter.FRAGMENT_TIMEOUTS.ordinal());
+        }
+
+        Iterator<TcpStream> streamIterator = streams.values().iterator();
+        while (streamIterator.hasNext()) {
+            TcpStream stream = streamIterator.next();
+            if (now - stream.lastSeenNanos < streamTimeoutNanos)
+                break;
+            streamIterator.remove();
+            releaseSegments(stream);
+            counters.incrementAndGet(Counter.STREAM_TIMEOUTS.ordinal());
+        }
+
+        activeDatagrams = datagrams.size();
+        activeStreams = streams.size();
+    }
+
+    /**
+     * Drops every tracked flow and datagram. Capture thread only (or while capture is stopped).
+     */
+    public void clear() {
+        for (FragmentedDatagram datagram : datagrams.values())
+            releaseChunks(datagram);
+        for (TcpStream stream : streams.values())
+            releaseSegments(stream);
+        datagrams.clear();
+        streams.clear();
+        activeDatagrams = 0;
+        activeStreams = 0;
+    }
+
+    // --- Statistics ---
+
+    /**
+     * @param counter The counter.
+     * @return Its value since the engine was created.
+     */
+    public long getCounter(Counter counter) {
+        return counters.get(counter.ordinal());
+    }
+
+    /**
+     * @return Bytes held in pooled chunks (out-of-order segments and incomplete datagrams).
+     */
+    public long getBufferedBytes() {
+        return pool.getBytesInUse();
+    }
+
+    /**
+     * @return The global cap on buffered bytes.
+     */
+    public long getMaxBufferedBytes() {
+        return pool.getMaxBytes();
+    }
+
+    /**
+     * @return Number of tracked TCP stream directions.
+     */
+    public int getActiveStreams() {
+        return activeStreams;
+    }
+
+    /**
+     * @return Number of datagrams waiting for fragments.
+     */
+    public int getActiveDatagrams() {
+        return activeDatagrams;
+    }
+
+    // Big-endian readers
+    private static int u16(byte[] data, int offset) {
+        return (data[offset] & 0xFF) << 8 | (data[offset + 1] & 0xFF);
+    }
+
+    private static int i32(byte[] data, int offset) {
+        return (data[offset] & 0xFF) << 24 | (data[offset + 1] & 0xFF) << 16
+            | (data[offset + 2] & 0xFF) << 8 | (data[offset + 3] & 0xFF);
+    }
+}
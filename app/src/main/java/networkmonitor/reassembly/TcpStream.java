@@ -0,0 +1,36 @@
+package networkmonitor.reassembly;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One direction of a TCP connection: the next expected sequence number and the
+ * out-of-order segments buffered in pooled chunks, sorted by sequence number.
+ */
+final class TcpStream {
+    // Out-of-order bytes held in one pooled chunk
+    static final class Segment {
+        int seq;
+        int length;
+        byte[] chunk;
+    }
+
+    final FlowKey key;
+    final int[] state = new int[PayloadSegment.STATE_SLOTS];
+    final List<Segment> pending = new ArrayList<>(4);
+
+    int nextSeq;
+    long deliveredBytes;
+    int bufferedBytes;
+    long lastSeenNanos;
+    boolean finSeen;
+
+    // Set when bytes were skipped; reported with the next delivered chunk
+    boolean gapPending;
+
+    TcpStream(FlowKey key, int nextSeq, long nowNanos) {
+        this.key = key;
+        this.nextSeq = nextSeq;
+        this.lastSeenNanos = nowNanos;
+    }
+}
@@ -0,0 +1,238 @@
+package networkmonitor.service;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import networkmonitor.model.PacketInfo;
+
+/**
+ * Rate-adaptive sampler placed in front of a view consumer (the packet table).
+ * Below the pps threshold every packet is forwarded. Above it, only a sample is
+ * forwarded so that the view receives roughly {@code ppsThreshold} packets per second
+ * regardless of the traffic rate. Blocked packets and signature hits always pass through unsampled;
+ * the alert lane of the bus subscription keeps them when its queue overflows too.
+ * Detection and counters are not affected: they run in CaptureService before the bus.
+ */
+public class AdaptiveSampler implements Consumer<PacketInfo> {
+    // Logger for the configuration
+    private static final Logger LOGGER = Logger.getLogger(AdaptiveSampler.class.getName());
+
+    // Length of a measuring window; the sampling ratio is recomputed at each window end
+    private static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+    private static final double WINDOWS_PER_SECOND = 4.0;
+
+    /**
+     * How packets are picked once the threshold is exceeded.
+     */
+    public enum Mode {
+        /** Deterministic: forward every n-th packet. */
+        ONE_IN_N,
+        /** Uniform random sample of fixed size per window, forwarded at the window end. */
+        RESERVOIR
+    }
+
+    // Configuration
+    private final Consumer<PacketInfo> downstream;
+    private final Mode mode;
+    private final int ppsThreshold;
+
+    // Window state (guarded by this)
+    private long windowStart = System.nanoTime();
+    private long windowArrivals = 0;
+    private long counter = 0;
+    private int oneInN = 1;
+
+    // Reservoir of the current window (guarded by this)
+    private final PacketInfo[] reservoir;
+    private int reservoirSize = 0;
+
+    // Published for the status bar
+    private volatile int currentRatio = 1;
+    private final AtomicLong forwarded = new AtomicLong();
+
+    // Rolls idle windows: flushes the reservoir and lowers the ratio when traffic stops
+    private final ScheduledExecutorService flusher;
+
+    /**
+     * Creates a sampler from the system properties
+     * {@code networkmonitor.ui.sampleThresholdPps} (default 2000) and
+     * {@code networkmonitor.ui.sampleMode} (ONE_IN_N or RESERVOIR, default ONE_IN_N).
+     * An unknown mode is logged and replaced by ONE_IN_N.
+     * @param downstream The consumer receiving the sampled packets.
+     * @return The configured sampler.
+     */
+    public static AdaptiveSampler fromSystemProperties(Consumer<PacketInfo> downstream) {
+        int threshold = Integer.getInteger("networkmonitor.ui.sampleThresholdPps", 2000);
+        String value = System.getProperty("networkmonitor.ui.sampleMode", Mode.ONE_IN_N.name());
+        Mode mode;
+        try {
+            mode = Mode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "Invalid networkmonitor.ui.sampleMode {0}, expected ONE_IN_N or RESERVOIR; using ONE_IN_N.", value);
+            mode = Mode.ONE_IN_N;
+        }
+        return new AdaptiveSampler(downstream, mode, threshold);
+    }
+
+    /**
+     * Constructs the sampler.
+     * @param downstream The consumer receiving the sampled packets.
+     * @param mode Sampling mode used above the threshold.
+     * @param ppsThreshold Packet rate above which sampling starts.
+     */
+    public AdaptiveSampler(Consumer<PacketInfo> downstream, Mode mode, int ppsThreshold) {
+        this.downstream = downstream;
+        this.mode = mode;
+        this.ppsThreshold = Math.max(1, ppsThreshold);
+        int perWindowBudget = (int) Math.max(1, Math.ceil(this.ppsThreshold / WINDOWS_PER_SECOND));
+        this.reservoir = mode == Mode.RESERVOIR ? new PacketInfo[perWindowBudget] : new PacketInfo[0];
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sampler-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        this.flusher.scheduleAtFixedRate(this::rollWindowIfDue, WINDOW_NANOS, WINDOW_NANOS, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Forwards, samples or buffers a packet. Called on the subscriber's thread.
+     * @param packet The packet delivered by the bus.
+     */
+    @Override
+    public void accept(PacketInfo packet) {
+        if (packet.isBlocked() || packet.isAlert()) {
+            forward(packet);
+            return;
+        }
+
+        PacketInfo[] toFlush = null;
+        boolean forward;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (now - windowStart >= WINDOW_NANOS)
+                toFlush = rollWindow(now);
+
+            windowArrivals++;
+            forward = admit(packet);
+        }
+
+        flush(toFlush);
+        if (forward)
+            forward(packet);
+    }
+
+    /**
+     * Decides whether a packet is forwarded now (guarded by this).
+     * In reservoir mode above the threshold, packets are buffered instead.
+     */
+    private boolean admit(PacketInfo packet) {
+        if (oneInN == 1)
+            return true;
+
+        if (mode == Mode.ONE_IN_N)
+            return counter++ % oneInN == 0;
+
+        // Algorithm R: the k-th arrival replaces a random slot with probability budget/k
+        long seen = ++counter;
+        if (reservoirSize < reservoir.length) {
+            reservoir[reservoirSize++] = packet;
+        } else {
+            long slot = ThreadLocalRandom.current().nextLong(seen);
+            if (slot < reservoir.length)
+                reservoir[(int) slot] = packet;
+        }
+        return false;
+    }
+
+    /**
+     * Rolls the window from the flusher thread when no packet arrived to do it.
+     */
+    private void rollWindowIfDue() {
+        PacketInfo[] toFlush = null;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (now - windowStart >= WINDOW_NANOS)
+                toFlush = rollWindow(now);
+        }
+        flush(toFlush);
+    }
+
+    /**
+     * Ends the current window: recomputes the ratio from the measured rate and
+     * hands out the reservoir content (guarded by this).
+     * @return Packets to forward outside the lock, or null.
+     */
+    private PacketInfo[] rollWindow(long now) {
+        double seconds = (now - windowStart) / 1_000_000_000.0;
+        double pps = windowArrivals / seconds;
+
+        oneInN = pps <= ppsThreshold ? 1 : (int) Math.ceil(pps / ppsThreshold);
+        currentRatio = oneInN;
+
+        PacketInfo[] toFlush = null;
+        if (reservoirSize > 0) {
+            toFlush = new PacketInfo[reservoirSize];
+            System.arraycopy(reservoir, 0, toFlush, 0, reservoirSize);
+            Arrays.fill(reservoir, null);
+            reservoirSize = 0;
+        }
+
+        windowStart = now;
+        windowArrivals = 0;
+        counter = 0;
+        return toFlush;
+    }
+
+    private void forward(PacketInfo packet) {
+        forwarded.incrementAndGet();
+        downstream.accept(packet);
+    }
+
+    private void flush(PacketInfo[] packets) {
+        if (packets == null)
+            return;
+
+        // Keep capture order inside the window
+        Arrays.sort(packets, Comparator.comparingInt(PacketInfo::getNumber));
+        for (PacketInfo packet : packets)
+            forward(packet);
+    }
+
+    /**
+     * Stops the window flusher thread.
+     */
+    public void close() {
+        flusher.shutdownNow();
+    }
+
+    /**
+     * @return n in "1 packet out of n is shown"; 1 means full fidelity.
+     */
+    public int getCurrentRatio() {
+        return currentRatio;
+    }
+
+    /**
+     * @return Packets handed to the view so far, to measure the ratio actually shown.
+     */
+    public long getForwarded() {
+        return forwarded.get();
+    }
+
+    /**
+     * @return The sampling mode used above the threshold.
+     */
+    public Mode getMode() {
+        return mode;
+    }
+}
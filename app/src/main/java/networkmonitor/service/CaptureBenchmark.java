@@ -0,0 +1,113 @@
+package networkmonitor.service;
+
+import java.io.EOFException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.pcap4j.core.NotOpenException;
+import org.pcap4j.core.PcapHandle;
+import org.pcap4j.core.PcapNativeException;
+import org.pcap4j.core.Pcaps;
+
+/**
+ * Offline benchmark of the per-packet capture processing over the frames of a pcap file:
+ * decoding, detection, analytics and publishing, without a capture device. Reports the bytes
+ * allocated by the processing thread and the time per packet, first with no subscriber on
+ * the event bus (no PacketInfo is built) and then with one. The frames are read into memory
+ * first, so the frame copies made by Pcap4J are not counted.
+ */
+public final class CaptureBenchmark {
+    // Logger for benchmark results
+    private static final Logger LOGGER = Logger.getLogger(CaptureBenchmark.class.getName());
+
+    // Minimum measuring time per configuration, after one warm-up pass
+    private static final long MEASURE_NANOS = 2_000_000_000L;
+
+    private CaptureBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark and logs one result line per configuration.
+     * @param pcapPath Path of the capture file.
+     */
+    public static void run(String pcapPath) {
+        List<byte[]> frameList = new ArrayList<>();
+        List<Long> timeList = new ArrayList<>();
+        int dataLinkType = readFrames(pcapPath, frameList, timeList);
+        if (frameList.isEmpty()) {
+            LOGGER.log(Level.SEVERE, "No frame found in {0}", pcapPath);
+            return;
+        }
+        byte[][] frames = frameList.toArray(new byte[0][]);
+        long[] captureNanos = new long[frames.length];
+        for (int i = 0; i < captureNanos.length; i++)
+            captureNanos[i] = timeList.get(i);
+        LOGGER.info(String.format("event=benchmark_input file=%s frames=%d", pcapPath, frames.length));
+
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads)) {
+            LOGGER.severe("Per-thread allocation counters are not available on this JVM");
+            return;
+        }
+        long threadId = Thread.currentThread().threadId();
+
+        CaptureService service = new CaptureService();
+        measure(service, dataLinkType, frames, captureNanos, threads, threadId, 0);
+        PacketEventBus.Subscription sink = service.getEventBus().subscribe("benchmark", 4096,
+            PacketEventBus.BackpressurePolicy.DROP_OLDEST, packet -> { });
+        measure(service, dataLinkType, frames, captureNanos, threads, threadId, 1);
+        service.getEventBus().unsubscribe(sink);
+    }
+
+    private static void measure(CaptureService service, int dataLinkType, byte[][] frames, long[] captureNanos,
+                                com.sun.management.ThreadMXBean threads, long threadId, int subscribers) {
+        service.processFrames(dataLinkType, frames, captureNanos);
+
+        long passes = 0;
+        long allocatedStart = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            service.processFrames(dataLinkType, frames, captureNanos);
+            passes++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < MEASURE_NANOS);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedStart;
+
+        long packets = passes * frames.length;
+        LOGGER.info(String.format("event=benchmark_capture subscribers=%d passes=%d packets=%d bytes_per_packet=%d ns_per_packet=%d",
+            subscribers, passes, packets, allocated / packets, elapsed / packets));
+    }
+
+    /**
+     * Reads every frame of the capture with its timestamp.
+     * @return The link type of the file
+     */
+    private static int readFrames(String pcapPath, List<byte[]> frames, List<Long> captureNanos) {
+        PcapHandle handle = null;
+        try {
+            handle = Pcaps.openOffline(pcapPath);
+            int dataLinkType = handle.getDlt().value();
+            while (true) {
+                try {
+                    frames.add(handle.getNextRawPacketEx());
+                    captureNanos.add(CaptureService.captureTimestampNanos(handle.getTimestamp()));
+                } catch (EOFException e) {
+                    break;
+                } catch (TimeoutException e) {
+                    continue;
+                }
+            }
+            return dataLinkType;
+        } catch (PcapNativeException | NotOpenException e) {
+            LOGGER.log(Level.SEVERE, "Cannot read capture file " + pcapPath, e);
+            return 0;
+        } finally {
+            if (handle != null && handle.isOpen())
+                handle.close();
+        }
+    }
+}
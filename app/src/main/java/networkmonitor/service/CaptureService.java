@@ -1,21 +1,40 @@
 package networkmonitor.service;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.lang.management.ManagementFactory;
+import java.sql.Timestamp;
 import java.util.List;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.pcap4j.core.*;
-import org.pcap4j.packet.IpV4Packet;
-import org.pcap4j.packet.Packet;
-import org.pcap4j.packet.TcpPacket;
-import org.pcap4j.packet.UdpPacket;
+import networkmonitor.analytics.ThroughputHistory;
+import networkmonitor.analytics.TopTalkers;
+import networkmonitor.analytics.TrafficRollups;
+import networkmonitor.classify.ProtocolClassifier;
+import networkmonitor.model.AlertKind;
+import networkmonitor.model.AppProtocol;
+import networkmonitor.model.DecodedPacket;
 import networkmonitor.model.PacketInfo;
+import networkmonitor.process.ProcessAttribution;
 import networkmonitor.db.BlacklistFetching;
-import networkmonitor.model.BlacklistEntry;
+import networkmonitor.dns.DnsAnswerSniffer;
+import networkmonitor.dns.HostnameCache;
+import networkmonitor.flow.FlowTable;
+import networkmonitor.flow.IpfixExporter;
+import networkmonitor.ids.HeaderRule;
+import networkmonitor.ids.HeaderRuleEngine;
+import networkmonitor.ids.ScanDetector;
+import networkmonitor.ids.SignatureInspector;
+import networkmonitor.ids.SignatureSet;
+import networkmonitor.ids.VolumeAnomalyDetector;
+import networkmonitor.jfr.BlockedVerdictEvent;
+import networkmonitor.jfr.CaptureBatchEvent;
+import networkmonitor.metrics.Metrics;
+import networkmonitor.reassembly.ReassemblyEngine;
+import networkmonitor.util.IpAddresses;
 
 /**
  * Service class for capturing network packets using Pcap4J.
@@ -27,29 +46,319 @@ public class CaptureService {
 
     // Pcap4J components
     private PcapHandle handle;
-    private boolean keepRunning = false;
+    private volatile boolean keepRunning = false;
     private int packetCount = 0;
+
+    // Most packets covered by one capture batch event
+    private static final int CAPTURE_BATCH_PACKETS = 1024;
+
+    // Never committed; tells whether a recording wants verdict events before one is allocated per packet
+    private static final BlockedVerdictEvent VERDICT_EVENT_PROBE = new BlockedVerdictEvent();
+
+    // Optional NIF name, overrides the physical adapter heuristic when set
+    private String interfaceName;
+
+    // Optional pcap file read instead of a NIF; capture ends at its end
+    private String replayFile;
+
+    // True while capturing live: only then are pcap timestamps on the local clock (capture-to-decode latency)
+    private boolean liveCapture;
+
+    // Lifetime statistics (written by the capture thread, read by stats reporters)
+    private final AtomicLong totalPackets = new AtomicLong();
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final AtomicLong tcpPackets = new AtomicLong();
+    private final AtomicLong udpPackets = new AtomicLong();
+    private final AtomicLong blockedPackets = new AtomicLong();
+    private final AtomicLong signatureHits = new AtomicLong();
+    private final AtomicLong headerRuleHits = new AtomicLong();
+    private volatile long firstPacketNanos = 0;
+    private volatile long captureThreadId = -1;
+
+    // Decoding state, owned by the capture thread
+    private PacketDecoder decoder;
+    private final DecodedPacket decoded = new DecodedPacket();
+
+    // Fragment and TCP stream reassembly feeding the payload inspectors
+    private final ReassemblyEngine reassembly = ReassemblyEngine.fromSystemProperties();
+
+    // Payload signature stage on the reassembled payloads, null if no rules are loaded
+    private final SignatureInspector signatureInspector = createSignatureInspector(reassembly);
+
+    // Compiled 5-tuple/TCP flag rules, hot-reloaded from the rule file; null if disabled
+    private final HeaderRuleEngine headerRules = HeaderRuleEngine.fromSystemProperties();
     
-    // Listener for GUI updates
-    private Consumer<PacketInfo> packetListener;
+    // Per-source port scan, host sweep and SYN flood detection; null if disabled
+    private final ScanDetector scanDetector = ScanDetector.fromSystemProperties();
+
+    // Per host and protocol traffic baselines flagging volume spikes; null if disabled
+    private final VolumeAnomalyDetector volumeDetector = VolumeAnomalyDetector.fromSystemProperties();
+
+    // Per-minute totals by source, destination and protocol for the long-term history; null if disabled
+    private final TrafficRollups rollups = TrafficRollups.fromSystemProperties();
+
+    // Flow records exported over IPFIX to a collector; both null if no collector is configured
+    private final IpfixExporter ipfixExporter = IpfixExporter.fromSystemProperties();
+    private final FlowTable flowTable = ipfixExporter == null ? null : FlowTable.fromSystemProperties(ipfixExporter);
+
+    // Application protocol of each connection (DNS, HTTP, TLS, ...) with per-protocol counters; null if disabled
+    private final ProtocolClassifier classifier = ProtocolClassifier.fromSystemProperties();
+
+    // Local process owning the socket of each packet, from a /proc index refreshed in the background; null if unavailable
+    private final ProcessAttribution processes = ProcessAttribution.getDefault();
+
+    // Names of the sniffed DNS answers for the reverse-DNS cache; null if the cache is disabled
+    private final HostnameCache hostnames = HostnameCache.getDefault();
+    private final DnsAnswerSniffer dnsSniffer = hostnames == null ? null : new DnsAnswerSniffer(hostnames);
+
+    // Heavy hitters by address and port over a sliding window, fixed memory
+    private final TopTalkers topTalkers = TopTalkers.fromSystemProperties();
+
+    // Per-second rates of the lifetime statistics for the charts, sampled from the counters above
+    private final ThroughputHistory throughputHistory = new ThroughputHistory(
+        totalPackets::get, totalBytes::get, blockedPackets::get, tcpPackets::get, udpPackets::get);
+
+    // Bus delivering processed packets to the GUI, exporters, alerting, ...
+    private final PacketEventBus eventBus = new PacketEventBus();
 
     /**
      * Default constructor.
      */
-    public CaptureService() {}
+    public CaptureService() {
+        registerMetrics();
+    }
 
     /**
      * Constructor for direct GUI usage (legacy).
+     * Subscribes the listener to the event bus with a drop-oldest queue.
      */
     public CaptureService(Consumer<PacketInfo> packetListener) {
-        this.packetListener = packetListener;
+        this();
+        eventBus.subscribe("listener", 4096, PacketEventBus.BackpressurePolicy.DROP_OLDEST, packetListener);
     }
 
     /**
-     * Sets the listener for GUI updates.
+     * @return The bus on which every processed packet is published.
      */
-    public void setPacketListener(Consumer<PacketInfo> packetListener) {
-        this.packetListener = packetListener;
+    public PacketEventBus getEventBus() {
+        return eventBus;
+    }
+
+    /**
+     * Exposes the lifetime statistics as counters; they are read on scrape, not copied per packet.
+     */
+    private void registerMetrics() {
+        Metrics.registerCounter("packets", "Packets processed", totalPackets::get);
+        Metrics.registerCounter("bytes", "Frame bytes of the processed packets", totalBytes::get);
+        Metrics.registerCounter("blocked_packets", "Packets with a blacklisted destination or a blocking header rule", blockedPackets::get);
+        Metrics.registerCounter("signature_hits", "Packets that matched a payload signature", signatureHits::get);
+        Metrics.registerCounter("header_rule_hits", "Packets that matched a header rule", headerRuleHits::get);
+        if (scanDetector != null) {
+            Metrics.registerCounter("scan_alerts", "Sources that started a port scan, host sweep or SYN flood alert", scanDetector::getAlertCount);
+            Metrics.registerCounter("scan_forced_evictions", "Active sources dropped from the full scan detector table", scanDetector::getForcedEvictions);
+        }
+        if (volumeDetector != null)
+            Metrics.registerCounter("volume_anomalies", "Host and protocol series that went above their traffic baseline", volumeDetector::getAnomalyCount);
+        if (rollups != null) {
+            Metrics.registerCounter("rollup_rows_written", "Per-minute traffic rollup rows inserted", rollups::getRowsWritten);
+            Metrics.registerCounter("rollup_rows_dropped", "Traffic rollup rows dropped because the store was unavailable", rollups::getRowsDropped);
+        }
+        if (ipfixExporter != null) {
+            Metrics.registerCounter("ipfix_records_exported", "Flow records sent to the IPFIX collector", ipfixExporter::getRecordsExported);
+            Metrics.registerCounter("ipfix_messages_dropped", "IPFIX messages that could not be sent", ipfixExporter::getMessagesDropped);
+        }
+        if (hostnames != null) {
+            Metrics.registerCounter("rdns_cache_hits", "Host name lookups answered from the reverse-DNS cache", hostnames::getHits);
+            Metrics.registerCounter("rdns_timeouts", "Reverse-DNS lookups given up after the timeout", hostnames::getTimeouts);
+            Metrics.registerCounter("rdns_sniffed", "Host names taken from sniffed DNS answers", hostnames::getSniffed);
+        }
+        if (classifier != null) {
+            for (byte id = 1; id < AppProtocol.COUNT; id++) {
+                byte protocol = id;
+                String name = AppProtocol.name(protocol);
+                String metric = name.toLowerCase();
+                Metrics.registerCounter("app_" + metric + "_packets", name + " packets (classified application protocol)", () -> classifier.getPackets(protocol));
+                Metrics.registerCounter("app_" + metric + "_bytes", name + " frame bytes (classified application protocol)", () -> classifier.getBytes(protocol));
+            }
+        }
+        Metrics.registerCounter("dropped_events", "Packets dropped by the current event bus subscribers because they fell behind", () -> {
+            long dropped = 0;
+            for (PacketEventBus.Subscription subscription : eventBus.getSubscriptions())
+                dropped += subscription.getDropped();
+            return dropped;
+        });
+    }
+
+    private static SignatureInspector createSignatureInspector(ReassemblyEngine reassembly) {
+        SignatureSet signatures = SignatureSet.loadFromSystemProperties();
+        return signatures == null ? null : new SignatureInspector(signatures, reassembly);
+    }
+
+    /**
+     * @return The loaded payload signatures, or null if signature inspection is off.
+     */
+    public SignatureSet getSignatures() {
+        return signatureInspector == null ? null : signatureInspector.getSignatures();
+    }
+
+    /**
+     * @return The header rule engine, or null if header rules are off.
+     */
+    public HeaderRuleEngine getHeaderRules() {
+        return headerRules;
+    }
+
+    /**
+     * @return The scan detector, or null if scan detection is off.
+     */
+    public ScanDetector getScanDetector() {
+        return scanDetector;
+    }
+
+    /**
+     * @return The volume anomaly detector, or null if traffic baselines are off.
+     */
+    public VolumeAnomalyDetector getVolumeDetector() {
+        return volumeDetector;
+    }
+
+    /**
+     * @return The traffic rollups, or null if they are off.
+     */
+    public TrafficRollups getRollups() {
+        return rollups;
+    }
+
+    /**
+     * Resolves the name of a rule reported in PacketInfo.getSignatureId().
+     * @param alertKind The AlertKind reported with it, which tells the rule sets apart.
+     * @param ruleId A payload signature, header rule or detector rule id.
+     * @return The rule name, or null if unknown.
+     */
+    public String getRuleName(byte alertKind, int ruleId) {
+        SignatureSet signatures = getSignatures();
+        return switch (alertKind) {
+            case AlertKind.SIGNATURE -> signatures == null ? null : signatures.getRuleName(ruleId);
+            case AlertKind.HEADER_RULE -> headerRules == null ? null : headerRules.getRuleName(ruleId);
+            case AlertKind.SCAN -> ScanDetector.getRuleName(ruleId);
+            case AlertKind.VOLUME -> ruleId == VolumeAnomalyDetector.ANOMALY_ID ? "Traffic volume anomaly" : null;
+            default -> null;
+        };
+    }
+
+    /**
+     * @return The reassembly engine; register payload inspectors on it before capture starts.
+     */
+    public ReassemblyEngine getReassembly() {
+        return reassembly;
+    }
+
+    /**
+     * @return The application protocol classifier, or null if disabled
+     */
+    public ProtocolClassifier getClassifier() {
+        return classifier;
+    }
+
+    /**
+     * @return The process attribution, or null if unavailable (not Linux, or disabled)
+     */
+    public ProcessAttribution getProcesses() {
+        return processes;
+    }
+
+    /**
+     * @return The flow table feeding the IPFIX exporter, or null if flow export is off.
+     */
+    public FlowTable getFlowTable() {
+        return flowTable;
+    }
+
+    /**
+     * @return The IPFIX exporter, or null if flow export is off.
+     */
+    public IpfixExporter getIpfixExporter() {
+        return ipfixExporter;
+    }
+
+    /**
+     * @return The top talker stage; read its snapshot, it is refreshed once per second during capture.
+     */
+    public TopTalkers getTopTalkers() {
+        return topTalkers;
+    }
+
+    /**
+     * @return The per-second throughput history; its sampler thread starts on the first call.
+     */
+    public ThroughputHistory getThroughputHistory() {
+        throughputHistory.start();
+        return throughputHistory;
+    }
+
+    /**
+     * Selects the NIF to capture on by name instead of auto-detecting it.
+     * @param interfaceName The pcap device name, or null for auto-detection.
+     */
+    public void setInterfaceName(String interfaceName) {
+        this.interfaceName = interfaceName;
+    }
+
+    /**
+     * Reads the packets from a pcap file instead of a NIF, as fast as they can be processed.
+     * Time-based stages use the capture timestamps, so flows and baselines follow the file's
+     * clock; capture ends at the end of the file.
+     * @param replayFile The pcap file, or null to capture live.
+     */
+    public void setReplayFile(String replayFile) {
+        this.replayFile = replayFile;
+    }
+
+    /**
+     * @return Number of IPv4 and IPv6 packets processed since the service was created.
+     */
+    public long getTotalPackets() {
+        return totalPackets.get();
+    }
+
+    /**
+     * @return Number of processed packets whose destination was blacklisted.
+     */
+    public long getBlockedPackets() {
+        return blockedPackets.get();
+    }
+
+    /**
+     * @return Number of processed packets that matched a payload signature.
+     */
+    public long getSignatureHits() {
+        return signatureHits.get();
+    }
+
+    /**
+     * @return Number of processed packets that matched a header rule.
+     */
+    public long getHeaderRuleHits() {
+        return headerRuleHits.get();
+    }
+
+    /**
+     * @return System.nanoTime() of the first processed packet, or 0 if none yet.
+     */
+    public long getFirstPacketNanos() {
+        return firstPacketNanos;
+    }
+
+    /**
+     * Bytes allocated so far by the capture thread (HotSpot thread allocation counter).
+     * Dividing the delta by the packet delta gives the allocation rate per packet.
+     * @return Allocated bytes, or -1 if capture has not started or the JVM does not support it.
+     */
+    public long getCaptureThreadAllocatedBytes() {
+        long threadId = captureThreadId;
+        if (threadId < 0 || !(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads))
+            return -1;
+        return threads.getThreadAllocatedBytes(threadId);
     }
 
     /**
@@ -67,7 +376,7 @@ public class CaptureService {
             return; 
 
         keepRunning = true;
-        new Thread(this::captureLoop).start();
+        new Thread(this::captureLoop, "capture").start();
     }
 
     /**
@@ -89,14 +398,77 @@ public class CaptureService {
      * Main capture loop that continuously captures packets from the selected NIF.
      */
     private void captureLoop() {
+        captureThreadId = Thread.currentThread().threadId();
         try {
-            List<PcapNetworkInterface> allDevs = Pcaps.findAllDevs();
-            if (allDevs == null || allDevs.isEmpty()) {
-                LOGGER.severe("No NIFs found.");
-                return;
+            String deviceName;
+            if (replayFile != null) {
+                handle = Pcaps.openOffline(replayFile);
+                deviceName = replayFile;
+                LOGGER.log(Level.INFO, "Replaying capture file: {0}", replayFile);
+            } else {
+                List<PcapNetworkInterface> allDevs = Pcaps.findAllDevs();
+                if (allDevs == null || allDevs.isEmpty()) {
+                    LOGGER.severe("No NIFs found.");
+                    return;
+                }
+
+                PcapNetworkInterface nif = selectInterface(allDevs);
+
+                LOGGER.log(Level.INFO, "Capturing on device: {0} | {1}", new Object[]{nif.getName(), nif.getDescription()});
+
+                int snapshotLength = 65536; 
+                int readTimeout = 10; 
+                handle = nif.openLive(snapshotLength, PcapNetworkInterface.PromiscuousMode.PROMISCUOUS, readTimeout);
+                deviceName = nif.getName();
+                liveCapture = true;
+            }
+            decoder = new PacketDecoder(handle.getDlt().value());
+
+            while (keepRunning && handle.isOpen()) {
+                captureBatch(deviceName);
+                topTalkers.tick(System.nanoTime());
+                if (volumeDetector != null)
+                    volumeDetector.tick();
+                if (rollups != null)
+                    rollups.tick(replayFile != null ? rollups.getLatestMillis() : System.currentTimeMillis());
+                if (flowTable != null) {
+                    long now = System.currentTimeMillis();
+                    flowTable.tick(replayFile != null ? flowTable.getLatestMillis() : now);
+                    ipfixExporter.tick(now);
+                }
+            }
+
+        } catch (PcapNativeException e) {
+            LOGGER.log(Level.SEVERE, "PcapNativeException in capture loop", e);
+        } finally {
+            if (handle != null && handle.isOpen())
+                handle.close();
+            if (volumeDetector != null)
+                volumeDetector.checkpoint();
+            if (rollups != null)
+                rollups.flush();
+            if (flowTable != null) {
+                flowTable.endAll(FlowTable.END_FORCED);
+                ipfixExporter.flush();
             }
-            
-            PcapNetworkInterface nif = allDevs.stream()
+        }
+    }
+
+    /**
+     * Picks the NIF to capture on: the configured one if present,
+     * otherwise the first physical adapter, otherwise the first device.
+     * @param allDevs All devices reported by pcap
+     * @return The selected NIF
+     */
+    private PcapNetworkInterface selectInterface(List<PcapNetworkInterface> allDevs) {
+        if (interfaceName != null) {
+            for (PcapNetworkInterface dev : allDevs)
+                if (interfaceName.equals(dev.getName()))
+                    return dev;
+            LOGGER.log(Level.WARNING, "Interface {0} not found, falling back to auto-detection.", interfaceName);
+        }
+
+        return allDevs.stream()
                 .filter(d -> !d.isLoopBack())
                 .filter(d -> d.getDescription() != null)
                 .filter(d -> {
@@ -109,88 +481,209 @@ public class CaptureService {
                 })
                 .findFirst()
                 .orElse(allDevs.get(0));
+    }
 
-            LOGGER.log(Level.INFO, "Capturing on device: {0} | {1}", new Object[]{nif.getName(), nif.getDescription()});
-
-            int snapshotLength = 65536; 
-            int readTimeout = 10; 
-            handle = nif.openLive(snapshotLength, PcapNetworkInterface.PromiscuousMode.PROMISCUOUS, readTimeout);
-
-            while (keepRunning && handle.isOpen()) 
-                captureNextPacket();
+    /**
+     * Captures and processes packets until a read times out or the batch is full, and
+     * reports the batch as a JFR event. The event starts with the read of the first packet,
+     * so idle time before it is not counted.
+     * @param interfaceName Name of the capture device, for the event
+     */
+    private void captureBatch(String interfaceName) {
+        CaptureBatchEvent event = new CaptureBatchEvent();
+        long blockedBefore = blockedPackets.get();
+        int packets = 0;
+        long bytes = 0;
+        while (packets < CAPTURE_BATCH_PACKETS && keepRunning && handle.isOpen()) {
+            if (packets == 0)
+                event.begin();
+            int length = captureNextPacket();
+            if (length < 0)
+                break;
+            packets++;
+            bytes += length;
+        }
+        if (packets == 0)
+            return;
 
-        } catch (PcapNativeException e) {
-            LOGGER.log(Level.SEVERE, "PcapNativeException in capture loop", e);
-        } finally {
-            if (handle != null && handle.isOpen())
-                handle.close();
+        event.end();
+        if (event.shouldCommit()) {
+            event.interfaceName = interfaceName;
+            event.packets = packets;
+            event.bytes = bytes;
+            event.blockedPackets = (int) (blockedPackets.get() - blockedBefore);
+            event.commit();
         }
     }
 
     /**
-     * Captures the next packet and processes it.
+     * Captures the next raw frame and processes it.
+     * @return The frame length, or -1 if no frame was read
      */
-    private void captureNextPacket() {
+    private int captureNextPacket() {
         try {
-            Packet packet = handle.getNextPacketEx();
-            if (packet != null)
-                processPacket(packet);
+            byte[] frame = handle.getNextRawPacketEx();
+            if (frame != null) {
+                processPacket(frame, captureTimestampNanos(handle.getTimestamp()));
+                return frame.length;
+            }
         } catch (TimeoutException e) {
             // Expected
-        } catch (PcapNativeException | NotOpenException | java.io.EOFException e) {
+        } catch (java.io.EOFException e) {
+            if (replayFile != null) {
+                LOGGER.info(String.format("event=replay_done file=%s packets=%d", replayFile, totalPackets.get()));
+                keepRunning = false;
+            } else {
+                LOGGER.log(Level.WARNING, "Error capturing packet: {0}", e.getMessage());
+            }
+        } catch (PcapNativeException | NotOpenException e) {
             LOGGER.log(Level.WARNING, "Error capturing packet: {0}", e.getMessage());
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Unexpected error in packet capture loop", e);
         }
+        return -1;
+    }
+
+    /**
+     * Converts the pcap header timestamp of the last packet to epoch nanoseconds.
+     * @param timestamp Timestamp reported by the handle, may be null
+     * @return Epoch nanoseconds, or the current wall-clock time if unavailable
+     */
+    static long captureTimestampNanos(Timestamp timestamp) {
+        if (timestamp == null)
+            return System.currentTimeMillis() * 1_000_000L;
+        return Math.floorDiv(timestamp.getTime(), 1000L) * 1_000_000_000L + timestamp.getNanos();
+    }
+
+    /**
+     * Runs frames through the same processing as the capture loop, on the calling thread and
+     * without a capture handle. Used by the offline CaptureBenchmark; not while capturing.
+     * @param dataLinkType Link type of the frames (pcap DLT value), the same on every call
+     * @param frames Raw frame bytes
+     * @param captureNanos Capture time of each frame, epoch nanoseconds
+     */
+    void processFrames(int dataLinkType, byte[][] frames, long[] captureNanos) {
+        if (decoder == null)
+            decoder = new PacketDecoder(dataLinkType);
+        for (int i = 0; i < frames.length; i++)
+            processPacket(frames[i], captureNanos[i]);
     }
 
     /**
-     * Processes a captured packet, extracts relevant info, and notifies the listener.
-     * @param packet The captured Packet object
+     * Processes a captured frame: decodes the headers, runs detection and,
+     * only if someone listens, publishes a PacketInfo on the event bus.
+     * @param frame Raw frame bytes
+     * @param captureNanos Capture time from the pcap header, epoch nanoseconds
      */
-    @SuppressWarnings("null") // Because of the dynamic packet structure
-    private void processPacket(Packet packet) {
-        IpV4Packet ipV4Packet = packet.get(IpV4Packet.class);
-        if (ipV4Packet == null)
+    private void processPacket(byte[] frame, long captureNanos) {
+        if (!decoder.decode(frame, captureNanos, decoded))
             return;
+        long decodedNanos = System.nanoTime();
+        // Replayed and benchmark frames carry the timestamps of when they were recorded
+        if (liveCapture)
+            Metrics.CAPTURE_TO_DECODE.record(Metrics.toEpochNanos(decodedNanos) - captureNanos);
+        topTalkers.record(decoded, decodedNanos);
+        if (flowTable != null)
+            flowTable.record(decoded);
+        if (dnsSniffer != null)
+            dnsSniffer.inspect(decoded);
+        byte appProtocol = classifier == null ? AppProtocol.NONE : classifier.classify(decoded);
+        int pid = processes == null ? 0 : processes.attribute(decoded);
+        BlockedVerdictEvent verdictEvent = null;
+        if (VERDICT_EVENT_PROBE.isEnabled()) {
+            verdictEvent = new BlockedVerdictEvent();
+            verdictEvent.begin();
+        }
 
         packetCount++;
-        IpV4Packet.IpV4Header ipHeader = ipV4Packet.getHeader();
-        String srcIp = ipHeader.getSrcAddr().getHostAddress();
-        String dstIp = ipHeader.getDstAddr().getHostAddress();
-        
-        // Protocol detection
-        String protocol = "Other";
-        String info = "Raw IP Data";
-        TcpPacket tcp = packet.get(TcpPacket.class);
-        if (tcp != null) {
-            protocol = "TCP";
-            info = "SrcPort: " + tcp.getHeader().getSrcPort() + " -> DstPort: " + tcp.getHeader().getDstPort();
-        } else {
-            UdpPacket udp = packet.get(UdpPacket.class);
-            if (udp != null) {
-                protocol = "UDP";
-                info = "SrcPort: " + udp.getHeader().getSrcPort() + " -> DstPort: " + udp.getHeader().getDstPort();
+        if (totalPackets.getAndIncrement() == 0)
+            firstPacketNanos = System.nanoTime();
+        totalBytes.addAndGet(decoded.frameLength);
+        if (decoded.protocol == DecodedPacket.PROTO_TCP)
+            tcpPackets.incrementAndGet();
+        else if (decoded.protocol == DecodedPacket.PROTO_UDP)
+            udpPackets.incrementAndGet();
+
+        reassembly.process(decoded);
+        int signatureId = signatureInspector == null ? 0 : signatureInspector.takeMatch();
+        byte alertKind = AlertKind.NONE;
+        if (signatureId != 0) {
+            signatureHits.incrementAndGet();
+            alertKind = AlertKind.SIGNATURE;
+        }
+
+        boolean isBlocked = decoded.ipVersion == 6
+            ? BlacklistFetching.isBlockedIpV6(decoded.dstAddrHi, decoded.dstAddrLo)
+            : BlacklistFetching.isBlockedIpV4(decoded.dstAddr);
+
+        HeaderRule headerRule = headerRules == null ? null : headerRules.classify(decoded);
+        if (headerRule != null) {
+            headerRuleHits.incrementAndGet();
+            if (signatureId == 0) {
+                signatureId = headerRule.getId();
+                alertKind = AlertKind.HEADER_RULE;
             }
+            if (headerRule.getAction() == HeaderRule.Action.BLOCK)
+                isBlocked = true;
+        }
+
+        // Scanning sources are tagged like rule hits, so the table highlights them
+        int scanAlert = scanDetector == null ? 0 : scanDetector.inspect(decoded, decodedNanos);
+        if (scanAlert != 0 && signatureId == 0) {
+            signatureId = scanAlert;
+            alertKind = AlertKind.SCAN;
+        }
+        int volumeAlert = volumeDetector == null ? 0 : volumeDetector.inspect(decoded);
+        if (volumeAlert != 0 && signatureId == 0) {
+            signatureId = volumeAlert;
+            alertKind = AlertKind.VOLUME;
         }
-        boolean isBlocked = false;
-        List<BlacklistEntry> blacklist = BlacklistFetching.getBlacklistCache();
-        if (blacklist != null)
-            isBlocked = blacklist.stream().anyMatch(entry -> entry.getIpAddress().equals(dstIp));
-        
-        if (packetListener != null) {
+        long verdictNanos = System.nanoTime();
+        Metrics.DECODE_TO_VERDICT.record(verdictNanos - decodedNanos);
+        if (isBlocked) {
+            blockedPackets.incrementAndGet();
+            if (verdictEvent != null)
+                commitVerdictEvent(verdictEvent, headerRule);
+        }
+        if (rollups != null)
+            rollups.record(decoded, isBlocked);
+
+        if (eventBus.hasSubscribers()) {
             PacketInfo packetInfo = new PacketInfo.Builder()
-            .number(packetCount)
-            .timestamp(LocalDateTime.now().format(DateTimeFormatter.ofPattern("HH:mm:ss.SSS")))
-            .sourceIp(srcIp)
-            .destIp(dstIp)
-            .protocol(protocol)
-            .length(packet.length())
-            .info(info)
-            .isBlocked(isBlocked)
-            .build();
-
-        packetListener.accept(packetInfo);
+                .number(packetCount)
+                .from(decoded)
+                .appProtocol(appProtocol)
+                .pid(pid)
+                .isBlocked(isBlocked)
+                .signatureId(signatureId)
+                .alertKind(alertKind)
+                .verdictNanos(verdictNanos)
+                .build();
+
+            eventBus.publish(packetInfo);
+        }
+    }
+
+    /**
+     * Fills in and commits the verdict event of a blocked packet if it passes its threshold.
+     * @param event The event begun after decoding
+     * @param headerRule The matching header rule, or null
+     */
+    private void commitVerdictEvent(BlockedVerdictEvent event, HeaderRule headerRule) {
+        event.end();
+        if (!event.shouldCommit())
+            return;
+        if (decoded.ipVersion == 6) {
+            event.sourceAddress = IpAddresses.formatIpV6(decoded.srcAddrHi, decoded.srcAddrLo);
+            event.destinationAddress = IpAddresses.formatIpV6(decoded.dstAddrHi, decoded.dstAddrLo);
+        } else {
+            event.sourceAddress = IpAddresses.formatIpV4(decoded.srcAddr);
+            event.destinationAddress = IpAddresses.formatIpV4(decoded.dstAddr);
+        }
+        event.protocol = decoded.protocol & 0xFF;
+        event.sourcePort = decoded.srcPort & 0xFFFF;
+        event.destinationPort = decoded.dstPort & 0xFFFF;
+        event.ruleId = headerRule != null && headerRule.getAction() == HeaderRule.Action.BLOCK ? headerRule.getId() : 0;
+        event.commit();
     }
 }
-}
\ No newline at end of file
@@ -0,0 +1,93 @@
+package networkmonitor.service;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import networkmonitor.flow.IpfixCollector;
+
+/**
+ * Collector mode: receives the IPFIX flow records of the sensors instead of capturing, and
+ * writes the merged flow view to the log as key=value lines, the busiest flows first.
+ * Like HeadlessMonitor, no AWT/Swing class is referenced from here.
+ */
+public class CollectorMonitor {
+    // Logger for the collector stats and flow lines
+    private static final Logger LOGGER = Logger.getLogger(CollectorMonitor.class.getName());
+
+    // Merged flows in each report
+    private static final int LOGGED_FLOWS = 10;
+
+    // Configuration
+    private final int statsIntervalSeconds;
+    private final long startNanos;
+
+    // Services
+    private final IpfixCollector collector;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "collector-stats"));
+
+    /**
+     * Constructs the collector monitor.
+     * @param port UDP port the sensors export to.
+     * @param statsIntervalSeconds Seconds between two reports.
+     * @param startNanos System.nanoTime() taken as early as possible in main().
+     */
+    public CollectorMonitor(int port, int statsIntervalSeconds, long startNanos) {
+        this.collector = IpfixCollector.fromSystemProperties(port);
+        this.statsIntervalSeconds = Math.max(1, statsIntervalSeconds);
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * Binds the collector port and starts the periodic report.
+     */
+    public void start() {
+        try {
+            collector.start();
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Cannot listen for IPFIX on port " + collector.getPort(), e);
+            scheduler.shutdown();
+            return;
+        }
+        scheduler.scheduleAtFixedRate(this::reportStats, statsIntervalSeconds, statsIntervalSeconds, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "collector-shutdown"));
+
+        LOGGER.log(Level.INFO, "Collector started in {0} ms.", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * Writes the totals, one line per sensor and the busiest merged flows. Runs on the scheduler thread.
+     */
+    private synchronized void reportStats() {
+        if (!LOGGER.isLoggable(Level.INFO))
+            return;
+        long now = System.currentTimeMillis();
+        LOGGER.info(String.format("event=collector sensors=%d flows=%d messages=%d records=%d lost_records=%d unknown_template_sets=%d malformed=%d",
+            collector.getSensors().size(), collector.getFlowCount(), collector.getMessages(), collector.getRecords(),
+            collector.getLostRecords(), collector.getUnknownTemplateSets(), collector.getMalformedMessages()));
+
+        for (IpfixCollector.SensorSummary sensor : collector.getSensors())
+            LOGGER.info(String.format("event=collector_sensor exporter=%s domain=%d messages=%d records=%d lost_records=%d templates=%d idle_ms=%d",
+                sensor.getExporter(), sensor.getDomain(), sensor.getMessages(), sensor.getRecords(),
+                sensor.getLostRecords(), sensor.getTemplates(), now - sensor.getLastSeenMillis()));
+
+        int rank = 0;
+        for (IpfixCollector.FlowSummary flow : collector.getTopFlows(LOGGED_FLOWS))
+            LOGGER.info(String.format("event=collector_flow rank=%d src=%s sport=%d dst=%s dport=%d proto=%d bytes=%d packets=%d duration_ms=%d tcp_flags=0x%02x src_asn=%d dst_asn=%d sensors=%d",
+                ++rank, flow.getSource(), flow.getSourcePort(), flow.getDestination(), flow.getDestinationPort(),
+                flow.getProtocol(), flow.getBytes(), flow.getPackets(), flow.getEndMillis() - flow.getStartMillis(),
+                flow.getTcpFlags(), flow.getSourceAsn(), flow.getDestinationAsn(), flow.getSensors()));
+    }
+
+    /**
+     * Stops the report and closes the socket when the JVM exits, after a final report.
+     */
+    private void shutdown() {
+        scheduler.shutdownNow();
+        reportStats();
+        collector.close();
+    }
+}
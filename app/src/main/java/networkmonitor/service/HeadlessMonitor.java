@@ -0,0 +1,258 @@
+package networkmonitor.service;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import networkmonitor.analytics.TopTalkers;
+import networkmonitor.analytics.TrafficRollups;
+import networkmonitor.classify.ProtocolClassifier;
+import networkmonitor.db.BlacklistFetching;
+import networkmonitor.db.BlacklistDao;
+import networkmonitor.flow.FlowTable;
+import networkmonitor.flow.IpfixExporter;
+import networkmonitor.geo.GeoIpCache;
+import networkmonitor.ids.ScanDetector;
+import networkmonitor.ids.VolumeAnomalyDetector;
+import networkmonitor.model.AlertKind;
+import networkmonitor.model.AppProtocol;
+import networkmonitor.model.BlacklistEntry;
+import networkmonitor.model.PacketInfo;
+import networkmonitor.process.ProcessAttribution;
+import networkmonitor.reassembly.ReassemblyEngine;
+
+/**
+ * Runs capture, blacklist synchronization and detection without any GUI.
+ * Intended for servers without a display: no AWT/Swing class is referenced from here.
+ * Statistics and blocked hits are written to the log as single key=value lines.
+ */
+public class HeadlessMonitor {
+    // Logger for stats, blocked hits and signature hits
+    private static final Logger LOGGER = Logger.getLogger(HeadlessMonitor.class.getName());
+
+    // Configuration
+    private final int statsIntervalSeconds;
+    private final String interfaceName;
+    private final String replayFile;
+    private final long startNanos;
+
+    // Services
+    private final CaptureService captureService = new CaptureService();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "headless-stats"));
+
+    // Owner lookups for the blocked lines, used on the blocked-log subscriber thread; null without a GeoIP database
+    private final GeoIpCache geoIp = GeoIpCache.forDefaultDatabase();
+
+    // Local process of the blocked packets and per-process totals; null if unavailable
+    private final ProcessAttribution processes = captureService.getProcesses();
+
+    // Talkers per dimension in the stats output
+    private static final int LOGGED_TALKERS = 5;
+
+    // Processes in each per-process traffic report
+    private static final int LOGGED_PROCESSES = 5;
+
+    // State of the previous stats report, used to compute rates
+    private long lastReportNanos;
+    private long lastReportPackets;
+    private long lastReportAllocated = -1;
+    private long lastReportLogDropped = 0;
+
+    // Subscription feeding the blocked and signature lines, its drops are reported with the stats
+    private PacketEventBus.Subscription blockedLog;
+    private boolean startupReported = false;
+
+    /**
+     * Constructs the headless monitor.
+     * @param statsIntervalSeconds Seconds between two stats lines.
+     * @param interfaceName NIF to capture on, or null for auto-detection.
+     * @param replayFile Pcap file to read instead of a NIF, or null to capture live.
+     * @param startNanos System.nanoTime() taken as early as possible in main().
+     */
+    public HeadlessMonitor(int statsIntervalSeconds, String interfaceName, String replayFile, long startNanos) {
+        this.statsIntervalSeconds = Math.max(1, statsIntervalSeconds);
+        this.interfaceName = interfaceName;
+        this.replayFile = replayFile;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * Starts capture first (fast path to the first packet), then the blacklist
+     * synchronization and the periodic stats reporter.
+     */
+    public void start() {
+        captureService.setInterfaceName(interfaceName);
+        captureService.setReplayFile(replayFile);
+        blockedLog = captureService.getEventBus().subscribe("blocked-log", 1024, PacketEventBus.BackpressurePolicy.DROP_NEWEST,
+            packet -> packet.isBlocked() || packet.isAlert(), this::onPacket);
+        captureService.startCapturing();
+
+        BlacklistDao.getDefaultStore().whenReady().thenRun(() ->
+            LOGGER.info(String.format("event=startup db_ready_ms=%d", elapsedMillis(startNanos, System.nanoTime()))));
+
+        Thread backgroundThread = new Thread(new BlacklistFetching(), "blacklist-sync");
+        backgroundThread.setDaemon(true);
+        backgroundThread.start();
+
+        lastReportNanos = System.nanoTime();
+        scheduler.scheduleAtFixedRate(this::reportStats, statsIntervalSeconds, statsIntervalSeconds, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "headless-shutdown"));
+
+        LOGGER.log(Level.INFO, "Headless monitor started in {0} ms.", elapsedMillis(startNanos, System.nanoTime()));
+    }
+
+    /**
+     * Logs blocked packets and signature hits only; every other packet is already counted by the capture service.
+     * Scan and volume alerts are logged once per onset by their detectors instead of once per packet.
+     * @param packet The processed packet.
+     */
+    private void onPacket(PacketInfo packet) {
+        byte kind = packet.getAlertKind();
+        boolean perPacket = kind == AlertKind.SIGNATURE || kind == AlertKind.HEADER_RULE;
+        if (packet.isAlert() && perPacket && LOGGER.isLoggable(Level.WARNING)) {
+            String name = captureService.getRuleName(kind, packet.getSignatureId());
+            LOGGER.warning(String.format("event=signature kind=%s rule=%d name=\"%s\" no=%d time=%s src=%s dst=%s proto=%s len=%d",
+                AlertKind.label(kind), packet.getSignatureId(), name == null ? "" : name,
+                packet.getNumber(), packet.getTimestamp(), packet.getSourceIp(), packet.getDestIp(),
+                packet.getProtocol(), packet.getLength()));
+        }
+
+        if (!packet.isBlocked())
+            return;
+
+        if (LOGGER.isLoggable(Level.WARNING))
+            LOGGER.warning(String.format("event=blocked no=%d time=%s src=%s dst=%s proto=%s len=%d info=\"%s\" dst_owner=\"%s\" process=\"%s\"",
+                packet.getNumber(), packet.getTimestamp(), packet.getSourceIp(), packet.getDestIp(),
+                packet.getProtocol(), packet.getLength(), packet.getInfo(),
+                geoIp == null || packet.isIpV6() ? "" : geoIp.describe(packet.getDstAddr()),
+                processes == null ? "" : processes.describe(packet.getPid())));
+    }
+
+    /**
+     * Writes one structured stats line. Runs on the scheduler thread.
+     */
+    private synchronized void reportStats() {
+        long now = System.nanoTime();
+        long packets = captureService.getTotalPackets();
+        long blocked = captureService.getBlockedPackets();
+
+        if (!startupReported && captureService.getFirstPacketNanos() != 0) {
+            startupReported = true;
+            LOGGER.info(String.format("event=startup first_packet_ms=%d", elapsedMillis(startNanos, captureService.getFirstPacketNanos())));
+        }
+
+        double seconds = (now - lastReportNanos) / 1_000_000_000.0;
+        long pps = seconds > 0 ? Math.round((packets - lastReportPackets) / seconds) : 0;
+        List<BlacklistEntry> blacklist = BlacklistFetching.getBlacklistCache();
+
+        // Bytes allocated by the capture thread per processed packet in this interval
+        long allocated = captureService.getCaptureThreadAllocatedBytes();
+        long allocPerPacket = -1;
+        if (allocated >= 0 && lastReportAllocated >= 0 && packets > lastReportPackets)
+            allocPerPacket = (allocated - lastReportAllocated) / (packets - lastReportPackets);
+
+        // Blocked and signature lines lost because the log subscriber fell behind
+        long logDropped = blockedLog.getDropped();
+
+        if (LOGGER.isLoggable(Level.INFO))
+            LOGGER.info(String.format("event=stats uptime_ms=%d packets=%d pps=%d blocked=%d signature_hits=%d header_rule_hits=%d blacklist_size=%d db_ready=%s alloc_bytes_per_packet=%d blocked_log_dropped=%d",
+                elapsedMillis(startNanos, now), packets, pps, blocked, captureService.getSignatureHits(), captureService.getHeaderRuleHits(), blacklist == null ? 0 : blacklist.size(), BlacklistDao.getDefaultStore().isReady(), allocPerPacket, logDropped));
+
+        if (logDropped > lastReportLogDropped)
+            LOGGER.warning(String.format("event=blocked_log_overflow dropped=%d total_dropped=%d",
+                logDropped - lastReportLogDropped, logDropped));
+        lastReportLogDropped = logDropped;
+
+        ReassemblyEngine reassembly = captureService.getReassembly();
+        if (reassembly.hasInspectors())
+            LOGGER.info(String.format("event=reassembly streams=%d datagrams=%d buffered_bytes=%d reassembled=%d out_of_order=%d overlaps=%d gap_skips=%d evictions=%d timeouts=%d",
+                reassembly.getActiveStreams(), reassembly.getActiveDatagrams(), reassembly.getBufferedBytes(),
+                reassembly.getCounter(ReassemblyEngine.Counter.DATAGRAMS_REASSEMBLED),
+                reassembly.getCounter(ReassemblyEngine.Counter.TCP_OUT_OF_ORDER),
+                reassembly.getCounter(ReassemblyEngine.Counter.TCP_OVERLAPS) + reassembly.getCounter(ReassemblyEngine.Counter.FRAGMENT_OVERLAPS),
+                reassembly.getCounter(ReassemblyEngine.Counter.TCP_GAP_SKIPS),
+                reassembly.getCounter(ReassemblyEngine.Counter.EVICTIONS),
+                reassembly.getCounter(ReassemblyEngine.Counter.STREAM_TIMEOUTS) + reassembly.getCounter(ReassemblyEngine.Counter.FRAGMENT_TIMEOUTS)));
+
+        ScanDetector scanDetector = captureService.getScanDetector();
+        if (scanDetector != null)
+            LOGGER.info(String.format("event=scan_detector alerts=%d idle_evictions=%d forced_evictions=%d",
+                scanDetector.getAlertCount(), scanDetector.getIdleEvictions(), scanDetector.getForcedEvictions()));
+
+        VolumeAnomalyDetector volumeDetector = captureService.getVolumeDetector();
+        if (volumeDetector != null)
+            LOGGER.info(String.format("event=baselines series=%d anomalies=%d evictions=%d",
+                volumeDetector.size(), volumeDetector.getAnomalyCount(), volumeDetector.getEvictions()));
+        TrafficRollups rollups = captureService.getRollups();
+        if (rollups != null)
+            LOGGER.info(String.format("event=rollups rows_written=%d rows_dropped=%d overflow_minutes=%d",
+                rollups.getRowsWritten(), rollups.getRowsDropped(), rollups.getOverflowMinutes()));
+
+        FlowTable flowTable = captureService.getFlowTable();
+        if (flowTable != null) {
+            IpfixExporter exporter = captureService.getIpfixExporter();
+            LOGGER.info(String.format("event=flows active=%d created=%d ended=%d evictions=%d ipfix_records=%d ipfix_messages=%d ipfix_dropped=%d",
+                flowTable.size(), flowTable.getCreatedCount(), flowTable.getEndedCount(), flowTable.getEvictions(),
+                exporter.getRecordsExported(), exporter.getMessagesSent(), exporter.getMessagesDropped()));
+        }
+
+        ProtocolClassifier classifier = captureService.getClassifier();
+        if (classifier != null && LOGGER.isLoggable(Level.INFO)) {
+            for (byte id = 0; id < AppProtocol.COUNT; id++)
+                if (classifier.getPackets(id) > 0)
+                    LOGGER.info(String.format("event=app_protocol name=%s packets=%d bytes=%d",
+                        id == AppProtocol.NONE ? "other" : AppProtocol.name(id).toLowerCase(), classifier.getPackets(id), classifier.getBytes(id)));
+        }
+
+        if (processes != null && LOGGER.isLoggable(Level.INFO)) {
+            LOGGER.info(String.format("event=processes tracked=%d sockets=%d unattributed_packets=%d refreshes=%d refresh_failures=%d",
+                processes.getProcessCount(), processes.getIndexedSockets(), processes.getUnattributedPackets(),
+                processes.getRefreshes(), processes.getRefreshFailures()));
+            int rank = 0;
+            for (ProcessAttribution.ProcessTraffic process : processes.getTopProcesses(LOGGED_PROCESSES))
+                LOGGER.info(String.format("event=process_traffic rank=%d pid=%d command=\"%s\" packets=%d bytes=%d",
+                    ++rank, process.getPid(), process.getCommand(), process.getPackets(), process.getBytes()));
+        }
+
+        TopTalkers.Snapshot talkers = captureService.getTopTalkers().getSnapshot();
+        if (talkers.getTotalPackets() > 0 && LOGGER.isLoggable(Level.INFO)) {
+            for (TopTalkers.Dimension dimension : TopTalkers.Dimension.values()) {
+                List<TopTalkers.Talker> list = talkers.getTalkers(dimension);
+                StringBuilder top = new StringBuilder();
+                for (TopTalkers.Talker talker : list.subList(0, Math.min(LOGGED_TALKERS, list.size()))) {
+                    if (top.length() > 0)
+                        top.append(',');
+                    top.append(talker.getLabel()).append('=').append(talker.getBytes());
+                }
+                LOGGER.info(String.format("event=top_talkers dimension=%s window_ms=%d total_bytes=%d error_bytes=%d top=\"%s\"",
+                    dimension.name().toLowerCase(), TimeUnit.NANOSECONDS.toMillis(talkers.getWindowNanos()),
+                    talkers.getTotalBytes(), talkers.getErrorBytes(), top));
+            }
+        }
+
+        for (PacketEventBus.Subscription subscription : captureService.getEventBus().getSubscriptions())
+            LOGGER.info(String.format("event=subscriber name=%s policy=%s lag=%d delivered=%d dropped=%d",
+                subscription.getName(), subscription.getPolicy(), subscription.getLag(),
+                subscription.getDelivered(), subscription.getDropped()));
+
+        lastReportNanos = now;
+        lastReportPackets = packets;
+        lastReportAllocated = allocated;
+    }
+
+    /**
+     * Stops capture and prints a final stats line when the JVM exits.
+     */
+    private void shutdown() {
+        scheduler.shutdownNow();
+        captureService.stopCapturing();
+        reportStats();
+    }
+
+    private static long elapsedMillis(long fromNanos, long toNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(toNanos - fromNanos);
+    }
+}
@@ -0,0 +1,240 @@
+package networkmonitor.service;
+
+import networkmonitor.model.DecodedPacket;
+
+/**
+ * Decodes link, network and transport headers straight from the raw frame bytes.
+ * Replaces the per-packet object tree built by Pcap4J's packet factory: the only
+ * per-packet allocation left on the capture path is the raw byte array itself.
+ */
+public class PacketDecoder {
+    // Link-layer header types (pcap DLT values)
+    public static final int DLT_NULL = 0;
+    public static final int DLT_EN10MB = 1;
+    public static final int DLT_RAW = 12;
+    public static final int DLT_RAW_ALT = 101;
+    public static final int DLT_LINUX_SLL = 113;
+
+    // EtherTypes
+    private static final int ETHERTYPE_IPV4 = 0x0800;
+    private static final int ETHERTYPE_IPV6 = 0x86DD;
+    private static final int ETHERTYPE_VLAN = 0x8100;
+    private static final int ETHERTYPE_QINQ = 0x88A8;
+
+    // IPv6 extension headers walked to find the upper-layer protocol
+    private static final int EXT_HOP_BY_HOP = 0;
+    private static final int EXT_ROUTING = 43;
+    private static final int EXT_FRAGMENT = 44;
+    private static final int EXT_AUTHENTICATION = 51;
+    private static final int EXT_DESTINATION_OPTIONS = 60;
+    private static final int EXT_MOBILITY = 135;
+
+    // Upper bound on the extension header chain, protects against crafted packets
+    private static final int MAX_EXTENSION_HEADERS = 8;
+
+    // Link type of the capture handle
+    private final int dlt;
+
+    /**
+     * Constructs a decoder for one capture handle.
+     * @param dlt The data link type reported by the handle.
+     */
+    public PacketDecoder(int dlt) {
+        this.dlt = dlt;
+    }
+
+    /**
+     * Decodes a raw frame into the given reusable structure.
+     * @param data Raw frame bytes.
+     * @param captureNanos Capture timestamp from the pcap header, epoch nanoseconds.
+     * @param out Structure to fill; reset first.
+     * @return true if an IPv4 or IPv6 header was found.
+     */
+    public boolean decode(byte[] data, long captureNanos, DecodedPacket out) {
+        out.reset();
+        out.data = data;
+        out.frameLength = data.length;
+        out.captureNanos = captureNanos;
+
+        int ipOffset = networkOffset(data);
+        if (ipOffset < 0 || ipOffset + 20 > data.length)
+            return false;
+
+        int version = data[ipOffset] >> 4 & 0x0F;
+        if (version == 4)
+            return decodeIpV4(data, ipOffset, out);
+        if (version == 6)
+            return decodeIpV6(data, ipOffset, out);
+        return false;
+    }
+
+    /**
+     * Finds the offset of the IP header after the link-layer header.
+     * @return The offset, or -1 if the frame does not carry IP.
+     */
+    private int networkOffset(byte[] data) {
+        switch (dlt) {
+            case DLT_EN10MB: {
+                if (data.length < 14)
+                    return -1;
+                int offset = 12;
+                int etherType = u16(data, offset);
+                while ((etherType == ETHERTYPE_VLAN || etherType == ETHERTYPE_QINQ) && offset + 6 <= data.length) {
+                    offset += 4;
+                    etherType = u16(data, offset);
+                }
+                return isIpEtherType(etherType) ? offset + 2 : -1;
+            }
+            case DLT_LINUX_SLL:
+                return data.length >= 16 && isIpEtherType(u16(data, 14)) ? 16 : -1;
+            case DLT_NULL:
+                // 4-byte address family in host byte order
+                return data.length >= 4 && (isIpFamily(data[0]) || isIpFamily(data[3])) ? 4 : -1;
+            case DLT_RAW, DLT_RAW_ALT:
+                return 0;
+            default:
+                return -1;
+        }
+    }
+
+    private static boolean isIpEtherType(int etherType) {
+        return etherType == ETHERTYPE_IPV4 || etherType == ETHERTYPE_IPV6;
+    }
+
+    /**
+     * AF_INET is 2 everywhere; AF_INET6 is 10 (Linux), 24 (OpenBSD/NetBSD), 28 (FreeBSD) or 30 (macOS).
+     */
+    private static boolean isIpFamily(byte family) {
+        return family == 2 || family == 10 || family == 24 || family == 28 || family == 30;
+    }
+
+    private boolean decodeIpV4(byte[] data, int offset, DecodedPacket out) {
+        if ((data[offset] >> 4 & 0x0F) != 4)
+            return false;
+
+        int headerLength = (data[offset] & 0x0F) * 4;
+        int totalLength = Math.min(u16(data, offset + 2), data.length - offset);
+        if (headerLength < 20 || totalLength < headerLength)
+            return false;
+
+        out.ipVersion = 4;
+        out.ipOffset = offset;
+        out.protocol = data[offset + 9];
+        out.srcAddr = i32(data, offset + 12);
+        out.dstAddr = i32(data, offset + 16);
+
+        int flagsAndOffset = u16(data, offset + 6);
+        int transportOffset = offset + headerLength;
+        int transportEnd = offset + totalLength;
+        out.fragmentOffset = (flagsAndOffset & 0x1FFF) * 8;
+        out.moreFragments = (flagsAndOffset & 0x2000) != 0;
+        out.isFragment = out.moreFragments || out.fragmentOffset != 0;
+        if (out.isFragment) {
+            out.fragmentId = u16(data, offset + 4);
+            out.fragmentDataOffset = transportOffset;
+            out.fragmentProtocol = out.protocol;
+        }
+
+        // Non-first fragments carry no transport header
+        boolean firstFragment = out.fragmentOffset == 0;
+        if (firstFragment)
+            decodeTransport(data, transportOffset, transportEnd, out);
+        else
+            setPayload(out, transportOffset, transportEnd);
+        return true;
+    }
+
+    private boolean decodeIpV6(byte[] data, int offset, DecodedPacket out) {
+        if (offset + 40 > data.length)
+            return false;
+
+        // Payload length 0 means a jumbogram: fall back to the captured length
+        int payloadLength = u16(data, offset + 4);
+        int end = payloadLength == 0 ? data.length : Math.min(data.length, offset + 40 + payloadLength);
+
+        out.ipVersion = 6;
+        out.ipOffset = offset;
+        out.srcAddrHi = i64(data, offset + 8);
+        out.srcAddrLo = i64(data, offset + 16);
+        out.dstAddrHi = i64(data, offset + 24);
+        out.dstAddrLo = i64(data, offset + 32);
+
+        // Walk the extension header chain to the upper-layer header
+        int nextHeader = data[offset + 6] & 0xFF;
+        int position = offset + 40;
+        for (int i = 0; i < MAX_EXTENSION_HEADERS && position + 8 <= end; i++) {
+            int headerLength;
+            switch (nextHeader) {
+                case EXT_HOP_BY_HOP, EXT_ROUTING, EXT_DESTINATION_OPTIONS, EXT_MOBILITY:
+                    headerLength = ((data[position + 1] & 0xFF) + 1) * 8;
+                    break;
+                case EXT_AUTHENTICATION:
+                    headerLength = ((data[position + 1] & 0xFF) + 2) * 4;
+                    break;
+                case EXT_FRAGMENT:
+                    out.fragmentOffset = u16(data, position + 2) & 0xFFF8;
+                    out.moreFragments = (data[position + 3] & 0x01) != 0;
+                    out.isFragment = out.moreFragments || out.fragmentOffset != 0;
+                    out.fragmentId = i32(data, position + 4);
+                    out.fragmentDataOffset = position + 8;
+                    out.fragmentProtocol = data[position];
+
+                    // Non-first fragments carry no transport header
+                    if (out.fragmentOffset != 0) {
+                        out.protocol = data[position];
+                        setPayload(out, position + 8, end);
+                        return true;
+                    }
+                    headerLength = 8;
+                    break;
+                default:
+                    out.protocol = (byte) nextHeader;
+                    decodeTransport(data, position, end, out);
+                    return true;
+            }
+            nextHeader = data[position] & 0xFF;
+            position += headerLength;
+        }
+
+        // Chain too long or truncated: report the last header type without ports
+        out.protocol = (byte) nextHeader;
+        setPayload(out, position, end);
+        return true;
+    }
+
+    private void decodeTransport(byte[] data, int offset, int end, DecodedPacket out) {
+        if (out.protocol == DecodedPacket.PROTO_TCP && offset + 20 <= end) {
+            out.srcPort = (short) u16(data, offset);
+            out.dstPort = (short) u16(data, offset + 2);
+            out.tcpSeq = i32(data, offset + 4);
+            out.tcpFlags = data[offset + 13] & 0xFF;
+            int dataOffset = (data[offset + 12] >> 4 & 0x0F) * 4;
+            setPayload(out, offset + Math.max(20, dataOffset), end);
+        } else if (out.protocol == DecodedPacket.PROTO_UDP && offset + 8 <= end) {
+            out.srcPort = (short) u16(data, offset);
+            out.dstPort = (short) u16(data, offset + 2);
+            setPayload(out, offset + 8, end);
+        } else {
+            setPayload(out, offset, end);
+        }
+    }
+
+    private static void setPayload(DecodedPacket out, int offset, int end) {
+        out.payloadOffset = Math.min(offset, end);
+        out.payloadLength = Math.max(0, end - offset);
+    }
+
+    // Big-endian readers
+    static int u16(byte[] data, int offset) {
+        return (data[offset] & 0xFF) << 8 | (data[offset + 1] & 0xFF);
+    }
+
+    static int i32(byte[] data, int offset) {
+        return (data[offset] & 0xFF) << 24 | (data[offset + 1] & 0xFF) << 16
+            | (data[offset + 2] & 0xFF) << 8 | (data[offset + 3] & 0xFF);
+    }
+
+    static long i64(byte[] data, int offset) {
+        return (long) i32(data, offset) << 32 | (i32(data, offset + 4) & 0xFFFFFFFFL);
+    }
+}
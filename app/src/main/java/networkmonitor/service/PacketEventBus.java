@@ -0,0 +1,312 @@
+package networkmonitor.service;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import networkmonitor.model.PacketInfo;
+
+/**
+ * Publish/subscribe bus for processed packets.
+ * Every subscriber owns a bounded queue and a dispatch thread, so a slow consumer
+ * only ever fills its own queue: the capture thread and the other subscribers keep going.
+ * What happens when a queue is full is decided per subscriber by its {@link BackpressurePolicy}.
+ * <p>
+ * Blocked and alert packets are never dropped while there is room in a small alert lane:
+ * whatever the policy, one that does not fit the queue or would be evicted from it moves to
+ * the lane, which the dispatch thread drains first.
+ */
+public class PacketEventBus {
+    // Logger for debugging and information
+    private static final Logger LOGGER = Logger.getLogger(PacketEventBus.class.getName());
+
+    // Under SAMPLE, once the queue is half full only every n-th packet is enqueued
+    private static final int DEFAULT_SAMPLE_EVERY = 10;
+
+    // The alert lane holds a quarter of the queue capacity, at least 16 packets
+    private static final int ALERT_LANE_SHARE = 4;
+    private static final int MIN_ALERT_LANE = 16;
+
+    /**
+     * What a subscription does with a packet when its queue is full.
+     */
+    public enum BackpressurePolicy {
+        /** Drop the packet being published. */
+        DROP_NEWEST,
+        /** Evict the oldest queued packet to make room. */
+        DROP_OLDEST,
+        /** Keep 1-in-n packets once the queue is half full, drop when full. */
+        SAMPLE
+    }
+
+    // Copy-on-write: publishing iterates a stable snapshot without locking
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * Registers a consumer with its own queue and dispatch thread.
+     * @param name Name used for the thread and in statistics.
+     * @param capacity Maximum number of queued packets.
+     * @param policy Behavior when the queue is full.
+     * @param consumer Callback invoked on the subscription's own thread.
+     * @return The subscription handle, used to read counters and to unsubscribe.
+     */
+    public Subscription subscribe(String name, int capacity, BackpressurePolicy policy, Consumer<PacketInfo> consumer) {
+        return subscribe(name, capacity, policy, null, consumer);
+    }
+
+    /**
+     * Registers a consumer that only receives the packets matching a filter. Packets are
+     * filtered before they are enqueued, so the others never take room in the queue.
+     * @param name Name used for the thread and in statistics.
+     * @param capacity Maximum number of queued packets.
+     * @param policy Behavior when the queue is full.
+     * @param filter Test run on the capture thread, must be cheap; null accepts every packet.
+     * @param consumer Callback invoked on the subscription's own thread.
+     * @return The subscription handle, used to read counters and to unsubscribe.
+     */
+    public Subscription subscribe(String name, int capacity, BackpressurePolicy policy,
+                                  Predicate<PacketInfo> filter, Consumer<PacketInfo> consumer) {
+        Subscription subscription = new Subscription(name, capacity, policy, filter, consumer);
+        subscriptions.add(subscription);
+        subscription.start();
+        LOGGER.log(Level.INFO, "Subscriber added: {0} (capacity {1}, {2})", new Object[]{name, capacity, policy});
+        return subscription;
+    }
+
+    /**
+     * Removes a subscription and stops its dispatch thread. Queued packets are discarded.
+     * @param subscription The subscription to remove (null is ignored).
+     */
+    public void unsubscribe(Subscription subscription) {
+        if (subscription == null)
+            return;
+
+        subscriptions.remove(subscription);
+        subscription.stop();
+    }
+
+    /**
+     * @return true if at least one subscriber is registered.
+     */
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    /**
+     * @return Snapshot of the current subscriptions, for statistics.
+     */
+    public List<Subscription> getSubscriptions() {
+        return List.copyOf(subscriptions);
+    }
+
+    /**
+     * Hands a packet to every subscriber according to its policy. Called from the capture thread.
+     * @param packet The processed packet.
+     */
+    public void publish(PacketInfo packet) {
+        for (Subscription subscription : subscriptions)
+            subscription.offer(packet);
+    }
+
+    /**
+     * A single subscriber: bounded queue, alert lane, dispatch thread and counters.
+     */
+    public static class Subscription {
+        // Configuration
+        private final String name;
+        private final BackpressurePolicy policy;
+        private final Predicate<PacketInfo> filter;
+        private final Consumer<PacketInfo> consumer;
+        private final int capacity;
+        private final int alertCapacity;
+        private final int sampleThreshold;
+
+        // Queue in publishing order and alert lane, both guarded by lock
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private final ArrayDeque<PacketInfo> queue;
+        private final ArrayDeque<PacketInfo> alerts;
+
+        // Counters
+        private final AtomicLong published = new AtomicLong();
+        private final AtomicLong delivered = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong droppedAlerts = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+
+        // Dispatch thread
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        private Subscription(String name, int capacity, BackpressurePolicy policy,
+                             Predicate<PacketInfo> filter, Consumer<PacketInfo> consumer) {
+            this.name = name;
+            this.policy = policy;
+            this.filter = filter;
+            this.consumer = consumer;
+            this.capacity = Math.max(1, capacity);
+            this.alertCapacity = Math.max(MIN_ALERT_LANE, this.capacity / ALERT_LANE_SHARE);
+            this.sampleThreshold = Math.max(1, capacity / 2);
+            this.queue = new ArrayDeque<>(this.capacity);
+            this.alerts = new ArrayDeque<>(this.alertCapacity);
+            this.thread = new Thread(this::dispatchLoop, "bus-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        private void start() {
+            thread.start();
+        }
+
+        private void stop() {
+            running = false;
+            thread.interrupt();
+            lock.lock();
+            try {
+                queue.clear();
+                alerts.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private static boolean isAlert(PacketInfo packet) {
+            return packet.isBlocked() || packet.isAlert();
+        }
+
+        /**
+         * Enqueues a packet according to the policy. Never blocks, whatever the policy.
+         * Packets rejected by the filter are ignored and not counted.
+         * @param packet The packet to enqueue.
+         */
+        private void offer(PacketInfo packet) {
+            if (filter != null && !filter.test(packet))
+                return;
+            long sequence = published.getAndIncrement();
+            boolean alert = isAlert(packet);
+
+            lock.lock();
+            try {
+                if (policy == BackpressurePolicy.SAMPLE && !alert && queue.size() >= sampleThreshold
+                        && sequence % DEFAULT_SAMPLE_EVERY != 0) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+                if (queue.size() == capacity) {
+                    if (policy != BackpressurePolicy.DROP_OLDEST) {
+                        // The new packet does not fit
+                        if (alert)
+                            keepAlert(packet);
+                        else
+                            dropped.incrementAndGet();
+                        return;
+                    }
+                    PacketInfo oldest = queue.pollFirst();
+                    if (isAlert(oldest))
+                        keepAlert(oldest);
+                    else
+                        dropped.incrementAndGet();
+                }
+                queue.addLast(packet);
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Moves a blocked or alert packet that does not fit the queue to the alert lane. A full
+         * lane drops its oldest packet under DROP_OLDEST, the new one otherwise. Holds the lock.
+         * @param packet The packet to keep.
+         */
+        private void keepAlert(PacketInfo packet) {
+            if (alerts.size() == alertCapacity) {
+                dropped.incrementAndGet();
+                droppedAlerts.incrementAndGet();
+                if (policy != BackpressurePolicy.DROP_OLDEST)
+                    return;
+                alerts.pollFirst();
+            }
+            alerts.addLast(packet);
+            notEmpty.signal();
+        }
+
+        /**
+         * Waits for the next packet, from the alert lane first.
+         * @return The packet.
+         * @throws InterruptedException If the subscription is stopped while waiting.
+         */
+        private PacketInfo take() throws InterruptedException {
+            lock.lockInterruptibly();
+            try {
+                while (alerts.isEmpty() && queue.isEmpty())
+                    notEmpty.await();
+                PacketInfo packet = alerts.pollFirst();
+                return packet != null ? packet : queue.pollFirst();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Takes packets from the queue and runs the consumer until stopped.
+         * A failing consumer is logged and counted, it does not kill the subscription.
+         */
+        private void dispatchLoop() {
+            while (running) {
+                try {
+                    PacketInfo packet = take();
+                    consumer.accept(packet);
+                    delivered.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (RuntimeException e) {
+                    if (failed.getAndIncrement() == 0)
+                        LOGGER.log(Level.WARNING, "Subscriber " + name + " threw an exception", e);
+                }
+            }
+        }
+
+        // Getters
+        public String getName() { return name; }
+        public BackpressurePolicy getPolicy() { return policy; }
+        public long getPublished() { return published.get(); }
+        public long getDelivered() { return delivered.get(); }
+        public long getDropped() { return dropped.get(); }
+        public long getFailed() { return failed.get(); }
+
+        /**
+         * @return Blocked and alert packets dropped because the alert lane was full, included in getDropped().
+         */
+        public long getDroppedAlerts() { return droppedAlerts.get(); }
+
+        /**
+         * @return Number of packets waiting in the queue and the alert lane (how far the subscriber lags behind).
+         */
+        public int getLag() {
+            lock.lock();
+            try {
+                return queue.size() + alerts.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * String representation used in stats output.
+         * @return Name, lag and drop counters in key=value form
+         */
+        @Override
+        public String toString() {
+            return name + "[lag=" + getLag() + " delivered=" + getDelivered() + " dropped=" + getDropped()
+                + " dropped_alerts=" + getDroppedAlerts() + "]";
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package networkmonitor.util;
+
+/**
+ * Hash function shared by the open-addressing tables, sketches and caches that key packets
+ * by address halves, ports and protocol.
+ */
+public final class Hashing {
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Hashing() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Folds two 64-bit values and spreads the bits (murmur3 64-bit finalizer), since addresses
+     * of one network share their high half and hosts often differ only in the low bits.
+     * Calls can be chained to hash longer keys: mix(mix(a, b) ^ c, d).
+     * @param high First value, e.g. the high 64 bits of an address
+     * @param low Second value, e.g. the low 64 bits of an address
+     * @return The hash; its low bits are suitable as a table index
+     */
+    public static long mix(long high, long low) {
+        long h = high * 0x9E3779B97F4A7C15L ^ low;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
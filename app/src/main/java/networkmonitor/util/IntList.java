@@ -0,0 +1,81 @@
+package networkmonitor.util;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints (no boxing).
+ * Not thread-safe: readers on other threads must work on a {@link #copyRange} snapshot.
+ */
+public class IntList {
+    private int[] values;
+    private int size;
+
+    /**
+     * Creates an empty list.
+     * @param initialCapacity Initial array size
+     */
+    public IntList(int initialCapacity) {
+        values = new int[Math.max(4, initialCapacity)];
+    }
+
+    /**
+     * Appends a value.
+     * @param value The value
+     */
+    public void add(int value) {
+        if (size == values.length)
+            values = Arrays.copyOf(values, values.length * 2);
+        values[size++] = value;
+    }
+
+    /**
+     * @param index Position in the list
+     * @return The value at that position
+     */
+    public int get(int index) {
+        return values[index];
+    }
+
+    /**
+     * @return Number of values
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all values, keeping the array.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Position of the first value not smaller than the key, for lists kept in
+     * ascending unsigned order (e.g. sequence numbers).
+     * @param key The key, compared as unsigned
+     * @return Index in [0, size]
+     */
+    public int lowerBoundUnsigned(int key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Integer.compareUnsigned(values[mid], key) < 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Copies a range of the list.
+     * @param from First index (inclusive)
+     * @param to Last index (exclusive)
+     * @return A new array with the values
+     */
+    public int[] copyRange(int from, int to) {
+        return Arrays.copyOfRange(values, from, to);
+    }
+}
@@ -0,0 +1,122 @@
+package networkmonitor.util;
+
+import java.util.Arrays;
+
+/**
+ * Set of int keys using open addressing with linear probing.
+ * Lookups do not box and do not allocate, so it is safe to query from the capture thread.
+ * Not thread-safe for writes: build it once, then publish it through a volatile field.
+ */
+public class IntOpenHashSet {
+    // Sentinel for empty slots; the key 0 (0.0.0.0 for IPv4) is tracked separately
+    private static final int EMPTY = 0;
+
+    private int[] slots;
+    private int mask;
+    private int size;
+    private boolean containsZero;
+
+    /**
+     * Creates a set sized for the expected number of keys at a load factor of at most 0.5.
+     * @param expectedSize Expected number of keys
+     */
+    public IntOpenHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        slots = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Adds a key.
+     * @param key The key
+     * @return true if the key was not present before
+     */
+    public boolean add(int key) {
+        if (key == EMPTY) {
+            boolean added = !containsZero;
+            containsZero = true;
+            if (added)
+                size++;
+            return added;
+        }
+
+        int index = mix(key) & mask;
+        while (slots[index] != EMPTY) {
+            if (slots[index] == key)
+                return false;
+            index = (index + 1) & mask;
+        }
+        slots[index] = key;
+        if (++size * 2 > slots.length)
+            rehash(slots.length << 1);
+        return true;
+    }
+
+    /**
+     * Checks whether a key is present. Allocation-free.
+     * @param key The key
+     * @return true if present
+     */
+    public boolean contains(int key) {
+        if (key == EMPTY)
+            return containsZero;
+
+        int index = mix(key) & mask;
+        int current;
+        while ((current = slots[index]) != EMPTY) {
+            if (current == key)
+                return true;
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * @return Number of keys in the set
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The keys in ascending signed order (new array)
+     */
+    public int[] toSortedArray() {
+        int[] result = new int[size];
+        int n = 0;
+        if (containsZero)
+            result[n++] = EMPTY;
+        for (int slot : slots)
+            if (slot != EMPTY)
+                result[n++] = slot;
+        Arrays.sort(result);
+        return result;
+    }
+
+    private void rehash(int newCapacity) {
+        int[] old = slots;
+        slots = new int[newCapacity];
+        mask = newCapacity - 1;
+        for (int key : old) {
+            if (key == EMPTY)
+                continue;
+            int index = mix(key) & mask;
+            while (slots[index] != EMPTY)
+                index = (index + 1) & mask;
+            slots[index] = key;
+        }
+    }
+
+    /**
+     * Spreads the bits of the key (murmur3 finalizer), since IPv4 keys share their high bits.
+     */
+    private static int mix(int key) {
+        int h = key;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,219 @@
+package networkmonitor.util;
+
+/**
+ * Conversions between textual IP addresses and their primitive representations.
+ * IPv4 addresses are handled as big-endian ints (a.b.c.d -> a << 24 | b << 16 | c << 8 | d),
+ * IPv6 addresses as two big-endian longs (high = first 8 bytes, low = last 8 bytes).
+ */
+public final class IpAddresses {
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private IpAddresses() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Parses a dotted-quad IPv4 address without allocating.
+     * @param text The address, e.g. "192.168.0.1"
+     * @return The address as an unsigned value in the low 32 bits, or -1 if the text is not IPv4.
+     */
+    public static long parseIpV4(CharSequence text) {
+        if (text == null)
+            return -1;
+
+        long result = 0;
+        int octet = -1;
+        int dots = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+                if (octet > 255)
+                    return -1;
+            } else if (c == '.' && octet >= 0 && dots < 3) {
+                result = (result << 8) | octet;
+                octet = -1;
+                dots++;
+            } else {
+                return -1;
+            }
+        }
+        if (dots != 3 || octet < 0)
+            return -1;
+        return (result << 8) | octet;
+    }
+
+    /**
+     * Formats an IPv4 address in dotted-quad notation.
+     * @param address The address as a big-endian int
+     * @return The dotted-quad text
+     */
+    public static String formatIpV4(int address) {
+        return ((address >>> 24) & 0xFF) + "." + ((address >>> 16) & 0xFF) + "."
+            + ((address >>> 8) & 0xFF) + "." + (address & 0xFF);
+    }
+
+    /**
+     * Parses an IPv6 address ("2001:db8::1", "::ffff:192.0.2.1"); a zone suffix ("%eth0") is ignored.
+     * @param text The address
+     * @param out Array of at least two longs receiving the high and low halves
+     * @return true if the text is a valid IPv6 address
+     */
+    public static boolean parseIpV6(CharSequence text, long[] out) {
+        if (text == null)
+            return false;
+
+        int end = text.length();
+        for (int i = 0; i < end; i++) {
+            if (text.charAt(i) == '%') {
+                end = i;
+                break;
+            }
+        }
+
+        int[] groups = new int[8];
+        int count = 0;
+        int gap = -1;
+        int i = 0;
+        if (end >= 2 && text.charAt(0) == ':' && text.charAt(1) == ':') {
+            gap = 0;
+            i = 2;
+        } else if (end == 0 || text.charAt(0) == ':') {
+            return false;
+        }
+
+        while (i < end) {
+            if (count == 8)
+                return false;
+
+            int groupStart = i;
+            int value = 0;
+            int digits = 0;
+            while (i < end && digits <= 4) {
+                int digit = Character.digit(text.charAt(i), 16);
+                if (digit < 0)
+                    break;
+                value = value << 4 | digit;
+                digits++;
+                i++;
+            }
+
+            // Embedded IPv4 in the last 32 bits
+            if (i < end && text.charAt(i) == '.') {
+                long v4 = count <= 6 ? parseIpV4(text.subSequence(groupStart, end)) : -1;
+                if (v4 < 0)
+                    return false;
+                groups[count++] = (int) (v4 >>> 16);
+                groups[count++] = (int) (v4 & 0xFFFF);
+                break;
+            }
+
+            if (digits == 0 || digits > 4)
+                return false;
+            groups[count++] = value;
+            if (i == end)
+                break;
+            if (text.charAt(i++) != ':' || i == end)
+                return false;
+            if (text.charAt(i) == ':') {
+                if (gap >= 0)
+                    return false;
+                gap = count;
+                i++;
+            }
+        }
+
+        if (gap < 0 ? count != 8 : count == 8)
+            return false;
+
+        // Expand "::" into the missing zero groups
+        long high = 0;
+        long low = 0;
+        int tail = gap < 0 ? 0 : count - gap;
+        for (int k = 0; k < 8; k++) {
+            long group;
+            if (gap < 0 || k < gap)
+                group = groups[k];
+            else if (k >= 8 - tail)
+                group = groups[k - (8 - count)];
+            else
+                group = 0;
+
+            if (k < 4)
+                high = high << 16 | group;
+            else
+                low = low << 16 | group;
+        }
+        out[0] = high;
+        out[1] = low;
+        return true;
+    }
+
+    /**
+     * Formats an IPv6 address in the canonical text form of RFC 5952
+     * (lowercase, longest zero run compressed to "::", IPv4-mapped addresses in dotted form).
+     * @param high First 8 bytes of the address
+     * @param low Last 8 bytes of the address
+     * @return The address text
+     */
+    public static String formatIpV6(long high, long low) {
+        if (isIpV4Mapped(high, low))
+            return "::ffff:" + formatIpV4((int) low);
+
+        // Longest run of at least two zero groups, leftmost on ties
+        int bestStart = -1;
+        int bestLength = 1;
+        int runStart = -1;
+        for (int k = 0; k <= 8; k++) {
+            if (k < 8 && group(high, low, k) == 0) {
+                if (runStart < 0)
+                    runStart = k;
+            } else if (runStart >= 0) {
+                if (k - runStart > bestLength) {
+                    bestStart = runStart;
+                    bestLength = k - runStart;
+                }
+                runStart = -1;
+            }
+        }
+
+        StringBuilder text = new StringBuilder(39);
+        for (int k = 0; k < 8; k++) {
+            if (k == bestStart) {
+                text.append("::");
+                k += bestLength - 1;
+                continue;
+            }
+            if (text.length() > 0 && text.charAt(text.length() - 1) != ':')
+                text.append(':');
+            text.append(Integer.toHexString(group(high, low, k)));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Formats an address kept as 128 bits, where IPv4 addresses are stored IPv4-mapped
+     * (::ffff:a.b.c.d) so that both families share one key layout.
+     * @param high First 8 bytes of the address
+     * @param low Last 8 bytes of the address
+     * @return The dotted IPv4 form for IPv4-mapped addresses, the canonical IPv6 text otherwise
+     */
+    public static String format(long high, long low) {
+        return isIpV4Mapped(high, low) ? formatIpV4((int) low) : formatIpV6(high, low);
+    }
+
+    /**
+     * @param high First 8 bytes of the address
+     * @param low Last 8 bytes of the address
+     * @return true if the address is an IPv4-mapped IPv6 address (::ffff:a.b.c.d)
+     */
+    public static boolean isIpV4Mapped(long high, long low) {
+        return high == 0 && (low >>> 32) == 0xFFFFL;
+    }
+
+    private static int group(long high, long low, int index) {
+        long half = index < 4 ? high : low;
+        return (int) (half >>> (48 - 16 * (index & 3))) & 0xFFFF;
+    }
+}
@@ -0,0 +1,92 @@
+package networkmonitor.util;
+
+import java.util.Arrays;
+
+/**
+ * Set of IPv4 prefixes (e.g. 10.0.0.0/8) kept as sorted, merged address ranges, so a
+ * membership test is one binary search without allocating. Not thread-safe for writes:
+ * add the prefixes, call {@link #compact()}, then publish it through a volatile field.
+ */
+public class IpV4RangeSet {
+    // Range bounds as unsigned addresses; after compact() sorted, disjoint and non-adjacent
+    private long[] starts = new long[16];
+    private long[] ends = new long[16];
+    private int size = 0;
+    private int prefixCount = 0;
+
+    /**
+     * Adds a prefix. Bits after the prefix length are ignored.
+     * @param address The network address as a big-endian int
+     * @param prefixLength Number of leading bits, 0..32
+     */
+    public void add(int address, int prefixLength) {
+        if (prefixLength < 0 || prefixLength > 32)
+            throw new IllegalArgumentException("Invalid IPv4 prefix length: " + prefixLength);
+
+        long rangeSize = 1L << (32 - prefixLength);
+        long start = (address & 0xFFFFFFFFL) & ~(rangeSize - 1);
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            ends = Arrays.copyOf(ends, size * 2);
+        }
+        starts[size] = start;
+        ends[size] = start + rangeSize - 1;
+        size++;
+        prefixCount++;
+    }
+
+    /**
+     * Sorts the ranges and merges overlapping or adjacent ones. Call after the last add.
+     */
+    public void compact() {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++)
+            order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(starts[a], starts[b]));
+
+        long[] mergedStarts = new long[Math.max(1, size)];
+        long[] mergedEnds = new long[Math.max(1, size)];
+        int merged = 0;
+        for (int index : order) {
+            if (merged > 0 && starts[index] <= mergedEnds[merged - 1] + 1) {
+                mergedEnds[merged - 1] = Math.max(mergedEnds[merged - 1], ends[index]);
+            } else {
+                mergedStarts[merged] = starts[index];
+                mergedEnds[merged] = ends[index];
+                merged++;
+            }
+        }
+        starts = mergedStarts;
+        ends = mergedEnds;
+        size = merged;
+    }
+
+    /**
+     * Checks whether an address falls into one of the prefixes. Requires {@link #compact()}.
+     * @param address The address as a big-endian int
+     * @return true if covered
+     */
+    public boolean contains(int address) {
+        if (size == 0)
+            return false;
+
+        long value = address & 0xFFFFFFFFL;
+        int low = 0;
+        int high = size - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (starts[mid] <= value)
+                low = mid;
+            else
+                high = mid - 1;
+        }
+        return starts[low] <= value && value <= ends[low];
+    }
+
+    /**
+     * @return Number of prefixes added
+     */
+    public int size() {
+        return prefixCount;
+    }
+}
@@ -0,0 +1,93 @@
+package networkmonitor.util;
+
+import java.util.Arrays;
+
+/**
+ * Binary trie of IPv6 prefixes (e.g. 2001:db8::/32) for longest-match style membership tests.
+ * Nodes live in parallel int arrays, so a lookup walks at most 128 array slots without
+ * allocating. Not thread-safe for writes: build it once, then publish it through a volatile field.
+ */
+public class IpV6PrefixTrie {
+    // Child node per bit value (0 = no child; node 0 is the root)
+    private int[] zeroChild = new int[64];
+    private int[] oneChild = new int[64];
+
+    // Nodes where a stored prefix ends
+    private boolean[] terminal = new boolean[64];
+
+    private int nodeCount = 1;
+    private int prefixCount = 0;
+
+    /**
+     * Adds a prefix. Bits after the prefix length are ignored.
+     * @param high First 8 bytes of the network address
+     * @param low Last 8 bytes of the network address
+     * @param prefixLength Number of leading bits, 0..128
+     * @return true if the prefix was not present before
+     */
+    public boolean add(long high, long low, int prefixLength) {
+        if (prefixLength < 0 || prefixLength > 128)
+            throw new IllegalArgumentException("Invalid IPv6 prefix length: " + prefixLength);
+
+        int node = 0;
+        for (int bit = 0; bit < prefixLength; bit++) {
+            int[] children = bitAt(high, low, bit) == 0 ? zeroChild : oneChild;
+            if (children[node] == 0) {
+                int child = newNode();
+                // newNode may have replaced the arrays
+                children = bitAt(high, low, bit) == 0 ? zeroChild : oneChild;
+                children[node] = child;
+            }
+            node = children[node];
+        }
+
+        if (terminal[node])
+            return false;
+        terminal[node] = true;
+        prefixCount++;
+        return true;
+    }
+
+    /**
+     * Checks whether an address is covered by any stored prefix. Allocation-free.
+     * @param high First 8 bytes of the address
+     * @param low Last 8 bytes of the address
+     * @return true if some prefix matches
+     */
+    public boolean contains(long high, long low) {
+        if (prefixCount == 0)
+            return false;
+
+        int node = 0;
+        for (int bit = 0; ; bit++) {
+            if (terminal[node])
+                return true;
+            if (bit == 128)
+                return false;
+            node = bitAt(high, low, bit) == 0 ? zeroChild[node] : oneChild[node];
+            if (node == 0)
+                return false;
+        }
+    }
+
+    /**
+     * @return Number of stored prefixes
+     */
+    public int size() {
+        return prefixCount;
+    }
+
+    private int newNode() {
+        if (nodeCount == terminal.length) {
+            int newLength = terminal.length * 2;
+            zeroChild = Arrays.copyOf(zeroChild, newLength);
+            oneChild = Arrays.copyOf(oneChild, newLength);
+            terminal = Arrays.copyOf(terminal, newLength);
+        }
+        return nodeCount++;
+    }
+
+    private static int bitAt(long high, long low, int bit) {
+        return bit < 64 ? (int) (high >>> (63 - bit)) & 1 : (int) (low >>> (127 - bit)) & 1;
+    }
+}
@@ -0,0 +1,74 @@
+package networkmonitor.util;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive longs (no boxing). Not thread-safe.
+ */
+public class LongList {
+    private long[] values;
+    private int size;
+
+    /**
+     * Creates an empty list.
+     * @param initialCapacity Initial array size
+     */
+    public LongList(int initialCapacity) {
+        values = new long[Math.max(4, initialCapacity)];
+    }
+
+    /**
+     * Appends a value.
+     * @param value The value
+     */
+    public void add(long value) {
+        if (size == values.length)
+            values = Arrays.copyOf(values, values.length * 2);
+        values[size++] = value;
+    }
+
+    /**
+     * @param index Position in the list
+     * @return The value at that position
+     */
+    public long get(int index) {
+        return values[index];
+    }
+
+    /**
+     * @return Number of values
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all values, keeping the array.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Copies the values into an ascending array without duplicates.
+     * @return A new sorted array
+     */
+    public long[] toSortedUniqueArray() {
+        long[] sorted = Arrays.copyOf(values, size);
+        Arrays.parallelSort(sorted);
+        return dedupeSorted(sorted);
+    }
+
+    /**
+     * Removes duplicates from an ascending array.
+     * @param sorted Ascending values; overwritten
+     * @return The distinct values (the same array if there was no duplicate)
+     */
+    public static long[] dedupeSorted(long[] sorted) {
+        int unique = 0;
+        for (int i = 0; i < sorted.length; i++)
+            if (unique == 0 || sorted[i] != sorted[unique - 1])
+                sorted[unique++] = sorted[i];
+        return unique == sorted.length ? sorted : Arrays.copyOf(sorted, unique);
+    }
+}
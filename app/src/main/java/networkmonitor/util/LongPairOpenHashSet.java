@@ -0,0 +1,98 @@
+package networkmonitor.util;
+
+/**
+ * Set of 128-bit keys stored as two longs (e.g. IPv6 addresses), using open addressing
+ * with linear probing over parallel primitive arrays.
+ * Lookups do not box and do not allocate, so it is safe to query from the capture thread.
+ * Not thread-safe for writes: build it once, then publish it through a volatile field.
+ */
+public class LongPairOpenHashSet {
+    // Key halves; the all-zero key (:: for IPv6) marks empty slots and is tracked separately
+    private long[] highs;
+    private long[] lows;
+    private int mask;
+    private int size;
+    private boolean containsZero;
+
+    /**
+     * Creates a set sized for the expected number of keys at a load factor of at most 0.5.
+     * @param expectedSize Expected number of keys
+     */
+    public LongPairOpenHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        highs = new long[capacity];
+        lows = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Adds a key.
+     * @param high High 64 bits of the key
+     * @param low Low 64 bits of the key
+     * @return true if the key was not present before
+     */
+    public boolean add(long high, long low) {
+        if (high == 0 && low == 0) {
+            boolean added = !containsZero;
+            containsZero = true;
+            if (added)
+                size++;
+            return added;
+        }
+
+        int index = (int) Hashing.mix(high, low) & mask;
+        while (highs[index] != 0 || lows[index] != 0) {
+            if (highs[index] == high && lows[index] == low)
+                return false;
+            index = (index + 1) & mask;
+        }
+        highs[index] = high;
+        lows[index] = low;
+        if (++size * 2 > highs.length)
+            rehash(highs.length << 1);
+        return true;
+    }
+
+    /**
+     * Checks whether a key is present. Allocation-free.
+     * @param high High 64 bits of the key
+     * @param low Low 64 bits of the key
+     * @return true if present
+     */
+    public boolean contains(long high, long low) {
+        if (high == 0 && low == 0)
+            return containsZero;
+
+        int index = (int) Hashing.mix(high, low) & mask;
+        while (highs[index] != 0 || lows[index] != 0) {
+            if (highs[index] == high && lows[index] == low)
+                return true;
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * @return Number of keys in the set
+     */
+    public int size() {
+        return size;
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldHighs = highs;
+        long[] oldLows = lows;
+        highs = new long[newCapacity];
+        lows = new long[newCapacity];
+        mask = newCapacity - 1;
+        for (int i = 0; i < oldHighs.length; i++) {
+            if (oldHighs[i] == 0 && oldLows[i] == 0)
+                continue;
+            int index = (int) Hashing.mix(oldHighs[i], oldLows[i]) & mask;
+            while (highs[index] != 0 || lows[index] != 0)
+                index = (index + 1) & mask;
+            highs[index] = oldHighs[i];
+            lows[index] = oldLows[i];
+        }
+    }
+}
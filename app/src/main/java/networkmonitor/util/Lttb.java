@@ -0,0 +1,71 @@
+package networkmonitor.util;
+
+/**
+ * Largest-Triangle-Three-Buckets downsampling (Steinarsson, 2013) of evenly spaced values:
+ * keeps the first and last point and, from each bucket in between, the point forming the
+ * largest triangle with the previously kept point and the average of the next bucket.
+ * Peaks survive, unlike with averaging or striding, so a day of per-second values can be
+ * drawn as a line of one point per pixel column.
+ */
+public final class Lttb {
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Lttb() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Picks the points to draw. Allocation-free, O(length).
+     * @param values The values; x is the index
+     * @param length Number of values used
+     * @param threshold Number of points wanted (at least 3 to downsample)
+     * @param out Receives the indices of the kept points in ascending order, at least
+     *            min(length, threshold) long
+     * @return Number of indices written
+     */
+    public static int downsample(float[] values, int length, int threshold, int[] out) {
+        if (threshold >= length || threshold < 3) {
+            for (int i = 0; i < length; i++)
+                out[i] = i;
+            return length;
+        }
+
+        double bucketSize = (double) (length - 2) / (threshold - 2);
+        int kept = 0;
+        int previous = 0;
+        out[kept++] = previous;
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            // Average of the next bucket (the last point for the last bucket)
+            int nextStart = (int) ((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) ((bucket + 2) * bucketSize) + 1, length);
+            if (nextStart >= nextEnd)
+                nextStart = nextEnd - 1;
+            double averageX = (nextStart + nextEnd - 1) / 2.0;
+            double averageY = 0;
+            for (int i = nextStart; i < nextEnd; i++)
+                averageY += values[i];
+            averageY /= nextEnd - nextStart;
+
+            // Point of this bucket with the largest triangle
+            int start = (int) (bucket * bucketSize) + 1;
+            int end = (int) ((bucket + 1) * bucketSize) + 1;
+            double previousY = values[previous];
+            double largestArea = -1;
+            int selected = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((previous - averageX) * (values[i] - previousY) - (previous - i) * (averageY - previousY));
+                if (area > largestArea) {
+                    largestArea = area;
+                    selected = i;
+                }
+            }
+            out[kept++] = selected;
+            previous = selected;
+        }
+
+        out[kept++] = length - 1;
+        return kept;
+    }
+}
@@ -0,0 +1,108 @@
+package networkmonitor.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing index from hashes to the entries of a table that the caller keeps in its
+ * own parallel arrays. Each slot holds an entry number + 1, 0 = empty; collisions probe the
+ * following slots (linear probing). Removal shifts the later entries of the probe run back
+ * into the gap, so there are no tombstones and runs stay as short as at insertion.
+ * <p>
+ * The caller compares keys itself while walking a probe run:
+ * <pre>
+ * for (int slot = index.slot(hash); (entry = index.get(slot)) &gt;= 0; slot = index.next(slot))
+ *     if (keys[entry] == key) return entry;
+ * </pre>
+ * and keeps the hash of every entry for remove(). Allocation-free. Not thread-safe.
+ */
+public final class ProbeIndex {
+    // Entry + 1 per slot, 0 = empty
+    private final int[] slots;
+    private final int mask;
+
+    /**
+     * Creates an empty index.
+     * @param minSlots Slots wanted, rounded up to a power of two; at least twice the number
+     *                 of entries indexed at once keeps the probe runs short
+     */
+    public ProbeIndex(int minSlots) {
+        int size = Integer.highestOneBit(Math.max(2, minSlots) - 1) << 1;
+        slots = new int[size];
+        mask = size - 1;
+    }
+
+    /**
+     * @param hash Hash of a key
+     * @return The first slot to probe for the key
+     */
+    public int slot(long hash) {
+        return (int) hash & mask;
+    }
+
+    /**
+     * @param slot A slot
+     * @return The slot probed after it
+     */
+    public int next(int slot) {
+        return (slot + 1) & mask;
+    }
+
+    /**
+     * @param slot A slot
+     * @return The entry in the slot, or -1 if the slot is empty (the end of the probe run)
+     */
+    public int get(int slot) {
+        return slots[slot] - 1;
+    }
+
+    /**
+     * Puts an entry into the empty slot that ended an unsuccessful probe run for its hash.
+     * @param slot The empty slot
+     * @param entry The entry
+     */
+    public void set(int slot, int entry) {
+        slots[slot] = entry + 1;
+    }
+
+    /**
+     * Adds an entry that is not indexed yet.
+     * @param hash Hash of the entry's key
+     * @param entry The entry
+     */
+    public void insert(long hash, int entry) {
+        int slot = (int) hash & mask;
+        while (slots[slot] != 0)
+            slot = (slot + 1) & mask;
+        slots[slot] = entry + 1;
+    }
+
+    /**
+     * Removes an indexed entry, shifting later entries of its probe run back.
+     * @param entry The entry
+     * @param hashes Hash of the key of every entry, by entry
+     */
+    public void remove(int entry, long[] hashes) {
+        int gap = (int) hashes[entry] & mask;
+        while (slots[gap] != entry + 1)
+            gap = (gap + 1) & mask;
+
+        int scan = (gap + 1) & mask;
+        while (slots[scan] != 0) {
+            int home = (int) hashes[slots[scan] - 1] & mask;
+            // Move the entry into the gap unless its home lies cyclically in (gap, scan]
+            if (((scan - home) & mask) >= ((scan - gap) & mask)) {
+                slots[gap] = slots[scan];
+                gap = scan;
+            }
+            scan = (scan + 1) & mask;
+        }
+        slots[gap] = 0;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        Arrays.fill(slots, 0);
+    }
+}
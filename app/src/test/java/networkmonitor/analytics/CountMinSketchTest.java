@@ -0,0 +1,72 @@
+package networkmonitor.analytics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import networkmonitor.util.Hashing;
+
+class CountMinSketchTest {
+    @Test
+    void neverUnderCountsAndStaysWithinTheErrorBound() {
+        CountMinSketch sketch = new CountMinSketch(4, 1024);
+        Random random = new Random(42);
+        long[] bytes = new long[5000];
+        for (int i = 0; i < 100_000; i++) {
+            // Skewed keys: a few heavy ones and a long tail
+            int key = (int) Math.min(bytes.length - 1, Math.abs(random.nextGaussian()) * 500);
+            int length = 40 + random.nextInt(1460);
+            bytes[key] += length;
+            sketch.add(Hashing.mix(0, key), length);
+        }
+
+        long bound = (long) (Math.E / sketch.getWidth() * sketch.getTotalBytes());
+        int outside = 0;
+        for (int key = 0; key < bytes.length; key++) {
+            long estimate = sketch.estimateBytes(Hashing.mix(0, key));
+            assertTrue(estimate >= bytes[key], "under-count of key " + key);
+            if (estimate - bytes[key] > bound)
+                outside++;
+        }
+        // The bound holds with probability 1 - e^-4 per key
+        assertTrue(outside < bytes.length / 20, outside + " keys over the error bound");
+        assertEquals(100_000, sketch.getTotalPackets());
+    }
+
+    @Test
+    void countsASingleKeyExactly() {
+        CountMinSketch sketch = new CountMinSketch(3, 64);
+        long hash = Hashing.mix(0, 0xFFFFL << 32 | 0x0A000001L);
+        sketch.add(hash, 1500);
+        sketch.add(hash, 60);
+
+        assertEquals(1560, sketch.estimateBytes(hash));
+        assertEquals(2, sketch.estimatePackets(hash));
+        assertEquals(64, sketch.getWidth());
+    }
+
+    @Test
+    void estimatesOverSeveralSketches() {
+        CountMinSketch[] sketches = {new CountMinSketch(3, 64), new CountMinSketch(3, 64)};
+        long hash = Hashing.mix(1, 2);
+        sketches[0].add(hash, 100);
+        sketches[1].add(hash, 200);
+
+        assertEquals(300, CountMinSketch.estimate(sketches, hash, true));
+        assertEquals(2, CountMinSketch.estimate(sketches, hash, false));
+    }
+
+    @Test
+    void clearResetsTheCounters() {
+        CountMinSketch sketch = new CountMinSketch(3, 64);
+        long hash = Hashing.mix(1, 2);
+        sketch.add(hash, 100);
+        sketch.clear();
+
+        assertEquals(0, sketch.estimateBytes(hash));
+        assertEquals(0, sketch.getTotalBytes());
+    }
+}
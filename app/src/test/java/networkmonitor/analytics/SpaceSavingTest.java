@@ -0,0 +1,99 @@
+package networkmonitor.analytics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import networkmonitor.util.Hashing;
+
+class SpaceSavingTest {
+    private static void offer(SpaceSaving summary, long key, long weight) {
+        summary.offer(0, key, Hashing.mix(0, key), weight);
+    }
+
+    @Test
+    void keepsEveryHeavyHitterWithinItsError() {
+        SpaceSaving summary = new SpaceSaving(20);
+        Map<Long, Long> exact = new HashMap<>();
+        Random random = new Random(7);
+        long total = 0;
+        for (int i = 0; i < 50_000; i++) {
+            // Keys 1 to 3 carry about half the bytes, the rest is spread over 10000 keys
+            long key = random.nextBoolean() ? 1 + random.nextInt(3) : 100 + random.nextInt(10_000);
+            long weight = 40 + random.nextInt(1460);
+            exact.merge(key, weight, Long::sum);
+            offer(summary, key, weight);
+            total += weight;
+        }
+
+        assertEquals(20, summary.size());
+        boolean[] found = new boolean[4];
+        for (int slot = 0; slot < summary.size(); slot++) {
+            long key = summary.getLow(slot);
+            long count = summary.getCount(slot);
+            long trueCount = exact.get(key);
+            assertTrue(count >= trueCount, "under-count of key " + key);
+            assertTrue(count - summary.getError(slot) <= trueCount, "error too small for key " + key);
+            assertTrue(summary.getError(slot) <= total / summary.getCapacity());
+            if (key >= 1 && key <= 3)
+                found[(int) key] = true;
+        }
+        assertTrue(found[1] && found[2] && found[3], "a heavy hitter was evicted");
+    }
+
+    @Test
+    void countsExactlyBelowCapacity() {
+        SpaceSaving summary = new SpaceSaving(4);
+        offer(summary, 1, 100);
+        offer(summary, 2, 50);
+        offer(summary, 1, 25);
+
+        assertEquals(2, summary.size());
+        for (int slot = 0; slot < summary.size(); slot++) {
+            assertEquals(0, summary.getError(slot));
+            assertEquals(summary.getLow(slot) == 1 ? 125 : 50, summary.getCount(slot));
+            assertEquals(Hashing.mix(0, summary.getLow(slot)), summary.getHash(slot));
+        }
+    }
+
+    @Test
+    void newKeyTakesOverTheSmallest() {
+        SpaceSaving summary = new SpaceSaving(2);
+        offer(summary, 1, 100);
+        offer(summary, 2, 10);
+        offer(summary, 3, 5);
+
+        assertEquals(2, summary.size());
+        for (int slot = 0; slot < summary.size(); slot++) {
+            long key = summary.getLow(slot);
+            assertTrue(key == 1 || key == 3, "key 2 should have been replaced");
+            if (key == 3) {
+                assertEquals(15, summary.getCount(slot));
+                assertEquals(10, summary.getError(slot));
+            }
+        }
+
+        // The replaced key is found again through the index
+        offer(summary, 3, 5);
+        for (int slot = 0; slot < summary.size(); slot++)
+            if (summary.getLow(slot) == 3)
+                assertEquals(20, summary.getCount(slot));
+    }
+
+    @Test
+    void clearEmptiesTheSummary() {
+        SpaceSaving summary = new SpaceSaving(2);
+        offer(summary, 1, 100);
+        summary.clear();
+        assertEquals(0, summary.size());
+
+        offer(summary, 1, 7);
+        assertEquals(1, summary.size());
+        assertEquals(7, summary.getCount(0));
+    }
+}
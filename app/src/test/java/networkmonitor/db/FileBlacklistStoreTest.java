@@ -0,0 +1,124 @@
+package networkmonitor.db;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import networkmonitor.model.BlacklistEntry;
+
+class FileBlacklistStoreTest {
+    @TempDir
+    Path directory;
+
+    private static FileBlacklistStore open(Path file) throws Exception {
+        FileBlacklistStore store = new FileBlacklistStore(file, false);
+        store.whenReady().get(5, TimeUnit.SECONDS);
+        return store;
+    }
+
+    private static List<String> addresses(FileBlacklistStore store) {
+        List<String> addresses = new ArrayList<>();
+        for (BlacklistEntry row : store.loadAll())
+            addresses.add(row.getIpAddress());
+        return addresses;
+    }
+
+    @Test
+    void replaysTheCommittedTransactions() throws Exception {
+        Path file = directory.resolve("blacklist.log");
+        LocalDateTime createdAt = LocalDateTime.of(2024, 5, 1, 12, 30);
+        FileBlacklistStore store = open(file);
+        store.apply("feed-a", List.of(
+            new BlacklistEntry("10.0.0.1", "one.example", "feed-a", createdAt),
+            new BlacklistEntry("10.0.0.2", null, "feed-a", null)), List.of());
+        store.apply("feed-b", List.of(new BlacklistEntry("10.0.0.3", "three.example", "feed-b", null)), List.of());
+        store.apply("feed-a", List.of(), List.of("10.0.0.2"));
+        store.close();
+
+        FileBlacklistStore reopened = open(file);
+        assertEquals(List.of("10.0.0.1", "10.0.0.3"), addresses(reopened));
+        BlacklistEntry first = reopened.loadAll().get(0);
+        assertEquals("one.example", first.getWebsiteName());
+        assertEquals("feed-a", first.getSource());
+        assertEquals(createdAt, first.getCreatedAt());
+        reopened.close();
+    }
+
+    @Test
+    void deletesOnlyTheRowsOfTheFeed() throws Exception {
+        Path file = directory.resolve("blacklist.log");
+        FileBlacklistStore store = open(file);
+        store.apply("feed-a", List.of(new BlacklistEntry("10.0.0.1", null, "feed-a", null)), List.of());
+        store.apply("feed-b", List.of(), List.of("10.0.0.1"));
+        store.close();
+
+        FileBlacklistStore reopened = open(file);
+        assertEquals(List.of("10.0.0.1"), addresses(reopened));
+        reopened.close();
+    }
+
+    @Test
+    void discardsAnIncompleteTransactionOnReplay() throws Exception {
+        Path file = directory.resolve("blacklist.log");
+        FileBlacklistStore store = open(file);
+        store.apply("feed-a", List.of(new BlacklistEntry("10.0.0.1", null, "feed-a", null)), List.of());
+        store.close();
+        long committed = Files.size(file);
+
+        // A crash after the first record of a transaction
+        Files.writeString(file, "+\t10.0.0.9\tnine.example\tfeed-a\t\n-\tfeed-a\t10.0.0.1\n",
+            StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        FileBlacklistStore reopened = open(file);
+        assertEquals(List.of("10.0.0.1"), addresses(reopened));
+        assertEquals(committed, Files.size(file));
+
+        // The log stays usable after the cut
+        reopened.apply("feed-a", List.of(new BlacklistEntry("10.0.0.2", null, "feed-a", null)), List.of());
+        reopened.close();
+        FileBlacklistStore again = open(file);
+        assertEquals(List.of("10.0.0.1", "10.0.0.2"), addresses(again));
+        again.close();
+    }
+
+    @Test
+    void rejectedTransactionLeavesRowsAndLogUnchanged() throws Exception {
+        Path file = directory.resolve("blacklist.log");
+        FileBlacklistStore store = open(file);
+        store.apply("feed-a", List.of(new BlacklistEntry("10.0.0.1", null, "feed-a", null)), List.of());
+        long size = Files.size(file);
+
+        assertThrows(IllegalStateException.class, () -> store.apply("feed-a", List.of(
+            new BlacklistEntry("10.0.0.2", null, "feed-a", null),
+            new BlacklistEntry("10.0.0.1", null, "feed-a", null)), List.of()));
+
+        assertEquals(List.of("10.0.0.1"), addresses(store));
+        assertEquals(size, Files.size(file));
+        store.close();
+    }
+
+    @Test
+    void readdsAnAddressDeletedInTheSameTransaction() throws Exception {
+        Path file = directory.resolve("blacklist.log");
+        FileBlacklistStore store = open(file);
+        store.apply("feed-a", List.of(new BlacklistEntry("10.0.0.1", "old.example", "feed-a", null)), List.of());
+        store.apply("feed-a", List.of(new BlacklistEntry("10.0.0.1", "new.example", "feed-a", null)), List.of("10.0.0.1"));
+        store.close();
+
+        FileBlacklistStore reopened = open(file);
+        assertEquals(1, reopened.loadAll().size());
+        assertEquals("new.example", reopened.loadAll().get(0).getWebsiteName());
+        reopened.close();
+    }
+}
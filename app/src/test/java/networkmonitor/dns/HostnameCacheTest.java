@@ -0,0 +1,126 @@
+package networkmonitor.dns;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class HostnameCacheTest {
+    // 10.0.0.1 has a name, every other address has none
+    private static final int NAMED = 0x0A000001;
+    private static final int UNNAMED = 0x0A000002;
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private HostnameCache cache;
+
+    @AfterEach
+    void close() {
+        release.countDown();
+        if (cache != null)
+            cache.close();
+    }
+
+    private String resolve(byte[] address) {
+        calls.incrementAndGet();
+        return address.length == 4 && address[3] == 1 ? "one.example" : null;
+    }
+
+    private String resolveSlowly(byte[] address) {
+        calls.incrementAndGet();
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "late.example";
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline)
+            Thread.sleep(5);
+        assertTrue(condition.getAsBoolean(), "condition not reached in 5 s");
+    }
+
+    @Test
+    void answersFromTheCacheOnceResolved() throws InterruptedException {
+        cache = new HostnameCache(this::resolve, 100, 60_000, 5_000, 1_000, 4, 16, now::get);
+
+        assertNull(cache.lookupIpV4(NAMED));
+        waitUntil(() -> cache.getResolved() == 1);
+        assertEquals("one.example", cache.lookupIpV4(NAMED));
+        assertEquals("one.example", cache.lookupIpV4(NAMED));
+
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, cache.getHits());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void keepsMissingNamesForTheNegativeTtl() throws InterruptedException {
+        cache = new HostnameCache(this::resolve, 100, 60_000, 5_000, 1_000, 4, 16, now::get);
+
+        assertNull(cache.lookupIpV4(UNNAMED));
+        waitUntil(() -> cache.getResolved() == 1);
+        assertEquals("", cache.lookupIpV4(UNNAMED));
+        assertEquals(1, calls.get());
+
+        // Expired: the old answer is still returned while it is looked up again
+        now.addAndGet(5_000);
+        assertEquals("", cache.lookupIpV4(UNNAMED));
+        waitUntil(() -> cache.getResolved() == 2);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void putReplacesTheCachedName() {
+        cache = new HostnameCache(this::resolve, 100, 60_000, 5_000, 1_000, 4, 16, now::get);
+
+        cache.put(0, 0xFFFFL << 32 | UNNAMED, "sniffed.example");
+        assertEquals("sniffed.example", cache.lookupIpV4(UNNAMED));
+        assertEquals(1, cache.getSniffed());
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    void givesUpSlowLookupsAfterTheTimeout() throws InterruptedException {
+        cache = new HostnameCache(this::resolveSlowly, 100, 60_000, 5_000, 50, 4, 16, now::get);
+
+        assertNull(cache.lookupIpV4(NAMED));
+        waitUntil(() -> cache.getTimeouts() == 1);
+        assertEquals("", cache.lookupIpV4(NAMED));
+
+        // A late answer still replaces the negative entry
+        release.countDown();
+        waitUntil(() -> cache.getResolved() == 1);
+        assertEquals("late.example", cache.lookupIpV4(NAMED));
+    }
+
+    @Test
+    void rejectsLookupsBeyondMaxPending() throws InterruptedException {
+        cache = new HostnameCache(this::resolveSlowly, 100, 60_000, 5_000, 60_000, 4, 1, now::get);
+
+        assertNull(cache.lookupIpV4(NAMED));
+        assertNull(cache.lookupIpV4(UNNAMED));
+        assertEquals(1, cache.getRejected());
+
+        // The queued lookup is not submitted twice
+        assertNull(cache.lookupIpV4(NAMED));
+        assertEquals(1, cache.getRejected());
+
+        release.countDown();
+        waitUntil(() -> cache.getResolved() == 1);
+        assertEquals(1, calls.get());
+        assertEquals("late.example", cache.lookupIpV4(NAMED));
+    }
+}
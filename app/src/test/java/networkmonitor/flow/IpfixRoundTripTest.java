@@ -0,0 +1,117 @@
+package networkmonitor.flow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import networkmonitor.model.DecodedPacket;
+
+/**
+ * Flows ended in a FlowTable go through IpfixExporter and come back out of an IpfixCollector
+ * listening on the loopback interface.
+ */
+class IpfixRoundTripTest {
+    private IpfixCollector collector;
+
+    @AfterEach
+    void close() {
+        if (collector != null)
+            collector.close();
+    }
+
+    private static DecodedPacket packet(long millis, int length) {
+        DecodedPacket packet = new DecodedPacket();
+        packet.captureNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+        packet.frameLength = length;
+        return packet;
+    }
+
+    private static DecodedPacket tcpV4(long millis, int length, int tcpFlags) {
+        DecodedPacket packet = packet(millis, length);
+        packet.ipVersion = 4;
+        packet.protocol = DecodedPacket.PROTO_TCP;
+        packet.srcAddr = 0x0A000001;
+        packet.dstAddr = 0x0A000002;
+        packet.srcPort = (short) 40000;
+        packet.dstPort = (short) 443;
+        packet.tcpFlags = tcpFlags;
+        return packet;
+    }
+
+    private static DecodedPacket udpV6(long millis, int length) {
+        DecodedPacket packet = packet(millis, length);
+        packet.ipVersion = 6;
+        packet.protocol = DecodedPacket.PROTO_UDP;
+        packet.srcAddrHi = 0x20010DB8L << 32;
+        packet.srcAddrLo = 1;
+        packet.dstAddrHi = 0x20010DB8L << 32;
+        packet.dstAddrLo = 2;
+        packet.srcPort = (short) 5353;
+        packet.dstPort = (short) 53;
+        return packet;
+    }
+
+    @Test
+    void collectorReceivesTheExportedFlows() throws IOException, InterruptedException {
+        collector = new IpfixCollector(0, 100, 300);
+        collector.start();
+        IpfixExporter exporter = new IpfixExporter(new InetSocketAddress(InetAddress.getLoopbackAddress(), collector.getPort()),
+            7, 1400, 1000, 60, null);
+        FlowTable table = new FlowTable(16, 15, 60, exporter);
+
+        long start = System.currentTimeMillis();
+        table.record(tcpV4(start, 100, DecodedPacket.TCP_SYN));
+        table.record(tcpV4(start + 10, 1500, DecodedPacket.TCP_ACK));
+        table.record(tcpV4(start + 20, 60, DecodedPacket.TCP_ACK | DecodedPacket.TCP_FIN));
+        table.record(udpV6(start + 5, 80));
+        table.endAll(FlowTable.END_FORCED);
+        exporter.flush();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (collector.getFlowCount() < 2 && System.nanoTime() < deadline)
+            Thread.sleep(5);
+
+        assertEquals(2, exporter.getRecordsExported());
+        assertEquals(0, exporter.getMessagesDropped());
+        assertEquals(2, collector.getRecords());
+        assertEquals(0, collector.getLostRecords());
+        assertEquals(0, collector.getMalformedMessages());
+        assertEquals(1, collector.getSensors().size());
+        assertEquals(7, collector.getSensors().get(0).getDomain());
+
+        // Largest first
+        List<IpfixCollector.FlowSummary> flows = collector.getTopFlows(10);
+        assertEquals(2, flows.size());
+
+        IpfixCollector.FlowSummary tcp = flows.get(0);
+        assertEquals("10.0.0.1", tcp.getSource());
+        assertEquals(40000, tcp.getSourcePort());
+        assertEquals("10.0.0.2", tcp.getDestination());
+        assertEquals(443, tcp.getDestinationPort());
+        assertEquals(DecodedPacket.PROTO_TCP, tcp.getProtocol());
+        assertEquals(1660, tcp.getBytes());
+        assertEquals(3, tcp.getPackets());
+        assertEquals(start, tcp.getStartMillis());
+        assertEquals(start + 20, tcp.getEndMillis());
+        assertEquals(DecodedPacket.TCP_SYN | DecodedPacket.TCP_ACK | DecodedPacket.TCP_FIN, tcp.getTcpFlags());
+        assertEquals(1, tcp.getSensors());
+
+        IpfixCollector.FlowSummary udp = flows.get(1);
+        assertEquals("2001:db8::1", udp.getSource());
+        assertEquals(5353, udp.getSourcePort());
+        assertEquals("2001:db8::2", udp.getDestination());
+        assertEquals(53, udp.getDestinationPort());
+        assertEquals(DecodedPacket.PROTO_UDP, udp.getProtocol());
+        assertEquals(80, udp.getBytes());
+        assertEquals(1, udp.getPackets());
+        assertTrue(udp.getEndMillis() >= udp.getStartMillis());
+    }
+}
@@ -0,0 +1,80 @@
+package networkmonitor.ids;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class AhoCorasickTest {
+    private static AhoCorasick compile(boolean caseInsensitive, String... patterns) {
+        List<byte[]> bytes = new ArrayList<>();
+        int[] ids = new int[patterns.length];
+        for (int i = 0; i < patterns.length; i++) {
+            bytes.add(patterns[i].getBytes(StandardCharsets.US_ASCII));
+            ids[i] = i + 1;
+        }
+        return new AhoCorasick(bytes, ids, caseInsensitive);
+    }
+
+    // Hits as "id@end"
+    private static List<String> scan(AhoCorasick matcher, String text) {
+        List<String> hits = new ArrayList<>();
+        byte[] data = text.getBytes(StandardCharsets.US_ASCII);
+        matcher.scan(data, 0, data.length, 0, (ruleId, end) -> hits.add(ruleId + "@" + end));
+        return hits;
+    }
+
+    @Test
+    void reportsTheLongestPatternEndingAtEachPosition() {
+        AhoCorasick matcher = compile(false, "he", "she", "hers");
+
+        assertEquals(List.of("2@4", "3@6"), scan(matcher, "ushers"));
+        assertEquals(List.of("1@2", "1@5"), scan(matcher, "he he"));
+        assertEquals(List.of(), scan(matcher, "nothing to see"));
+    }
+
+    @Test
+    void foldsCaseOnlyWhenAsked() {
+        assertEquals(List.of(), scan(compile(false, "GET "), "get /index.html"));
+        assertEquals(List.of("1@4"), scan(compile(true, "GET "), "get /index.html"));
+        assertEquals(List.of("1@4"), scan(compile(true, "get "), "GET /index.html"));
+    }
+
+    @Test
+    void resumesAcrossChunks() {
+        AhoCorasick matcher = compile(false, "attack");
+        byte[] first = "xxatt".getBytes(StandardCharsets.US_ASCII);
+        byte[] second = "ackxx".getBytes(StandardCharsets.US_ASCII);
+        List<String> hits = new ArrayList<>();
+
+        int state = matcher.scan(first, 0, first.length, 0, (ruleId, end) -> hits.add(ruleId + "@" + end));
+        matcher.scan(second, 0, second.length, state, (ruleId, end) -> hits.add(ruleId + "@" + end));
+
+        assertEquals(List.of("1@3"), hits);
+    }
+
+    @Test
+    void scansOnlyTheGivenRange() {
+        AhoCorasick matcher = compile(false, "abc");
+        byte[] data = "abcabcabc".getBytes(StandardCharsets.US_ASCII);
+        List<Integer> ends = new ArrayList<>();
+
+        matcher.scan(data, 3, 4, 0, (ruleId, end) -> ends.add(end));
+
+        assertEquals(List.of(6), ends);
+    }
+
+    @Test
+    void firstOfTwoIdenticalPatternsWins() {
+        assertEquals(List.of("1@3"), scan(compile(false, "abc", "abc"), "abc"));
+    }
+
+    @Test
+    void rejectsEmptyPatterns() {
+        assertThrows(IllegalArgumentException.class, () -> compile(false, "a", ""));
+    }
+}
@@ -0,0 +1,80 @@
+package networkmonitor.ids;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class SignatureSetTest {
+    private static final String RULES = String.join("\n",
+        "# comment",
+        "",
+        "1;HTTP GET;GET|20|/",
+        "not a rule",
+        "x;Bad id;abc",
+        "3;Odd hex;|0d 0|",
+        "2;Host header;|0d 0a|host:;nocase");
+
+    @Test
+    void parsesTextAndHexRuns() {
+        assertArrayEquals("GET /".getBytes(StandardCharsets.US_ASCII), SignatureSet.parseContent("GET|20|/"));
+        assertArrayEquals("\r\nHost:".getBytes(StandardCharsets.US_ASCII), SignatureSet.parseContent("|0d 0a|Host:"));
+        assertArrayEquals(new byte[]{(byte) 0xFF, 0x00}, SignatureSet.parseContent("|ff00|"));
+    }
+
+    @Test
+    void rejectsMalformedHexRuns() {
+        assertThrows(IllegalArgumentException.class, () -> SignatureSet.parseContent("|0d 0|"));
+        assertThrows(IllegalArgumentException.class, () -> SignatureSet.parseContent("|0g|"));
+        assertThrows(IllegalArgumentException.class, () -> SignatureSet.parseContent("GET|20"));
+    }
+
+    @Test
+    void skipsCommentsAndInvalidLines() throws IOException {
+        List<SignatureRule> rules = SignatureSet.parse(new StringReader(RULES));
+
+        assertEquals(2, rules.size());
+        assertEquals(1, rules.get(0).getId());
+        assertEquals("HTTP GET", rules.get(0).getName());
+        assertFalse(rules.get(0).isCaseInsensitive());
+        assertEquals(2, rules.get(1).getId());
+        assertTrue(rules.get(1).isCaseInsensitive());
+    }
+
+    @Test
+    void splitsRulesByCaseSensitivity() throws IOException {
+        SignatureSet set = new SignatureSet(SignatureSet.parse(new StringReader(RULES)));
+
+        assertEquals(2, set.size());
+        assertEquals("Host header", set.getRuleName(2));
+        assertNull(set.getRuleName(3));
+        assertNotNull(set.getCaseSensitive());
+        assertNotNull(set.getCaseInsensitive());
+
+        byte[] payload = "GET / HTTP/1.1\r\nHOST: example.com\r\n".getBytes(StandardCharsets.US_ASCII);
+        List<Integer> hits = new ArrayList<>();
+        set.getCaseSensitive().scan(payload, 0, payload.length, 0, (ruleId, end) -> hits.add(ruleId));
+        set.getCaseInsensitive().scan(payload, 0, payload.length, 0, (ruleId, end) -> hits.add(ruleId));
+        assertEquals(List.of(1, 2), hits);
+    }
+
+    @Test
+    void leavesAnAutomatonOutWhenNoRuleNeedsIt() {
+        SignatureSet set = new SignatureSet(List.of(new SignatureRule(5, "Only", new byte[]{1, 2}, false)));
+
+        assertNotNull(set.getCaseSensitive());
+        assertNull(set.getCaseInsensitive());
+        assertTrue(set.getTableBytes() > 0);
+    }
+}
@@ -0,0 +1,56 @@
+package networkmonitor.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+    @Test
+    void everyValueFallsInsideItsBucket() {
+        for (long value = 0; value < 1L << 41; value = value < 64 ? value + 1 : value + value / 7) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(value < LatencyHistogram.bucketUpperBound(index), "upper bound of " + value);
+            if (index > 0)
+                assertTrue(value >= LatencyHistogram.bucketUpperBound(index - 1), "lower bound of " + value);
+        }
+    }
+
+    @Test
+    void quantilesAreWithinTheBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram("test", "Test histogram");
+        for (int i = 1; i <= 1000; i++)
+            histogram.record(i * 1_000L);
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500_500_000L, histogram.getSumNanos());
+        assertEquals(500_000, histogram.getValueAtQuantile(0.5), 500_000 * 0.125);
+        assertEquals(990_000, histogram.getValueAtQuantile(0.99), 990_000 * 0.125);
+        assertEquals(1_000_000, histogram.getValueAtQuantile(1.0));
+        assertEquals(1000.0, histogram.getMaxMicros(), 1e-9);
+    }
+
+    @Test
+    void countsValuesBelowAPowerOfTwo() {
+        LatencyHistogram histogram = new LatencyHistogram("test", "Test histogram");
+        histogram.record(100);
+        histogram.record(1023);
+        histogram.record(1024);
+        histogram.record(5000);
+
+        assertEquals(2, histogram.getCountBelow(1024));
+        assertEquals(3, histogram.getCountBelow(2048));
+        assertEquals(4, histogram.getCountBelow(8192));
+    }
+
+    @Test
+    void emptyAndNegativeValues() {
+        LatencyHistogram histogram = new LatencyHistogram("test", "Test histogram");
+        assertEquals(0, histogram.getValueAtQuantile(0.5));
+
+        histogram.record(-5);
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getSumNanos());
+        assertEquals(0, histogram.getValueAtQuantile(0.5));
+    }
+}
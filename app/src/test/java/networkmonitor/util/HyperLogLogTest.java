@@ -0,0 +1,56 @@
+package networkmonitor.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class HyperLogLogTest {
+    private static final int PRECISION = 10;
+    private static final int REGISTERS = 1 << PRECISION;
+
+    @Test
+    void estimatesLargeCardinalities() {
+        byte[] registers = new byte[REGISTERS];
+        for (int i = 0; i < 100_000; i++)
+            HyperLogLog.add(registers, 0, PRECISION, Hashing.mix(0, i));
+
+        // Standard error 1.04 / sqrt(1024) = 3.25%
+        assertEquals(100_000, HyperLogLog.estimateUnion(registers, 0, 0, PRECISION), 100_000 * 0.1);
+    }
+
+    @Test
+    void smallCardinalitiesUseLinearCounting() {
+        byte[] registers = new byte[REGISTERS];
+        assertEquals(0, HyperLogLog.estimateUnion(registers, 0, 0, PRECISION));
+
+        for (int i = 0; i < 50; i++)
+            HyperLogLog.add(registers, 0, PRECISION, Hashing.mix(0, i));
+        assertEquals(50, HyperLogLog.estimateUnion(registers, 0, 0, PRECISION), 3);
+    }
+
+    @Test
+    void repeatedValuesDoNotChangeTheSketch() {
+        byte[] registers = new byte[REGISTERS];
+        assertTrue(HyperLogLog.add(registers, 0, PRECISION, Hashing.mix(0, 1)));
+        assertFalse(HyperLogLog.add(registers, 0, PRECISION, Hashing.mix(0, 1)));
+    }
+
+    @Test
+    void unionOfSlicesInOneArray() {
+        byte[] registers = new byte[3 * REGISTERS];
+        for (int i = 0; i < 20_000; i++) {
+            HyperLogLog.add(registers, REGISTERS, PRECISION, Hashing.mix(0, i));
+            HyperLogLog.add(registers, 2 * REGISTERS, PRECISION, Hashing.mix(1, i));
+        }
+
+        // The first slice stays empty
+        assertEquals(0, HyperLogLog.estimateUnion(registers, 0, 0, PRECISION));
+        assertEquals(40_000, HyperLogLog.estimateUnion(registers, REGISTERS, 2 * REGISTERS, PRECISION), 40_000 * 0.1);
+
+        HyperLogLog.clear(registers, REGISTERS, PRECISION);
+        assertEquals(0, HyperLogLog.estimateUnion(registers, REGISTERS, REGISTERS, PRECISION));
+        assertEquals(20_000, HyperLogLog.estimateUnion(registers, 2 * REGISTERS, 2 * REGISTERS, PRECISION), 20_000 * 0.1);
+    }
+}
@@ -0,0 +1,63 @@
+package networkmonitor.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class LttbTest {
+    @Test
+    void keepsAllPointsUpToTheThreshold() {
+        float[] values = {3, 1, 4, 1, 5};
+        int[] out = new int[5];
+
+        assertEquals(5, Lttb.downsample(values, 5, 10, out));
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4}, out);
+        assertEquals(3, Lttb.downsample(values, 3, 2, out));
+    }
+
+    @Test
+    void keepsTheEndsInAscendingOrder() {
+        float[] values = new float[1000];
+        for (int i = 0; i < values.length; i++)
+            values[i] = (float) Math.sin(i / 20.0);
+        int[] out = new int[100];
+
+        int kept = Lttb.downsample(values, values.length, 100, out);
+
+        assertEquals(100, kept);
+        assertEquals(0, out[0]);
+        assertEquals(999, out[kept - 1]);
+        for (int i = 1; i < kept; i++)
+            assertTrue(out[i] > out[i - 1], "indices not ascending at " + i);
+    }
+
+    @Test
+    void keepsIsolatedPeaks() {
+        float[] values = new float[10_000];
+        values[1234] = 100;
+        values[7777] = -50;
+        int[] out = new int[50];
+
+        int kept = Lttb.downsample(values, values.length, 50, out);
+
+        int[] indices = Arrays.copyOf(out, kept);
+        assertTrue(Arrays.stream(indices).anyMatch(i -> i == 1234), "peak dropped");
+        assertTrue(Arrays.stream(indices).anyMatch(i -> i == 7777), "dip dropped");
+    }
+
+    @Test
+    void usesOnlyTheGivenLength() {
+        float[] values = new float[100];
+        values[90] = 1000;
+        int[] out = new int[10];
+
+        int kept = Lttb.downsample(values, 50, 10, out);
+
+        assertEquals(10, kept);
+        assertEquals(49, out[kept - 1]);
+    }
+}